@@ -1,5 +1,9 @@
 package de.fzi.dbs.xml.transform;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import net.sf.saxon.TransformerFactoryImpl;
 
 import org.apache.logging.log4j.LogManager;
@@ -7,10 +11,21 @@ import org.apache.logging.log4j.Logger;
 import org.fao.geonet.utils.CachedTransformer;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
@@ -23,6 +38,21 @@ import javax.xml.transform.stream.StreamSource;
  * Caching implementation of JAXP transformer factory. This implementation caches templates that
  * were loaded from local files so that consequent calls to local stylesheets require stylesheet
  * reparsing only if stylesheet was changed.
+ * <p>
+ * Templates are kept in a concurrent cache bounded to the most recently used stylesheets
+ * (system property <code>geonetwork.xslt.cache.maxSize</code>, default 1000). A stylesheet is
+ * compiled once even if requested by several threads at the same time.
+ * <p>
+ * Modified stylesheets are detected either:
+ * <ul>
+ * <li>by checking the date of last modification of the file, at most every
+ * <code>geonetwork.xslt.cache.checkInterval</code> milliseconds (default 1000, 0 to check on
+ * every call),</li>
+ * <li>or, when <code>geonetwork.xslt.cache.watch</code> is true, by watching the directories
+ * of the cached stylesheets. Any change in a directory removes the templates of the
+ * stylesheets it contains (including the ones including a modified stylesheet of the same
+ * directory) and lookups do not access the file system anymore.</li>
+ * </ul>
  */
 public class CachingTransformerFactory extends TransformerFactoryImpl implements CachedTransformer {
     /**
@@ -30,18 +60,33 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
      */
     protected static final Logger logger =
         LogManager.getLogger(CachingTransformerFactory.class);
+
+    public static final String MAX_SIZE_PROPERTY = "geonetwork.xslt.cache.maxSize";
+    public static final String CHECK_INTERVAL_PROPERTY = "geonetwork.xslt.cache.checkInterval";
+    public static final String WATCH_PROPERTY = "geonetwork.xslt.cache.watch";
+
+    private static final long maxSize = Long.getLong(MAX_SIZE_PROPERTY, 1000);
+    private static final long checkInterval = Long.getLong(CHECK_INTERVAL_PROPERTY, 1000);
+
     /**
-     * Active readers count.
+     * Templates cache.
      */
-    static int activeReaders = 0;
+    private static final Cache<String, TemplatesCacheEntry> templatesCache = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .recordStats()
+        .build();
+
     /**
-     * Active writers count.
+     * Number of templates removed from the cache because the stylesheet changed.
      */
-    static int activeWriters = 0;
+    private static final AtomicLong invalidationCount = new AtomicLong();
+
     /**
-     * Map to hold templates cache.
+     * Watches the directories of the cached stylesheets, null when the date of last modification
+     * of the files is checked instead.
      */
-    private static Map<String, TemplatesCacheEntry> templatesCache = new HashMap<String, TemplatesCacheEntry>();
+    private static final StylesheetWatcher watcher =
+        Boolean.getBoolean(WATCH_PROPERTY) ? StylesheetWatcher.create() : null;
 
     /**
      * Clear the stylesheet cache. This is not part of the JAXP TransformerFactoryImpl so users
@@ -49,16 +94,33 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
      * broken.
      */
     public void clearCache() {
-        beforeWrite();
-        templatesCache.clear();
-        afterWrite();
+        templatesCache.invalidateAll();
+    }
+
+    /**
+     * @return the size, limit and hit, miss, load and eviction counts of the templates cache.
+     */
+    public Map<String, Object> getCacheStatistics() {
+        CacheStats stats = templatesCache.stats();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("size", templatesCache.size());
+        statistics.put("maxSize", maxSize);
+        statistics.put("hitCount", stats.hitCount());
+        statistics.put("missCount", stats.missCount());
+        statistics.put("hitRate", stats.hitRate());
+        statistics.put("loadCount", stats.loadCount());
+        statistics.put("loadExceptionCount", stats.loadExceptionCount());
+        statistics.put("averageLoadPenaltyMs", stats.averageLoadPenalty() / 1000000);
+        statistics.put("evictionCount", stats.evictionCount());
+        statistics.put("invalidationCount", invalidationCount.get());
+        statistics.put("invalidation", watcher != null ? "watch" : "checkInterval=" + checkInterval + "ms");
+        return statistics;
     }
 
     /**
      * Process the source into a Transformer object. If source is a StreamSource with
      * <code>systemID</code> pointing to a file, transformer is produced from a cached templates
-     * object. Cache is done in soft references; cached objects are reloaded, when file's date of
-     * last modification changes.
+     * object. Cached objects are reloaded, when the file changes.
      *
      * @param source An object that holds a URI, input stream, etc.
      * @return A Transformer object that may be used to perform a transformation in a single thread,
@@ -95,102 +157,54 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
      */
     protected Transformer newTransformer(final File file)
         throws TransformerConfigurationException {
-        // Search the cache for the templates entry
-        TemplatesCacheEntry templatesCacheEntry = read(file.getAbsolutePath());
-
-        // If entry found
-        if (templatesCacheEntry != null) {
-            // Check timestamp of modification
-            if (templatesCacheEntry.lastModified
-                < templatesCacheEntry.templatesFile.lastModified())
-                templatesCacheEntry = null;
-        }
-        // If no templatesEntry is found or this entry was obsolete
-        if (templatesCacheEntry == null) {
-            //System.out.println("Loading transformation [" + file.getAbsolutePath() + "].");
-            // If this file does not exists, throw the exception
-            if (!file.exists()) {
-                throw new TransformerConfigurationException(
-                    "Requested transformation ["
-                        + file.getAbsolutePath()
-                        + "] does not exist.");
-            }
-
-            // Create new cache entry
-            templatesCacheEntry =
-                new TemplatesCacheEntry(newTemplates(new StreamSource(file)), file);
+        final String absolutePath = file.getAbsolutePath();
 
-            // Save this entry to the cache
-            write(file.getAbsolutePath(), templatesCacheEntry);
-        } else {
-            //System.out.println("Using cached transformation [" + file.getAbsolutePath() + "].");
+        // Search the cache for the templates entry and check it is up to date
+        TemplatesCacheEntry templatesCacheEntry = templatesCache.getIfPresent(absolutePath);
+        if (templatesCacheEntry != null && watcher == null && templatesCacheEntry.isModified()) {
+            templatesCache.asMap().remove(absolutePath, templatesCacheEntry);
+            invalidationCount.incrementAndGet();
         }
-        return templatesCacheEntry.templates.newTransformer();
-    }
-
-    /**
-     * Returns a templates cache entry for the specified absolute path.
-     *
-     * @param absolutePath absolute path of the entry.
-     * @return Templates cache entry for the specified path.
-     */
-    protected TemplatesCacheEntry read(String absolutePath) {
-        beforeRead();
-        final TemplatesCacheEntry templatesCacheEntry = templatesCache.get(absolutePath);
-        afterRead();
-        return templatesCacheEntry;
-    }
-
-    /**
-     * Saves templates cache entry for the specified absolute path.
-     *
-     * @param absolutePath        absolute path of the entry.
-     * @param templatesCacheEntry templates cache entry to save.
-     */
-    protected void write(String absolutePath, TemplatesCacheEntry templatesCacheEntry) {
-        beforeWrite();
-        templatesCache.put(absolutePath, templatesCacheEntry);
-        afterWrite();
-    }
 
-    /**
-     * Invoked just before reading, waits until reading is allowed.
-     */
-    protected synchronized void beforeRead() {
-        while (activeWriters > 0)
-            try {
-                wait();
-            } catch (InterruptedException iex) {
+        try {
+            // If no templatesEntry is found or this entry was obsolete,
+            // compile the stylesheet (once for all threads requesting it)
+            templatesCacheEntry = templatesCache.get(absolutePath, () -> {
+                // If this file does not exists, throw the exception
+                if (!file.exists()) {
+                    throw new TransformerConfigurationException(
+                        "Requested transformation ["
+                            + absolutePath
+                            + "] does not exist.");
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Loading transformation [" + absolutePath + "].");
+                }
+                TemplatesCacheEntry entry = new TemplatesCacheEntry(newTemplates(new StreamSource(file)), file);
+                if (watcher != null) {
+                    watcher.register(file.getParentFile());
+                }
+                return entry;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof TransformerConfigurationException) {
+                throw (TransformerConfigurationException) e.getCause();
             }
-        ++activeReaders;
-    }
-
-    /**
-     * Invoked just after reading.
-     */
-    protected synchronized void afterRead() {
-        --activeReaders;
-        notifyAll();
+            throw new TransformerConfigurationException(e.getCause());
+        }
+        return templatesCacheEntry.templates.newTransformer();
     }
 
     /**
-     * Invoked just before writing, waits until writing is allowed.
+     * Remove the templates of the stylesheets of a directory from the cache.
      */
-    protected synchronized void beforeWrite() {
-        while (activeReaders > 0 || activeWriters > 0)
-            try {
-                wait();
-            } catch (InterruptedException iex) {
+    private static void invalidateDirectory(Path directory) {
+        templatesCache.asMap().forEach((absolutePath, entry) -> {
+            if (directory.equals(entry.templatesFile.getParentFile().toPath())
+                && templatesCache.asMap().remove(absolutePath, entry)) {
+                invalidationCount.incrementAndGet();
             }
-        ++activeWriters;
-    }
-
-    /**
-     * Invoked just after writing.
-     */
-    protected synchronized void afterWrite() {
-        --activeWriters;
-        notifyAll();
+        });
     }
 
     /**
@@ -200,17 +214,22 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
         /**
          * When was the cached entry last modified.
          */
-        private long lastModified;
+        private final long lastModified;
 
         /**
          * Cached templates object.
          */
-        private Templates templates;
+        private final Templates templates;
 
         /**
          * Templates file object.
          */
-        private File templatesFile;
+        private final File templatesFile;
+
+        /**
+         * When was the date of last modification of the file last checked.
+         */
+        private volatile long lastChecked;
 
         /**
          * Constructs a new cache entry.
@@ -222,6 +241,90 @@ public class CachingTransformerFactory extends TransformerFactoryImpl implements
             this.templates = templates;
             this.templatesFile = templatesFile;
             this.lastModified = templatesFile.lastModified();
+            this.lastChecked = System.currentTimeMillis();
+        }
+
+        /**
+         * @return true if the file was modified since loaded. The file is checked
+         * at most once per check interval.
+         */
+        private boolean isModified() {
+            long now = System.currentTimeMillis();
+            if (now - lastChecked < checkInterval) {
+                return false;
+            }
+            lastChecked = now;
+            return lastModified < templatesFile.lastModified();
+        }
+    }
+
+    /**
+     * Watches the directories of the cached stylesheets in a background thread.
+     */
+    private static final class StylesheetWatcher implements Runnable {
+        private final WatchService watchService;
+        private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+
+        private StylesheetWatcher(WatchService watchService) {
+            this.watchService = watchService;
+        }
+
+        /**
+         * @return a started watcher or null if the file system does not support it.
+         */
+        private static StylesheetWatcher create() {
+            try {
+                StylesheetWatcher watcher = new StylesheetWatcher(FileSystems.getDefault().newWatchService());
+                Thread thread = new Thread(watcher, "xslt-cache-watcher");
+                thread.setDaemon(true);
+                thread.start();
+                return watcher;
+            } catch (IOException | UnsupportedOperationException e) {
+                logger.warn("Failed to watch stylesheets, checking date of last modification instead. Error is: "
+                    + e.getMessage());
+                return null;
+            }
+        }
+
+        private void register(File directory) {
+            directories.computeIfAbsent(directory.toPath(), path -> {
+                try {
+                    return path.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                } catch (IOException e) {
+                    logger.warn("Failed to watch stylesheet directory " + path + ". Error is: " + e.getMessage());
+                    return null;
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    Path directory = (Path) key.watchable();
+                    boolean overflow = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        overflow |= event.kind() == StandardWatchEventKinds.OVERFLOW;
+                    }
+                    if (overflow) {
+                        invalidationCount.addAndGet(templatesCache.size());
+                        templatesCache.invalidateAll();
+                    } else {
+                        invalidateDirectory(directory);
+                    }
+                    if (!key.reset()) {
+                        directories.remove(directory);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ClosedWatchServiceException e) {
+                // Stopped
+            }
         }
     }
 }
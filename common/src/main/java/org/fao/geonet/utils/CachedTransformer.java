@@ -23,9 +23,16 @@
 
 package org.fao.geonet.utils;
 
+import java.util.Map;
+
 /**
  * User: bloemj Date: 1-7-2015 Time: 17:12
  */
 public interface CachedTransformer {
     void clearCache();
+
+    /**
+     * @return statistics of the stylesheet cache (eg. size, hit and miss counts).
+     */
+    Map<String, Object> getCacheStatistics();
 }
@@ -66,6 +66,7 @@ import javax.annotation.PreDestroy;
  */
 public class GeonetHttpRequestFactory {
     private int numberOfConcurrentRequests = 20;
+    private int numberOfConcurrentRequestsPerRoute = 2;
     private PoolingHttpClientConnectionManager connectionManager;
     private volatile HttpClientConnectionManager nonShutdownableConnectionManager;
 
@@ -82,6 +83,14 @@ public class GeonetHttpRequestFactory {
         this.numberOfConcurrentRequests = numberOfConcurrentRequests;
     }
 
+    /**
+     * Set the maximum number of open connections to the same host (2 by default).
+     */
+    public synchronized void setNumberOfConcurrentRequestsPerRoute(int numberOfConcurrentRequestsPerRoute) {
+        shutdown();
+        this.numberOfConcurrentRequestsPerRoute = numberOfConcurrentRequestsPerRoute;
+    }
+
     /**
      * Create a default XmlRequest.
      */
@@ -206,6 +215,7 @@ public class GeonetHttpRequestFactory {
             if (connectionManager == null) {
                 connectionManager = new PoolingHttpClientConnectionManager();
                 connectionManager.setMaxTotal(this.numberOfConcurrentRequests);
+                connectionManager.setDefaultMaxPerRoute(this.numberOfConcurrentRequestsPerRoute);
                 nonShutdownableConnectionManager = new HttpClientConnectionManager() {
                     public void closeExpiredConnections() {
                         connectionManager.closeExpiredConnections();
@@ -82,6 +82,8 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -97,6 +99,10 @@ public final class Xml {
     public static final Namespace xsiNS = Namespace.getNamespace("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
     public static final NioPathAwareEntityResolver PATH_RESOLVER = new NioPathAwareEntityResolver();
     private static final byte[] BOM_MARKER_TEMPLATE = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+    /**
+     * Compiled schemas by xsd file path.  See {@link #clearSchemaCache()}.
+     */
+    private static final ConcurrentMap<Path, Schema> SCHEMA_CACHE = new ConcurrentHashMap<>();
 
     // http://www.w3.org/TR/REC-xml/#charsets
     public static final String XML10_ILLEGAL_CHAR_PATTERN = "[^"
@@ -497,41 +503,47 @@ public final class Xml {
         try (InputStream in = IO.newInputStream(styleSheetPath)) {
             Source srcSheet = new StreamSource(in, styleSheetPath.toUri().toASCIIString());
 
-            // Dear old saxon likes to yell loudly about each and every XSLT 1.0
-            // stylesheet so switch it off but trap any exceptions because this
-            // code is run on transformers other than saxon
-            TransformerFactory transFact = TransformerFactoryFactory.getTransformerFactory();
-            transFact.setURIResolver(new JeevesURIResolver());
-            try {
-                transFact.setAttribute(FeatureKeys.VERSION_WARNING, false);
-                transFact.setAttribute(FeatureKeys.LINE_NUMBERING, true);
-                transFact.setAttribute(FeatureKeys.PRE_EVALUATE_DOC_FUNCTION, false);
-                transFact.setAttribute(FeatureKeys.RECOVERY_POLICY, Configuration.RECOVER_SILENTLY);
-
-                // Add the following to get timing info on xslt transformations
-                //transFact.setAttribute(FeatureKeys.TIMING,true);
-            } catch (IllegalArgumentException e) {
-                Log.warning(Log.ENGINE, "WARNING: transformerfactory doesnt like saxon attributes!", e);
-            } finally {
-                transFact.setURIResolver(new JeevesURIResolver());
-                Transformer t = transFact.newTransformer(srcSheet);
-                if (params != null) {
-                    for (Map.Entry<String, Object> param : params.entrySet()) {
-                        t.setParameter(param.getKey(), param.getValue());
-                    }
-
-                    if (params.containsKey("geonet-force-xml")) {
-                        ((Controller) t).setOutputProperty("indent", "yes");
-                        ((Controller) t).setOutputProperty("method", "xml");
-                        ((Controller) t).setOutputProperty("{http://saxon.sf.net/}indent-spaces", "2");
-                    }
+            TransformerFactory transFact = getConfiguredTransformerFactory();
+            Transformer t = transFact.newTransformer(srcSheet);
+            if (params != null) {
+                for (Map.Entry<String, Object> param : params.entrySet()) {
+                    t.setParameter(param.getKey(), param.getValue());
                 }
 
-                t.transform(srcXml, result);
+                if (params.containsKey("geonet-force-xml")) {
+                    ((Controller) t).setOutputProperty("indent", "yes");
+                    ((Controller) t).setOutputProperty("method", "xml");
+                    ((Controller) t).setOutputProperty("{http://saxon.sf.net/}indent-spaces", "2");
+                }
             }
+
+            t.transform(srcXml, result);
         }
     }
 
+    /**
+     * @return the transformer factory configured as used by {@link #transform(Element, Path, Result, Map)}.
+     */
+    private static TransformerFactory getConfiguredTransformerFactory() throws TransformerConfigurationException {
+        // Dear old saxon likes to yell loudly about each and every XSLT 1.0
+        // stylesheet so switch it off but trap any exceptions because this
+        // code is run on transformers other than saxon
+        TransformerFactory transFact = TransformerFactoryFactory.getTransformerFactory();
+        try {
+            transFact.setAttribute(FeatureKeys.VERSION_WARNING, false);
+            transFact.setAttribute(FeatureKeys.LINE_NUMBERING, true);
+            transFact.setAttribute(FeatureKeys.PRE_EVALUATE_DOC_FUNCTION, false);
+            transFact.setAttribute(FeatureKeys.RECOVERY_POLICY, Configuration.RECOVER_SILENTLY);
+
+            // Add the following to get timing info on xslt transformations
+            //transFact.setAttribute(FeatureKeys.TIMING,true);
+        } catch (IllegalArgumentException e) {
+            Log.warning(Log.ENGINE, "WARNING: transformerfactory doesnt like saxon attributes!", e);
+        }
+        transFact.setURIResolver(new JeevesURIResolver());
+        return transFact;
+    }
+
     //--------------------------------------------------------------------------
 
     /**
@@ -545,6 +557,49 @@ public final class Xml {
             ((CachedTransformer) transFact).clearCache();
         }
     }
+
+    /**
+     * Compile stylesheets in the cache of the stylesheet transformer factory so that
+     * the first transformations do not have to wait for it. This is a no-op for
+     * transformer factories without cache. A stylesheet which can not be compiled is
+     * logged as a warning with its path and skipped.
+     *
+     * @param styleSheetPaths the stylesheets to compile.
+     * @return the number of stylesheets compiled.
+     */
+    public static int warmUpTransformerFactoryStylesheetCache(Collection<Path> styleSheetPaths) throws Exception {
+        TransformerFactory transFact = getConfiguredTransformerFactory();
+        if (!(transFact instanceof CachedTransformer)) {
+            return 0;
+        }
+        int compiled = 0;
+        for (Path styleSheetPath : styleSheetPaths) {
+            NioPathHolder.setBase(styleSheetPath);
+            try {
+                transFact.newTransformer(new StreamSource(styleSheetPath.toUri().toASCIIString()));
+                compiled++;
+            } catch (Exception | StackOverflowError e) {
+                Log.warning(Log.TRANSFORMER_FACTORY, String.format(
+                    "Failed to compile stylesheet %s. Error is: %s", styleSheetPath, e.getMessage()), e);
+            } finally {
+                NioPathHolder.setBase(null);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the statistics of the cache used in the stylesheet transformer factory
+     * or an empty map for transformer factories without cache.
+     */
+    public static Map<String, Object> getTransformerFactoryStylesheetCacheStatistics() throws TransformerConfigurationException {
+        TransformerFactory transFact = TransformerFactoryFactory.getTransformerFactory();
+        if (transFact instanceof CachedTransformer) {
+            return ((CachedTransformer) transFact).getCacheStatistics();
+        }
+        return Collections.emptyMap();
+    }
+
     //--------------------------------------------------------------------------
 
     /**
@@ -924,14 +979,13 @@ public final class Xml {
     /**
      * Validates an XML document using the hints in the schemaLocation attribute.
      */
-    public synchronized static void validate(Element xml) throws Exception {
+    public static void validate(Element xml) throws Exception {
         String schemaLoc = xml.getAttributeValue("schemaLocation", xsiNS);
         if (schemaLoc == null || schemaLoc.equals("")) {
             throw new IllegalArgumentException("XML document missing/blank schemaLocation hints - cannot validate");
         }
         XmlErrorHandler eh = new XmlErrorHandler();
-        Schema schema = factory().newSchema();
-        Element xsdErrors = validateRealGuts(schema, xml, eh, null);
+        Element xsdErrors = validateRealGuts(getSchemaFromHints(), xml, eh, null);
         if (xsdErrors != null) {
             throw new XSDValidationErrorEx("XSD Validation error(s):\n" + getString(xsdErrors), xsdErrors);
         }
@@ -956,8 +1010,7 @@ public final class Xml {
      * Validates an xml document with respect to schemaLocation hints using supplied error handler.
      */
     public static Element validateInfo(Element xml, XmlErrorHandler eh, String schemaName) throws Exception {
-        Schema schema = factory().newSchema();
-        return validateRealGuts(schema, xml, eh, schemaName);
+        return validateRealGuts(getSchemaFromHints(), xml, eh, schemaName);
     }
 
 
@@ -973,17 +1026,70 @@ public final class Xml {
 
     //---------------------------------------------------------------------------
 
-    private static Schema getSchemaFromPath(Path schemaPath) throws SAXException {
+    /**
+     * Clears the compiled schemas used for validation.  To be called when schemas or the catalogs
+     * used to resolve them change.
+     */
+    public static void clearSchemaCache() {
+        SCHEMA_CACHE.clear();
+    }
+
+    /**
+     * Clears the compiled schemas of the xsd files in the directory (eg. a schema plugin
+     * directory).
+     */
+    public static void clearSchemaCache(Path directory) {
+        final Path dir = directory.toAbsolutePath().normalize();
+        SCHEMA_CACHE.keySet().removeIf(path -> path.startsWith(dir));
+    }
+
+    /**
+     * Get the compiled schema of the xsd file.  Schemas are thread safe so they are compiled once
+     * and shared by the validations.
+     */
+    @VisibleForTesting
+    static Schema getSchemaFromPath(Path schemaPath) throws SAXException {
+        final Path key = schemaPath.toAbsolutePath().normalize();
+        // set the base for resolving the imports of the schema or of the validated document.
+        NioPathHolder.setBase(key);
+        try {
+            return SCHEMA_CACHE.computeIfAbsent(key, path -> {
+                try {
+                    return compileSchema(path);
+                } catch (SAXException e) {
+                    throw new SchemaCompilationException(e);
+                }
+            });
+        } catch (SchemaCompilationException e) {
+            throw (SAXException) e.getCause();
+        }
+    }
+
+    private static Schema compileSchema(Path schemaPath) throws SAXException {
         PathStreamSource schemaFile = new PathStreamSource(schemaPath);
         schemaFile.setSystemId(schemaPath.toUri().toASCIIString());
 
         final SchemaFactory factory = factory();
-        NioPathHolder.setBase(schemaPath);
         Resolver resolver = ResolverWrapper.getInstance();
         factory.setResourceResolver(resolver.getXmlResolver());
         return factory.newSchema(schemaFile);
     }
 
+    /**
+     * Get a new schema validating documents using their schemaLocation hints.  It is not shared
+     * because it keeps the grammars loaded from the hints by namespace, so documents using
+     * different versions of a schema for the same namespace would be validated with the first one.
+     */
+    private static Schema getSchemaFromHints() throws SAXException {
+        return factory().newSchema();
+    }
+
+    private static final class SchemaCompilationException extends RuntimeException {
+        private SchemaCompilationException(SAXException cause) {
+            super(cause);
+        }
+    }
+
     //---------------------------------------------------------------------------
 
     /**
@@ -42,15 +42,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.validation.Schema;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
 
@@ -229,6 +238,42 @@ public class XmlTest {
         }
     }
 
+    @Test
+    public void testValidateWithCompiledSchema() throws Exception {
+        final Path dir = Files.createTempDirectory("xmltest");
+        final Path xsd = dir.resolve("test.xsd");
+        Files.write(xsd, ("<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+            + "<xs:element name=\"root\"><xs:complexType>"
+            + "<xs:attribute name=\"count\" type=\"xs:int\" use=\"required\"/>"
+            + "</xs:complexType></xs:element></xs:schema>").getBytes(StandardCharsets.UTF_8));
+
+        final Schema schema = Xml.getSchemaFromPath(xsd);
+        assertSame(schema, Xml.getSchemaFromPath(xsd));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Element>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                final String count = i % 2 == 0 ? String.valueOf(i) : "not a number";
+                results.add(executor.submit(() ->
+                    Xml.validateInfo(xsd, new Element("root").setAttribute("count", count), new XmlErrorHandler(), null)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                if (i % 2 == 0) {
+                    assertNull(results.get(i).get());
+                } else {
+                    assertNotNull(results.get(i).get());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Xml.clearSchemaCache(dir);
+        assertNotSame(schema, Xml.getSchemaFromPath(xsd));
+        IO.deleteFileOrDirectory(dir, true);
+    }
+
     @Test
     public void testIsXmlLike() {
         assertEquals(true,
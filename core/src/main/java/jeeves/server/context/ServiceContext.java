@@ -121,6 +121,15 @@ public class ServiceContext extends BasicContext {
         ApplicationContextHolder.set(this.getApplicationContext());
     }
 
+    /**
+     * Called to remove the Service context set by {@link #setAsThreadLocal()} from this thread, eg.
+     * when a pooled thread is done with the task it was set for.
+     */
+    public static void clearAsThreadLocal() {
+        THREAD_LOCAL_INSTANCE.remove();
+        ApplicationContextHolder.clear();
+    }
+
     //--------------------------------------------------------------------------
     //---
     //--- API methods
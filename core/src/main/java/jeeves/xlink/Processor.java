@@ -23,6 +23,8 @@
 
 package jeeves.xlink;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 import jeeves.server.context.ServiceContext;
 import jeeves.server.local.LocalServiceRequest;
@@ -41,6 +43,7 @@ import org.jdom.JDOMException;
 import org.jdom.Namespace;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.method.support.HandlerMethodArgumentResolverComposite;
@@ -56,16 +59,37 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Process XML document having XLinks to resolve, remove and detach fragments.
  *
+ * Remote fragments are cached in the {@link #XLINK_JCS} cache. The distinct remote XLinks of a
+ * document are loaded in parallel by geonetwork.xlink.resolver.threads threads (system property,
+ * default 4) and a fragment requested by several threads at the same time is only loaded once.
+ * Remote fragments which could not be loaded are not requested again for
+ * geonetwork.xlink.resolver.failureCacheTime ms (default 60000) and connections time out after
+ * geonetwork.xlink.resolver.timeout ms (default 10000).
+ * <p/>
+ * Local directory entries (local://.../registries/entries/...) are cached in memory until a
+ * subtemplate is updated or removed or the cache is cleared
+ * (geonetwork.xlink.resolver.localCacheSize entries, default 2000, 0 to disable the cache).
+ *
  * TODO : Define when to empty the cache ? and how to clean all or only one fragments in the cache
  * ?
  *
@@ -102,6 +126,37 @@ public final class Processor {
 
     private static CopyOnWriteArraySet<URIMapper> uriMapper = new CopyOnWriteArraySet<URIMapper>();
 
+    private static final int RESOLVER_THREADS = Integer.getInteger("geonetwork.xlink.resolver.threads", 4);
+
+    private static final int RESOLVER_TIMEOUT = Integer.getInteger("geonetwork.xlink.resolver.timeout", 10000);
+
+    private static final long FAILURE_CACHE_TIME = Long.getLong("geonetwork.xlink.resolver.failureCacheTime", 60000);
+
+    private static final long LOCAL_CACHE_SIZE = Long.getLong("geonetwork.xlink.resolver.localCacheSize", 2000);
+
+    /**
+     * Remote fragments being loaded, by lower case URI.
+     */
+    private static final ConcurrentMap<String, CompletableFuture<Element>> remoteFragmentsLoading = new ConcurrentHashMap<>();
+
+    /**
+     * Time until which the remote fragments which could not be loaded are not requested again, by
+     * lower case URI.
+     */
+    private static final ConcurrentMap<String, Long> remoteFragmentsFailed = new ConcurrentHashMap<>();
+
+    private static final Cache<String, LocalFragment> localFragments = CacheBuilder.newBuilder()
+        .maximumSize(LOCAL_CACHE_SIZE)
+        .build();
+
+    /**
+     * Incremented when the local fragments change, fragments cached with a previous version are
+     * not used.
+     */
+    private static final AtomicLong localFragmentsVersion = new AtomicLong();
+
+    private static ExecutorService resolverExecutor;
+
     /**
      * Default constructor. Builds a Processor.
      */
@@ -115,7 +170,7 @@ public final class Processor {
      */
     public static Set<String> processXLink(Element xml, ServiceContext srvContext) {
         Set<String> errors = Sets.newHashSet();
-        errors.addAll(searchXLink(xml, ACTION_RESOLVE, srvContext));
+        errors.addAll(searchXLink(xml, ACTION_RESOLVE, srvContext, getIgnoredElements()));
         errors.addAll(searchLocalXLink(xml, ACTION_RESOLVE));
         return errors;
     }
@@ -126,7 +181,7 @@ public final class Processor {
      * Remove all XLinks child of the input XML document.
      */
     public static Element removeXLink(Element xml) {
-        searchXLink(xml, ACTION_REMOVE, null);
+        searchXLink(xml, ACTION_REMOVE, null, getIgnoredElements());
         searchLocalXLink(xml, ACTION_REMOVE);
         return xml;
     }
@@ -137,7 +192,7 @@ public final class Processor {
      * Resolve XLinks in document and remove the xlink attributes.
      */
     public static Element detachXLink(Element xml, ServiceContext context) {
-        searchXLink(xml, ACTION_DETACH, context);
+        searchXLink(xml, ACTION_DETACH, context, getIgnoredElements());
         searchLocalXLink(xml, ACTION_DETACH);
         return xml;
     }
@@ -158,6 +213,16 @@ public final class Processor {
      */
     public static void clearCache() throws CacheException {
         JeevesJCS.getInstance(XLINK_JCS).clear();
+        remoteFragmentsFailed.clear();
+        uncacheLocalXLinks();
+    }
+
+    /**
+     * Clear the cache of the local XLinks, when subtemplates are updated.
+     */
+    public static void uncacheLocalXLinks() {
+        localFragmentsVersion.incrementAndGet();
+        localFragments.invalidateAll();
     }
 
     //--------------------------------------------------------------------------
@@ -184,46 +249,17 @@ public final class Processor {
         try {
             // TODO-API: Support local protocol on /api/registries/
             if (uri.startsWith(XLink.LOCAL_PROTOCOL)) {
-                SpringLocalServiceInvoker springLocalServiceInvoker = srvContext.getBean(SpringLocalServiceInvoker.class);
-                remoteFragment = (Element)springLocalServiceInvoker.invoke(uri);
+                remoteFragment = resolveLocalXLink(uri, srvContext);
             } else {
                 // Avoid references to filesystem
                 if (uri.toLowerCase().startsWith("file://")) {
                     return null;
                 }
 
-                uri = uri.replaceAll("&+", "&");
-                String mappedURI = mapURI(uri);
-
-                JeevesJCS xlinkCache = JeevesJCS.getInstance(XLINK_JCS);
-                remoteFragment = (Element) xlinkCache.getFromGroup(uri.toLowerCase(), mappedURI);
+                remoteFragment = getRemoteFragment(uri);
                 if (remoteFragment == null) {
-                    Log.info(Log.XLINK_PROCESSOR, "cache MISS on " + uri.toLowerCase());
-                    URL url = new URL(uri.replaceAll("&amp;", "&"));
-
-                    URLConnection conn = url.openConnection();
-                    conn.setConnectTimeout(1000);
-
-                    BufferedInputStream in = new BufferedInputStream(conn.getInputStream());
-                    try {
-                        remoteFragment = Xml.loadStream(in);
-                        if (Log.isDebugEnabled(Log.XLINK_PROCESSOR))
-                            Log.debug(Log.XLINK_PROCESSOR, "Read:\n" + Xml.getString(remoteFragment));
-                    } finally {
-                        in.close();
-                    }
-                } else {
-                    Log.debug(Log.XLINK_PROCESSOR, "cache HIT on " + uri.toLowerCase());
-                }
-
-                if (remoteFragment != null && !remoteFragment.getName().equalsIgnoreCase("error")) {
-                    xlinkCache.putInGroup(uri.toLowerCase(), mappedURI, remoteFragment);
-                    if (Log.isDebugEnabled(Log.XLINK_PROCESSOR))
-                        Log.debug(Log.XLINK_PROCESSOR, "cache miss for " + uri);
-                } else {
                     return null;
                 }
-
             }
         } catch (Exception e) {    // MalformedURLException, IOException
             Log.error(Log.XLINK_PROCESSOR, "Failed on " + uri, e);
@@ -256,6 +292,147 @@ public final class Processor {
         return res;
     }
 
+    /**
+     * Resolves a local XLink with the local service. Directory entries are cached until a
+     * subtemplate is updated.
+     */
+    private static Element resolveLocalXLink(String uri, ServiceContext srvContext) throws Exception {
+        SpringLocalServiceInvoker springLocalServiceInvoker = srvContext.getBean(SpringLocalServiceInvoker.class);
+        if (LOCAL_CACHE_SIZE <= 0 || !uri.contains("/registries/entries/")) {
+            return (Element) springLocalServiceInvoker.invoke(uri);
+        }
+
+        // Entries are returned in the language of the request if not set in the URI
+        String key = uri + "|" + srvContext.getLanguage();
+        long version = localFragmentsVersion.get();
+        LocalFragment cached = localFragments.getIfPresent(key);
+        if (cached != null && cached.version == version) {
+            return cached.fragment;
+        }
+        Element fragment = (Element) springLocalServiceInvoker.invoke(uri);
+        if (fragment != null) {
+            localFragments.put(key, new LocalFragment(version, fragment));
+        }
+        return fragment;
+    }
+
+    /**
+     * Get a remote fragment from the cache or load it. If the fragment is already being loaded by
+     * another thread, wait for it.
+     *
+     * @return the fragment or null if it could not be loaded.
+     */
+    private static Element getRemoteFragment(String uri) throws Exception {
+        uri = uri.replaceAll("&+", "&");
+        String key = uri.toLowerCase();
+        String mappedURI = mapURI(uri);
+
+        JeevesJCS xlinkCache = JeevesJCS.getInstance(XLINK_JCS);
+        Element remoteFragment = (Element) xlinkCache.getFromGroup(key, mappedURI);
+        if (remoteFragment != null) {
+            Log.debug(Log.XLINK_PROCESSOR, "cache HIT on " + key);
+            return remoteFragment;
+        }
+
+        Long failedUntil = remoteFragmentsFailed.get(key);
+        if (failedUntil != null) {
+            if (failedUntil > System.currentTimeMillis()) {
+                Log.debug(Log.XLINK_PROCESSOR, "failed recently on " + key);
+                return null;
+            }
+            remoteFragmentsFailed.remove(key, failedUntil);
+        }
+
+        CompletableFuture<Element> loading = new CompletableFuture<>();
+        CompletableFuture<Element> alreadyLoading = remoteFragmentsLoading.putIfAbsent(key, loading);
+        if (alreadyLoading != null) {
+            try {
+                return alreadyLoading.get(2L * RESOLVER_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        try {
+            Log.info(Log.XLINK_PROCESSOR, "cache MISS on " + key);
+            remoteFragment = loadRemoteFragment(uri);
+            if (remoteFragment != null && !remoteFragment.getName().equalsIgnoreCase("error")) {
+                xlinkCache.putInGroup(key, mappedURI, remoteFragment);
+            } else {
+                remoteFragment = null;
+                remoteFragmentsFailed.put(key, System.currentTimeMillis() + FAILURE_CACHE_TIME);
+            }
+            loading.complete(remoteFragment);
+            return remoteFragment;
+        } catch (Exception e) {
+            remoteFragmentsFailed.put(key, System.currentTimeMillis() + FAILURE_CACHE_TIME);
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            remoteFragmentsLoading.remove(key, loading);
+        }
+    }
+
+    private static Element loadRemoteFragment(String uri) throws IOException, JDOMException {
+        URL url = new URL(uri.replaceAll("&amp;", "&"));
+
+        URLConnection conn = url.openConnection();
+        conn.setConnectTimeout(Math.min(1000, RESOLVER_TIMEOUT));
+        conn.setReadTimeout(RESOLVER_TIMEOUT);
+
+        try (BufferedInputStream in = new BufferedInputStream(conn.getInputStream())) {
+            Element remoteFragment = Xml.loadStream(in);
+            if (Log.isDebugEnabled(Log.XLINK_PROCESSOR))
+                Log.debug(Log.XLINK_PROCESSOR, "Read:\n" + Xml.getString(remoteFragment));
+            return remoteFragment;
+        }
+    }
+
+    /**
+     * Start loading in parallel the remote fragments not in the cache. The fragments are then
+     * taken from the cache or from the running loads when the XLinks are resolved one by one.
+     */
+    private static void preloadRemoteFragments(Set<String> uris) {
+        if (uris.size() < 2 || RESOLVER_THREADS <= 1) {
+            return;
+        }
+        ExecutorService executor = getResolverExecutor();
+        for (String uri : uris) {
+            executor.execute(() -> {
+                try {
+                    getRemoteFragment(uri);
+                } catch (Exception e) {
+                    Log.error(Log.XLINK_PROCESSOR, "Failed on " + uri, e);
+                }
+            });
+        }
+    }
+
+    private static synchronized ExecutorService getResolverExecutor() {
+        if (resolverExecutor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory();
+            threadFactory.setDaemon(true);
+            threadFactory.setThreadNamePrefix("XLinkResolver-");
+            resolverExecutor = Executors.newFixedThreadPool(RESOLVER_THREADS, threadFactory);
+        }
+        return resolverExecutor;
+    }
+
+    /**
+     * @return the names of the elements which XLinks are not resolved.
+     */
+    private static Set<String> getIgnoredElements() {
+        Set<String> ignoredElements = new HashSet<>();
+        SettingManager sm = ApplicationContextHolder.get().getBean(SettingManager.class);
+        String xlinkElementNamesToIgnore = sm.getValue(Settings.SYSTEM_XLINK_RESOLVER_IGNORE);
+        if (StringUtils.isNotEmpty(xlinkElementNamesToIgnore)) {
+            for (String el : xlinkElementNamesToIgnore.split(",")) {
+                ignoredElements.add(el.trim());
+            }
+        }
+        return ignoredElements;
+    }
+
     public static String mapURI(String uri) {
         uri = uri.replaceAll("&+", "&").toLowerCase();
         for (URIMapper mapper : uriMapper) {
@@ -272,6 +449,7 @@ public final class Processor {
      */
     public static void uncacheXLinkUri(String uri) throws CacheException {
         JeevesJCS xlinkCache = JeevesJCS.getInstance(XLINK_JCS);
+        remoteFragmentsFailed.remove(uri.replaceAll("&+", "&").toLowerCase());
         String mappedURI = mapURI(uri);
         Set groupKeys = xlinkCache.getGroupKeys(mappedURI);
         if (groupKeys == null || groupKeys.isEmpty()) {
@@ -314,12 +492,25 @@ public final class Processor {
      *               #ACTION_RESOLVE}).
      * @return All set of all the xlinks that failed to resolve.
      */
-    private static Set<String> searchXLink(Element md, String action, ServiceContext srvContext) {
+    private static Set<String> searchXLink(Element md, String action, ServiceContext srvContext, Set<String> ignoredElements) {
         List<Attribute> xlinks = getXLinksWithXPath(md, "*//@xlink:href");
 
         if (Log.isDebugEnabled(Log.XLINK_PROCESSOR))
             Log.debug(Log.XLINK_PROCESSOR, "returned " + xlinks.size() + " elements");
 
+        if (action.equals(ACTION_RESOLVE) || action.equals(ACTION_DETACH)) {
+            Set<String> remoteUris = new LinkedHashSet<>();
+            for (Attribute xlink : xlinks) {
+                String hrefUri = xlink.getValue();
+                String lowerCaseUri = hrefUri.toLowerCase();
+                if ((lowerCaseUri.startsWith("http://") || lowerCaseUri.startsWith("https://"))
+                    && !ignoredElements.contains(xlink.getParent().getName())) {
+                    remoteUris.add(hrefUri);
+                }
+            }
+            preloadRemoteFragments(remoteUris);
+        }
+
         Set<String> errors = Sets.newHashSet();
         // process remote xlinks, skip local xlinks for later
         for (Attribute xlink : xlinks) {
@@ -328,7 +519,7 @@ public final class Processor {
                 Log.debug(Log.XLINK_PROCESSOR, "will resolve href '" + hrefUri + "'");
             String idSearch = null;
 
-            String error = doXLink(hrefUri, idSearch, xlink, action, srvContext);
+            String error = doXLink(hrefUri, idSearch, xlink, action, srvContext, ignoredElements);
             if (error != null) {
                 errors.add(error);
             }
@@ -411,20 +602,12 @@ public final class Processor {
      * Returns null if the XLINK was correctly resolved, or if there was a failure, returns the
      * xlink that was not resolved.
      */
-    private static String doXLink(String hrefUri, String idSearch, Attribute xlink, String action, ServiceContext srvContext) {
+    private static String doXLink(String hrefUri, String idSearch, Attribute xlink, String action, ServiceContext srvContext,
+                                  Set<String> ignoredElements) {
         Element element = xlink.getParent();
 
         // Don't process XLink for configured elements
-        List<String> excludedXlinkElements = new ArrayList<String>();
-        SettingManager sm = ApplicationContextHolder.get().getBean(SettingManager.class);
-        String xlinkElementNamesToIgnore = sm.getValue(Settings.SYSTEM_XLINK_RESOLVER_IGNORE);
-        if (StringUtils.isNotEmpty(xlinkElementNamesToIgnore)) {
-            for (String el : xlinkElementNamesToIgnore.split(",")) {
-                excludedXlinkElements.add(el.trim());
-            }
-        }
-
-        if (excludedXlinkElements.contains(element.getName())) {
+        if (ignoredElements.contains(element.getName())) {
             return null;
         }
 
@@ -448,7 +631,7 @@ public final class Processor {
                         if (remoteFragment == null)
                             return hrefUri;
 
-                        searchXLink(remoteFragment, action, srvContext);
+                        searchXLink(remoteFragment, action, srvContext, ignoredElements);
 
                         if (show.equalsIgnoreCase(XLink.SHOW_REPLACE)) {
                             // replace this element with the fragment
@@ -487,5 +670,15 @@ public final class Processor {
         }
     }
 
+    private static final class LocalFragment {
+        private final long version;
+        private final Element fragment;
+
+        private LocalFragment(long version, Element fragment) {
+            this.version = version;
+            this.fragment = fragment;
+        }
+    }
+
     //--------------------------------------------------------------------------
 }
@@ -175,6 +175,25 @@ public class AccessManager {
         return hs;
     }
 
+    /**
+     * Returns the privileges of the current user so that many records can be checked
+     * without querying the database for each of them.
+     */
+    public UserPrivilegesSnapshot getPrivilegesSnapshot(ServiceContext context) throws Exception {
+        UserSession us = context.getUserSession();
+        String ip = context.getIpAddress();
+        boolean authenticated = isUserAuthenticated(us);
+
+        return new UserPrivilegesSnapshot(
+            authenticated ? us.getUserIdAsInt() : null,
+            authenticated ? us.getProfile() : null,
+            ip != null && isIntranet(ip),
+            getUserGroups(us, ip, false),
+            getUserGroups(us, ip, true),
+            getReviewerGroups(us),
+            settingManager.getValueAsBool(SYSTEM_METADATAPRIVS_PUBLICATIONBYGROUPOWNERONLY, true));
+    }
+
     /**
      *  Retrieves the user's groups ids
      * @param session
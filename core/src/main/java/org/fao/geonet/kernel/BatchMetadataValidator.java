@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import jeeves.server.context.ServiceContext;
+import jeeves.transaction.TransactionManager;
+import jeeves.xlink.Processor;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.MetadataValidation;
+import org.fao.geonet.domain.MetadataValidationStatus;
+import org.fao.geonet.domain.Schematron;
+import org.fao.geonet.domain.SchematronCriteria;
+import org.fao.geonet.domain.SchematronCriteriaGroup;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.datamanager.IMetadataValidator;
+import org.fao.geonet.kernel.schema.MetadataSchema;
+import org.fao.geonet.kernel.setting.SettingManager;
+import org.fao.geonet.repository.MetadataValidationRepository;
+import org.fao.geonet.repository.SchematronCriteriaGroupRepository;
+import org.fao.geonet.repository.SchematronRepository;
+import org.fao.geonet.util.ThreadUtils;
+import org.fao.geonet.utils.Log;
+import org.fao.geonet.utils.Xml;
+import org.hibernate.Session;
+import org.jdom.Element;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fao.geonet.kernel.setting.Settings.SYSTEM_METADATA_VALIDATION_REMOVESCHEMALOCATION;
+
+/**
+ * Validate records already existing in the catalogue by batch (eg. to validate the whole catalogue).
+ * <p>
+ * Records are loaded by batch of batchSize and the batches are validated in parallel by a pool of
+ * threads. The schematrons of each schema and their criteria are loaded once for all records and the
+ * compiled schematron stylesheets are shared by all threads (see {@link Xml#transform}). The
+ * validation status of a batch is saved in one transaction using JDBC batch inserts. When there is
+ * only one batch or one thread, records are validated in the current thread and transaction.
+ * <p>
+ * A fingerprint of the validated document, of its group owner, of the user profile and of the
+ * validation rules (schema XSD and schematron files, schematron criteria) is saved with the
+ * validation status. In incremental mode, records with the same fingerprint as their last batch
+ * validation are not validated again. Only the modification date of the main XSD and schematron
+ * files are part of the fingerprint: run a full validation after changing a file they include.
+ * <p>
+ * See configuration in config.properties (metadata.validation.batch.*).
+ */
+public class BatchMetadataValidator {
+    /**
+     * Number of threads validating records. 0 means the number of processors
+     * if the database supports multiple threads (see {@link ThreadUtils#getNumberOfProcessors()}).
+     */
+    @Value("${metadata.validation.batch.threads:0}")
+    private int threads = 0;
+
+    @Value("${metadata.validation.batch.size:20}")
+    private int batchSize = 20;
+
+    @Autowired
+    private IMetadataValidator metadataValidator;
+    @Autowired
+    private IMetadataUtils metadataUtils;
+    @Autowired
+    private XmlSerializer xmlSerializer;
+    @Autowired
+    private SchemaManager schemaManager;
+    @Autowired
+    private SchematronValidator schematronValidator;
+    @Autowired
+    private SchematronRepository schematronRepository;
+    @Autowired
+    private SchematronCriteriaGroupRepository criteriaGroupRepository;
+    @Autowired
+    private MetadataValidationRepository validationRepository;
+    @Autowired
+    @Lazy
+    private SettingManager settingManager;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Validate the records and save their validation status.
+     *
+     * @param metadataIds the ids of the records to validate
+     * @param incremental if true, the records which did not change since their last batch validation
+     *                    are not validated again
+     * @return the result of the validation of each record, by id. Records which are not found are missing.
+     */
+    public Map<Integer, Result> validate(ServiceContext context, Collection<Integer> metadataIds, boolean incremental)
+        throws InterruptedException {
+        final long startTime = System.currentTimeMillis();
+        final Map<Integer, Result> results = new ConcurrentHashMap<>();
+        final Map<String, RuleSet> ruleSets = new ConcurrentHashMap<>();
+        final List<List<Integer>> batches = Lists.partition(new ArrayList<>(metadataIds), Math.max(1, batchSize));
+        if (batches.isEmpty()) {
+            return results;
+        }
+        // some schematron criteria depend on the user profile
+        final SecurityContext securityContext = SecurityContextHolder.getContext();
+        final String profile = context.getUserSession() != null && context.getUserSession().getProfile() != null
+            ? context.getUserSession().getProfile().name() : "";
+
+        int numberOfThreads = Math.min(threads > 0 ? threads : Integer.parseInt(ThreadUtils.getNumberOfProcessors()),
+            batches.size());
+        if (numberOfThreads == 1) {
+            // validate in the current thread and transaction
+            for (List<Integer> batch : batches) {
+                validateBatch(context, batch, incremental, profile, ruleSets, results);
+            }
+            logSummary(metadataIds, results, startTime);
+            return results;
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory();
+        threadFactory.setThreadNamePrefix("BatchValidation-");
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads, threadFactory);
+        try {
+            List<Future<?>> futures = new ArrayList<>(batches.size());
+            for (List<Integer> batch : batches) {
+                futures.add(executor.submit(() -> {
+                    context.setAsThreadLocal();
+                    SecurityContextHolder.setContext(securityContext);
+                    try {
+                        validateBatch(context, batch, incremental, profile, ruleSets, results);
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Log.error(Geonet.DATA_MANAGER, "Error during batch validation: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        logSummary(metadataIds, results, startTime);
+        return results;
+    }
+
+    private void logSummary(Collection<Integer> metadataIds, Map<Integer, Result> results, long startTime) {
+        long unchanged = results.values().stream().filter(Result::isUnchanged).count();
+        Log.info(Geonet.DATA_MANAGER, String.format(
+            "Batch validation of %d records (%d unchanged) in %d ms.",
+            metadataIds.size(), unchanged, System.currentTimeMillis() - startTime));
+    }
+
+    private void validateBatch(ServiceContext context, List<Integer> batch, boolean incremental, String profile,
+                               Map<String, RuleSet> ruleSets, Map<Integer, Result> results) {
+        Map<Integer, List<MetadataValidation>> lastValidations = new HashMap<>();
+        if (incremental) {
+            for (MetadataValidation validation : validationRepository.findAllById_MetadataIdIn(batch)) {
+                if (!"inspire".equalsIgnoreCase(validation.getId().getValidationType())) {
+                    lastValidations.computeIfAbsent(validation.getId().getMetadataId(), id -> new ArrayList<>()).add(validation);
+                }
+            }
+        }
+
+        List<Integer> validatedIds = new ArrayList<>(batch.size());
+        List<MetadataValidation> validations = new ArrayList<>();
+        for (AbstractMetadata metadata : metadataUtils.findAll(new HashSet<>(batch))) {
+            int metadataId = metadata.getId();
+            try {
+                String schema = metadata.getDataInfo().getSchemaId();
+                RuleSet ruleSet = ruleSets.computeIfAbsent(schema, this::loadRuleSet);
+
+                // same document as XmlSerializer#select without loading the record again
+                Element md = xmlSerializer.removeHiddenElements(false, metadata, true);
+                if (xmlSerializer.resolveXLinks()) {
+                    Processor.detachXLink(md, context);
+                }
+
+                String fingerprint = Hashing.sha256().newHasher()
+                    .putString(Xml.getString(md), StandardCharsets.UTF_8)
+                    .putInt(metadata.getSourceInfo().getGroupOwner() == null ? -1 : metadata.getSourceInfo().getGroupOwner())
+                    .putString(profile, StandardCharsets.UTF_8)
+                    .putBytes(ruleSet.fingerprint.asBytes())
+                    .hash().toString();
+
+                List<MetadataValidation> last = lastValidations.get(metadataId);
+                if (isUnchanged(last, fingerprint)) {
+                    results.put(metadataId, new Result(null, last));
+                    continue;
+                }
+
+                List<MetadataValidation> recordValidations = new ArrayList<>();
+                MetadataSchema metadataSchema = schemaManager.getSchema(schema);
+                List<ApplicableSchematron> schematrons = schematronValidator.getApplicableSchematronList(
+                    metadataId, md, metadataSchema, ruleSet.criteriaGroups);
+                Element report = metadataValidator.buildValidationReport(schema, metadataId, md, context.getLanguage(),
+                    schematrons, recordValidations);
+                for (MetadataValidation validation : recordValidations) {
+                    validation.setFingerprint(fingerprint);
+                }
+                validatedIds.add(metadataId);
+                validations.addAll(recordValidations);
+                results.put(metadataId, new Result(report, recordValidations));
+            } catch (Exception e) {
+                Log.error(Geonet.DATA_MANAGER, String.format(
+                    "Error validating record %d. Error is: %s", metadataId, e.getMessage()), e);
+                results.put(metadataId, new Result(e));
+            }
+        }
+
+        if (!validatedIds.isEmpty()) {
+            saveValidationStatus(context, validatedIds, validations);
+        }
+    }
+
+    private boolean isUnchanged(List<MetadataValidation> lastValidations, String fingerprint) {
+        if (lastValidations == null || lastValidations.isEmpty()) {
+            return false;
+        }
+        for (MetadataValidation validation : lastValidations) {
+            if (!fingerprint.equals(validation.getFingerprint())
+                || validation.getStatus() == MetadataValidationStatus.NEVER_CALCULATED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replace the validation status of the records in one transaction (the current one if any).
+     */
+    private void saveValidationStatus(ServiceContext context, List<Integer> metadataIds, List<MetadataValidation> validations) {
+        try {
+            TransactionManager.runInTransaction("BatchMetadataValidator.save", context.getApplicationContext(),
+                TransactionManager.TransactionRequirement.CREATE_ONLY_WHEN_NEEDED,
+                TransactionManager.CommitBehavior.ONLY_COMMIT_NEWLY_CREATED_TRANSACTIONS, false,
+                transaction -> {
+                    validationRepository.deleteAllInternalValidationById_MetadataIdIn(metadataIds);
+                    // the validations are new entities, persist them without the select done by save
+                    entityManager.unwrap(Session.class).setJdbcBatchSize(Math.max(1, batchSize));
+                    for (MetadataValidation validation : validations) {
+                        entityManager.persist(validation);
+                    }
+                    entityManager.flush();
+                    if (transaction.isNewTransaction()) {
+                        entityManager.clear();
+                    }
+                    return null;
+                });
+        } catch (Exception e) {
+            Log.error(Geonet.DATA_MANAGER, String.format(
+                "Could not save validation status of records %s. Error is: %s", metadataIds, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Load the schematrons of the schema with their criteria and compute the fingerprint of the validation rules.
+     */
+    private RuleSet loadRuleSet(String schema) {
+        MetadataSchema metadataSchema = schemaManager.getSchema(schema);
+        Path schemaDir = schemaManager.getSchemaDir(schema);
+
+        Hasher hasher = Hashing.sha256().newHasher()
+            .putString(schema, StandardCharsets.UTF_8)
+            .putBoolean(settingManager.getValueAsBool(SYSTEM_METADATA_VALIDATION_REMOVESCHEMALOCATION, false));
+        putLastModified(hasher, schemaDir.resolve(Geonet.File.SCHEMA));
+
+        List<Schematron> schematrons = schematronRepository.findAllBySchemaName(metadataSchema.getName());
+        schematrons.sort(Schematron.DISPLAY_PRIORITY_COMPARATOR);
+        Map<Schematron, List<SchematronCriteriaGroup>> criteriaGroups = new LinkedHashMap<>();
+        for (Schematron schematron : schematrons) {
+            List<SchematronCriteriaGroup> groups = criteriaGroupRepository.findAllById_SchematronId(schematron.getId());
+            criteriaGroups.put(schematron, groups);
+
+            hasher.putInt(schematron.getId())
+                .putString(schematron.getRuleName(), StandardCharsets.UTF_8)
+                .putInt(schematron.getDisplayPriority());
+            putLastModified(hasher, schemaDir.resolve(MetadataSchema.SCHEMATRON_DIR).resolve(schematron.getFile()));
+            for (SchematronCriteriaGroup group : groups) {
+                hasher.putString(group.getId().getName(), StandardCharsets.UTF_8)
+                    .putString(group.getRequirement().name(), StandardCharsets.UTF_8);
+                for (SchematronCriteria criteria : group.getCriteria()) {
+                    hasher.putString(criteria.getType().name(), StandardCharsets.UTF_8)
+                        .putString(String.valueOf(criteria.getValue()), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return new RuleSet(criteriaGroups, hasher.hash());
+    }
+
+    private static void putLastModified(Hasher hasher, Path file) {
+        hasher.putString(file.toString(), StandardCharsets.UTF_8);
+        try {
+            hasher.putLong(Files.getLastModifiedTime(file).toMillis());
+        } catch (IOException e) {
+            hasher.putLong(-1);
+        }
+    }
+
+    private static final class RuleSet {
+        private final Map<Schematron, List<SchematronCriteriaGroup>> criteriaGroups;
+        private final HashCode fingerprint;
+
+        private RuleSet(Map<Schematron, List<SchematronCriteriaGroup>> criteriaGroups, HashCode fingerprint) {
+            this.criteriaGroups = criteriaGroups;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * The result of the validation of a record.
+     */
+    public static final class Result {
+        private final Element report;
+        private final List<MetadataValidation> validations;
+        private final Exception error;
+
+        private Result(Element report, List<MetadataValidation> validations) {
+            this.report = report;
+            this.validations = validations;
+            this.error = null;
+        }
+
+        private Result(Exception error) {
+            this.report = null;
+            this.validations = Collections.emptyList();
+            this.error = error;
+        }
+
+        /**
+         * @return the validation report, null if the record was not validated.
+         */
+        public Element getReport() {
+            return report;
+        }
+
+        /**
+         * @return the validation status of the record, the last saved one if the record is unchanged.
+         */
+        public List<MetadataValidation> getValidations() {
+            return validations;
+        }
+
+        /**
+         * @return the error which prevented to validate the record, or null.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * @return true if the record was not validated again as it did not change since its last validation.
+         */
+        public boolean isUnchanged() {
+            return report == null && error == null;
+        }
+
+        /**
+         * @return true if no validation failed.
+         */
+        public boolean isValid() {
+            return error == null && validations.stream().noneMatch(validation ->
+                validation.getStatus() == MetadataValidationStatus.INVALID
+                    || validation.getStatus() == MetadataValidationStatus.NEVER_CALCULATED);
+        }
+    }
+}
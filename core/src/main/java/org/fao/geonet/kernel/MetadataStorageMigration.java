@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel;
+
+import jeeves.transaction.TransactionManager;
+import org.fao.geonet.ApplicationContextHolder;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.domain.ISODate;
+import org.fao.geonet.domain.MetadataDataCodec;
+import org.fao.geonet.repository.MetadataDraftRepository;
+import org.fao.geonet.repository.MetadataRepository;
+import org.fao.geonet.utils.Log;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+
+import static jeeves.transaction.TransactionManager.CommitBehavior.ALWAYS_COMMIT;
+import static jeeves.transaction.TransactionManager.TransactionRequirement.CREATE_NEW;
+
+/**
+ * Convert the data of the records and drafts already stored in the database to a
+ * {@link MetadataDataCodec}, while the catalog is running.
+ * <p/>
+ * Records are converted in the background by pages of metadata.storage.migration.pageSize records,
+ * one transaction per page. The change date of the records is not modified and the records are not
+ * indexed again. Records can be read and updated during the migration, as records stored with
+ * different codecs can be read at the same time. The records of a page are locked while they are
+ * converted, a record saved meanwhile is saved once its page is converted. The report gives the
+ * number of records converted, the size of the data before and after the conversion and the
+ * throughput.
+ */
+public class MetadataStorageMigration {
+    @Autowired
+    private MetadataRepository metadataRepository;
+    @Autowired
+    private MetadataDraftRepository metadataDraftRepository;
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Value("${metadata.storage.migration.pageSize:100}")
+    private int pageSize;
+
+    private volatile Report report = new Report(null);
+    private ExecutorService executor;
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        report.cancelled = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Start converting the records to a codec.
+     *
+     * @param codec the codec to store the records with.
+     * @return false if a migration is already running.
+     */
+    public synchronized boolean start(MetadataDataCodec codec) {
+        if (report.isRunning()) {
+            return false;
+        }
+        if (executor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory();
+            threadFactory.setDaemon(true);
+            threadFactory.setThreadNamePrefix("MetadataStorageMigration-");
+            executor = Executors.newSingleThreadExecutor(threadFactory);
+        }
+        final Report migration = new Report(codec);
+        report = migration;
+        executor.execute(() -> run(migration));
+        return true;
+    }
+
+    /**
+     * Stop the running migration after the current page.
+     */
+    public void cancel() {
+        report.cancelled = true;
+    }
+
+    /**
+     * @return the status, number of records converted, size before and after and throughput of
+     * the last migration.
+     */
+    public Map<String, Object> getReport() {
+        return report.toMap();
+    }
+
+    private void run(Report migration) {
+        ApplicationContextHolder.set(applicationContext);
+        Log.info(Geonet.DATA_MANAGER, "Converting the records to storage codec " + migration.codec);
+        try {
+            migrate(migration, "metadata", metadataRepository::findIdsAfterId,
+                metadataRepository::findIdAndStoredDataByIdBetween, metadataRepository::updateStoredData);
+            migrate(migration, "metadatadraft", metadataDraftRepository::findIdsAfterId,
+                metadataDraftRepository::findIdAndStoredDataByIdBetween, metadataDraftRepository::updateStoredData);
+            migration.status = migration.cancelled ? "cancelled" : "finished";
+        } catch (Exception e) {
+            Log.error(Geonet.DATA_MANAGER, "Error while converting the records to storage codec " + migration.codec, e);
+            migration.status = "failed";
+            migration.lastError = e.getMessage();
+        } finally {
+            migration.endTime = System.currentTimeMillis();
+            Log.info(Geonet.DATA_MANAGER, "Records storage conversion " + migration.status + ": " + migration.toMap());
+        }
+    }
+
+    private void migrate(Report migration, String table, BiFunction<Integer, Pageable, List<Integer>> idFinder,
+                         BiFunction<Integer, Integer, List<Object[]>> lockingFinder, StoredDataUpdater updater) {
+        int afterId = 0;
+        while (afterId >= 0 && !migration.cancelled) {
+            final int pageAfterId = afterId;
+            afterId = TransactionManager.runInTransaction("metadata-storage-migration", applicationContext,
+                CREATE_NEW, ALWAYS_COMMIT, false, transaction -> {
+                    List<Integer> ids = idFinder.apply(pageAfterId, PageRequest.of(0, pageSize));
+                    if (ids.isEmpty()) {
+                        return -1;
+                    }
+                    int lastId = ids.get(ids.size() - 1);
+                    for (Object[] row : lockingFinder.apply(ids.get(0), lastId)) {
+                        convert(migration, table, (Integer) row[0], (String) row[1], updater);
+                    }
+                    return lastId;
+                });
+        }
+    }
+
+    private void convert(Report migration, String table, int id, String stored, StoredDataUpdater updater) {
+        migration.processed++;
+        migration.sizeBefore += stored.length();
+        String converted = stored;
+        if (MetadataDataCodec.of(stored) != migration.codec) {
+            try {
+                converted = migration.codec.encode(MetadataDataCodec.decode(stored));
+            } catch (RuntimeException e) {
+                Log.error(Geonet.DATA_MANAGER, "Error while converting the data of " + table + " " + id, e);
+                migration.errors++;
+                migration.lastError = table + " " + id + ": " + e.getMessage();
+            }
+        }
+        if (converted != stored) {
+            updater.update(id, converted);
+            migration.converted++;
+        }
+        migration.sizeAfter += converted.length();
+    }
+
+    @FunctionalInterface
+    private interface StoredDataUpdater {
+        int update(int id, String data);
+    }
+
+    private static final class Report {
+        private final MetadataDataCodec codec;
+        private final long startTime = System.currentTimeMillis();
+        private volatile String status;
+        private volatile boolean cancelled;
+        private volatile long endTime;
+        private volatile long processed;
+        private volatile long converted;
+        private volatile long errors;
+        private volatile long sizeBefore;
+        private volatile long sizeAfter;
+        private volatile String lastError;
+
+        private Report(MetadataDataCodec codec) {
+            this.codec = codec;
+            this.status = codec == null ? "none" : "running";
+        }
+
+        private boolean isRunning() {
+            return "running".equals(status);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("status", status);
+            map.put("defaultCodec", MetadataDataCodec.getDefault().name().toLowerCase());
+            if (codec == null) {
+                return map;
+            }
+            long end = endTime == 0 ? System.currentTimeMillis() : endTime;
+            double seconds = Math.max(1, end - startTime) / 1000.0;
+            map.put("codec", codec.name().toLowerCase());
+            map.put("startDate", new ISODate(startTime).toString());
+            if (endTime != 0) {
+                map.put("endDate", new ISODate(endTime).toString());
+            }
+            map.put("processed", processed);
+            map.put("converted", converted);
+            map.put("errors", errors);
+            map.put("sizeBefore", sizeBefore);
+            map.put("sizeAfter", sizeAfter);
+            map.put("ratio", sizeBefore == 0 ? 1.0 : (double) sizeAfter / sizeBefore);
+            map.put("recordsPerSecond", processed / seconds);
+            map.put("charactersPerSecond", sizeBefore / seconds);
+            if (lastError != null) {
+                map.put("lastError", lastError);
+            }
+            return map;
+        }
+    }
+}
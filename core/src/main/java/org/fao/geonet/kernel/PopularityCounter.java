@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel;
+
+import com.google.common.collect.Lists;
+import jeeves.transaction.TransactionManager;
+import org.fao.geonet.ApplicationContextHolder;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.kernel.search.EsSearchManager;
+import org.fao.geonet.repository.MetadataRepository;
+import org.fao.geonet.utils.Log;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static jeeves.transaction.TransactionManager.CommitBehavior.ONLY_COMMIT_NEWLY_CREATED_TRANSACTIONS;
+import static jeeves.transaction.TransactionManager.TransactionRequirement.CREATE_ONLY_WHEN_NEEDED;
+
+/**
+ * Count the views of the records in memory and add them to the record popularity in the
+ * background.
+ * <p/>
+ * Every metadata.popularity.flushInterval ms, the views counted since the previous flush are added
+ * to the popularity of the records with one update per distinct number of views, and the new
+ * popularity is sent to the index in one bulk request.  When metadata.popularity.maxLag views are
+ * waiting, they are flushed without waiting for the end of the interval.  If flushInterval is 0,
+ * the popularity is saved on each view.
+ */
+public class PopularityCounter {
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    @Autowired
+    private MetadataRepository metadataRepository;
+    @Autowired
+    private EsSearchManager searchManager;
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Value("${metadata.popularity.flushInterval:10000}")
+    private long flushInterval;
+    @Value("${metadata.popularity.maxLag:10000}")
+    private long maxLag;
+
+    private final ConcurrentMap<Integer, LongAdder> views = new ConcurrentHashMap<>();
+    private final LongAdder pendingViews = new LongAdder();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    /**
+     * Counters removed by the previous flush, which a view may still have incremented after
+     * they were read.
+     */
+    private List<FlushedCounter> flushedCounters = new ArrayList<>();
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        if (flushInterval > 0) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory();
+            threadFactory.setDaemon(true);
+            threadFactory.setThreadNamePrefix("PopularityCounter-");
+            executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            executor.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        flushQuietly();
+    }
+
+    /**
+     * Count a view of a record.
+     *
+     * @param metadataId the id of the record.
+     */
+    public void increment(int metadataId) {
+        views.computeIfAbsent(metadataId, id -> new LongAdder()).increment();
+        pendingViews.increment();
+        if (executor == null) {
+            flush();
+        } else if (maxLag > 0 && pendingViews.sum() >= maxLag && flushRequested.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Add the views counted since the previous flush to the popularity of the records.
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        Map<Integer, Long> increments = new HashMap<>();
+        for (FlushedCounter counter : flushedCounters) {
+            long lateViews = counter.views.sum() - counter.flushedViews;
+            if (lateViews > 0) {
+                increments.merge(counter.metadataId, lateViews, Long::sum);
+                pendingViews.add(-lateViews);
+            }
+        }
+        flushedCounters = new ArrayList<>();
+        for (Integer metadataId : views.keySet()) {
+            LongAdder counter = views.remove(metadataId);
+            if (counter != null) {
+                long count = counter.sum();
+                flushedCounters.add(new FlushedCounter(metadataId, counter, count));
+                if (count > 0) {
+                    increments.merge(metadataId, count, Long::sum);
+                    pendingViews.add(-count);
+                }
+            }
+        }
+        if (increments.isEmpty()) {
+            return;
+        }
+
+        try {
+            save(increments);
+        } catch (Exception e) {
+            Log.error(Geonet.DATA_MANAGER, "Error while saving the popularity of " + increments.size()
+                + " records, views will be saved with the next flush", e);
+            increments.forEach((metadataId, count) -> {
+                views.computeIfAbsent(metadataId, id -> new LongAdder()).add(count);
+                pendingViews.add(count);
+            });
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            ApplicationContextHolder.set(applicationContext);
+            flush();
+        } catch (Exception e) {
+            Log.error(Geonet.DATA_MANAGER, "Error while saving the popularity of the records", e);
+        }
+    }
+
+    private void save(Map<Integer, Long> increments) {
+        Map<Long, List<Integer>> idsByIncrement = new HashMap<>();
+        increments.forEach((metadataId, count) ->
+            idsByIncrement.computeIfAbsent(count, c -> new ArrayList<>()).add(metadataId));
+
+        Map<String, Object> popularityByUuid = new HashMap<>();
+        TransactionManager.runInTransaction("popularity-flush", applicationContext,
+            CREATE_ONLY_WHEN_NEEDED, ONLY_COMMIT_NEWLY_CREATED_TRANSACTIONS, false, transaction -> {
+                idsByIncrement.forEach((count, ids) -> {
+                    for (List<Integer> partition : Lists.partition(ids, MAX_IDS_PER_QUERY)) {
+                        metadataRepository.incrementPopularity(partition, count.intValue());
+                    }
+                });
+                for (List<Integer> partition : Lists.partition(new ArrayList<>(increments.keySet()), MAX_IDS_PER_QUERY)) {
+                    for (Object[] row : metadataRepository.findUuidAndPopularityByIdIn(partition)) {
+                        popularityByUuid.put((String) row[1], row[2]);
+                    }
+                }
+                return null;
+            });
+
+        searchManager.updateFieldAsynch(Geonet.IndexFieldNames.POPULARITY, popularityByUuid);
+    }
+
+    private static final class FlushedCounter {
+        private final int metadataId;
+        private final LongAdder views;
+        private final long flushedViews;
+
+        private FlushedCounter(int metadataId, LongAdder views, long flushedViews) {
+            this.metadataId = metadataId;
+            this.views = views;
+            this.flushedViews = flushedViews;
+        }
+    }
+}
@@ -948,6 +948,7 @@ public class SchemaManager {
             }
             System.setProperty(Constants.XML_CATALOG_FILES, catalogProp);
             Xml.resetResolver();
+            Xml.clearSchemaCache();
         }
 
         SchematronRepository schemaRepo = applicationContext.getBean(SchematronRepository.class);
@@ -1035,13 +1036,15 @@ public class SchemaManager {
     /**
      * Reload a schema.
      *
-     * Compile validation rules (conversion from SCH to XSL).
+     * Compile validation rules (conversion from SCH to XSL) and clear the compiled XSD
+     * of the schema.
      *
      * @param schemaIdentifier The schema identifier.
      */
     public void reloadSchema(String schemaIdentifier) {
         MetadataSchema metadataSchema = this.getSchema(schemaIdentifier);
         metadataSchema.loadSchematronRules(basePath);
+        Xml.clearSchemaCache(metadataSchema.getSchemaDir());
     }
 
 
@@ -1200,6 +1203,7 @@ public class SchemaManager {
                 Xml.writeResponse(new Document((Element) root.detach()), out);
                 Xml.resetResolver();
                 Xml.clearTransformerFactoryStylesheetCache();
+                Xml.clearSchemaCache();
             }
         }
     }
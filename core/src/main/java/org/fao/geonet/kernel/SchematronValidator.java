@@ -42,6 +42,7 @@ import org.springframework.context.ConfigurableApplicationContext;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class Handles validating a metadata against the applicable schematrons.
@@ -117,15 +118,45 @@ public class SchematronValidator extends AbstractSchematronValidator {
     }
 
 
+    /**
+     * Same as {@link #getApplicableSchematronList(int, Element, MetadataSchema)} with the
+     * schematrons of the schema and their criteria groups already loaded, eg. to validate
+     * records by batch.
+     *
+     * @param criteriaGroups the criteria groups of each schematron of the schema, in display priority order.
+     */
+    public List<ApplicableSchematron> getApplicableSchematronList(final int metadataId,
+                                                                  final Element md,
+                                                                  final MetadataSchema metadataSchema,
+                                                                  final Map<Schematron, List<SchematronCriteriaGroup>> criteriaGroups) {
+        List<ApplicableSchematron> applicableSchematron = Lists.newArrayList();
+        for (Map.Entry<Schematron, List<SchematronCriteriaGroup>> entry : criteriaGroups.entrySet()) {
+            final ApplicableSchematron applicable = getApplicableSchematron(metadataId, md, metadataSchema,
+                entry.getKey(), entry.getValue());
+            if (applicable.getRequirement() != SchematronRequirement.DISABLED) {
+                applicableSchematron.add(applicable);
+            }
+        }
+        return applicableSchematron;
+    }
+
     public ApplicableSchematron getApplicableSchematron(final int metadataId,
                                                  final Element md,
                                                  final MetadataSchema metadataSchema,
                                                  final Schematron schematron) {
-        //it contains absolute path to the xsl file
-        final ConfigurableApplicationContext applicationContext = ApplicationContextHolder.get();
-        SchematronCriteriaGroupRepository criteriaGroupRepository = applicationContext.getBean(SchematronCriteriaGroupRepository.class);
+        SchematronCriteriaGroupRepository criteriaGroupRepository = ApplicationContextHolder.get().getBean(SchematronCriteriaGroupRepository.class);
 
         List<SchematronCriteriaGroup> criteriaGroups = criteriaGroupRepository.findAllById_SchematronId(schematron.getId());
+        return getApplicableSchematron(metadataId, md, metadataSchema, schematron, criteriaGroups);
+    }
+
+    private ApplicableSchematron getApplicableSchematron(final int metadataId,
+                                                         final Element md,
+                                                         final MetadataSchema metadataSchema,
+                                                         final Schematron schematron,
+                                                         final List<SchematronCriteriaGroup> criteriaGroups) {
+        //it contains absolute path to the xsl file
+        final ConfigurableApplicationContext applicationContext = ApplicationContextHolder.get();
 
         //Loop through all criteria to see if apply schematron
         //if any criteria does not apply, do not apply at all (AND)
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel;
+
+import org.fao.geonet.domain.Profile;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable view of the privileges of a user at the time it was created: profile, groups
+ * and the review rule of the catalogue. It is built once by
+ * {@link AccessManager#getPrivilegesSnapshot(jeeves.server.context.ServiceContext)} so that
+ * many records (eg. the hits of a search) can be checked without querying the database.
+ *
+ * Checks give the same results as {@link AccessManager#isOwner} and
+ * {@link AccessManager#hasReviewPermission} using the owner, group owner and operations
+ * of the record as indexed.
+ */
+public class UserPrivilegesSnapshot {
+    private final Integer userId;
+    private final Profile profile;
+    private final boolean intranet;
+    private final Set<Integer> groups;
+    private final Set<Integer> editingGroups;
+    private final Set<Integer> reviewerGroups;
+    private final boolean reviewerInGroupOwnerOnly;
+
+    /**
+     * @param userId                   the user identifier or null if not authenticated.
+     * @param profile                  the user profile or null if not authenticated.
+     * @param intranet                 true if the request comes from the intranet.
+     * @param groups                   the groups the user can view records of.
+     * @param editingGroups            the groups the user can edit records of.
+     * @param reviewerGroups           the groups the user is reviewer of.
+     * @param reviewerInGroupOwnerOnly true if only the reviewers of the group owner can review a record.
+     */
+    public UserPrivilegesSnapshot(Integer userId, Profile profile, boolean intranet,
+                                  Collection<Integer> groups, Collection<Integer> editingGroups,
+                                  Collection<Integer> reviewerGroups, boolean reviewerInGroupOwnerOnly) {
+        this.userId = userId;
+        this.profile = profile;
+        this.intranet = intranet;
+        this.groups = Collections.unmodifiableSet(new HashSet<>(groups));
+        this.editingGroups = Collections.unmodifiableSet(new HashSet<>(editingGroups));
+        this.reviewerGroups = Collections.unmodifiableSet(new HashSet<>(reviewerGroups));
+        this.reviewerInGroupOwnerOnly = reviewerInGroupOwnerOnly;
+    }
+
+    public boolean isAuthenticated() {
+        return userId != null;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    public boolean isIntranet() {
+        return intranet;
+    }
+
+    public Set<Integer> getGroups() {
+        return groups;
+    }
+
+    public Set<Integer> getEditingGroups() {
+        return editingGroups;
+    }
+
+    public Set<Integer> getReviewerGroups() {
+        return reviewerGroups;
+    }
+
+    /**
+     * Return true if the user is: <ul> <li>administrator</li> <li>the record owner</li>
+     * <li>reviewer or useradmin in the group owner of the record</li> </ul>
+     *
+     * @param owner      the record owner.
+     * @param groupOwner the record group owner.
+     */
+    public boolean isOwner(Integer owner, Integer groupOwner) {
+        if (!isAuthenticated()) {
+            return false;
+        }
+        if (profile == Profile.Administrator) {
+            return true;
+        }
+        if (owner != null && userId.intValue() == owner) {
+            return true;
+        }
+        if (profile != Profile.Reviewer && profile != Profile.UserAdmin) {
+            return false;
+        }
+        return groupOwner != null && reviewerGroups.contains(groupOwner);
+    }
+
+    /**
+     * Return true if the user is administrator or reviewer in the group owner of the record. If
+     * not restricted to the group owner, a reviewer of one of the groups which can edit the
+     * record can also review it.
+     *
+     * @param groupOwner            the record group owner.
+     * @param editingGroupsOfRecord the groups allowed to edit the record.
+     */
+    public boolean canReview(Integer groupOwner, Collection<Integer> editingGroupsOfRecord) {
+        if (!isAuthenticated()) {
+            return false;
+        }
+        if (profile == Profile.Administrator) {
+            return true;
+        }
+        boolean isReviewerOfGroupOwner = groupOwner != null && reviewerGroups.contains(groupOwner);
+        if (reviewerInGroupOwnerOnly || isReviewerOfGroupOwner) {
+            return isReviewerOfGroupOwner;
+        }
+        for (Integer groupId : editingGroupsOfRecord) {
+            if (reviewerGroups.contains(groupId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel;
+
+import jeeves.xlink.Processor;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.MetadataType;
+import org.fao.geonet.events.md.MetadataEvent;
+import org.fao.geonet.events.md.MetadataRemove;
+import org.fao.geonet.events.md.MetadataUpdate;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * Clear the local XLinks cached by the XLink {@link Processor} when a subtemplate is updated or
+ * deleted.
+ */
+public class XLinkCacheListener implements ApplicationListener<MetadataEvent> {
+    @Override
+    public void onApplicationEvent(MetadataEvent event) {
+        if (event instanceof MetadataUpdate || event instanceof MetadataRemove) {
+            AbstractMetadata md = event.getMd();
+            if (md.getDataInfo() == null || md.getDataInfo().getType() == MetadataType.SUB_TEMPLATE) {
+                Processor.uncacheLocalXLinks();
+            }
+        }
+    }
+}
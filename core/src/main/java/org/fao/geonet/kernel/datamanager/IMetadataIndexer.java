@@ -24,10 +24,13 @@
 package org.fao.geonet.kernel.datamanager;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 import org.fao.geonet.domain.AbstractMetadata;
 import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.IndexRecord;
+import org.fao.geonet.kernel.search.index.IndexingContext;
 import org.jdom.Element;
 import org.springframework.data.jpa.domain.Specification;
 
@@ -105,6 +108,29 @@ public interface IMetadataIndexer {
 
     void indexMetadata(String metadataId, boolean forceRefreshReaders, IndexingMode indexingMode) throws Exception;
 
+    /**
+     * Load the database information required to index a set of records
+     * (owners, groups, privileges, status, ...) using set based queries.
+     *
+     * @param records the records to index
+     * @return the indexing context to use when building the records
+     */
+    IndexingContext loadIndexingContext(Collection<? extends AbstractMetadata> records);
+
+    /**
+     * Collect the XML document and the database fields of a record to index
+     * (without applying the schema index.xsl).
+     *
+     * @param metadata the record loaded from the database
+     * @param indexingMode
+     * @param indexingContext the database information loaded for the batch of records
+     *                        containing this record
+     * @return the record ready to be transformed and sent to the index
+     * @throws Exception
+     */
+    IndexRecord buildIndexRecord(AbstractMetadata metadata, IndexingMode indexingMode,
+                                 IndexingContext indexingContext) throws Exception;
+
     void indexMetadataPrivileges(String uuid, int id) throws Exception;
 
     /**
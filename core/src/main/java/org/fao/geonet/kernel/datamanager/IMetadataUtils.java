@@ -243,7 +243,8 @@ public interface IMetadataUtils {
     void updateDisplayOrder(String id, String displayOrder) throws Exception;
 
     /**
-     * Increases the popularity of the record defined by the id
+     * Increases the popularity of the record defined by the id. The views are saved in the
+     * background (see {@link org.fao.geonet.kernel.PopularityCounter}).
      *
      * @param srvContext
      * @param id
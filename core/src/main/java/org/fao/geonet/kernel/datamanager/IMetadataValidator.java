@@ -28,6 +28,7 @@ import java.util.List;
 import org.fao.geonet.domain.AbstractMetadata;
 import org.fao.geonet.domain.MetadataValidation;
 import org.fao.geonet.domain.Pair;
+import org.fao.geonet.kernel.ApplicableSchematron;
 import org.jdom.Element;
 import org.jdom.Namespace;
 
@@ -82,6 +83,17 @@ public interface IMetadataValidator {
     Pair<Element, String> doValidate(UserSession session, String schema, String metadataId, Element md, String lang, boolean forEditing)
             throws Exception;
 
+    /**
+     * Validates a record against the XSD and the schematrons without saving the validation status. Used to validate
+     * records by batch.
+     *
+     * @param schematrons the schematrons to apply, or null to find the schematrons applicable to the record
+     * @param validations the validation status of each type of validation is added to this list
+     * @return the validation report
+     */
+    Element buildValidationReport(String schema, int metadataId, Element md, String lang, List<ApplicableSchematron> schematrons,
+                                  List<MetadataValidation> validations);
+
     /**
      * Creates XML schematron report for each set of rules defined in schema directory. This method assumes that you've run enumerateTree on
      * the metadata
@@ -49,9 +49,15 @@ import org.fao.geonet.kernel.datamanager.draft.DraftMetadataIndexer;
 import org.fao.geonet.kernel.search.EsSearchManager;
 import org.fao.geonet.kernel.search.IndexFields;
 import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.search.index.IndexRecord;
+import org.fao.geonet.kernel.search.index.IndexingContext;
+import org.fao.geonet.kernel.search.index.IndexingPipeline;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
 import org.fao.geonet.repository.*;
+import org.fao.geonet.repository.specification.InspireAtomFeedSpecs;
+import org.fao.geonet.repository.specification.MetadataValidationSpecs;
+import org.fao.geonet.repository.specification.OperationAllowedSpecs;
 import org.fao.geonet.repository.userfeedback.UserFeedbackRepository;
 import org.fao.geonet.resources.Resources;
 import org.fao.geonet.util.ThreadUtils;
@@ -76,6 +82,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static org.fao.geonet.resources.Resources.DEFAULT_LOGO_EXTENSION;
 
@@ -117,6 +124,8 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
     private Store store;
     @Autowired
     private Resources resources;
+    @Autowired(required = false)
+    private IndexingPipeline indexingPipeline;
 
     // FIXME remove when get rid of Jeeves
     private ServiceContext servContext;
@@ -260,6 +269,12 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
                 // not in a transaction so we can go ahead.
             }
         }
+
+        if (indexingPipeline != null && indexingPipeline.isEnabled()) {
+            indexingPipeline.index(context, metadataIds, transactionStatus, this, metadataUtils);
+            return;
+        }
+
         // split reindexing task according to number of processors we can assign
         int threadCount = ThreadUtils.getNumberOfThreads();
         ExecutorService executor = Executors.newFixedThreadPool(threadCount);
@@ -301,7 +316,8 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
 
     @Override
     public boolean isIndexing() {
-        return searchManager.isIndexing();
+        return searchManager.isIndexing()
+            || (indexingPipeline != null && indexingPipeline.isRunning());
     }
 
     @Override
@@ -321,238 +337,303 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
         TimerContext timerContext = monitorManager.getTimer(IndexingRecordTimer.class).time();
         long start = System.currentTimeMillis();
         try {
-            Multimap<String, Object> fields = ArrayListMultimap.create();
-            int id$ = Integer.parseInt(metadataId);
-
-            // get metadata, extracting and indexing any xlinks
-            Element md = getXmlSerializer().selectNoXLinkResolver(metadataId, true, false);
-            final ServiceContext serviceContext = getServiceContext();
-            if (getXmlSerializer().resolveXLinks()) {
-                List<Attribute> xlinks = Processor.getXLinks(md);
-                if (xlinks.size() > 0) {
-                    fields.put(Geonet.IndexFieldNames.HASXLINKS, true);
-                    for (Attribute xlink : xlinks) {
-                        fields.put(Geonet.IndexFieldNames.XLINK, xlink.getValue());
-                        fields.put(Geonet.IndexFieldNames.XLINK, xlink.getValue().replaceAll("local://srv/api/registries/entries/(.*)\\?.*", "$1"));
-                    }
-                    Processor.detachXLink(md, getServiceContext());
-                } else {
-                    fields.put(Geonet.IndexFieldNames.HASXLINKS, false);
-                }
-            } else {
-                fields.put(Geonet.IndexFieldNames.HASXLINKS, false);
+            fullMd = metadataUtils.findOne(Integer.parseInt(metadataId));
+            if (fullMd == null) {
+                throw new IllegalArgumentException(String.format(
+                    "Record with id %s not found in database.", metadataId));
             }
 
-            fullMd = metadataUtils.findOne(id$);
-
-            final String schema = fullMd.getDataInfo().getSchemaId();
-            final String createDate = fullMd.getDataInfo().getCreateDate().getDateAndTime();
-            final String changeDate = fullMd.getDataInfo().getChangeDate().getDateAndTime();
-            final String source = fullMd.getSourceInfo().getSourceId();
-            final MetadataType metadataType = fullMd.getDataInfo().getType();
-            final String uuid = fullMd.getUuid();
-            String indexKey = uuid;
-            if (fullMd instanceof MetadataDraft) {
-                indexKey += "-draft";
+            IndexRecord record = buildIndexRecord(fullMd, indexingMode,
+                loadIndexingContext(Collections.singletonList(fullMd)));
+            searchManager.index(record.getSchemaDir(), record.getXml(), record.getIndexKey(),
+                record.getFields(), record.getMetadataType(),
+                forceRefreshReaders, indexingMode);
+        } catch (Exception x) {
+            Log.error(Geonet.DATA_MANAGER, "The metadata document index with id=" + metadataId
+                + " is corrupt/invalid - ignoring it. Error: " + x.getMessage(), x);
+            fullMd = null;
+        } finally {
+            timerContext.stop();
+        }
+        if (fullMd != null) {
+            this.publisher.publishEvent(new MetadataIndexCompleted(fullMd));
+        }
+        Log.warning(Geonet.INDEX_ENGINE, String.format("Record #%s (mode: %s) indexed in %dms",
+            metadataId, indexingMode, System.currentTimeMillis() - start));
+    }
+
+    @Override
+    public IndexingContext loadIndexingContext(Collection<? extends AbstractMetadata> records) {
+        IndexingContext indexingContext = new IndexingContext();
+        if (records.isEmpty()) {
+            return indexingContext;
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        Set<String> uuids = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
+        Set<Integer> groupIds = new HashSet<>();
+        Set<String> sourceIds = new HashSet<>();
+        for (AbstractMetadata md : records) {
+            ids.add(md.getId());
+            uuids.add(md.getUuid());
+            if (md.getSourceInfo().getOwner() != null) {
+                userIds.add(md.getSourceInfo().getOwner());
+            }
+            if (md.getSourceInfo().getGroupOwner() != null) {
+                groupIds.add(md.getSourceInfo().getGroupOwner());
             }
+            if (md.getSourceInfo().getSourceId() != null) {
+                sourceIds.add(md.getSourceInfo().getSourceId());
+            }
+        }
 
-            final String extra = fullMd.getDataInfo().getExtra();
-            final boolean isHarvested = fullMd.getHarvestInfo().isHarvested();
-            final String owner = String.valueOf(fullMd.getSourceInfo().getOwner());
-            final Integer groupOwner = fullMd.getSourceInfo().getGroupOwner();
-            final String popularity = String.valueOf(fullMd.getDataInfo().getPopularity());
-            final String rating = String.valueOf(fullMd.getDataInfo().getRating());
-            final String displayOrder = fullMd.getDataInfo().getDisplayOrder() == null ? null
-                : String.valueOf(fullMd.getDataInfo().getDisplayOrder());
-
-            if (Log.isDebugEnabled(Geonet.DATA_MANAGER)) {
-                Log.debug(Geonet.DATA_MANAGER, "record schema (" + schema + ")"); // DEBUG
-                Log.debug(Geonet.DATA_MANAGER, "record createDate (" + createDate + ")"); // DEBUG
+        for (OperationAllowed operationAllowed : operationAllowedRepository.findAll(
+            OperationAllowedSpecs.hasMetadataIdIn(ids))) {
+            indexingContext.addOperationAllowed(operationAllowed);
+            if (operationAllowed.getId().getOperationId() == ReservedOperation.view.getId()) {
+                groupIds.add(operationAllowed.getId().getGroupId());
             }
+        }
+        userRepository.findAllById(userIds).forEach(indexingContext::addUser);
+        groupRepository.findAllById(groupIds).forEach(indexingContext::addGroup);
+        sourceRepository.findAllById(sourceIds).forEach(indexingContext::addSource);
+
+        Sort statusSort = Sort.by(Sort.Direction.DESC,
+            MetadataStatus_.changeDate.getName());
+        statusRepository.findAllByMetadataIdInAndByType(ids, StatusValueType.workflow, statusSort)
+            .forEach(indexingContext::addWorkflowStatus);
+
+        metadataValidationRepository.findAll(MetadataValidationSpecs.hasMetadataIdIn(ids))
+            .forEach(indexingContext::addValidation);
+        inspireAtomFeedRepository.findAll(InspireAtomFeedSpecs.hasMetadataIdIn(ids))
+            .forEach(indexingContext::addAtomFeed);
+
+        // the amount of users that have saved the records in the "Preferred Records" list (id=0)
+        for (Object[] count : userSavedSelectionRepository.countTimesUserSavedMetadata(uuids, 0)) {
+            indexingContext.setSavedCount((String) count[0], ((Number) count[1]).intValue());
+        }
 
-            fields.put(Geonet.IndexFieldNames.SCHEMA, schema);
-            fields.put(Geonet.IndexFieldNames.RECORDLINKFLAG, "record");
-            fields.put(Geonet.IndexFieldNames.DATABASE_CREATE_DATE, createDate);
-            fields.put(Geonet.IndexFieldNames.DATABASE_CHANGE_DATE, changeDate);
-            fields.put(Geonet.IndexFieldNames.SOURCE, source);
-            fields.put(Geonet.IndexFieldNames.IS_TEMPLATE, metadataType.codeString);
-            fields.put(Geonet.IndexFieldNames.UUID, uuid);
-            fields.put(Geonet.IndexFieldNames.ID, metadataId);
-            fields.put(Geonet.IndexFieldNames.FEATUREOFRECORD, "record");
-            fields.put(Geonet.IndexFieldNames.IS_HARVESTED, isHarvested);
-            if (isHarvested) {
-                fields.put(Geonet.IndexFieldNames.HARVESTUUID, fullMd.getHarvestInfo().getUuid());
+        if (RatingsSetting.ADVANCED.equals(settingManager.getValue(Settings.SYSTEM_LOCALRATING_ENABLE))) {
+            for (Object[] count : userFeedbackRepository.countFeedbackByMetadataUuid(uuids)) {
+                indexingContext.setFeedbackCount((String) count[0], ((Number) count[1]).intValue());
             }
-            fields.put(Geonet.IndexFieldNames.OWNER, owner);
-
-
-            if (!schemaManager.existsSchema(schema)) {
-                fields.put(IndexFields.DRAFT, "n");
-                fields.put(IndexFields.INDEXING_ERROR_FIELD, true);
-                fields.put(IndexFields.INDEXING_ERROR_MSG,
-                    searchManager.createIndexingErrorMsgObject("indexingErrorMsg-schemaNotRegistered",
-                        "error",
-                        Map.of("record", metadataId, "schema", schema)));
-                searchManager.index(null, md, indexKey, fields, metadataType,
-                    forceRefreshReaders, indexingMode);
-                Log.error(Geonet.DATA_MANAGER, String.format(
-                    "Record %s / Schema '%s' is not registered in this catalog. Install it or remove those records. Record is indexed indexing error flag.",
-                    metadataId, schema));
+        }
+        return indexingContext;
+    }
+
+    @Override
+    public IndexRecord buildIndexRecord(final AbstractMetadata fullMd,
+                                        final IndexingMode indexingMode,
+                                        final IndexingContext indexingContext) throws Exception {
+        Multimap<String, Object> fields = ArrayListMultimap.create();
+        int id$ = fullMd.getId();
+        String metadataId = String.valueOf(id$);
+
+        // get metadata, extracting and indexing any xlinks
+        Element md = getXmlSerializer().removeHiddenElements(true, fullMd, false);
+        if (getXmlSerializer().resolveXLinks()) {
+            List<Attribute> xlinks = Processor.getXLinks(md);
+            if (xlinks.size() > 0) {
+                fields.put(Geonet.IndexFieldNames.HASXLINKS, true);
+                for (Attribute xlink : xlinks) {
+                    fields.put(Geonet.IndexFieldNames.XLINK, xlink.getValue());
+                    fields.put(Geonet.IndexFieldNames.XLINK, xlink.getValue().replaceAll("local://srv/api/registries/entries/(.*)\\?.*", "$1"));
+                }
+                Processor.detachXLink(md, getServiceContext());
             } else {
+                fields.put(Geonet.IndexFieldNames.HASXLINKS, false);
+            }
+        } else {
+            fields.put(Geonet.IndexFieldNames.HASXLINKS, false);
+        }
 
-                fields.put(Geonet.IndexFieldNames.POPULARITY, popularity);
-                fields.put(Geonet.IndexFieldNames.RATING, rating);
+        final String schema = fullMd.getDataInfo().getSchemaId();
+        final String createDate = fullMd.getDataInfo().getCreateDate().getDateAndTime();
+        final String changeDate = fullMd.getDataInfo().getChangeDate().getDateAndTime();
+        final String source = fullMd.getSourceInfo().getSourceId();
+        final MetadataType metadataType = fullMd.getDataInfo().getType();
+        final String uuid = fullMd.getUuid();
+        String indexKey = uuid;
+        if (fullMd instanceof MetadataDraft) {
+            indexKey += "-draft";
+        }
 
-                if (RatingsSetting.ADVANCED.equals(settingManager.getValue(Settings.SYSTEM_LOCALRATING_ENABLE))) {
-                    int nbOfFeedback = userFeedbackRepository.findByMetadata_Uuid(uuid).size();
-                    fields.put(Geonet.IndexFieldNames.FEEDBACKCOUNT, nbOfFeedback);
-                }
+        final String extra = fullMd.getDataInfo().getExtra();
+        final boolean isHarvested = fullMd.getHarvestInfo().isHarvested();
+        final String owner = String.valueOf(fullMd.getSourceInfo().getOwner());
+        final Integer groupOwner = fullMd.getSourceInfo().getGroupOwner();
+        final String popularity = String.valueOf(fullMd.getDataInfo().getPopularity());
+        final String rating = String.valueOf(fullMd.getDataInfo().getRating());
+        final String displayOrder = fullMd.getDataInfo().getDisplayOrder() == null ? null
+            : String.valueOf(fullMd.getDataInfo().getDisplayOrder());
 
-                fields.put(Geonet.IndexFieldNames.DISPLAY_ORDER, displayOrder);
-                fields.put(Geonet.IndexFieldNames.EXTRA, extra);
+        if (Log.isDebugEnabled(Geonet.DATA_MANAGER)) {
+            Log.debug(Geonet.DATA_MANAGER, "record schema (" + schema + ")"); // DEBUG
+            Log.debug(Geonet.DATA_MANAGER, "record createDate (" + createDate + ")"); // DEBUG
+        }
 
-                // If the metadata has an atom document, index related information
-                InspireAtomFeed feed = inspireAtomFeedRepository.findByMetadataId(id$);
+        fields.put(Geonet.IndexFieldNames.SCHEMA, schema);
+        fields.put(Geonet.IndexFieldNames.RECORDLINKFLAG, "record");
+        fields.put(Geonet.IndexFieldNames.DATABASE_CREATE_DATE, createDate);
+        fields.put(Geonet.IndexFieldNames.DATABASE_CHANGE_DATE, changeDate);
+        fields.put(Geonet.IndexFieldNames.SOURCE, source);
+        fields.put(Geonet.IndexFieldNames.IS_TEMPLATE, metadataType.codeString);
+        fields.put(Geonet.IndexFieldNames.UUID, uuid);
+        fields.put(Geonet.IndexFieldNames.ID, metadataId);
+        fields.put(Geonet.IndexFieldNames.FEATUREOFRECORD, "record");
+        fields.put(Geonet.IndexFieldNames.IS_HARVESTED, isHarvested);
+        if (isHarvested) {
+            fields.put(Geonet.IndexFieldNames.HARVESTUUID, fullMd.getHarvestInfo().getUuid());
+        }
+        fields.put(Geonet.IndexFieldNames.OWNER, owner);
+
+
+        if (!schemaManager.existsSchema(schema)) {
+            fields.put(IndexFields.DRAFT, "n");
+            fields.put(IndexFields.INDEXING_ERROR_FIELD, true);
+            fields.put(IndexFields.INDEXING_ERROR_MSG,
+                searchManager.createIndexingErrorMsgObject("indexingErrorMsg-schemaNotRegistered",
+                    "error",
+                    Map.of("record", metadataId, "schema", schema)));
+            Log.error(Geonet.DATA_MANAGER, String.format(
+                "Record %s / Schema '%s' is not registered in this catalog. Install it or remove those records. Record is indexed indexing error flag.",
+                metadataId, schema));
+            return new IndexRecord(metadataId, indexKey, null, metadataType, md, fields, fullMd);
+        }
 
-                if ((feed != null) && StringUtils.isNotEmpty(feed.getAtom())) {
-                    fields.put("atomfeed", feed.getAtom());
-                }
+        fields.put(Geonet.IndexFieldNames.POPULARITY, popularity);
+        fields.put(Geonet.IndexFieldNames.RATING, rating);
 
-                if (owner != null) {
-                    Optional<User> userOpt = userRepository.findById(fullMd.getSourceInfo().getOwner());
-                    if (userOpt.isPresent()) {
-                        User user = userOpt.get();
-                        fields.put(Geonet.IndexFieldNames.USERINFO, user.getUsername() + "|" + user.getSurname() + "|" + user
-                            .getName() + "|" + user.getProfile());
-                        fields.put(Geonet.IndexFieldNames.OWNERNAME, user.getName() + " " + user.getSurname());
-                    }
-                }
+        if (RatingsSetting.ADVANCED.equals(settingManager.getValue(Settings.SYSTEM_LOCALRATING_ENABLE))) {
+            fields.put(Geonet.IndexFieldNames.FEEDBACKCOUNT, indexingContext.getFeedbackCount(uuid));
+        }
 
-                String logoUUID = null;
-                if (groupOwner != null) {
-                    final Optional<Group> groupOpt = groupRepository.findById(groupOwner);
-                    if (groupOpt.isPresent()) {
-                        Group group = groupOpt.get();
-                        fields.put(Geonet.IndexFieldNames.GROUP_OWNER, String.valueOf(groupOwner));
-                        final boolean preferGroup = settingManager.getValueAsBool(Settings.SYSTEM_PREFER_GROUP_LOGO, true);
-                        if (group.getWebsite() != null && !group.getWebsite().isEmpty() && preferGroup) {
-                            fields.put(Geonet.IndexFieldNames.GROUP_WEBSITE, group.getWebsite());
-                        }
-                        if (group.getLogo() != null && preferGroup) {
-                            logoUUID = group.getLogo();
-                        }
-                    }
-                }
+        fields.put(Geonet.IndexFieldNames.DISPLAY_ORDER, displayOrder);
+        fields.put(Geonet.IndexFieldNames.EXTRA, extra);
 
-                // Group logo are in the harvester folder and contains extension in file name
-                boolean added = false;
-                if (StringUtils.isNotEmpty(logoUUID)) {
-                    final Path harvesterLogosDir = resources.locateHarvesterLogosDir(getServiceContext());
-                    try (Resources.ResourceHolder logo = resources.getImage(getServiceContext(), logoUUID, harvesterLogosDir)) {
-                        if (logo != null) {
-                            added = true;
-                            fields.put(Geonet.IndexFieldNames.LOGO,
-                                "/images/harvesting/" + logo.getPath().getFileName());
-                        }
-                    }
-                }
+        // If the metadata has an atom document, index related information
+        InspireAtomFeed feed = indexingContext.getAtomFeed(id$);
 
-                // If not available, use the local catalog logo
-                if (!added) {
-                    Source sourceCatalogue = sourceRepository.findOneByUuid(source);
-                    logoUUID =
-                        sourceCatalogue != null
-                            && StringUtils.isNotEmpty(sourceCatalogue.getLogo())
-                        ? sourceCatalogue.getLogo() : source + DEFAULT_LOGO_EXTENSION;
-                    final Path logosDir = resources.locateLogosDir(getServiceContext());
-                    try (Resources.ResourceHolder image = resources.getImage(getServiceContext(), logoUUID, logosDir)) {
-                        if (image != null) {
-                            fields.put(Geonet.IndexFieldNames.LOGO,
-                                "/images/logos/" + logoUUID);
-                        }
-                    }
-                }
+        if ((feed != null) && StringUtils.isNotEmpty(feed.getAtom())) {
+            fields.put("atomfeed", feed.getAtom());
+        }
 
-                fields.putAll(buildFieldsForPrivileges(id$));
+        if (owner != null) {
+            User user = indexingContext.getUser(fullMd.getSourceInfo().getOwner());
+            if (user != null) {
+                fields.put(Geonet.IndexFieldNames.USERINFO, user.getUsername() + "|" + user.getSurname() + "|" + user
+                    .getName() + "|" + user.getProfile());
+                fields.put(Geonet.IndexFieldNames.OWNERNAME, user.getName() + " " + user.getSurname());
+            }
+        }
 
-                for (MetadataCategory category : fullMd.getCategories()) {
-                    fields.put(Geonet.IndexFieldNames.CAT, category.getName());
+        String logoUUID = null;
+        if (groupOwner != null) {
+            Group group = indexingContext.getGroup(groupOwner);
+            if (group != null) {
+                fields.put(Geonet.IndexFieldNames.GROUP_OWNER, String.valueOf(groupOwner));
+                final boolean preferGroup = settingManager.getValueAsBool(Settings.SYSTEM_PREFER_GROUP_LOGO, true);
+                if (group.getWebsite() != null && !group.getWebsite().isEmpty() && preferGroup) {
+                    fields.put(Geonet.IndexFieldNames.GROUP_WEBSITE, group.getWebsite());
                 }
-
-                // get status
-                Sort statusSort = Sort.by(Sort.Direction.DESC,
-                    MetadataStatus_.changeDate.getName());
-                List<MetadataStatus> statuses = statusRepository.findAllByMetadataIdAndByType(id$, StatusValueType.workflow, statusSort);
-                if (!statuses.isEmpty()) {
-                    MetadataStatus stat = statuses.get(0);
-                    String status = String.valueOf(stat.getStatusValue().getId());
-                    fields.put(Geonet.IndexFieldNames.STATUS, status);
-                    String statusChangeDate = stat.getChangeDate().getDateAndTime();
-                    fields.put(Geonet.IndexFieldNames.STATUS_CHANGE_DATE, statusChangeDate);
+                if (group.getLogo() != null && preferGroup) {
+                    logoUUID = group.getLogo();
                 }
+            }
+        }
 
-                // getValidationInfo
-                // -1 : not evaluated
-                // 0 : invalid
-                // 1 : valid
-                List<MetadataValidation> validationInfo = metadataValidationRepository.findAllById_MetadataId(id$);
-                if (validationInfo.isEmpty()) {
-                    fields.put(Geonet.IndexFieldNames.VALID, "-1");
-                } else {
-                    String isValid = "1";
-                    boolean hasInspireValidation = false;
-                    for (MetadataValidation vi : validationInfo) {
-                        String type = vi.getId().getValidationType();
-                        MetadataValidationStatus status = vi.getStatus();
-
-                        // TODO: Check if ignore INSPIRE validation?
-                        if (!type.equalsIgnoreCase("inspire")) {
-                            // If never validated and required then set status to never validated.
-                            if (status == MetadataValidationStatus.NEVER_CALCULATED && vi.isRequired()) {
-                                isValid = "-1";
-                            }
-                            if (status == MetadataValidationStatus.INVALID && vi.isRequired() && isValid != "-1") {
-                                isValid = "0";
-                            }
-                        } else {
-                            hasInspireValidation = true;
-                            fields.put(Geonet.IndexFieldNames.INSPIRE_REPORT_URL, vi.getReportUrl());
-                            fields.put(Geonet.IndexFieldNames.INSPIRE_VALIDATION_DATE, vi.getValidationDate().getDateAndTime());
-                        }
-                        fields.put(Geonet.IndexFieldNames.VALID + "_" + type, status.getCode());
-                    }
-                    fields.put(Geonet.IndexFieldNames.VALID, isValid);
+        // Group logo are in the harvester folder and contains extension in file name
+        boolean added = false;
+        if (StringUtils.isNotEmpty(logoUUID)) {
+            final Path harvesterLogosDir = resources.locateHarvesterLogosDir(getServiceContext());
+            try (Resources.ResourceHolder logo = resources.getImage(getServiceContext(), logoUUID, harvesterLogosDir)) {
+                if (logo != null) {
+                    added = true;
+                    fields.put(Geonet.IndexFieldNames.LOGO,
+                        "/images/harvesting/" + logo.getPath().getFileName());
+                }
+            }
+        }
 
-                    if (!hasInspireValidation) {
-                        fields.put(Geonet.IndexFieldNames.VALID_INSPIRE, "-1");
-                    }
+        // If not available, use the local catalog logo
+        if (!added) {
+            Source sourceCatalogue = indexingContext.getSource(source);
+            logoUUID =
+                sourceCatalogue != null
+                    && StringUtils.isNotEmpty(sourceCatalogue.getLogo())
+                ? sourceCatalogue.getLogo() : source + DEFAULT_LOGO_EXTENSION;
+            final Path logosDir = resources.locateLogosDir(getServiceContext());
+            try (Resources.ResourceHolder image = resources.getImage(getServiceContext(), logoUUID, logosDir)) {
+                if (image != null) {
+                    fields.put(Geonet.IndexFieldNames.LOGO,
+                        "/images/logos/" + logoUUID);
                 }
+            }
+        }
 
-                // index the amount of users that have saved this record in the "Preferred Records" list (id=0)
-                int savedCount = userSavedSelectionRepository.countTimesUserSavedMetadata(uuid, 0);
-                fields.put(Geonet.IndexFieldNames.USER_SAVED_COUNT, savedCount);
+        fields.putAll(buildFieldsForPrivileges(
+            indexingContext.getOperationsAllowed(id$), indexingContext::getGroup));
 
-                fields.putAll(addExtraFields(fullMd));
+        for (MetadataCategory category : fullMd.getCategories()) {
+            fields.put(Geonet.IndexFieldNames.CAT, category.getName());
+        }
 
-                if (fullMd != null) {
-                    this.publisher.publishEvent(new MetadataIndexStarted(fullMd, fields));
+        // get status
+        MetadataStatus stat = indexingContext.getWorkflowStatus(id$);
+        if (stat != null) {
+            String status = String.valueOf(stat.getStatusValue().getId());
+            fields.put(Geonet.IndexFieldNames.STATUS, status);
+            String statusChangeDate = stat.getChangeDate().getDateAndTime();
+            fields.put(Geonet.IndexFieldNames.STATUS_CHANGE_DATE, statusChangeDate);
+        }
+
+        // getValidationInfo
+        // -1 : not evaluated
+        // 0 : invalid
+        // 1 : valid
+        List<MetadataValidation> validationInfo = indexingContext.getValidations(id$);
+        if (validationInfo.isEmpty()) {
+            fields.put(Geonet.IndexFieldNames.VALID, "-1");
+        } else {
+            String isValid = "1";
+            boolean hasInspireValidation = false;
+            for (MetadataValidation vi : validationInfo) {
+                String type = vi.getId().getValidationType();
+                MetadataValidationStatus status = vi.getStatus();
+
+                // TODO: Check if ignore INSPIRE validation?
+                if (!type.equalsIgnoreCase("inspire")) {
+                    // If never validated and required then set status to never validated.
+                    if (status == MetadataValidationStatus.NEVER_CALCULATED && vi.isRequired()) {
+                        isValid = "-1";
+                    }
+                    if (status == MetadataValidationStatus.INVALID && vi.isRequired() && isValid != "-1") {
+                        isValid = "0";
+                    }
+                } else {
+                    hasInspireValidation = true;
+                    fields.put(Geonet.IndexFieldNames.INSPIRE_REPORT_URL, vi.getReportUrl());
+                    fields.put(Geonet.IndexFieldNames.INSPIRE_VALIDATION_DATE, vi.getValidationDate().getDateAndTime());
                 }
+                fields.put(Geonet.IndexFieldNames.VALID + "_" + type, status.getCode());
+            }
+            fields.put(Geonet.IndexFieldNames.VALID, isValid);
 
-                searchManager.index(schemaManager.getSchemaDir(schema), md, indexKey, fields, metadataType,
-                    forceRefreshReaders, indexingMode);
+            if (!hasInspireValidation) {
+                fields.put(Geonet.IndexFieldNames.VALID_INSPIRE, "-1");
             }
-        } catch (Exception x) {
-            Log.error(Geonet.DATA_MANAGER, "The metadata document index with id=" + metadataId
-                + " is corrupt/invalid - ignoring it. Error: " + x.getMessage(), x);
-            fullMd = null;
-        } finally {
-            timerContext.stop();
         }
-        if (fullMd != null) {
-            this.publisher.publishEvent(new MetadataIndexCompleted(fullMd));
-        }
-        Log.warning(Geonet.INDEX_ENGINE, String.format("Record #%s (mode: %s) indexed in %dms",
-            metadataId, indexingMode, System.currentTimeMillis() - start));
+
+        // index the amount of users that have saved this record in the "Preferred Records" list (id=0)
+        fields.put(Geonet.IndexFieldNames.USER_SAVED_COUNT, indexingContext.getSavedCount(uuid));
+
+        fields.putAll(addExtraFields(fullMd));
+
+        this.publisher.publishEvent(new MetadataIndexStarted(fullMd, fields));
+
+        return new IndexRecord(metadataId, indexKey, schemaManager.getSchemaDir(schema),
+            metadataType, md, fields, fullMd);
     }
 
 
@@ -567,7 +648,13 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
     }
 
     private Multimap<String, Object> buildFieldsForPrivileges(int recordId) {
-        List<OperationAllowed> operationsAllowed = operationAllowedRepository.findAllById_MetadataId(recordId);
+        return buildFieldsForPrivileges(
+            operationAllowedRepository.findAllById_MetadataId(recordId),
+            groupId -> groupRepository.findById(groupId).orElse(null));
+    }
+
+    private Multimap<String, Object> buildFieldsForPrivileges(List<OperationAllowed> operationsAllowed,
+                                                              Function<Integer, Group> groupProvider) {
         Multimap<String, Object> privilegesFields = ArrayListMultimap.create();
         boolean isPublishedToAll = false;
         boolean isPublishedToIntranet = false;
@@ -580,17 +667,17 @@ public class BaseMetadataIndexer implements IMetadataIndexer, ApplicationEventPu
 
             privilegesFields.put(Geonet.IndexFieldNames.OP_PREFIX + operationId, String.valueOf(groupId));
             if (operationId == ReservedOperation.view.getId()) {
-                Optional<Group> g = groupRepository.findById(groupId);
-                if (g.isPresent()) {
-                    privilegesFields.put(Geonet.IndexFieldNames.GROUP_PUBLISHED, g.get().getName());
-                    privilegesFields.put(Geonet.IndexFieldNames.GROUP_PUBLISHED + "Id", g.get().getId());
+                Group g = groupProvider.apply(groupId);
+                if (g != null) {
+                    privilegesFields.put(Geonet.IndexFieldNames.GROUP_PUBLISHED, g.getName());
+                    privilegesFields.put(Geonet.IndexFieldNames.GROUP_PUBLISHED + "Id", g.getId());
 
 
-                    if (g.get().getId() == ReservedGroup.all.getId()) {
+                    if (g.getId() == ReservedGroup.all.getId()) {
                         isPublishedToAll = true;
-                    } else if (g.get().getId() == ReservedGroup.intranet.getId()) {
+                    } else if (g.getId() == ReservedGroup.intranet.getId()) {
                         isPublishedToIntranet = true;
-                    } else if (g.get().getId() == ReservedGroup.guest.getId()) {
+                    } else if (g.getId() == ReservedGroup.guest.getId()) {
                         isPublishedToGuest = true;
                     }
                 }
@@ -56,6 +56,8 @@ import org.fao.geonet.kernel.schema.SchemaPlugin;
 import org.fao.geonet.kernel.search.EsSearchManager;
 import org.fao.geonet.kernel.search.IndexingMode;
 import org.fao.geonet.kernel.search.index.BatchOpsMetadataReindexer;
+import org.fao.geonet.kernel.search.index.IndexDelta;
+import org.fao.geonet.kernel.search.index.IndexingPipeline;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
 import org.fao.geonet.kernel.setting.SettingInfo;
@@ -72,6 +74,7 @@ import org.jdom.Namespace;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Lazy;
@@ -120,6 +123,14 @@ public class BaseMetadataManager implements IMetadataManager {
     private MetadataRepository metadataRepository;
     @Autowired
     private EsSearchManager searchManager;
+    @Autowired(required = false)
+    private IndexingPipeline indexingPipeline;
+
+    /**
+     * Ratio of records in error above which a rebuilt index does not replace the current one.
+     */
+    @Value("${es.index.rebuild.maxErrorRatio:0.01}")
+    private double rebuildMaxErrorRatio = 0.01;
 
     private EditLib editLib;
     @Autowired
@@ -147,6 +158,7 @@ public class BaseMetadataManager implements IMetadataManager {
     private UserSavedSelectionRepository userSavedSelectionRepository;
 
     private static final int METADATA_BATCH_PAGE_SIZE = 50000;
+    private static final int INDEX_SCAN_PAGE_SIZE = 5000;
 
     @Autowired
     private ApplicationContext _applicationContext;
@@ -185,88 +197,130 @@ public class BaseMetadataManager implements IMetadataManager {
     }
 
     /**
-     * Refresh index if needed. Can also be called after GeoNetwork startup in
-     * order to rebuild the lucene index
-     * t
+     * Refresh index if needed (delta reindex). Can also be called after GeoNetwork startup in
+     * order to rebuild the index.
+     * <p>
+     * The change dates of the records in the database are compared with the
+     * ones of the documents in the index. Records which are not indexed or
+     * changed since they were indexed are indexed, and documents without
+     * record in the database are removed from the index.
      *
      * @param force        Force reindexing all from scratch
      * @param asynchronous
+     * @return the number of records to index and documents removed.
      **/
-    public void synchronizeDbWithIndex(ServiceContext context, Boolean force, Boolean asynchronous) throws Exception {
-
-        // get lastchangedate of all metadata in index
-        Map<String, String> docs = searchManager.getDocsChangeDate();
+    public IndexDelta.Summary synchronizeDbWithIndex(ServiceContext context, Boolean force, Boolean asynchronous) throws Exception {
+        IndexDelta delta = new IndexDelta(force);
 
-        // set up results HashMap for post processing of records to be indexed
-        List<String> toIndex = new ArrayList<String>();
-
-        LOGGER_DATA_MANAGER.debug("INDEX CONTENT:");
-
-        Sort sortByMetadataChangeDate = SortUtils.createSort(Sort.Direction.DESC, Metadata_.dataInfo, MetadataDataInfo_.changeDate);
+        // get lastchangedate of all metadata in DBMS
+        Sort sortById = SortUtils.createSort(Sort.Direction.ASC, Metadata_.id);
         int currentPage = 0;
         Page<Pair<Integer, ISODate>> results = metadataUtils.findAllIdsAndChangeDates(
-            PageRequest.of(currentPage, METADATA_BATCH_PAGE_SIZE, sortByMetadataChangeDate));
-
-        // index all metadata in DBMS if needed
+            PageRequest.of(currentPage, METADATA_BATCH_PAGE_SIZE, sortById));
         while (results.getNumberOfElements() > 0) {
             for (Pair<Integer, ISODate> result : results) {
+                delta.addRecord(result.one(), result.two());
+            }
+            currentPage++;
+            results = metadataUtils.findAllIdsAndChangeDates(
+                PageRequest.of(currentPage, METADATA_BATCH_PAGE_SIZE, sortById));
+        }
 
-                // get metadata
-                String id = String.valueOf(result.one());
-
-                LOGGER_DATA_MANAGER.debug("- record ({})", id);
-
-                String idxLastChange = docs.get(id);
-
-                // if metadata is not indexed index it
-                if (idxLastChange == null) {
-                    LOGGER_DATA_MANAGER.debug("-  will be indexed");
-                    toIndex.add(id);
-
-                    // else, if indexed version is not the latest index it
-                } else {
-                    docs.remove(id);
-
-                    String lastChange = result.two().toString();
+        // and compare with the ones in the index
+        searchManager.scanDocuments("*",
+            Set.of(Geonet.IndexFieldNames.ID, Geonet.IndexFieldNames.DATABASE_CHANGE_DATE),
+            INDEX_SCAN_PAGE_SIZE,
+            (documentId, fields) -> {
+                JsonNode id = fields == null ? null : fields.get(Geonet.IndexFieldNames.ID);
+                JsonNode changeDate = fields == null ? null : fields.get(Geonet.IndexFieldNames.DATABASE_CHANGE_DATE);
+                delta.addIndexedDocument(documentId,
+                    id == null ? null : id.asText(),
+                    changeDate == null ? null : changeDate.asText());
+            });
 
-                    LOGGER_DATA_MANAGER.debug("- lastChange: {}", lastChange);
-                    LOGGER_DATA_MANAGER.debug("- idxLastChange: {}", idxLastChange);
+        IndexDelta.Summary summary = delta.getSummary();
+        LOGGER_DATA_MANAGER.info("Index synchronization: {}", summary);
 
-                    // date in index contains 't', date in DBMS contains 'T'
-                    if (force || !idxLastChange.equalsIgnoreCase(lastChange)) {
-                        LOGGER_DATA_MANAGER.debug("-  will be indexed");
-                        toIndex.add(id);
-                    }
-                }
-            }
-
-            currentPage++;
-            results = metadataRepository.findIdsAndChangeDates(
-                PageRequest.of(currentPage, METADATA_BATCH_PAGE_SIZE, sortByMetadataChangeDate));
+        // remove from index metadata not in DBMS
+        // and all documents of records indexed more than once (reindexed below)
+        if (!delta.getOrphans().isEmpty()) {
+            searchManager.deleteDocuments(delta.getOrphans());
+        }
+        if (!delta.getDuplicates().isEmpty()) {
+            searchManager.delete(new ArrayList<>(delta.getDuplicates()));
         }
 
         // if anything to index then schedule it to be done after servlet is
         // up so that any links to local fragments are resolvable
+        Set<Integer> toIndex = delta.getToIndex();
         if (toIndex.size() > 0) {
             if (asynchronous) {
-                Set<Integer> integerList = toIndex.stream().map(Integer::parseInt).collect(Collectors.toSet());
                 new BatchOpsMetadataReindexer(
                     context.getBean(DataManager.class),
-                    integerList).process(settingManager.getSiteId(), false);
+                    toIndex).process(settingManager.getSiteId(), false);
             } else {
-                metadataIndexer.batchIndexInThreadPool(context, toIndex);
+                metadataIndexer.batchIndexInThreadPool(context,
+                    toIndex.stream().map(String::valueOf).collect(Collectors.toList()));
             }
         }
+        return summary;
+    }
 
-        if (docs.size() > 0) { // anything left?
-            LOGGER_DATA_MANAGER.debug("INDEX HAS RECORDS THAT ARE NOT IN DB:");
+    /**
+     * Rebuild the records index without downtime.
+     * <p>
+     * All records are indexed in a new versioned index while searches
+     * still use the current one. Once built, the index alias is moved to the
+     * new index and the previous one removed (see {@link EsSearchManager#swapAlias(String)}).
+     * Records changed during the build were indexed in the previous index, so a
+     * delta reindex (see {@link #synchronizeDbWithIndex(ServiceContext, Boolean, Boolean)})
+     * is done after the swap. This also indexes again the records in error during the
+     * build, the new index being used if they are at most es.index.rebuild.maxErrorRatio of
+     * the records.
+     *
+     * @return the changes found by the delta reindex done after the swap.
+     */
+    public IndexDelta.Summary rebuildIndexWithAliasSwap(ServiceContext context) throws Exception {
+        if (indexingPipeline == null) {
+            throw new IllegalStateException("Rebuilding the index with an alias swap requires the indexing pipeline.");
         }
 
-        // remove from index metadata not in DBMS
-        for (String id : docs.keySet()) {
-            getSearchManager().delete(String.format("+id:%s", id));
-            LOGGER_DATA_MANAGER.debug("- removed record ({}) from index", id);
+        List<Integer> ids = new ArrayList<>();
+        Sort sortById = SortUtils.createSort(Sort.Direction.ASC, Metadata_.id);
+        int currentPage = 0;
+        Page<Pair<Integer, ISODate>> results = metadataUtils.findAllIdsAndChangeDates(
+            PageRequest.of(currentPage, METADATA_BATCH_PAGE_SIZE, sortById));
+        while (results.getNumberOfElements() > 0) {
+            results.forEach(result -> ids.add(result.one()));
+            currentPage++;
+            results = metadataUtils.findAllIdsAndChangeDates(
+                PageRequest.of(currentPage, METADATA_BATCH_PAGE_SIZE, sortById));
+        }
+
+        String versionedIndex = searchManager.createVersionedIndex();
+        try {
+            IndexingPipeline.Result result = indexingPipeline.index(
+                context, ids, null, metadataIndexer, metadataUtils, versionedIndex).get();
+            long maxErrors = (long) Math.floor(ids.size() * rebuildMaxErrorRatio);
+            if (!result.isProcessed() || result.getInError() > maxErrors) {
+                throw new IllegalStateException(String.format(
+                    "%d/%d records indexed with %d errors (%d allowed)",
+                    result.getIndexed(), ids.size(), result.getInError(), maxErrors));
+            }
+            if (result.getInError() > 0) {
+                LOGGER_DATA_MANAGER.warn("{}/{} records in error while rebuilding index in {}. "
+                        + "They will be indexed again once the index alias is moved.",
+                    result.getInError(), ids.size(), versionedIndex);
+            }
+        } catch (Exception e) {
+            LOGGER_DATA_MANAGER.error("Error while rebuilding index in {}. Current index is kept. Error is: {}",
+                versionedIndex, e.getMessage(), e);
+            searchManager.deleteVersionedIndex(versionedIndex);
+            throw e;
         }
+        searchManager.swapAlias(versionedIndex);
+
+        return synchronizeDbWithIndex(context, false, false);
     }
 
     protected EsSearchManager getSearchManager() {
@@ -35,12 +35,12 @@ import org.fao.geonet.constants.Edit;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.*;
 import org.fao.geonet.kernel.GeonetworkDataDirectory;
+import org.fao.geonet.kernel.PopularityCounter;
 import org.fao.geonet.kernel.SchemaManager;
 import org.fao.geonet.kernel.XmlSerializer;
 import org.fao.geonet.kernel.datamanager.*;
 import org.fao.geonet.kernel.schema.MetadataSchema;
 import org.fao.geonet.kernel.schema.SavedQuery;
-import org.fao.geonet.kernel.search.EsSearchManager;
 import org.fao.geonet.kernel.search.IndexingMode;
 import org.fao.geonet.kernel.search.index.IndexingList;
 import org.fao.geonet.kernel.setting.SettingManager;
@@ -102,7 +102,7 @@ public class BaseMetadataUtils implements IMetadataUtils {
     private IndexingList indexingList;
 
     @Autowired
-    private EsSearchManager searchManager;
+    private PopularityCounter popularityCounter;
 
     @Autowired
     private GeonetworkDataDirectory dataDirectory;
@@ -611,19 +611,7 @@ public class BaseMetadataUtils implements IMetadataUtils {
     public void increasePopularity(ServiceContext srvContext, String id) throws Exception {
         // READONLYMODE
         if (!srvContext.getBean(NodeInfo.class).isReadOnly()) {
-            int iId = Integer.parseInt(id);
-            metadataRepository.update(iId, entity -> entity.getDataInfo().setPopularity(
-                entity.getDataInfo().getPopularity() + 1
-            ));
-            final java.util.Optional<Metadata> metadata = metadataRepository.findById(iId);
-
-            if (metadata.isPresent()) {
-                searchManager.updateFieldAsynch(
-                    metadata.get().getUuid(),
-                    Geonet.IndexFieldNames.POPULARITY,
-                    metadata.get().getDataInfo().getPopularity());
-
-            }
+            popularityCounter.increment(Integer.parseInt(id));
         } else {
             if (Log.isDebugEnabled(Geonet.DATA_MANAGER)) {
                 Log.debug(Geonet.DATA_MANAGER,
@@ -1059,18 +1047,34 @@ public class BaseMetadataUtils implements IMetadataUtils {
         // Empty implementation for non-draft mode as not used
     }
 
+    /**
+     * The search and replace queries work on the data column, records which are not stored as is
+     * are replaced in Java.
+     */
     @Override
     public String selectOneWithSearchAndReplace(String uuid, String search, String replace) {
+        String stored = metadataRepository.findStoredDataByUuid(uuid);
+        if (MetadataDataCodec.of(stored) != MetadataDataCodec.NONE) {
+            return MetadataDataCodec.searchAndReplace(MetadataDataCodec.decode(stored), search, replace);
+        }
         return metadataRepository.selectOneWithSearchAndReplace(uuid, search, replace);
     }
 
     @Override
     public String selectOneWithRegexSearchAndReplaceWithFlags(String uuid, String search, String replace, String flags) {
+        String stored = metadataRepository.findStoredDataByUuid(uuid);
+        if (MetadataDataCodec.of(stored) != MetadataDataCodec.NONE) {
+            return MetadataDataCodec.regexSearchAndReplace(MetadataDataCodec.decode(stored), search, replace, flags);
+        }
         return metadataRepository.selectOneWithRegexSearchAndReplaceWithFlags(uuid, search, replace, flags);
     }
 
     @Override
     public String selectOneWithRegexSearchAndReplace(String uuid, String search, String replace) {
+        String stored = metadataRepository.findStoredDataByUuid(uuid);
+        if (MetadataDataCodec.of(stored) != MetadataDataCodec.NONE) {
+            return MetadataDataCodec.regexSearchAndReplace(MetadataDataCodec.decode(stored), search, replace, null);
+        }
         return metadataRepository.selectOneWithRegexSearchAndReplace(uuid, search, replace);
     }
 }
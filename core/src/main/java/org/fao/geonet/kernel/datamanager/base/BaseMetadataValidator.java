@@ -44,6 +44,7 @@ import org.fao.geonet.domain.SchematronRequirement;
 import org.fao.geonet.exceptions.JeevesException;
 import org.fao.geonet.exceptions.SchematronValidationErrorEx;
 import org.fao.geonet.exceptions.XSDValidationErrorEx;
+import org.fao.geonet.kernel.ApplicableSchematron;
 import org.fao.geonet.kernel.SchematronValidator;
 import org.fao.geonet.kernel.SchematronValidatorExternalMd;
 import org.fao.geonet.kernel.datamanager.IMetadataManager;
@@ -466,11 +467,67 @@ public class BaseMetadataValidator implements org.fao.geonet.kernel.datamanager.
         LOGGER.debug("Creating validation report for record #{} [schema: {}].", metadataId, schema);
 
         List<MetadataValidation> validations = new ArrayList<>();
+        Element errorReport;
+
+        if (forEditing) {
+            errorReport = new Element("report", Edit.NAMESPACE);
+            errorReport.setAttribute("id", metadataId, Edit.NAMESPACE);
+
+            // -- get an XSD validation report and add results to the metadata
+            // -- as geonet:xsderror attributes on the affected elements
+            addXSDReport(schema, intMetadataId, md, true, errorReport, validations);
+
+            // ...then schematrons
+            LOGGER.debug("  - Schematron in editing mode.");
+            // -- now expand the elements and add the geonet: elements
+            metadataManager.getEditLib().expandElements(schema, md);
+            version = metadataManager.getEditLib().getVersionForEditing(schema, metadataId, md);
+
+            Element error = applyCustomSchematronRules(schema, intMetadataId, md, lang, validations);
+            if (error != null) {
+                errorReport.addContent(error);
+            }
+        } else {
+            errorReport = buildValidationReport(schema, intMetadataId, md, lang, null, validations);
+        }
+
+        saveValidationStatus(intMetadataId, validations);
+
+        return Pair.read(errorReport, version);
+    }
+
+    @Override
+    public Element buildValidationReport(String schema, int metadataId, Element md, String lang,
+                                         List<ApplicableSchematron> schematrons, List<MetadataValidation> validations) {
         Element errorReport = new Element("report", Edit.NAMESPACE);
-        errorReport.setAttribute("id", metadataId, Edit.NAMESPACE);
+        errorReport.setAttribute("id", String.valueOf(metadataId), Edit.NAMESPACE);
+
+        addXSDReport(schema, metadataId, md, false, errorReport, validations);
+
+        // enumerate the metadata xml so that we can report any problems found by the schematron_xml script to the geonetwork editor
+        metadataManager.getEditLib().enumerateTree(md);
+        try {
+            Element error = schematrons == null
+                ? applyCustomSchematronRules(schema, metadataId, md, lang, validations)
+                : schematronValidator.applyCustomSchematronRules(schema, metadataId, md, lang, validations, schematrons);
+            if (error != null) {
+                errorReport.addContent(error);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Could not run schematron validation on metadata {}.", metadataId);
+            LOGGER.error("Could not run schematron validation on metadata, exception.", e);
+        } finally {
+            // remove editing info added by enumerateTree
+            metadataManager.getEditLib().removeEditingInfo(md);
+        }
+        return errorReport;
+    }
 
-        // -- get an XSD validation report and add results to the metadata
-        // -- as geonet:xsderror attributes on the affected elements
+    /**
+     * Adds the XSD validation report to the error report and the XSD validation status to the validations.
+     */
+    private void addXSDReport(String schema, int metadataId, Element md, boolean forEditing,
+                              Element errorReport, List<MetadataValidation> validations) {
         Element xsdErrors = getXSDXmlReport(schema, md, forEditing);
         int xsdErrorCount = 0;
         if (xsdErrors != null) {
@@ -478,48 +535,17 @@ public class BaseMetadataValidator implements org.fao.geonet.kernel.datamanager.
         }
         if (xsdErrorCount > 0) {
             errorReport.addContent(xsdErrors);
-            validations.add(new MetadataValidation().setId(new MetadataValidationId(intMetadataId, "xsd"))
+            validations.add(new MetadataValidation().setId(new MetadataValidationId(metadataId, "xsd"))
                 .setStatus(MetadataValidationStatus.INVALID).setRequired(true).setNumTests(xsdErrorCount)
                 .setNumFailures(xsdErrorCount));
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("  - XSD error: {}", Xml.getString(xsdErrors));
             }
         } else {
-            validations.add(new MetadataValidation().setId(new MetadataValidationId(intMetadataId, "xsd"))
+            validations.add(new MetadataValidation().setId(new MetadataValidationId(metadataId, "xsd"))
                 .setStatus(MetadataValidationStatus.VALID).setRequired(true).setNumTests(1).setNumFailures(0));
             LOGGER.trace("Valid.");
         }
-
-        // ...then schematrons
-        Element error = null;
-        if (forEditing) {
-            LOGGER.debug("  - Schematron in editing mode.");
-            // -- now expand the elements and add the geonet: elements
-            metadataManager.getEditLib().expandElements(schema, md);
-            version = metadataManager.getEditLib().getVersionForEditing(schema, metadataId, md);
-
-            error = applyCustomSchematronRules(schema, intMetadataId, md, lang, validations);
-        } else {
-            // enumerate the metadata xml so that we can report any problems found by the schematron_xml script to the geonetwork editor
-            metadataManager.getEditLib().enumerateTree(md);
-            try {
-                error = applyCustomSchematronRules(schema, intMetadataId, md, lang, validations);
-            } catch (Exception e) {
-                LOGGER.error("Could not run schematron validation on metadata {}.", metadataId);
-                LOGGER.error("Could not run schematron validation on metadata, exception.", e);
-            } finally {
-                // remove editing info added by enumerateTree
-                metadataManager.getEditLib().removeEditingInfo(md);
-            }
-        }
-
-        if (error != null) {
-            errorReport.addContent(error);
-        }
-
-        saveValidationStatus(intMetadataId, validations);
-
-        return Pair.read(errorReport, version);
     }
 
     /**
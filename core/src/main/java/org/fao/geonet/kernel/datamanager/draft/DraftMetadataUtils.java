@@ -719,28 +719,34 @@ public class DraftMetadataUtils extends BaseMetadataUtils {
 
     @Override
     public String selectOneWithSearchAndReplace(String uuid, String search, String replace) {
-        String updatedXml = metadataDraftRepository.selectOneWithSearchAndReplace(uuid, search, replace);
-        if (updatedXml == null) {
-            updatedXml = super.selectOneWithSearchAndReplace(uuid, search, replace);
+        String stored = metadataDraftRepository.findStoredDataByUuid(uuid);
+        if (stored == null) {
+            return super.selectOneWithSearchAndReplace(uuid, search, replace);
+        } else if (MetadataDataCodec.of(stored) != MetadataDataCodec.NONE) {
+            return MetadataDataCodec.searchAndReplace(MetadataDataCodec.decode(stored), search, replace);
         }
-        return updatedXml;
+        return metadataDraftRepository.selectOneWithSearchAndReplace(uuid, search, replace);
     }
 
     @Override
     public String selectOneWithRegexSearchAndReplaceWithFlags(String uuid, String search, String replace, String flags) {
-        String updatedXml = metadataDraftRepository.selectOneWithRegexSearchAndReplaceWithFlags(uuid, search, replace, flags);
-        if (updatedXml == null) {
-            updatedXml = super.selectOneWithRegexSearchAndReplaceWithFlags(uuid, search, replace, flags);
+        String stored = metadataDraftRepository.findStoredDataByUuid(uuid);
+        if (stored == null) {
+            return super.selectOneWithRegexSearchAndReplaceWithFlags(uuid, search, replace, flags);
+        } else if (MetadataDataCodec.of(stored) != MetadataDataCodec.NONE) {
+            return MetadataDataCodec.regexSearchAndReplace(MetadataDataCodec.decode(stored), search, replace, flags);
         }
-        return updatedXml;
+        return metadataDraftRepository.selectOneWithRegexSearchAndReplaceWithFlags(uuid, search, replace, flags);
     }
 
     @Override
     public String selectOneWithRegexSearchAndReplace(String uuid, String search, String replace) {
-        String updatedXml = metadataDraftRepository.selectOneWithRegexSearchAndReplace(uuid, search, replace);
-        if (updatedXml == null) {
-            updatedXml = super.selectOneWithRegexSearchAndReplace(uuid, search, replace);
+        String stored = metadataDraftRepository.findStoredDataByUuid(uuid);
+        if (stored == null) {
+            return super.selectOneWithRegexSearchAndReplace(uuid, search, replace);
+        } else if (MetadataDataCodec.of(stored) != MetadataDataCodec.NONE) {
+            return MetadataDataCodec.regexSearchAndReplace(MetadataDataCodec.decode(stored), search, replace, null);
         }
-        return updatedXml;
+        return metadataDraftRepository.selectOneWithRegexSearchAndReplace(uuid, search, replace);
     }
 }
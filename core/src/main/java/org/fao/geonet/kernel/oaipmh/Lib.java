@@ -24,15 +24,14 @@
 package org.fao.geonet.kernel.oaipmh;
 
 import co.elastic.clients.elasticsearch.core.SearchResponse;
-import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 import jeeves.constants.Jeeves;
 import jeeves.server.context.ServiceContext;
@@ -42,6 +41,7 @@ import static org.fao.geonet.kernel.search.EsSearchManager.FIELDLIST_CORE;
 import org.fao.geonet.utils.Log;
 import org.fao.geonet.utils.Xml;
 import org.fao.oaipmh.exceptions.OaiPmhException;
+import org.fao.oaipmh.util.SearchResult;
 import org.jdom.Element;
 
 public class Lib {
@@ -107,31 +107,38 @@ public class Lib {
         return Xml.transform(root, styleSheet);
     }
 
-    public static List<Integer> search(ServiceContext context, Element params) throws Exception {
+    /**
+     * Search a page of record identifiers sorted by identifier.
+     *
+     * @param prefix      the requested metadata prefix.
+     * @param searchAfter the identifier of the last record of the previous page or null for the first page.
+     * @param size        the maximum number of records of the page.
+     * @return the identifiers of the page, the identifier to search the next page from if the page is full
+     * and the number of records matching the search.
+     */
+    public static SearchResult search(ServiceContext context, Element params, String prefix,
+                                      String searchAfter, int size) throws Exception {
         EsSearchManager searchMan = context.getBean(EsSearchManager.class);
 
         JsonNode esJsonQuery = createSearchQuery(params);
 
-        // Get results count
-        SearchResponse queryResult = searchMan.query(
+        SearchResponse<ObjectNode> queryResult = searchMan.queryAfter(
             esJsonQuery,
             FIELDLIST_CORE,
-            0, 1);
-
-        long total = queryResult.hits().total().value();
+            Geonet.IndexFieldNames.ID,
+            searchAfter, size);
 
-        queryResult = searchMan.query(
-            esJsonQuery,
-            FIELDLIST_CORE,
-            0, (int) total);
-
-        List<Integer> result;
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        result = ((List<Hit>) queryResult.hits().hits())
+        List<String> ids = queryResult.hits().hits()
             .stream()
-            .map(h -> Integer.parseInt(objectMapper.convertValue(h.source(), Map.class)
-                .get(Geonet.IndexFieldNames.ID).toString())).collect(Collectors.toList());
+            .map(h -> h.source().get(Geonet.IndexFieldNames.ID).asText())
+            .collect(Collectors.toList());
+
+        SearchResult result = new SearchResult(prefix);
+        result.setIds(ids.stream().map(Integer::parseInt).collect(Collectors.toList()));
+        result.setCompleteListSize((int) queryResult.hits().total().value());
+        if (ids.size() == size) {
+            result.setSearchAfter(ids.get(ids.size() - 1));
+        }
         return result;
     }
 
@@ -46,11 +46,19 @@ import org.fao.oaipmh.responses.AbstractResponse;
 import org.fao.oaipmh.server.OaiPmhFactory;
 import org.fao.oaipmh.util.Lib;
 import org.jdom.Element;
+import org.springframework.beans.factory.annotation.Value;
 
 import javax.annotation.PreDestroy;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //=============================================================================
 
@@ -58,8 +66,30 @@ public class OaiPmhDispatcher {
 
     public static final int MODE_MODIFIDATE = 2;
     public static final int MODE_TEMPEXTEND = 1;
+
+    /**
+     * Number of threads converting the records of a ListRecords page, 0 for the number of
+     * processors.
+     */
+    @Value("${oaipmh.render.threads:0}")
+    private int renderThreads = 0;
+
+    /**
+     * Number of ListRecords pages built in advance at the same time, 0 to disable prefetching.
+     */
+    @Value("${oaipmh.prefetch.threads:1}")
+    private int prefetchThreads = 1;
+
     private ResumptionTokenCache cache;
 
+    private final SettingManager settingMan;
+
+    private final SchemaManager schemaMan;
+
+    private ExecutorService renderExecutor;
+
+    private ExecutorService prefetchExecutor;
+
     //---------------------------------------------------------------------------
     //---
     //--- Constructor
@@ -71,12 +101,29 @@ public class OaiPmhDispatcher {
 
     public OaiPmhDispatcher(SettingManager sm, SchemaManager scm) {
         cache = new ResumptionTokenCache(sm);
+        settingMan = sm;
+        schemaMan = scm;
+    }
+
+    /**
+     * Create the services, once the configuration is injected.
+     */
+    public void init() {
+        int renderPoolSize = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        renderExecutor = Executors.newFixedThreadPool(renderPoolSize, daemonThreads("oaipmh-render"));
+
+        if (prefetchThreads > 0) {
+            // at most one waiting page per thread, others are built when requested
+            prefetchExecutor = new ThreadPoolExecutor(prefetchThreads, prefetchThreads,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(prefetchThreads),
+                daemonThreads("oaipmh-prefetch"));
+        }
 
         register(new GetRecord());
         register(new Identify());
-        register(new ListIdentifiers(cache, sm, scm));
+        register(new ListIdentifiers(cache, settingMan, schemaMan));
         register(new ListMetadataFormats());
-        register(new ListRecords(cache, sm, scm));
+        register(new ListRecords(cache, settingMan, schemaMan, renderExecutor, prefetchExecutor));
         register(new ListSets());
     }
 
@@ -90,6 +137,15 @@ public class OaiPmhDispatcher {
         hmServices.put(s.getVerb(), s);
     }
 
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
     //---------------------------------------------------------------------------
     //---
     //--- Private method
@@ -161,6 +217,10 @@ public class OaiPmhDispatcher {
         Log.info(Log.ENGINE, "OaiPmhDispatcher#shutdown");
         cache.stopRunning();
         cache = null;
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+        renderExecutor.shutdownNow();
     }
 }
 
@@ -34,20 +34,33 @@ import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
 import org.fao.geonet.utils.Log;
 import org.fao.oaipmh.exceptions.BadArgumentException;
-import org.fao.oaipmh.exceptions.BadResumptionTokenException;
 import org.fao.oaipmh.exceptions.NoRecordsMatchException;
 import org.fao.oaipmh.requests.AbstractRequest;
 import org.fao.oaipmh.requests.TokenListRequest;
 import org.fao.oaipmh.responses.AbstractResponse;
 import org.fao.oaipmh.responses.GeonetworkResumptionToken;
 import org.fao.oaipmh.responses.ListResponse;
+import org.fao.oaipmh.responses.ResumptionToken;
 import org.fao.oaipmh.util.SearchResult;
 import org.jdom.Element;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import jeeves.server.context.ServiceContext;
+import jeeves.server.dispatchers.ServiceManager;
+import jeeves.transaction.TransactionManager;
 
 
 public abstract class AbstractTokenLister implements OaiPmhService {
@@ -57,10 +70,33 @@ public abstract class AbstractTokenLister implements OaiPmhService {
     private SettingManager settingMan;
     private SchemaManager schemaMan;
 
+    /**
+     * Builds the page following the one returned, null if pages are not prefetched.
+     */
+    private ExecutorService prefetchExecutor;
+
+    /**
+     * Pages being built or built in advance, by resumption token and user
+     * (see {@link #getPrefetchKey(String, ServiceContext)}).
+     */
+    private Cache<String, Future<ListResponse>> prefetchedPages;
+
     protected AbstractTokenLister(ResumptionTokenCache cache, SettingManager sm, SchemaManager scm) {
+        this(cache, sm, scm, null);
+    }
+
+    protected AbstractTokenLister(ResumptionTokenCache cache, SettingManager sm, SchemaManager scm,
+                                  ExecutorService prefetchExecutor) {
         this.cache = cache;
         this.settingMan = sm;
         this.schemaMan = scm;
+        this.prefetchExecutor = prefetchExecutor;
+        if (prefetchExecutor != null) {
+            this.prefetchedPages = CacheBuilder.newBuilder()
+                .maximumSize(cache.getCachemaxsize())
+                .expireAfterWrite(cache.getTimeout(), TimeUnit.SECONDS)
+                .build();
+        }
     }
 
     /**
@@ -114,93 +150,164 @@ public abstract class AbstractTokenLister implements OaiPmhService {
 
         TokenListRequest req = (TokenListRequest) request;
 
-        SearchResult result;
-
         String strToken = req.getResumptionToken();
-        GeonetworkResumptionToken token = null;
 
+        // The token holds the search criteria and the position in the result set
+        // so that each page is searched again without keeping results on the server
+        GeonetworkResumptionToken token = new GeonetworkResumptionToken(req);
 
-        int pos = 0;
+        ListResponse res = null;
 
         if (strToken == null) {
             if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
                 Log.debug(Geonet.OAI_HARVESTER, "OAI " + this.getClass().getSimpleName() + " : new request (no resumptionToken)");
-            Element params = new Element("request");
 
             ISODate from = req.getFrom();
             ISODate until = req.getUntil();
-            String set = req.getSet();
-            String prefix = req.getMetadataPrefix();
-
-            if (from != null) {
-                String sFrom = from.isDateOnly() ? from.getDateAsString() : from.toString();
-                params.addContent(new Element(getDateFrom()).setText(sFrom));
-            }
-
-            if (until != null) {
-                String sTo = until.isDateOnly() ? until.getDateAsString() : until.toString();
-                params.addContent(new Element(getDateUntil()).setText(sTo));
-            }
 
             if (from != null && until != null && from.timeDifferenceInSeconds(until) > 0)
                 throw new BadArgumentException("From is greater than until");
+        } else {
+            if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
+                Log.debug(Geonet.OAI_HARVESTER, "OAI " + this.getClass().getSimpleName() + " : using ResumptionToken :" + strToken);
 
-            if (set != null)
-                params.addContent(new Element("category").setText(set));
-
-            params.addContent(new Element("_schema").setText(prefix));
-
-            // now do the search
-            result = new SearchResult(prefix);
-            if (schemaMan.existsSchema(prefix)) {
-                result.setIds(Lib.search(context, params));
-            } else {
-                // collect up all the schemas that we can convert to create prefix,
-                // search ids and add to the result set
-                List<String> schemas = getSchemasThatCanConvertTo(prefix);
-                for (String schema : schemas) {
-                    params.removeChild("_schema");
-                    params.addContent(new Element("_schema").setText(schema));
-                    result.addIds(Lib.search(context, (Element) params.clone()));
-                }
-                if (schemas.isEmpty()) result.setIds(new ArrayList<>());
-            }
+            res = getPrefetchedPage(strToken, context);
+        }
 
-            if (result.getIds().isEmpty()) {
-                throw new NoRecordsMatchException("No results (or no conversion available for prefix '" + req.getMetadataPrefix() + "')");
-            }
+        if (res == null) {
+            res = listPage(req, token, context);
+        }
 
-            // we only need a new token if the result set is big enough
-            if (result.getIds().size() > getMaxRecords()) {
-                token = new GeonetworkResumptionToken(req, result);
-                cache.storeResumptionToken(token);
-            }
+        ResumptionToken nextToken = res.getResumptionToken();
+        if (nextToken != null && !nextToken.isTokenEmpty()) {
+            prefetchPage(req, nextToken.getToken(), context);
+        }
 
-        } else {
-            token = cache.getResumptionToken(GeonetworkResumptionToken.buildKey(req));
-            if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
-                Log.debug(Geonet.OAI_HARVESTER, "OAI ListRecords : using ResumptionToken :" + GeonetworkResumptionToken.buildKey(req));
+        return res;
+
+
+    }
+
+    /**
+     * Search and build the page of records a token refers to.
+     */
+    private ListResponse listPage(TokenListRequest req, GeonetworkResumptionToken token,
+                                  ServiceContext context) throws Exception {
+        String prefix = token.getPrefix();
+        boolean firstPage = token.getSearchAfter() == null;
+
+        // records are searched once whatever the schemas able to create the prefix,
+        // the ones which can not be disseminated are skipped when building the page
+        if (!schemaMan.existsSchema(prefix) && getSchemasThatCanConvertTo(prefix).isEmpty()) {
+            throw new NoRecordsMatchException("No results (or no conversion available for prefix '" + prefix + "')");
+        }
+
+        Element params = new Element("request");
+
+        if (token.getFrom() != null) {
+            params.addContent(new Element(getDateFrom()).setText(token.getFrom()));
+        }
+
+        if (token.getUntil() != null) {
+            params.addContent(new Element(getDateUntil()).setText(token.getUntil()));
+        }
 
-            if (token == null)
-                throw new BadResumptionTokenException("No session for token : " + GeonetworkResumptionToken.buildKey(req));
+        if (token.getSet() != null)
+            params.addContent(new Element("category").setText(token.getSet()));
 
-            result = token.getRes();
+        params.addContent(new Element("_schema").setText(prefix));
 
-            pos = GeonetworkResumptionToken.getPos(req);
+        SearchResult result = Lib.search(context, params, prefix, token.getSearchAfter(), getMaxRecords());
+
+        if (firstPage && result.getIds().isEmpty()) {
+            throw new NoRecordsMatchException("No results (or no conversion available for prefix '" + prefix + "')");
         }
 
-        ListResponse res = processRequest(req, pos, result, context);
-        pos = pos + res.getSize();
+        ListResponse res = processRequest(req, result, context);
+
+        // we only need a token if the result set is big enough
+        boolean singlePage = firstPage && result.getSearchAfter() == null;
 
-        if (token == null && res.getSize() == 0)
+        if (singlePage && res.getSize() == 0)
             throw new NoRecordsMatchException("No results");
 
-        if (token != null) token.setupToken(pos);
-        res.setResumptionToken(token);
+        if (!singlePage) {
+            token.setupToken(result, token.getPos() + result.getIds().size());
+            res.setResumptionToken(token);
+        }
 
         return res;
+    }
 
+    /**
+     * @return the key of a prefetched page, the records of a page depending on the user who
+     * requests it.
+     */
+    private static String getPrefetchKey(String strToken, ServiceContext context) {
+        String userId = context.getUserSession() == null ? null : context.getUserSession().getUserId();
+        return (userId == null ? "" : userId) + "|" + strToken;
+    }
 
+    /**
+     * @return the page built in advance for a token, null if the page was not prefetched for the
+     * user of the request or failed.
+     */
+    private ListResponse getPrefetchedPage(String strToken, ServiceContext context) {
+        if (prefetchedPages == null) {
+            return null;
+        }
+        Future<ListResponse> page = prefetchedPages.asMap().remove(getPrefetchKey(strToken, context));
+        if (page == null) {
+            return null;
+        }
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.warning(Geonet.OAI_HARVESTER, "OAI " + getVerb() + " : failed to prefetch page for token " + strToken
+                + ", building it again. Error is: " + e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Build in the background the page a token refers to, so that it is ready when requested.
+     * The page is built with its own service context as the one of the request is not usable
+     * once the request is completed, with the user session and authentication of the request so
+     * that the records the user can see are listed.
+     */
+    private void prefetchPage(TokenListRequest req, String strToken, ServiceContext context) {
+        if (prefetchExecutor == null) {
+            return;
+        }
+        ConfigurableApplicationContext appContext = context.getApplicationContext();
+        ServiceContext prefetchContext = context.getBean(ServiceManager.class)
+            .createServiceContext("oaipmh-prefetch", appContext);
+        prefetchContext.setLanguage(context.getLanguage());
+        prefetchContext.setUserSession(context.getUserSession());
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+        try {
+            prefetchedPages.put(getPrefetchKey(strToken, context), prefetchExecutor.submit(() -> {
+                prefetchContext.setAsThreadLocal();
+                SecurityContextHolder.setContext(securityContext);
+                try {
+                    return TransactionManager.runInTransaction("OAI-PMH prefetch " + getVerb(), appContext,
+                        TransactionManager.TransactionRequirement.CREATE_NEW,
+                        TransactionManager.CommitBehavior.ONLY_COMMIT_NEWLY_CREATED_TRANSACTIONS, true,
+                        transaction -> listPage(req, new GeonetworkResumptionToken(strToken), prefetchContext));
+                } finally {
+                    SecurityContextHolder.clearContext();
+                    ServiceContext.clearAsThreadLocal();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            // Too many pages are prefetched, this one will be built when requested
+            if (Log.isDebugEnabled(Geonet.OAI_HARVESTER))
+                Log.debug(Geonet.OAI_HARVESTER, "OAI " + getVerb() + " : prefetch queue full, skipping token " + strToken);
+        }
     }
 
     //---------------------------------------------------------------------------
@@ -221,6 +328,11 @@ public abstract class AbstractTokenLister implements OaiPmhService {
 
     public abstract String getVerb();
 
-    public abstract ListResponse processRequest(TokenListRequest req, int pos, SearchResult result, ServiceContext context) throws Exception;
+    /**
+     * Build the response for a page of records.
+     *
+     * @param result the identifiers of the records of the page.
+     */
+    public abstract ListResponse processRequest(TokenListRequest req, SearchResult result, ServiceContext context) throws Exception;
 
 }
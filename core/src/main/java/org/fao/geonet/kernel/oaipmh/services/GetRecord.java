@@ -61,18 +61,51 @@ public class GetRecord implements OaiPmhService {
     // function builds a OAI records from a metadata record, according to the arguments select and selectVal
     public static Record buildRecordStat(ServiceContext context, Specification<Metadata> spec/*String select, Object selectVal*/,
                                          String prefix) throws Exception {
-        GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
-        SchemaManager sm = gc.getBean(SchemaManager.class);
-
         AbstractMetadata metadata = context.getBean(IMetadataUtils.class).findOne(spec);
         if (metadata == null)
             throw new IdDoesNotExistException(spec.toString());
 
-        String uuid = metadata.getUuid();
-        final MetadataDataInfo dataInfo = metadata.getDataInfo();
+        Element md = buildMetadata(context, metadata.getUuid(), metadata.getDataInfo(), metadata.getData(), prefix);
+
+        //--- build and return record
+
+        Record r = new Record();
+
+        r.setHeader(buildHeader(metadata));
+        r.setMetadata(md);
+
+        return r;
+    }
+
+    /**
+     * Build the header of the OAI record of a metadata record. This reads the categories of the
+     * record so it has to be called where the record can be loaded lazily.
+     */
+    static Header buildHeader(AbstractMetadata metadata) {
+        Header h = new Header();
+
+        h.setIdentifier(metadata.getUuid());
+        h.setDateStamp(new ISODate(metadata.getDataInfo().getChangeDate().getDateAndTime()));
+
+        for (MetadataCategory metadataCategory : metadata.getCategories()) {
+            h.addSet(metadataCategory.getName());
+        }
+
+        return h;
+    }
+
+    /**
+     * Parse the XML of a metadata record and convert it to the requested prefix.
+     *
+     * @throws CannotDisseminateFormatException if the schema of the record can not be converted to the prefix.
+     */
+    static Element buildMetadata(ServiceContext context, String uuid, MetadataDataInfo dataInfo, String data,
+                                 String prefix) throws Exception {
+        GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
+        SchemaManager sm = gc.getBean(SchemaManager.class);
+
         String schema = dataInfo.getSchemaId();
         String changeDate = dataInfo.getChangeDate().getDateAndTime();
-        String data = metadata.getData();
 
         Element md = Xml.loadString(data, false);
 
@@ -102,25 +135,7 @@ public class GetRecord implements OaiPmhService {
             }
         }
 
-        //--- build header and set some infos
-
-        Header h = new Header();
-
-        h.setIdentifier(uuid);
-        h.setDateStamp(new ISODate(changeDate));
-
-        for (MetadataCategory metadataCategory : metadata.getCategories()) {
-            h.addSet(metadataCategory.getName());
-        }
-
-        //--- build and return record
-
-        Record r = new Record();
-
-        r.setHeader(h);
-        r.setMetadata(md);
-
-        return r;
+        return md;
     }
 
     //---------------------------------------------------------------------------
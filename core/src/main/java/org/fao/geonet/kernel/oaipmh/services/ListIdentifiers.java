@@ -59,24 +59,17 @@ public class ListIdentifiers extends AbstractTokenLister {
     //---
     //---------------------------------------------------------------------------
 
-    public ListResponse processRequest(TokenListRequest req, int pos, SearchResult result, ServiceContext context) throws Exception {
+    public ListResponse processRequest(TokenListRequest req, SearchResult result, ServiceContext context) throws Exception {
 
         //--- loop to retrieve metadata
         ListIdentifiersResponse res = new ListIdentifiersResponse();
 
-        int num = 0;
-
-        while (num < getMaxRecords() && pos < result.getIds().size()) {
-            int id = result.getIds().get(pos);
-
+        for (int id : result.getIds()) {
             Header h = buildHeader(context, id, result.prefix);
 
             if (h != null) {
                 res.addHeader(h);
-                num++;
             }
-
-            pos++;
         }
 
         return res;
@@ -24,20 +24,30 @@
 package org.fao.geonet.kernel.oaipmh.services;
 
 
-import static org.fao.geonet.repository.specification.MetadataSpecs.hasMetadataId;
+import static org.fao.geonet.repository.specification.MetadataSpecs.hasMetadataIdIn;
 
-import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.MetadataDataInfo;
 import org.fao.geonet.kernel.SchemaManager;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.oaipmh.ResumptionTokenCache;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.oaipmh.exceptions.CannotDisseminateFormatException;
-import org.fao.oaipmh.exceptions.IdDoesNotExistException;
 import org.fao.oaipmh.requests.ListRecordsRequest;
 import org.fao.oaipmh.requests.TokenListRequest;
+import org.fao.oaipmh.responses.Header;
 import org.fao.oaipmh.responses.ListRecordsResponse;
 import org.fao.oaipmh.responses.Record;
 import org.fao.oaipmh.util.SearchResult;
-import org.springframework.data.jpa.domain.Specification;
+import org.jdom.Element;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import jeeves.server.context.ServiceContext;
 
@@ -45,9 +55,15 @@ import jeeves.server.context.ServiceContext;
 
 public class ListRecords extends AbstractTokenLister {
 
+    /**
+     * Converts the records of a page to the requested prefix.
+     */
+    private final ExecutorService renderExecutor;
 
-    public ListRecords(ResumptionTokenCache cache, SettingManager sm, SchemaManager scm) {
-        super(cache, sm, scm);
+    public ListRecords(ResumptionTokenCache cache, SettingManager sm, SchemaManager scm,
+                       ExecutorService renderExecutor, ExecutorService prefetchExecutor) {
+        super(cache, sm, scm, prefetchExecutor);
+        this.renderExecutor = renderExecutor;
     }
 
     public String getVerb() {
@@ -61,24 +77,48 @@ public class ListRecords extends AbstractTokenLister {
     //---------------------------------------------------------------------------
 
 
-    public ListRecordsResponse processRequest(TokenListRequest req, int pos, SearchResult result, ServiceContext context) throws Exception {
+    public ListRecordsResponse processRequest(TokenListRequest req, SearchResult result, ServiceContext context) throws Exception {
 
-        int num = 0;
         ListRecordsResponse res = new ListRecordsResponse();
 
-        //--- loop to retrieve metadata
+        //--- load the records of the page at once
+
+        Map<Integer, AbstractMetadata> metadataById = new HashMap<>();
+        if (!result.getIds().isEmpty()) {
+            for (AbstractMetadata metadata : context.getBean(IMetadataUtils.class).findAll(hasMetadataIdIn(result.getIds()))) {
+                metadataById.put(metadata.getId(), metadata);
+            }
+        }
+
+        //--- convert them in parallel, keeping the order of the page
+
+        List<Future<Record>> records = new ArrayList<>(result.getIds().size());
+        try {
+            for (int id : result.getIds()) {
+                AbstractMetadata metadata = metadataById.get(id);
 
-        while (num < getMaxRecords() && pos < result.getIds().size()) {
-            int id = result.getIds().get(pos);
+                //--- maybe the metadata has been removed
 
-            Record r = buildRecord(context, id, result.prefix);
+                if (metadata != null) {
+                    Header header = GetRecord.buildHeader(metadata);
+                    String uuid = metadata.getUuid();
+                    MetadataDataInfo dataInfo = metadata.getDataInfo();
+                    String data = metadata.getData();
 
-            if (r != null) {
-                res.addRecord(r);
-                num++;
+                    records.add(renderExecutor.submit(
+                        () -> buildRecord(context, header, uuid, dataInfo, data, result.prefix)));
+                }
             }
 
-            pos++;
+            for (Future<Record> record : records) {
+                Record r = getRecord(record);
+
+                if (r != null) {
+                    res.addRecord(r);
+                }
+            }
+        } finally {
+            records.forEach(record -> record.cancel(true));
         }
 
         return res;
@@ -91,17 +131,34 @@ public class ListRecords extends AbstractTokenLister {
     //---
     //---------------------------------------------------------------------------
 
-    private Record buildRecord(ServiceContext context, int id, String prefix) throws Exception {
+    private Record buildRecord(ServiceContext context, Header header, String uuid, MetadataDataInfo dataInfo,
+                               String data, String prefix) throws Exception {
+        context.setAsThreadLocal();
 
-        // have to catch exceptions and return null because this function can
-        // be called several times for a list of MD records
-        // and we do not want to stop because of one error
+        // have to return null because this function is called for a list
+        // of MD records and we do not want to stop because of one error
         try {
-            return GetRecord.buildRecordStat(context, (Specification<Metadata>)hasMetadataId(id), prefix);
-        } catch (IdDoesNotExistException | CannotDisseminateFormatException e) {
+            Element md = GetRecord.buildMetadata(context, uuid, dataInfo, data, prefix);
+
+            Record r = new Record();
+            r.setHeader(header);
+            r.setMetadata(md);
+            return r;
+        } catch (CannotDisseminateFormatException e) {
             return null;
-        } catch (Exception e3) {
-            throw e3;
+        } finally {
+            ServiceContext.clearAsThreadLocal();
+        }
+    }
+
+    private Record getRecord(Future<Record> record) throws Exception {
+        try {
+            return record.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
         }
     }
 }
@@ -22,13 +22,48 @@
  */
 package org.fao.geonet.kernel.schema;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.apache.commons.lang.StringUtils;
 import org.jdom.Element;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public class MetadataSchemaOperationFilter {
+    /**
+     * JsonPath configuration working directly on Jackson trees, so that documents
+     * from the index are filtered without being serialized and parsed again.
+     */
+    private static final Configuration JACKSON_CONFIGURATION = Configuration.builder()
+        .jsonProvider(new JacksonJsonNodeJsonProvider())
+        .mappingProvider(new JacksonMappingProvider())
+        .build();
+
+    /**
+     * Root property of a jsonpath, eg. link in $['link'][?(@.protocol == 'x')].
+     */
+    private static final Pattern ROOT_PROPERTY = Pattern.compile("^\\$(?:\\['([^']+)'\\]|\\.([A-Za-z_][\\w-]*))");
+
+    /**
+     * Properties used in the predicates of a jsonpath, eg. nilReason in $.*[?(@.nilReason == 'withheld')].
+     */
+    private static final Pattern PREDICATE_PROPERTY = Pattern.compile("@(?:\\['([^']+)'\\]|\\.([A-Za-z_][\\w-]*))");
+
     private String xpath;
     private String jsonpath;
     private String ifNotOperation;
     private Element markedElement;
+    private volatile JsonPath compiledJsonpath;
+    private final String rootProperty;
+    private final List<String> predicateProperties;
 
 
     public MetadataSchemaOperationFilter(String xpath, String jsonpath, String ifNotOperation) {
@@ -41,6 +76,20 @@ public class MetadataSchemaOperationFilter {
         this.ifNotOperation = ifNotOperation;
         this.markedElement = markedElement;
 
+        String root = null;
+        List<String> properties = new ArrayList<>();
+        if (StringUtils.isNotBlank(jsonpath)) {
+            Matcher rootMatcher = ROOT_PROPERTY.matcher(jsonpath.trim());
+            if (rootMatcher.find()) {
+                root = rootMatcher.group(1) != null ? rootMatcher.group(1) : rootMatcher.group(2);
+            }
+            Matcher predicateMatcher = PREDICATE_PROPERTY.matcher(jsonpath);
+            while (predicateMatcher.find()) {
+                properties.add(predicateMatcher.group(1) != null ? predicateMatcher.group(1) : predicateMatcher.group(2));
+            }
+        }
+        this.rootProperty = root;
+        this.predicateProperties = Collections.unmodifiableList(properties);
     }
 
     public String getXpath() {
@@ -58,4 +107,50 @@ public class MetadataSchemaOperationFilter {
     public Element getMarkedElement() {
         return markedElement;
     }
+
+    /**
+     * Remove the elements matching the jsonpath from a document of the index.
+     * The jsonpath is compiled on first use and the document is modified in place.
+     *
+     * @param source the _source of a document of the index.
+     */
+    public void filter(ObjectNode source) {
+        if (StringUtils.isBlank(jsonpath) || !mayMatch(source)) {
+            return;
+        }
+        try {
+            JsonPath.using(JACKSON_CONFIGURATION).parse(source).delete(compiledJsonpath());
+        } catch (PathNotFoundException ex) {
+            // The node to remove is not returned in the response, ignore the error
+        }
+    }
+
+    /**
+     * Quick check avoiding to evaluate the jsonpath on documents which can't match:
+     * the root property of the jsonpath is missing or none of the properties used in
+     * its predicates is found in the document.
+     */
+    boolean mayMatch(ObjectNode source) {
+        if (rootProperty != null && !source.has(rootProperty)) {
+            return false;
+        }
+        if (predicateProperties.isEmpty()) {
+            return true;
+        }
+        for (String property : predicateProperties) {
+            if (source.findValue(property) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private JsonPath compiledJsonpath() {
+        JsonPath path = compiledJsonpath;
+        if (path == null) {
+            path = JsonPath.compile(jsonpath);
+            compiledJsonpath = path;
+        }
+        return path;
+    }
 }
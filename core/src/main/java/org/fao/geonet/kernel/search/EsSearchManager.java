@@ -24,13 +24,19 @@
 package org.fao.geonet.kernel.search;
 
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.Refresh;
 import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.Time;
 import co.elastic.clients.elasticsearch.core.*;
 import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
 import co.elastic.clients.elasticsearch.core.bulk.UpdateOperation;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import co.elastic.clients.elasticsearch.indices.ExistsRequest;
 import co.elastic.clients.elasticsearch.indices.*;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
 import co.elastic.clients.transport.endpoints.BooleanResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -52,6 +58,7 @@ import org.fao.geonet.kernel.GeonetworkDataDirectory;
 import org.fao.geonet.kernel.SelectionManager;
 import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.search.index.BulkIndexBuffer;
 import org.fao.geonet.kernel.search.index.OverviewIndexFieldUpdater;
 import org.fao.geonet.kernel.setting.SettingInfo;
 import org.fao.geonet.repository.SourceRepository;
@@ -64,13 +71,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.jpa.domain.Specification;
 
+import javax.annotation.PreDestroy;
+import javax.xml.transform.sax.SAXResult;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 import static org.fao.geonet.constants.Geonet.IndexFieldNames.IS_TEMPLATE;
 import static org.fao.geonet.kernel.search.IndexFields.*;
@@ -175,11 +188,37 @@ public class EsSearchManager implements ISearchManager {
     @Autowired
     private OverviewIndexFieldUpdater overviewFieldUpdater;
 
+    /**
+     * Maximum number of documents sent to the index in one bulk request.
+     */
+    @Value("${es.index.bulk.maxDocuments:200}")
     private int commitInterval = 200;
 
-    // public for test, to be private or protected
-    public Map<String, String> listOfDocumentsToIndex =
-        Collections.synchronizedMap(new HashMap<>());
+    /**
+     * Maximum size of a bulk request (number of JSON characters).
+     */
+    @Value("${es.index.bulk.maxBytes:10485760}")
+    private long commitMaxBytes = 10485760;
+
+    /**
+     * Maximum time in milliseconds a document waits before being sent to the index.
+     */
+    @Value("${es.index.bulk.flushInterval:1000}")
+    private long flushInterval = 1000;
+
+    /**
+     * Maximum number of bulk requests sent in parallel to the index.
+     */
+    @Value("${es.index.bulk.maxInFlight:2}")
+    private int maxBulkRequestsInFlight = 2;
+
+    private volatile BulkIndexBuffer bulkIndexBuffer;
+
+    /**
+     * Number of replicas and refresh interval of the versioned indices being built.
+     */
+    private final Map<String, BuildSettings> versionedIndexSettings = new ConcurrentHashMap<>();
+
     private Map<String, String> indexList;
 
     private Path getXSLTForIndexing(Path schemaDir, MetadataType metadataType) {
@@ -196,40 +235,36 @@ public class EsSearchManager implements ISearchManager {
         return xsltForIndexing;
     }
 
-    private void addMDFields(Element doc, Path schemaDir,
-                             Element metadata, MetadataType metadataType,
-                             IndexingMode indexingMode) {
+    private IndexDocument buildMDFields(Path schemaDir,
+                                        Element metadata, MetadataType metadataType,
+                                        IndexingMode indexingMode) {
         final Path styleSheet = getXSLTForIndexing(schemaDir, metadataType);
         try {
             Map<String, Object> indexParams = new HashMap<>();
             indexParams.put("fastIndexMode", indexingMode.equals(IndexingMode.core));
 
-            Element fields = Xml.transform(metadata, styleSheet, indexParams);
             /* Generates something like that:
             <doc>
               <field name="toto">Contenu</field>
-            </doc>*/
-            for (Element field : (List<Element>) fields.getChildren()) {
-                doc.addContent((Element) field.clone());
-            }
+            </doc>
+            which is collected as SAX events. */
+            IndexDocument doc = new IndexDocument();
+            Xml.transform(metadata, styleSheet, new SAXResult(doc.contentHandler()), indexParams);
+            return doc;
         } catch (Exception e) {
             LOGGER.error("Indexing stylesheet contains errors: {} \n  Marking the metadata as _indexingError=1 in index", e.getMessage());
-            doc.addContent(new Element(INDEXING_ERROR_FIELD).setText("true"));
-            doc.addContent(createIndexingErrorMsgElement("indexingErrorMsg-indexingStyleSheetError", "error",
-                Map.of("message", e.getMessage())));
+            return new IndexDocument()
+                .addField(INDEXING_ERROR_FIELD, "true")
+                .addField(INDEXING_ERROR_MSG, createIndexingErrorMsgObject(
+                    "indexingErrorMsg-indexingStyleSheetError", "error",
+                    Map.of("message", String.valueOf(e.getMessage()))).toString(), true);
         }
     }
 
-    private void addMoreFields(Element doc, Multimap<String, Object> fields) {
-        ArrayList<String> objectFields = Lists.newArrayList(INDEXING_ERROR_MSG);
-        fields.entries().forEach(e -> {
-            Element newElement = new Element(e.getKey())
-                .setText(String.valueOf(e.getValue()));
-            if (objectFields.contains(e.getKey())) {
-                newElement.setAttribute("type", "object");
-            }
-            doc.addContent(newElement);
-        });
+    private void addMoreFields(IndexDocument doc, Multimap<String, Object> fields) {
+        fields.entries().forEach(e ->
+            doc.addField(e.getKey(), String.valueOf(e.getValue()),
+                INDEXING_ERROR_MSG.equals(e.getKey())));
     }
 
     public Element makeField(String name, String value) {
@@ -263,8 +298,14 @@ public class EsSearchManager implements ISearchManager {
     private void createIndex(String indexId, String indexName, boolean dropIndexFirst) throws IOException {
         if (dropIndexFirst) {
             try {
+                // When the index name is an alias (see rebuildIndex with alias swap),
+                // remove the indices it points to.
+                final List<String> indicesToDelete = getAliasIndices(indexName);
+                if (indicesToDelete.isEmpty()) {
+                    indicesToDelete.add(indexName);
+                }
                 DeleteIndexRequest deleteIndexRequest = DeleteIndexRequest.of(
-                    b -> b.index(indexName)
+                    b -> b.index(indicesToDelete)
                 );
 
                 DeleteIndexResponse deleteIndexResponse = client.getClient().indices().delete(deleteIndexRequest);
@@ -292,30 +333,7 @@ public class EsSearchManager implements ISearchManager {
                 // Check version of the index - how ?
 
                 // Create it if not
-                Path indexConfiguration = dataDirectory.getIndexConfigDir().resolve(indexId + ".json");
-                if (Files.exists(indexConfiguration)) {
-
-                    try (InputStream is = Files.newInputStream(indexConfiguration, StandardOpenOption.READ)) {
-                        CreateIndexRequest createIndexRequest = CreateIndexRequest.of(
-                            b -> b.index(indexName).withJson(is)
-                        );
-
-                        CreateIndexResponse createIndexResponse = client.getClient().indices().create(createIndexRequest);
-
-                        if (createIndexResponse.acknowledged()) {
-                            LOGGER.debug("Index '{}' created", indexName);
-                        } else {
-                            final String message = String.format("Index '%s' was not created. Error is: %s", indexName, createIndexResponse);
-                            LOGGER.error(message);
-                            throw new IllegalStateException(message);
-                        }
-                    }
-                } else {
-                    throw new FileNotFoundException(String.format(
-                        "Index configuration file '%s' not found in data directory for building index with name '%s'. Create one or copy the default one.",
-                        indexConfiguration.toAbsolutePath(),
-                        indexName));
-                }
+                createIndexFromConfiguration(indexId, indexName);
             }
         } catch (ElasticsearchException ex) {
             LOGGER.error(ex.getMessage(), ex);
@@ -328,10 +346,169 @@ public class EsSearchManager implements ISearchManager {
         }
     }
 
+    private void createIndexFromConfiguration(String indexId, String indexName) throws IOException {
+        Path indexConfiguration = dataDirectory.getIndexConfigDir().resolve(indexId + ".json");
+        if (Files.exists(indexConfiguration)) {
+
+            try (InputStream is = Files.newInputStream(indexConfiguration, StandardOpenOption.READ)) {
+                CreateIndexRequest createIndexRequest = CreateIndexRequest.of(
+                    b -> b.index(indexName).withJson(is)
+                );
+
+                CreateIndexResponse createIndexResponse = client.getClient().indices().create(createIndexRequest);
+
+                if (createIndexResponse.acknowledged()) {
+                    LOGGER.debug("Index '{}' created", indexName);
+                } else {
+                    final String message = String.format("Index '%s' was not created. Error is: %s", indexName, createIndexResponse);
+                    LOGGER.error(message);
+                    throw new IllegalStateException(message);
+                }
+            }
+        } else {
+            throw new FileNotFoundException(String.format(
+                "Index configuration file '%s' not found in data directory for building index with name '%s'. Create one or copy the default one.",
+                indexConfiguration.toAbsolutePath(),
+                indexName));
+        }
+    }
+
+    /**
+     * @return the indices an alias points to or an empty list if the name is not an alias.
+     */
+    private List<String> getAliasIndices(String alias) throws IOException {
+        if (!client.getClient().indices().existsAlias(b -> b.name(alias)).value()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(client.getClient().indices()
+            .getAlias(b -> b.name(alias)).result().keySet());
+    }
+
+    /**
+     * Create a new versioned records index (eg. gn-records-20250101120000)
+     * to rebuild the index without modifying the one used for searching.
+     * <p>
+     * Replicas and refresh are disabled while the index is built. The
+     * configured values are restored by {@link #swapAlias(String)}.
+     *
+     * @return the name of the new index.
+     */
+    public String createVersionedIndex() throws IOException {
+        final String versionedIndex = String.format("%s-%s", defaultIndex,
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").format(LocalDateTime.now()));
+        createIndexFromConfiguration("records", versionedIndex);
+
+        IndexState indexState = client.getClient().indices()
+            .getSettings(b -> b.index(versionedIndex)).get(versionedIndex);
+        IndexSettings settings = indexState == null ? null : indexState.settings();
+        if (settings != null && settings.index() != null) {
+            settings = settings.index();
+        }
+        versionedIndexSettings.put(versionedIndex, new BuildSettings(
+            settings != null && settings.numberOfReplicas() != null ? settings.numberOfReplicas() : "1",
+            settings != null && settings.refreshInterval() != null && settings.refreshInterval().isTime() ?
+                settings.refreshInterval().time() : "1s"));
+
+        client.getClient().indices().putSettings(b -> b
+            .index(versionedIndex)
+            .settings(s -> s
+                .numberOfReplicas("0")
+                .refreshInterval(t -> t.time("-1"))));
+        LOGGER.info("Index '{}' created for rebuilding index '{}'.", versionedIndex, defaultIndex);
+        return versionedIndex;
+    }
+
+    /**
+     * Make the records index alias point to a versioned index once it is built.
+     * <p>
+     * Replicas and refresh interval are restored and the index is refreshed
+     * before the alias is moved in one atomic request. Searches are then
+     * sent to the new index and the previous indices are removed. If a
+     * concrete index has the name of the alias (ie. index created before
+     * using versioned indices), it is replaced by the alias.
+     */
+    public void swapAlias(String versionedIndex) throws IOException {
+        BuildSettings settings = versionedIndexSettings.remove(versionedIndex);
+        if (settings != null) {
+            client.getClient().indices().putSettings(b -> b
+                .index(versionedIndex)
+                .settings(s -> s
+                    .numberOfReplicas(settings.numberOfReplicas)
+                    .refreshInterval(t -> t.time(settings.refreshInterval))));
+        }
+        client.getClient().indices().refresh(b -> b.index(versionedIndex));
+
+        List<String> previousIndices = getAliasIndices(defaultIndex);
+        boolean isConcreteIndex = previousIndices.isEmpty()
+            && client.getClient().indices().exists(b -> b.index(defaultIndex)).value();
+
+        List<Action> actions = new ArrayList<>();
+        previousIndices.stream()
+            .filter(index -> !index.equals(versionedIndex))
+            .forEach(index -> actions.add(Action.of(a -> a.remove(r -> r.index(index).alias(defaultIndex)))));
+        if (isConcreteIndex) {
+            actions.add(Action.of(a -> a.removeIndex(r -> r.index(defaultIndex))));
+        }
+        actions.add(Action.of(a -> a.add(r -> r.index(versionedIndex).alias(defaultIndex))));
+        client.getClient().indices().updateAliases(b -> b.actions(actions));
+        LOGGER.info("Index alias '{}' now points to '{}'.", defaultIndex, versionedIndex);
+
+        previousIndices.remove(versionedIndex);
+        if (!previousIndices.isEmpty()) {
+            client.getClient().indices().delete(b -> b.index(previousIndices));
+            LOGGER.info("Previous indices {} removed.", previousIndices);
+        }
+
+        // Overviews are not added to the documents of the versioned index
+        // while it is built, update them now that the index is searchable.
+        try {
+            scanDocuments("_exists_:overview.url -_exists_:overview.data",
+                Set.of(Geonet.IndexFieldNames.UUID), 500,
+                (documentId, fields) -> {
+                    if (fields != null && fields.hasNonNull(Geonet.IndexFieldNames.UUID)) {
+                        overviewFieldUpdater.submit(fields.get(Geonet.IndexFieldNames.UUID).asText());
+                    }
+                });
+        } catch (Exception e) {
+            LOGGER.error("Error while collecting records to update overviews. Error is: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Remove a versioned index which failed to build.
+     */
+    public void deleteVersionedIndex(String versionedIndex) {
+        versionedIndexSettings.remove(versionedIndex);
+        try {
+            client.getClient().indices().delete(b -> b.index(versionedIndex));
+        } catch (Exception e) {
+            LOGGER.error("Failed to remove index '{}'. Error is: {}", versionedIndex, e.getMessage());
+        }
+    }
+
     @Override
     public void end() {
     }
 
+    private BulkIndexBuffer getBulkIndexBuffer() {
+        if (bulkIndexBuffer == null) {
+            synchronized (this) {
+                if (bulkIndexBuffer == null) {
+                    bulkIndexBuffer = new BulkIndexBuffer(this::bulkIndex,
+                        commitInterval, commitMaxBytes, flushInterval, maxBulkRequestsInFlight);
+                }
+            }
+        }
+        return bulkIndexBuffer;
+    }
+
+    @PreDestroy
+    public void closeBulkIndexBuffer() {
+        if (bulkIndexBuffer != null) {
+            bulkIndexBuffer.close();
+        }
+    }
+
     public UpdateResponse updateFields(String id, Map<String, Object> fields) throws IOException {
         fields.put(Geonet.IndexFieldNames.INDEXING_DATE, new Date());
 
@@ -351,36 +528,48 @@ public class EsSearchManager implements ISearchManager {
     }
 
     public BulkResponse updateFields(String id, Map<String, Object> fieldMap, Set<String> fieldsToRemove) throws IOException {
-        fieldMap.put(Geonet.IndexFieldNames.INDEXING_DATE, new Date());
+        return updateFields(Map.of(id, fieldMap), fieldsToRemove);
+    }
 
+    /**
+     * Update fields of a set of documents in one bulk request.
+     *
+     * @param fieldsById     the fields to set by document identifier.
+     * @param fieldsToRemove the fields to remove from each document before the update.
+     */
+    public BulkResponse updateFields(Map<String, Map<String, Object>> fieldsById, Set<String> fieldsToRemove) throws IOException {
         StringBuilder scriptSource = new StringBuilder();
         fieldsToRemove.forEach(f ->
             scriptSource.append(String.format("ctx._source.remove('%s');", f)));
 
-        UpdateOperation deleteFieldsOperation = UpdateOperation.of(
-            b -> b.id(id)
-                .index(defaultIndex)
-                .action(action -> action
-                    .scriptedUpsert(true)
-                    .upsert(Map.of())
-                    .script(script -> script
-                        .inline(inlineScript -> inlineScript
-                            .lang("painless")
-                            .source(scriptSource.toString())
+        List<BulkOperation> bulkOperationList = new ArrayList<>();
+        fieldsById.forEach((id, fieldMap) -> {
+            fieldMap.put(Geonet.IndexFieldNames.INDEXING_DATE, new Date());
+
+            UpdateOperation deleteFieldsOperation = UpdateOperation.of(
+                b -> b.id(id)
+                    .index(defaultIndex)
+                    .action(action -> action
+                        .scriptedUpsert(true)
+                        .upsert(Map.of())
+                        .script(script -> script
+                            .inline(inlineScript -> inlineScript
+                                .lang("painless")
+                                .source(scriptSource.toString())
+                            )
                         )
                     )
-                )
-        );
+            );
 
-        UpdateOperation addFieldRequestOperation = UpdateOperation.of(
-            b -> b.id(id)
-                .index(defaultIndex)
-                .action(action -> action.doc(fieldMap))
-        );
+            UpdateOperation addFieldRequestOperation = UpdateOperation.of(
+                b -> b.id(id)
+                    .index(defaultIndex)
+                    .action(action -> action.doc(fieldMap))
+            );
 
-        List<BulkOperation> bulkOperationList = new ArrayList<>();
-        bulkOperationList.add(BulkOperation.of(b -> b.update(deleteFieldsOperation)));
-        bulkOperationList.add(BulkOperation.of(b -> b.update(addFieldRequestOperation)));
+            bulkOperationList.add(BulkOperation.of(b -> b.update(deleteFieldsOperation)));
+            bulkOperationList.add(BulkOperation.of(b -> b.update(addFieldRequestOperation)));
+        });
 
         BulkRequest bulkRequest = BulkRequest.of(
             b -> b.index(defaultIndex)
@@ -422,6 +611,40 @@ public class EsSearchManager implements ISearchManager {
         updateFieldsAsynch(id, updates);
     }
 
+    /**
+     * Set a field of a set of documents in one asynchronous bulk request.
+     *
+     * @param field     the field to update.
+     * @param valueById the value of the field by document identifier.
+     */
+    public void updateFieldAsynch(String field, Map<String, Object> valueById) {
+        if (valueById.isEmpty()) {
+            return;
+        }
+        String propertyName = getPropertyName(field);
+        Date indexingDate = new Date();
+        List<BulkOperation> bulkOperationList = new ArrayList<>(valueById.size());
+        valueById.forEach((id, value) -> {
+            Map<String, Object> fields = new HashMap<>(4);
+            fields.put(propertyName, value);
+            fields.put(Geonet.IndexFieldNames.INDEXING_DATE, indexingDate);
+            bulkOperationList.add(BulkOperation.of(b -> b.update(UpdateOperation.of(
+                u -> u.id(id)
+                    .index(defaultIndex)
+                    .action(action -> action.doc(fields))))));
+        });
+
+        client.getAsynchClient()
+            .bulk(BulkRequest.of(b -> b.index(defaultIndex).operations(bulkOperationList)))
+            .whenComplete((response, exception) -> {
+                if (exception != null) {
+                    LOGGER.error("Failed to update field {} of {} documents", field, valueById.size(), exception);
+                } else if (response.errors()) {
+                    LOGGER.warn("Errors while updating field {} of {} documents", field, valueById.size());
+                }
+            });
+    }
+
     @Autowired
     SourceRepository sourceRepository;
 
@@ -432,28 +655,8 @@ public class EsSearchManager implements ISearchManager {
                       boolean forceRefreshReaders,
                       IndexingMode indexingMode) throws Exception {
 
-        Element docs = new Element("doc");
-        if (schemaDir != null) {
-            addMDFields(docs, schemaDir, metadata, metadataType, indexingMode);
-        }
-        addMoreFields(docs, dbFields);
-
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode doc = documentToJson(docs);
-
-        // ES does not allow a _source field
-        String catalog = doc.get("source").asText();
-        doc.remove("source");
-        if (StringUtils.isNotEmpty(catalog)) {
-            doc.put("sourceCatalogue", catalog);
-        }
-
-        JsonNode errors = doc.get(INDEXING_ERROR_MSG);
-        if (errors != null) {
-            doc.put(INDEXING_ERROR_FIELD, "true");
-        }
-
-        String jsonDocument = mapper.writeValueAsString(doc);
+        IndexDocument doc = buildIndexDocument(schemaDir, metadata, dbFields, metadataType, indexingMode);
+        String jsonDocument = toIndexJson(doc);
 
         if (forceRefreshReaders) {
             Map<String, String> document = new HashMap<>();
@@ -462,33 +665,80 @@ public class EsSearchManager implements ISearchManager {
             checkIndexResponse(bulkItemResponses, document);
             overviewFieldUpdater.process(id);
         } else {
-            listOfDocumentsToIndex.put(id, jsonDocument);
-            if (listOfDocumentsToIndex.size() == commitInterval) {
-                sendDocumentsToIndex();
-            }
+            getBulkIndexBuffer().add(id, jsonDocument);
         }
     }
 
+    /**
+     * Build the index document of a record by applying the schema index.xsl
+     * and adding the database fields.
+     *
+     * @param schemaDir the schema plugin directory or null to only index database fields.
+     */
+    public IndexDocument buildIndexDocument(Path schemaDir, Element metadata,
+                                            Multimap<String, Object> dbFields,
+                                            MetadataType metadataType,
+                                            IndexingMode indexingMode) {
+        IndexDocument doc = schemaDir != null ?
+            buildMDFields(schemaDir, metadata, metadataType, indexingMode) :
+            new IndexDocument();
+        addMoreFields(doc, dbFields);
+        return doc;
+    }
+
+    /**
+     * Convert an index document to the JSON sent to the index.
+     */
+    public String toIndexJson(IndexDocument doc) throws IOException {
+        return doc.toJson();
+    }
+
     private void sendDocumentsToIndex() {
-        Map<String, String> documents = new HashMap<>(listOfDocumentsToIndex);
-        listOfDocumentsToIndex.clear();
-        if (!documents.isEmpty()) {
-            try {
-                final BulkResponse bulkItemResponses = client
-                    .bulkRequest(defaultIndex, documents);
-                checkIndexResponse(bulkItemResponses, documents);
-            } catch (Exception e) {
-                LOGGER.error(
-                    "An error occurred while indexing {} documents in current indexing list. Error is {}.",
-                    listOfDocumentsToIndex.size(), e.getMessage());
-            } finally {
-                // TODO: Trigger this async ?
-                documents.keySet().forEach(uuid -> overviewFieldUpdater.process(uuid));
+        if (bulkIndexBuffer != null) {
+            bulkIndexBuffer.flush();
+        }
+    }
+
+    /**
+     * Send a set of JSON documents to the index in one bulk request.
+     *
+     * @param documents JSON documents by index document identifier.
+     * @return false if the bulk request failed.
+     */
+    public boolean bulkIndex(Map<String, String> documents) {
+        return bulkIndex(defaultIndex, documents);
+    }
+
+    /**
+     * Send a set of JSON documents to an index in one bulk request.
+     * Overviews are only updated for documents sent to the default index.
+     *
+     * @param index     the index name (eg. a versioned index being built).
+     * @param documents JSON documents by index document identifier.
+     * @return false if the bulk request failed.
+     */
+    public boolean bulkIndex(String index, Map<String, String> documents) {
+        if (documents.isEmpty()) {
+            return true;
+        }
+        try {
+            final BulkResponse bulkItemResponses = client
+                .bulkRequest(index, documents);
+            checkIndexResponse(index, bulkItemResponses, documents);
+            return true;
+        } catch (Exception e) {
+            LOGGER.error(
+                "An error occurred while indexing {} documents in current indexing list. Error is {}.",
+                documents.size(), e.getMessage());
+            return false;
+        } finally {
+            if (defaultIndex.equals(index)) {
+                documents.keySet().forEach(uuid -> overviewFieldUpdater.submit(uuid));
             }
         }
     }
 
-    private void checkIndexResponse(BulkResponse bulkItemResponses,
+    private void checkIndexResponse(String index, BulkResponse bulkItemResponses,
                                     Map<String, String> documents) throws IOException {
         if (bulkItemResponses.errors()) {
             Map<String, String> listErrorOfDocumentsToIndex = new HashMap<>(bulkItemResponses.items().size());
@@ -539,7 +789,7 @@ public class EsSearchManager implements ISearchManager {
             });
 
             if (!listErrorOfDocumentsToIndex.isEmpty()) {
-                BulkResponse response = client.bulkRequest(defaultIndex, listErrorOfDocumentsToIndex);
+                BulkResponse response = client.bulkRequest(index, listErrorOfDocumentsToIndex);
                 if (response.errors()) {
                     LOGGER.error("Failed to save error documents {}.",
                         Arrays.toString(errorDocumentIds.toArray()));
@@ -548,9 +798,9 @@ public class EsSearchManager implements ISearchManager {
         }
     }
 
-    private static ImmutableSet<String> booleanFields;
-    private static ImmutableSet<String> arrayFields;
-    private static ImmutableSet<String> booleanValues;
+    static ImmutableSet<String> booleanFields;
+    static ImmutableSet<String> arrayFields;
+    static ImmutableSet<String> booleanValues;
 
     static {
         arrayFields = ImmutableSet.<String>builder()
@@ -638,6 +888,9 @@ public class EsSearchManager implements ISearchManager {
 
     /**
      * Convert document to JSON.
+     * <p>
+     * Records are indexed using {@link IndexDocument} which produces the same JSON
+     * without building a JDOM document.
      */
     public ObjectNode documentToJson(Element xml) {
         ObjectNode doc = new ObjectMapper().createObjectNode();
@@ -804,6 +1057,18 @@ public class EsSearchManager implements ISearchManager {
         return client.query(defaultIndex, luceneQuery, filterQuery, includedFields, scriptedFields, from, size);
     }
 
+    /**
+     * Run a set of queries in one request to the index.
+     *
+     * @return the responses in the same order as the queries.
+     */
+    public List<ResponseBody<ObjectNode>> multiQuery(List<String> luceneQueries, String filterQuery,
+                                                     Set<String> includedFields,
+                                                     Map<String, String> scriptedFields,
+                                                     int from, int size) throws Exception {
+        return client.multiQuery(defaultIndex, luceneQueries, filterQuery, includedFields, scriptedFields, from, size);
+    }
+
     public SearchResponse query(JsonNode jsonRequest, Set<String> includedFields,
                                 int from, int size, List<SortOptions> sort) throws Exception {
         // TODO: Review postFilterBuilder
@@ -816,6 +1081,33 @@ public class EsSearchManager implements ISearchManager {
         return client.query(defaultIndex, jsonRequest, null, includedFields, from, size);
     }
 
+    /**
+     * Query a page of documents sorted by a field using search_after. Unlike from/size
+     * paging, the cost of a page does not depend on its position in the result set.
+     *
+     * @param jsonRequest    the query.
+     * @param includedFields the fields of the document to retrieve.
+     * @param sortField      a field with a unique value per document, sorted ascending.
+     * @param searchAfter    the sort value of the last document of the previous page or null for the first page.
+     * @param size           the number of documents of the page.
+     */
+    public SearchResponse<ObjectNode> queryAfter(JsonNode jsonRequest, Set<String> includedFields,
+                                                 String sortField, String searchAfter, int size) throws IOException {
+        final String wrappedQuery = Base64.getEncoder().encodeToString(String.valueOf(jsonRequest).getBytes());
+        return client.getClient().search(b -> {
+            b.index(defaultIndex)
+                .size(size)
+                .query(q -> q.wrapper(w -> w.query(wrappedQuery)))
+                .source(sc -> sc.filter(f -> f.includes(new ArrayList<>(includedFields))))
+                .sort(so -> so.field(f -> f.field(sortField).order(SortOrder.Asc)))
+                .trackTotalHits(th -> th.enabled(true));
+            if (searchAfter != null) {
+                b.searchAfter(Collections.singletonList(FieldValue.of(searchAfter)));
+            }
+            return b;
+        }, ObjectNode.class);
+    }
+
     public Map<String, String> getFieldsValues(String id, Set<String> fields, String language) throws Exception {
         return client.getFieldsValues(defaultIndex, id, fields, language);
     }
@@ -859,6 +1151,80 @@ public class EsSearchManager implements ISearchManager {
         return docs;
     }
 
+    /**
+     * Iterate over all documents of the index matching a query using a point in time
+     * and search_after so that the number of documents is not limited
+     * by the max_result_window setting.
+     *
+     * @param luceneQuery    the query.
+     * @param includedFields the fields of the document to retrieve.
+     * @param pageSize       the number of documents retrieved per request.
+     * @param consumer       called with the identifier and the fields of each document.
+     */
+    public void scanDocuments(String luceneQuery, Set<String> includedFields, int pageSize,
+                              BiConsumer<String, ObjectNode> consumer) throws IOException {
+        final Time keepAlive = Time.of(t -> t.time("2m"));
+        String pitId = client.getClient().openPointInTime(
+            b -> b.index(defaultIndex).keepAlive(keepAlive)).id();
+        try {
+            List<FieldValue> searchAfter = null;
+            while (true) {
+                final String currentPitId = pitId;
+                final List<FieldValue> currentSearchAfter = searchAfter;
+                SearchResponse<ObjectNode> response = client.getClient().search(b -> {
+                    b.pit(p -> p.id(currentPitId).keepAlive(keepAlive))
+                        .size(pageSize)
+                        .query(q -> q.queryString(qs -> qs.query(luceneQuery)))
+                        .source(sc -> sc.filter(f -> f.includes(new ArrayList<>(includedFields))))
+                        .sort(so -> so.field(f -> f.field("_shard_doc").order(SortOrder.Asc)))
+                        .trackTotalHits(th -> th.enabled(false));
+                    if (currentSearchAfter != null) {
+                        b.searchAfter(currentSearchAfter);
+                    }
+                    return b;
+                }, ObjectNode.class);
+
+                List<Hit<ObjectNode>> hits = response.hits().hits();
+                for (Hit<ObjectNode> hit : hits) {
+                    consumer.accept(hit.id(), hit.source());
+                }
+                if (hits.size() < pageSize) {
+                    break;
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+                if (response.pitId() != null) {
+                    pitId = response.pitId();
+                }
+            }
+        } finally {
+            final String currentPitId = pitId;
+            try {
+                client.getClient().closePointInTime(b -> b.id(currentPitId));
+            } catch (Exception e) {
+                LOGGER.warn("Failed to close point in time {}: {}", currentPitId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remove documents from the index by document identifier using bulk requests.
+     */
+    public void deleteDocuments(List<String> documentIds) throws IOException {
+        for (List<String> ids : Lists.partition(documentIds, commitInterval)) {
+            List<BulkOperation> operations = new ArrayList<>(ids.size());
+            ids.forEach(id -> operations.add(BulkOperation.of(
+                b -> b.delete(d -> d.index(defaultIndex).id(id)))));
+            BulkResponse response = client.getClient().bulk(
+                b -> b.index(defaultIndex).operations(operations).refresh(Refresh.True));
+            if (response.errors()) {
+                response.items().stream()
+                    .filter(item -> item.error() != null)
+                    .forEach(item -> LOGGER.error("Failed to remove document {} from index: {}",
+                        item.id(), item.error().reason()));
+            }
+        }
+    }
+
     @Override
     public ISODate getDocChangeDate(String mdId) throws Exception {
         int from = 0;
@@ -932,7 +1298,7 @@ public class EsSearchManager implements ISearchManager {
     }
 
     public boolean isIndexing() {
-        return listOfDocumentsToIndex.size() > 0;
+        return bulkIndexBuffer != null && bulkIndexBuffer.isIndexing();
     }
 
     public boolean isIndexWritable(String indexName) throws IOException, ElasticsearchException {
@@ -984,4 +1350,17 @@ public class EsSearchManager implements ISearchManager {
             .setText(createIndexingErrorMsgObject(string, type, values).toString())
             .setAttribute("type", "object");
     }
+
+    /**
+     * Settings of a versioned index to restore once it is built.
+     */
+    private static final class BuildSettings {
+        private final String numberOfReplicas;
+        private final String refreshInterval;
+
+        private BuildSettings(String numberOfReplicas, String refreshInterval) {
+            this.numberOfReplicas = numberOfReplicas;
+            this.refreshInterval = refreshInterval;
+        }
+    }
 }
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang.StringUtils;
+import org.fao.geonet.constants.Geonet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.fao.geonet.kernel.search.IndexFields.INDEXING_ERROR_FIELD;
+import static org.fao.geonet.kernel.search.IndexFields.INDEXING_ERROR_MSG;
+
+/**
+ * Fields of a document to index, written as JSON using a Jackson {@link JsonGenerator}.
+ * <p>
+ * Fields are collected from the output of the schema index.xsl as SAX events
+ * (see {@link #contentHandler()}) and from the database, without building a JDOM
+ * document. The JSON produced is the same as {@link EsSearchManager#documentToJson}:
+ * <ul>
+ * <li>fields with more than one value, array fields and fields
+ * starting with cl_ or ending with DateForResource are arrays,</li>
+ * <li>fields with a type="object" attribute contain JSON,</li>
+ * <li>boolean fields are normalized to true or false,</li>
+ * <li>field names starting with _ are written without it.</li>
+ * </ul>
+ */
+public class IndexDocument {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Geonet.INDEX_ENGINE);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String SOURCE = "source";
+    private static final String SOURCE_CATALOGUE = "sourceCatalogue";
+
+    private final Map<String, Field> fields = new LinkedHashMap<>();
+
+    /**
+     * Add a value to a field. If the field already exists, the type
+     * (object or not) of the first value is used.
+     */
+    public IndexDocument addField(String name, String value, boolean isObject) {
+        fields.computeIfAbsent(name, k -> new Field(isObject)).values.add(value);
+        return this;
+    }
+
+    public IndexDocument addField(String name, String value) {
+        return addField(name, value, false);
+    }
+
+    public boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    /**
+     * @return a SAX handler adding the child elements of the root element
+     * as fields (eg. the output of the schema index.xsl).
+     */
+    public ContentHandler contentHandler() {
+        return new FieldHandler();
+    }
+
+    /**
+     * @return the JSON document to send to the index.
+     */
+    public String toJson() throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(writer)) {
+            write(generator);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write the JSON document to send to the index.
+     * <p>
+     * ES does not allow a _source field so the source field is renamed
+     * to sourceCatalogue, and documents with indexing errors
+     * get an indexingError field.
+     */
+    public void write(JsonGenerator generator) throws IOException {
+        Map<String, Field> properties = new LinkedHashMap<>(fields.size());
+        fields.forEach((name, field) -> properties.put(getPropertyName(name), field));
+
+        Field source = properties.remove(SOURCE);
+        if (source != null && !source.object && !source.isArray(SOURCE)) {
+            String catalog = source.values.get(0);
+            if (StringUtils.isNotEmpty(catalog)) {
+                properties.put(SOURCE_CATALOGUE, new Field(false).with(catalog));
+            }
+        }
+        if (properties.containsKey(INDEXING_ERROR_MSG)) {
+            properties.put(INDEXING_ERROR_FIELD, new Field(false).with("true"));
+        }
+
+        generator.writeStartObject();
+        for (Map.Entry<String, Field> property : properties.entrySet()) {
+            property.getValue().write(generator, property.getKey());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Field starting with _ not supported in Kibana
+     * Those are usually GN internal fields
+     */
+    private static String getPropertyName(String name) {
+        return name.startsWith("_") ? name.substring(1) : name;
+    }
+
+    /**
+     * Same as JDOM getTextNormalize.
+     */
+    private static String normalize(String value) {
+        StringBuilder normalized = new StringBuilder(value.length());
+        boolean space = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static class Field {
+        private final boolean object;
+        private final List<String> values = new ArrayList<>(1);
+
+        Field(boolean object) {
+            this.object = object;
+        }
+
+        Field with(String value) {
+            values.add(value);
+            return this;
+        }
+
+        boolean isArray(String propertyName) {
+            return values.size() > 1
+                || EsSearchManager.arrayFields.contains(propertyName)
+                || propertyName.endsWith("DateForResource")
+                || propertyName.startsWith("cl_");
+        }
+
+        void write(JsonGenerator generator, String propertyName) throws IOException {
+            if (isArray(propertyName)) {
+                generator.writeArrayFieldStart(propertyName);
+                for (String value : values) {
+                    if (object) {
+                        JsonNode node = parse(value, propertyName);
+                        if (node != null) {
+                            generator.writeTree(node);
+                        }
+                    } else {
+                        generator.writeString(toText(value, propertyName));
+                    }
+                }
+                generator.writeEndArray();
+            } else if (object) {
+                JsonNode node = parse(values.get(0), propertyName);
+                if (node != null) {
+                    generator.writeFieldName(propertyName);
+                    generator.writeTree(node);
+                }
+            } else {
+                generator.writeStringField(propertyName, toText(values.get(0), propertyName));
+            }
+        }
+
+        private static String toText(String value, String propertyName) {
+            return EsSearchManager.booleanFields.contains(propertyName) ?
+                String.valueOf(EsSearchManager.booleanValues.contains(normalize(value))) :
+                value;
+        }
+
+        private static JsonNode parse(String value, String propertyName) {
+            String json = normalize(value);
+            try {
+                return MAPPER.readTree(json);
+            } catch (IOException e) {
+                LOGGER.error("Parsing invalid JSON node {} for property {}. Error is: {}",
+                    json, propertyName, e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Add each child element of the root element as a field. Only the text
+     * directly contained in the field element is used (like JDOM getText).
+     */
+    private class FieldHandler extends DefaultHandler {
+        private int depth = 0;
+        private String name;
+        private boolean isObject;
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            depth++;
+            if (depth == 2) {
+                name = StringUtils.isNotEmpty(localName) ? localName : StringUtils.substringAfterLast(":" + qName, ":");
+                isObject = "object".equals(attributes.getValue("type"));
+                text.setLength(0);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (depth == 2) {
+                addField(name, text.toString(), isObject);
+            }
+            depth--;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (depth == 2) {
+                text.append(ch, start, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search.index;
+
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.utils.Log;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Buffer of JSON documents waiting to be sent to the index.
+ * <p>
+ * Documents are added without locking. A bulk request is sent when the
+ * buffer contains {@code maxDocuments} documents or {@code maxBytes}
+ * characters of JSON, and a background thread sends the remaining documents
+ * every {@code flushInterval} milliseconds so that a document never waits
+ * longer than that before being indexed.
+ * <p>
+ * Documents are dispatched by identifier to {@code maxInFlight} senders, each
+ * sending its bulk requests one after the other. At most {@code maxInFlight}
+ * bulk requests are sent in parallel, and the versions of a document are always
+ * sent in the order they were added, never in two bulk requests at the same time.
+ * When the index does not keep up and a sender's buffer grows over 4 times its
+ * limits, the threads adding documents wait for its bulk requests (backpressure).
+ */
+public class BulkIndexBuffer {
+    private static final int BACKPRESSURE_FACTOR = 4;
+
+    private final Function<Map<String, String>, Boolean> sender;
+    private final int maxDocuments;
+    private final long maxBytes;
+    private final Lane[] lanes;
+    private final AtomicInteger pendingDocuments = new AtomicInteger();
+    private final AtomicInteger activeBatches = new AtomicInteger();
+    private final AtomicLong sentDocuments = new AtomicLong();
+    private final AtomicLong sentRequests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final ScheduledExecutorService flusher;
+    private final Object idle = new Object();
+
+    /**
+     * @param sender        sends a bulk request to the index and returns false on failure.
+     * @param maxDocuments  maximum number of documents in a bulk request.
+     * @param maxBytes      maximum size of a bulk request (number of JSON characters).
+     * @param flushInterval maximum time in milliseconds a document stays in the buffer.
+     * @param maxInFlight   maximum number of bulk requests sent in parallel.
+     */
+    public BulkIndexBuffer(Function<Map<String, String>, Boolean> sender,
+                           int maxDocuments, long maxBytes,
+                           long flushInterval, int maxInFlight) {
+        this.sender = sender;
+        this.maxDocuments = Math.max(1, maxDocuments);
+        this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        this.lanes = new Lane[Math.max(1, maxInFlight)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "index-bulk-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (flushInterval > 0) {
+            flusher.scheduleWithFixedDelay(this::flushPending,
+                flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Add a document to the buffer. If a document with the same identifier
+     * is already waiting in the same bulk request, the last one is indexed.
+     */
+    public void add(String id, String json) {
+        Lane lane = lanes[Math.floorMod(id.hashCode(), lanes.length)];
+        pendingDocuments.incrementAndGet();
+        int documents = lane.pendingDocuments.incrementAndGet();
+        long bytes = lane.pendingBytes.addAndGet(json.length());
+        lane.pending.offer(new AbstractMap.SimpleImmutableEntry<>(id, json));
+
+        if (documents >= maxDocuments * BACKPRESSURE_FACTOR
+            || bytes >= maxBytes * BACKPRESSURE_FACTOR) {
+            drain(lane, false, true);
+        } else if ((documents >= maxDocuments || bytes >= maxBytes)
+            && lane.flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    lane.flushScheduled.set(false);
+                    drain(lane, false, false);
+                });
+            } catch (RuntimeException e) {
+                lane.flushScheduled.set(false);
+                drain(lane, false, false);
+            }
+        }
+    }
+
+    /**
+     * Send all documents of the buffer and wait for all bulk requests to complete.
+     */
+    public void flush() {
+        for (Lane lane : lanes) {
+            drain(lane, true, false);
+        }
+        synchronized (idle) {
+            while (activeBatches.get() > 0) {
+                try {
+                    idle.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if documents are waiting in the buffer or being sent to the index.
+     */
+    public boolean isIndexing() {
+        return pendingDocuments.get() > 0 || activeBatches.get() > 0;
+    }
+
+    public int getPendingDocuments() {
+        return pendingDocuments.get();
+    }
+
+    public long getSentDocuments() {
+        return sentDocuments.get();
+    }
+
+    public long getSentRequests() {
+        return sentRequests.get();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.get();
+    }
+
+    /**
+     * Send the remaining documents and stop the background threads.
+     */
+    public void close() {
+        flusher.shutdown();
+        flush();
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        try {
+            for (Lane lane : lanes) {
+                lane.executor.awaitTermination(60, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushPending() {
+        try {
+            for (Lane lane : lanes) {
+                drain(lane, true, false);
+            }
+        } catch (RuntimeException e) {
+            Log.error(Geonet.INDEX_ENGINE, "Error while flushing bulk index buffer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Take documents from the buffer of a sender by batch and send them to the index.
+     * Batches are taken and queued under the sender lock so that they are sent in order.
+     *
+     * @param all  true to send all documents, false to only send full batches.
+     * @param wait true to wait until the batches are sent.
+     */
+    private void drain(Lane lane, boolean all, boolean wait) {
+        Future<?> lastBatch = null;
+        synchronized (lane) {
+            while (all ? lane.pendingDocuments.get() > 0
+                : lane.pendingDocuments.get() >= maxDocuments || lane.pendingBytes.get() >= maxBytes) {
+                Map<String, String> batch = new LinkedHashMap<>();
+                int documents = 0;
+                long bytes = 0;
+                Map.Entry<String, String> entry;
+                while (documents < maxDocuments && bytes < maxBytes
+                    && (entry = lane.pending.poll()) != null) {
+                    batch.put(entry.getKey(), entry.getValue());
+                    documents++;
+                    bytes += entry.getValue().length();
+                }
+                lane.pendingDocuments.addAndGet(-documents);
+                lane.pendingBytes.addAndGet(-bytes);
+                pendingDocuments.addAndGet(-documents);
+
+                if (batch.isEmpty()) {
+                    // Counted but not yet queued by the thread adding it
+                    break;
+                }
+                lastBatch = send(lane, batch);
+            }
+        }
+        if (wait && lastBatch != null) {
+            try {
+                lastBatch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Log.error(Geonet.INDEX_ENGINE, "Error while sending documents to the index: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private Future<?> send(Lane lane, Map<String, String> batch) {
+        activeBatches.incrementAndGet();
+        FutureTask<Void> task = new FutureTask<>(() -> sendNow(batch), null);
+        try {
+            lane.executor.execute(task);
+        } catch (RuntimeException e) {
+            // Executor stopped, send in the current thread
+            task.run();
+        }
+        return task;
+    }
+
+    private void sendNow(Map<String, String> batch) {
+        try {
+            sentRequests.incrementAndGet();
+            if (Boolean.TRUE.equals(sender.apply(batch))) {
+                sentDocuments.addAndGet(batch.size());
+            } else {
+                failedRequests.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            failedRequests.incrementAndGet();
+            Log.error(Geonet.INDEX_ENGINE, String.format(
+                "Error while sending %d documents to the index: %s", batch.size(), e.getMessage()), e);
+        } finally {
+            batchCompleted();
+        }
+    }
+
+    private void batchCompleted() {
+        if (activeBatches.decrementAndGet() == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Documents of the identifiers sent by one sender thread.
+     */
+    private static final class Lane {
+        private final Queue<Map.Entry<String, String>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingDocuments = new AtomicInteger();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "index-bulk");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
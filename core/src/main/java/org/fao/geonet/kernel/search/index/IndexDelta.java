@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search.index;
+
+import org.fao.geonet.domain.ISODate;
+
+import javax.annotation.Nullable;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Difference between the records in the database and the documents in the index,
+ * based on the record change date.
+ * <p>
+ * The identifiers and change dates of the database records are kept in sorted
+ * primitive arrays (about 12 bytes per record). The index documents are then
+ * streamed and each one is looked up in the database records:
+ * <ul>
+ * <li>a document without database record is an orphan to remove from the index,</li>
+ * <li>a document with a different change date than its record has to be reindexed,</li>
+ * <li>records without document are missing and have to be indexed,</li>
+ * <li>records with more than one document (eg. after a UUID change) have
+ * their documents removed and are reindexed.</li>
+ * </ul>
+ */
+public class IndexDelta {
+    private int[] ids;
+    private long[] changeDates;
+    private int size = 0;
+    private boolean sorted = true;
+    private BitSet indexed;
+
+    private final boolean force;
+    private int indexedDocuments = 0;
+    private final List<Integer> changed = new ArrayList<>();
+    private final Set<Integer> duplicates = new LinkedHashSet<>();
+    private final List<String> orphans = new ArrayList<>();
+
+    /**
+     * @param force true to reindex all records (orphans are still removed).
+     */
+    public IndexDelta(boolean force) {
+        this.force = force;
+        this.ids = new int[1024];
+        this.changeDates = new long[1024];
+    }
+
+    /**
+     * Register a database record. All records must be added before the first index document.
+     */
+    public void addRecord(int id, ISODate changeDate) {
+        if (indexed != null) {
+            throw new IllegalStateException("Records must be added before index documents.");
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            changeDates = Arrays.copyOf(changeDates, size * 2);
+        }
+        if (size > 0 && ids[size - 1] >= id) {
+            sorted = false;
+        }
+        ids[size] = id;
+        changeDates[size] = changeDate == null ? Long.MIN_VALUE : changeDate.getTimeInSeconds();
+        size++;
+    }
+
+    /**
+     * Compare an index document with its database record.
+     *
+     * @param documentId the index document identifier (ie. _id).
+     * @param id         the database identifier of the record or null if not set in the document.
+     * @param changeDate the change date of the record in the index.
+     */
+    public void addIndexedDocument(String documentId, @Nullable String id, @Nullable String changeDate) {
+        if (indexed == null) {
+            sortRecords();
+            indexed = new BitSet(size);
+        }
+        indexedDocuments++;
+
+        int position = -1;
+        if (id != null) {
+            try {
+                position = Arrays.binarySearch(ids, 0, size, Integer.parseInt(id));
+            } catch (NumberFormatException e) {
+                // Not a record document
+            }
+        }
+        if (position < 0) {
+            orphans.add(documentId);
+        } else if (indexed.get(position)) {
+            duplicates.add(ids[position]);
+        } else {
+            indexed.set(position);
+            if (force || parseChangeDate(changeDate) != changeDates[position]) {
+                changed.add(ids[position]);
+            }
+        }
+    }
+
+    /**
+     * @return identifiers of the index documents without record in the database.
+     */
+    public List<String> getOrphans() {
+        return orphans;
+    }
+
+    /**
+     * @return identifiers of the records having more than one index document.
+     */
+    public Set<Integer> getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return identifiers of the records which are not indexed.
+     */
+    public List<Integer> getMissing() {
+        if (indexed == null) {
+            sortRecords();
+            indexed = new BitSet(size);
+        }
+        List<Integer> missing = new ArrayList<>();
+        for (int i = indexed.nextClearBit(0); i < size; i = indexed.nextClearBit(i + 1)) {
+            missing.add(ids[i]);
+        }
+        return missing;
+    }
+
+    /**
+     * @return identifiers of the records to index (missing, changed or duplicated).
+     */
+    public Set<Integer> getToIndex() {
+        Set<Integer> toIndex = new LinkedHashSet<>(getMissing());
+        toIndex.addAll(changed);
+        toIndex.addAll(duplicates);
+        return toIndex;
+    }
+
+    public Summary getSummary() {
+        return new Summary(size, indexedDocuments, getMissing().size(),
+            changed.size(), duplicates.size(), orphans.size());
+    }
+
+    private long parseChangeDate(@Nullable String changeDate) {
+        if (changeDate == null) {
+            return Long.MIN_VALUE + 1;
+        }
+        try {
+            return OffsetDateTime.parse(changeDate, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            try {
+                return new ISODate(changeDate).getTimeInSeconds();
+            } catch (RuntimeException invalidDate) {
+                return Long.MIN_VALUE + 1;
+            }
+        }
+    }
+
+    private void sortRecords() {
+        if (sorted) {
+            return;
+        }
+        // Sort identifiers and change dates together using identifier and position packed in a long
+        long[] packed = new long[size];
+        for (int i = 0; i < size; i++) {
+            packed[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] sortedIds = new int[size];
+        long[] sortedChangeDates = new long[size];
+        for (int i = 0; i < size; i++) {
+            int position = (int) packed[i];
+            sortedIds[i] = ids[position];
+            sortedChangeDates[i] = changeDates[position];
+        }
+        ids = sortedIds;
+        changeDates = sortedChangeDates;
+        sorted = true;
+    }
+
+    /**
+     * Number of records and documents found by the comparison.
+     */
+    public static class Summary {
+        private final int records;
+        private final int indexedDocuments;
+        private final int missing;
+        private final int changed;
+        private final int duplicates;
+        private final int orphans;
+
+        public Summary(int records, int indexedDocuments, int missing,
+                       int changed, int duplicates, int orphans) {
+            this.records = records;
+            this.indexedDocuments = indexedDocuments;
+            this.missing = missing;
+            this.changed = changed;
+            this.duplicates = duplicates;
+            this.orphans = orphans;
+        }
+
+        public int getRecords() {
+            return records;
+        }
+
+        public int getIndexedDocuments() {
+            return indexedDocuments;
+        }
+
+        public int getMissing() {
+            return missing;
+        }
+
+        public int getChanged() {
+            return changed;
+        }
+
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        public int getOrphans() {
+            return orphans;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%d records, %d indexed documents, %d missing, %d changed, %d duplicates, %d orphans",
+                records, indexedDocuments, missing, changed, duplicates, orphans);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search.index;
+
+import com.google.common.collect.Multimap;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.MetadataType;
+import org.fao.geonet.kernel.search.IndexDocument;
+import org.jdom.Element;
+
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+
+/**
+ * A record on its way to the index. Holds the information collected from
+ * the database and the intermediate results of the indexing steps
+ * (index document produced by the schema index.xsl, then JSON document).
+ * <p>
+ * Each step releases the previous representation so that a record waiting
+ * in a queue of the {@link IndexingPipeline} only keeps what the next step needs.
+ */
+public class IndexRecord {
+    private final String metadataId;
+    private final String indexKey;
+    private final Path schemaDir;
+    private final MetadataType metadataType;
+    private final Multimap<String, Object> fields;
+    private final AbstractMetadata metadata;
+    private Element xml;
+    private IndexDocument document;
+    private String json;
+
+    public IndexRecord(String metadataId, String indexKey,
+                       @Nullable Path schemaDir, MetadataType metadataType,
+                       Element xml, Multimap<String, Object> fields,
+                       AbstractMetadata metadata) {
+        this.metadataId = metadataId;
+        this.indexKey = indexKey;
+        this.schemaDir = schemaDir;
+        this.metadataType = metadataType;
+        this.xml = xml;
+        this.fields = fields;
+        this.metadata = metadata;
+    }
+
+    public String getMetadataId() {
+        return metadataId;
+    }
+
+    /**
+     * @return the identifier of the document in the index (ie. uuid or uuid-draft).
+     */
+    public String getIndexKey() {
+        return indexKey;
+    }
+
+    /**
+     * @return the schema plugin directory or null if the schema is not registered
+     * in the catalogue. In such case only the database fields are indexed.
+     */
+    @Nullable
+    public Path getSchemaDir() {
+        return schemaDir;
+    }
+
+    public MetadataType getMetadataType() {
+        return metadataType;
+    }
+
+    public Multimap<String, Object> getFields() {
+        return fields;
+    }
+
+    public AbstractMetadata getMetadata() {
+        return metadata;
+    }
+
+    public Element getXml() {
+        return xml;
+    }
+
+    public IndexDocument getDocument() {
+        return document;
+    }
+
+    public void setDocument(IndexDocument document) {
+        this.document = document;
+        this.xml = null;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public void setJson(String json) {
+        this.json = json;
+        this.document = null;
+    }
+}
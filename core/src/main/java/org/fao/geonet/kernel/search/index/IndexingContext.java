@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search.index;
+
+import org.fao.geonet.domain.Group;
+import org.fao.geonet.domain.InspireAtomFeed;
+import org.fao.geonet.domain.MetadataStatus;
+import org.fao.geonet.domain.MetadataValidation;
+import org.fao.geonet.domain.OperationAllowed;
+import org.fao.geonet.domain.Source;
+import org.fao.geonet.domain.User;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Database information used to index a set of records (owners, groups,
+ * privileges, workflow status, validation status, ...).
+ * <p>
+ * Loaded for a batch of records using a few set based queries
+ * (see {@link org.fao.geonet.kernel.datamanager.IMetadataIndexer#loadIndexingContext})
+ * instead of querying the database for each record.
+ */
+public class IndexingContext {
+    private final Map<Integer, User> users = new HashMap<>();
+    private final Map<Integer, Group> groups = new HashMap<>();
+    private final Map<String, Source> sources = new HashMap<>();
+    private final Map<Integer, List<OperationAllowed>> operationsAllowed = new HashMap<>();
+    private final Map<Integer, MetadataStatus> workflowStatus = new HashMap<>();
+    private final Map<Integer, List<MetadataValidation>> validations = new HashMap<>();
+    private final Map<Integer, InspireAtomFeed> atomFeeds = new HashMap<>();
+    private final Map<String, Integer> savedCounts = new HashMap<>();
+    private final Map<String, Integer> feedbackCounts = new HashMap<>();
+
+    public void addUser(User user) {
+        users.put(user.getId(), user);
+    }
+
+    public void addGroup(Group group) {
+        groups.put(group.getId(), group);
+    }
+
+    public void addSource(Source source) {
+        sources.put(source.getUuid(), source);
+    }
+
+    public void addOperationAllowed(OperationAllowed operationAllowed) {
+        operationsAllowed
+            .computeIfAbsent(operationAllowed.getId().getMetadataId(), k -> new ArrayList<>())
+            .add(operationAllowed);
+    }
+
+    /**
+     * Register the workflow status of a record. Only the first one
+     * is kept so status must be added ordered by change date descending.
+     */
+    public void addWorkflowStatus(MetadataStatus status) {
+        workflowStatus.putIfAbsent(status.getMetadataId(), status);
+    }
+
+    public void addValidation(MetadataValidation validation) {
+        validations
+            .computeIfAbsent(validation.getId().getMetadataId(), k -> new ArrayList<>())
+            .add(validation);
+    }
+
+    public void addAtomFeed(InspireAtomFeed feed) {
+        atomFeeds.put(feed.getMetadataId(), feed);
+    }
+
+    public void setSavedCount(String uuid, int count) {
+        savedCounts.put(uuid, count);
+    }
+
+    public void setFeedbackCount(String uuid, int count) {
+        feedbackCounts.put(uuid, count);
+    }
+
+    @Nullable
+    public User getUser(@Nullable Integer userId) {
+        return userId == null ? null : users.get(userId);
+    }
+
+    @Nullable
+    public Group getGroup(@Nullable Integer groupId) {
+        return groupId == null ? null : groups.get(groupId);
+    }
+
+    @Nullable
+    public Source getSource(@Nullable String uuid) {
+        return uuid == null ? null : sources.get(uuid);
+    }
+
+    public List<OperationAllowed> getOperationsAllowed(int metadataId) {
+        return operationsAllowed.getOrDefault(metadataId, Collections.emptyList());
+    }
+
+    /**
+     * @return the last workflow status of the record or null if none.
+     */
+    @Nullable
+    public MetadataStatus getWorkflowStatus(int metadataId) {
+        return workflowStatus.get(metadataId);
+    }
+
+    public List<MetadataValidation> getValidations(int metadataId) {
+        return validations.getOrDefault(metadataId, Collections.emptyList());
+    }
+
+    @Nullable
+    public InspireAtomFeed getAtomFeed(int metadataId) {
+        return atomFeeds.get(metadataId);
+    }
+
+    public int getSavedCount(String uuid) {
+        return savedCounts.getOrDefault(uuid, 0);
+    }
+
+    public int getFeedbackCount(String uuid) {
+        return feedbackCounts.getOrDefault(uuid, 0);
+    }
+}
@@ -0,0 +1,587 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search.index;
+
+import com.google.common.collect.Lists;
+import jeeves.server.context.ServiceContext;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.User;
+import org.fao.geonet.events.md.MetadataIndexCompleted;
+import org.fao.geonet.kernel.datamanager.IMetadataIndexer;
+import org.fao.geonet.kernel.datamanager.IMetadataUtils;
+import org.fao.geonet.kernel.search.EsSearchManager;
+import org.fao.geonet.kernel.search.IndexingMode;
+import org.fao.geonet.kernel.setting.SettingManager;
+import org.fao.geonet.util.ThreadUtils;
+import org.fao.geonet.utils.Log;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jmx.export.MBeanExporter;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.transaction.TransactionStatus;
+
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-stage pipeline used to index a large set of records
+ * (eg. full reindex, harvesting, batch operations).
+ * <p>
+ * Records flow through 4 stages connected by bounded queues:
+ * <ol>
+ * <li>fetch: load records and their database fields (owner, privileges,
+ * status, ...) by batch of ids using set based queries,</li>
+ * <li>transform: apply the schema index.xsl,</li>
+ * <li>serialize: convert the index document to JSON,</li>
+ * <li>bulk: send JSON documents to the index using bulk requests.</li>
+ * </ol>
+ * Each stage has its own number of threads. When a stage is slower than
+ * the previous one, its input queue fills up and the previous stage waits
+ * (backpressure) so that memory usage does not depend on the number of
+ * records to index. The number of bulk requests sent in parallel to the index
+ * is limited by the number of bulk threads.
+ * <p>
+ * Statistics of the last run are exposed through JMX and logged at the end of each run.
+ * <p>
+ * See configuration in config.properties (es.index.pipeline.*).
+ */
+@ManagedResource()
+public class IndexingPipeline {
+    private static final IndexRecord END_OF_STREAM =
+        new IndexRecord(null, null, null, null, null, null, null);
+
+    /**
+     * Maximum time a bulk thread waits for more documents before
+     * sending an incomplete bulk request.
+     */
+    private static final long BULK_WAIT_MS = 500;
+
+    @Value("${es.index.pipeline.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${es.index.pipeline.fetchSize:100}")
+    private int fetchSize = 100;
+
+    @Value("${es.index.pipeline.fetchThreads:2}")
+    private int fetchThreads = 2;
+
+    /**
+     * Number of threads applying the index.xsl.
+     * 0 means the number of threads configured for indexing
+     * (see {@link ThreadUtils#getNumberOfThreads()}).
+     */
+    @Value("${es.index.pipeline.transformThreads:0}")
+    private int transformThreads = 0;
+
+    @Value("${es.index.pipeline.serializeThreads:1}")
+    private int serializeThreads = 1;
+
+    @Value("${es.index.pipeline.bulkThreads:2}")
+    private int bulkThreads = 2;
+
+    @Value("${es.index.pipeline.bulkSize:200}")
+    private int bulkSize = 200;
+
+    @Value("${es.index.pipeline.queueSize:500}")
+    private int queueSize = 500;
+
+    @Autowired
+    private EsSearchManager searchManager;
+
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    private final AtomicInteger runningCount = new AtomicInteger();
+    private final AtomicBoolean registered = new AtomicBoolean();
+    private volatile Run lastRun;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isRunning() {
+        return runningCount.get() > 0;
+    }
+
+    /**
+     * Index records in background. Wait until the transaction completes
+     * and the servlet is initialized before starting.
+     *
+     * @param metadataIds       the metadata ids to index (either integers or strings)
+     * @param transactionStatus if non-null, wait for the transaction to complete before indexing
+     * @param metadataIndexer   the indexer collecting database fields
+     * @param metadataUtils     the utility to load records by batch
+     * @return a future completed when all records are sent to the index
+     */
+    public CompletableFuture<Void> index(ServiceContext context,
+                                         List<?> metadataIds,
+                                         TransactionStatus transactionStatus,
+                                         IMetadataIndexer metadataIndexer,
+                                         IMetadataUtils metadataUtils) {
+        return index(context, metadataIds, transactionStatus, metadataIndexer, metadataUtils, null)
+            .thenApply(result -> null);
+    }
+
+    /**
+     * Index records in background into a specific index.
+     *
+     * @param index the index to send documents to (eg. a versioned index
+     *              being rebuilt) or null for the default index
+     * @return a future completed with the number of records indexed and in error
+     * @see #index(ServiceContext, List, TransactionStatus, IMetadataIndexer, IMetadataUtils)
+     */
+    public CompletableFuture<Result> index(ServiceContext context,
+                                         List<?> metadataIds,
+                                         TransactionStatus transactionStatus,
+                                         IMetadataIndexer metadataIndexer,
+                                         IMetadataUtils metadataUtils,
+                                         String index) {
+        registerProbe(context);
+
+        final Run run = new Run(context, metadataIds, metadataIndexer, metadataUtils,
+            index != null ? index : searchManager.getDefaultIndex());
+        lastRun = run;
+        runningCount.incrementAndGet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(run.getThreadCount());
+        return CompletableFuture
+            .supplyAsync(() -> run.awaitReady(transactionStatus), executor)
+            .thenCompose(ready -> ready ? run.start(executor) : CompletableFuture.<Void>completedFuture(null))
+            .thenApply(v -> run.getResult())
+            .whenComplete((v, e) -> {
+                run.restoreLogin();
+                executor.shutdown();
+                runningCount.decrementAndGet();
+                if (e != null) {
+                    Log.error(Geonet.INDEX_ENGINE, "Indexing pipeline error: " + e.getMessage(), e);
+                }
+                Log.warning(Geonet.INDEX_ENGINE, run.getSummary());
+            });
+    }
+
+    private void registerProbe(ServiceContext context) {
+        if (registered.compareAndSet(false, true)) {
+            try {
+                String catalogueId = context.getBean(SettingManager.class).getSiteId();
+                context.getBean(MBeanExporter.class).registerManagedResource(this,
+                    new ObjectName(String.format("geonetwork-%s:name=indexing-pipeline", catalogueId)));
+            } catch (Exception e) {
+                Log.warning(Geonet.INDEX_ENGINE, "Failed to register indexing pipeline JMX probe: " + e.getMessage());
+            }
+        }
+    }
+
+    @ManagedAttribute
+    public int getToProcessCount() {
+        Run run = lastRun;
+        return run == null ? 0 : run.toProcessCount;
+    }
+
+    @ManagedAttribute
+    public long getFetched() {
+        Run run = lastRun;
+        return run == null ? 0 : run.fetch.processed.get();
+    }
+
+    @ManagedAttribute
+    public long getTransformed() {
+        Run run = lastRun;
+        return run == null ? 0 : run.transform.processed.get();
+    }
+
+    @ManagedAttribute
+    public long getSerialized() {
+        Run run = lastRun;
+        return run == null ? 0 : run.serialize.processed.get();
+    }
+
+    @ManagedAttribute
+    public long getIndexed() {
+        Run run = lastRun;
+        return run == null ? 0 : run.bulk.processed.get();
+    }
+
+    @ManagedAttribute
+    public long getInError() {
+        Run run = lastRun;
+        return run == null ? 0 : run.fetch.errors.get() + run.transform.errors.get()
+            + run.serialize.errors.get() + run.bulk.errors.get();
+    }
+
+    @ManagedAttribute
+    public String getStatistics() {
+        Run run = lastRun;
+        return run == null ? "" : run.getSummary();
+    }
+
+    /**
+     * Number of records indexed and in error by a run of the pipeline.
+     */
+    public static final class Result {
+        private final int toProcessCount;
+        private final long indexed;
+        private final long inError;
+
+        private Result(int toProcessCount, long indexed, long inError) {
+            this.toProcessCount = toProcessCount;
+            this.indexed = indexed;
+            this.inError = inError;
+        }
+
+        public int getToProcessCount() {
+            return toProcessCount;
+        }
+
+        public long getIndexed() {
+            return indexed;
+        }
+
+        public long getInError() {
+            return inError;
+        }
+
+        /**
+         * @return true if all records were indexed without error.
+         */
+        public boolean isComplete() {
+            return inError == 0 && indexed == toProcessCount;
+        }
+
+        /**
+         * @return true if all records were either indexed or in error, ie. the run was not stopped.
+         */
+        public boolean isProcessed() {
+            return indexed + inError >= toProcessCount;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(IndexRecord record) throws Exception;
+    }
+
+    /**
+     * A stage of the pipeline with its threads, input queue and statistics.
+     */
+    private static final class Stage {
+        private final String name;
+        private final int threads;
+        private final BlockingQueue<IndexRecord> input;
+        private final AtomicInteger activeThreads;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        Stage(String name, int threads, BlockingQueue<IndexRecord> input) {
+            this.name = name;
+            this.threads = Math.max(1, threads);
+            this.input = input;
+            this.activeThreads = new AtomicInteger(this.threads);
+        }
+
+        /**
+         * Called by each thread of the stage when it ends. The last one
+         * notifies the next stage that no more records are coming.
+         */
+        void threadCompleted(Stage next) {
+            if (activeThreads.decrementAndGet() == 0 && next != null) {
+                try {
+                    for (int i = 0; i < next.threads; i++) {
+                        next.input.put(END_OF_STREAM);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d processed, %d errors, %dms busy, %d thread(s), %d queued",
+                name, processed.get(), errors.get(),
+                TimeUnit.NANOSECONDS.toMillis(busyNanos.get()),
+                threads, input == null ? 0 : input.size());
+        }
+    }
+
+    private final class Run {
+        private final ServiceContext context;
+        private final User user;
+        private final IMetadataIndexer metadataIndexer;
+        private final IMetadataUtils metadataUtils;
+        private final String index;
+        private final int toProcessCount;
+        private final Queue<List<Integer>> batches = new ConcurrentLinkedQueue<>();
+        private final Stage fetch;
+        private final Stage transform;
+        private final Stage serialize;
+        private final Stage bulk;
+        private long startTime;
+        private long endTime;
+
+        Run(ServiceContext context, List<?> metadataIds,
+            IMetadataIndexer metadataIndexer, IMetadataUtils metadataUtils, String index) {
+            this.context = context;
+            this.user = context.getUserSession() != null ? context.getUserSession().getPrincipal() : null;
+            this.metadataIndexer = metadataIndexer;
+            this.metadataUtils = metadataUtils;
+            this.index = index;
+            this.toProcessCount = metadataIds.size();
+
+            List<Integer> ids = new ArrayList<>(metadataIds.size());
+            metadataIds.forEach(id -> ids.add(Integer.parseInt(id.toString())));
+            batches.addAll(Lists.partition(ids, Math.max(1, fetchSize)));
+
+            fetch = new Stage("fetch", fetchThreads, null);
+            transform = new Stage("transform",
+                transformThreads > 0 ? transformThreads : ThreadUtils.getNumberOfThreads(),
+                new ArrayBlockingQueue<>(queueSize));
+            serialize = new Stage("serialize", serializeThreads,
+                new ArrayBlockingQueue<>(queueSize));
+            bulk = new Stage("bulk", bulkThreads,
+                new ArrayBlockingQueue<>(Math.max(queueSize, bulkSize * bulkThreads)));
+        }
+
+        /**
+         * Log the user in again if indexing logged the session out, like {@link org.fao.geonet.kernel.IndexMetadataTask}.
+         */
+        void restoreLogin() {
+            if (user != null && context.getUserSession() != null && context.getUserSession().getUserId() == null) {
+                context.getUserSession().loginAs(user);
+            }
+        }
+
+        int getThreadCount() {
+            return fetch.threads + transform.threads + serialize.threads + bulk.threads;
+        }
+
+        boolean awaitReady(TransactionStatus transactionStatus) {
+            context.setAsThreadLocal();
+            try {
+                while (transactionStatus != null && !transactionStatus.isCompleted()) {
+                    Thread.sleep(100);
+                }
+                // poll context to see whether servlet is up yet
+                while (!context.isServletInitialized()) {
+                    if (Log.isDebugEnabled(Geonet.DATA_MANAGER)) {
+                        Log.debug(Geonet.DATA_MANAGER, "Waiting for servlet to finish initializing..");
+                    }
+                    Thread.sleep(10000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return true;
+        }
+
+        CompletableFuture<Void> start(ExecutorService executor) {
+            Log.warning(Geonet.INDEX_ENGINE, String.format(
+                "Indexing %d records in %s with pipeline (fetch: %d, transform: %d, serialize: %d, bulk: %d threads).",
+                toProcessCount, index, fetch.threads, transform.threads, serialize.threads, bulk.threads));
+            startTime = System.currentTimeMillis();
+
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < fetch.threads; i++) {
+                workers.add(CompletableFuture.runAsync(this::fetchRecords, executor));
+            }
+            for (int i = 0; i < transform.threads; i++) {
+                workers.add(CompletableFuture.runAsync(() -> process(transform, serialize, record ->
+                    record.setDocument(searchManager.buildIndexDocument(
+                        record.getSchemaDir(), record.getXml(), record.getFields(),
+                        record.getMetadataType(), IndexingMode.full))), executor));
+            }
+            for (int i = 0; i < serialize.threads; i++) {
+                workers.add(CompletableFuture.runAsync(() -> process(serialize, bulk, record ->
+                    record.setJson(searchManager.toIndexJson(record.getDocument()))), executor));
+            }
+            for (int i = 0; i < bulk.threads; i++) {
+                workers.add(CompletableFuture.runAsync(this::sendRecords, executor));
+            }
+            return CompletableFuture
+                .allOf(workers.toArray(new CompletableFuture[0]))
+                .whenComplete((v, e) -> endTime = System.currentTimeMillis());
+        }
+
+        private void fetchRecords() {
+            context.setAsThreadLocal();
+            try {
+                List<Integer> batch;
+                while ((batch = batches.poll()) != null) {
+                    long start = System.nanoTime();
+                    List<IndexRecord> records = new ArrayList<>(batch.size());
+                    try {
+                        List<AbstractMetadata> batchRecords = new ArrayList<>(batch.size());
+                        metadataUtils.findAll(new HashSet<>(batch)).forEach(batchRecords::add);
+                        IndexingContext indexingContext = metadataIndexer.loadIndexingContext(batchRecords);
+                        for (AbstractMetadata metadata : batchRecords) {
+                            try {
+                                records.add(metadataIndexer.buildIndexRecord(
+                                    metadata, IndexingMode.full, indexingContext));
+                                fetch.processed.incrementAndGet();
+                            } catch (Throwable e) {
+                                fetch.errors.incrementAndGet();
+                                Log.error(Geonet.INDEX_ENGINE, "The metadata document index with id=" + metadata.getId()
+                                    + " is corrupt/invalid - ignoring it. Error: " + e.getMessage(), e);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        fetch.errors.addAndGet(batch.size());
+                        Log.error(Geonet.INDEX_ENGINE, String.format(
+                            "Error loading records %s. Error is: %s", batch, e.getMessage()), e);
+                    }
+                    fetch.busyNanos.addAndGet(System.nanoTime() - start);
+
+                    for (IndexRecord record : records) {
+                        transform.input.put(record);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                fetch.threadCompleted(transform);
+            }
+        }
+
+        private void process(Stage stage, Stage next, Step step) {
+            context.setAsThreadLocal();
+            try {
+                IndexRecord record;
+                while ((record = stage.input.take()) != END_OF_STREAM) {
+                    long start = System.nanoTime();
+                    boolean success = false;
+                    try {
+                        step.apply(record);
+                        stage.processed.incrementAndGet();
+                        success = true;
+                    } catch (Throwable e) {
+                        stage.errors.incrementAndGet();
+                        Log.error(Geonet.INDEX_ENGINE, String.format(
+                            "Error during %s of record %s. Error is: %s",
+                            stage.name, record.getMetadataId(), e.getMessage()), e);
+                    }
+                    stage.busyNanos.addAndGet(System.nanoTime() - start);
+                    if (success) {
+                        next.input.put(record);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stage.threadCompleted(next);
+            }
+        }
+
+        private void sendRecords() {
+            context.setAsThreadLocal();
+            List<IndexRecord> records = new ArrayList<>(bulkSize);
+            try {
+                while (true) {
+                    IndexRecord record = bulk.input.poll(BULK_WAIT_MS, TimeUnit.MILLISECONDS);
+                    if (record == END_OF_STREAM) {
+                        break;
+                    }
+                    if (record != null) {
+                        records.add(record);
+                    }
+                    if (records.size() >= bulkSize
+                        || (record == null && !records.isEmpty())) {
+                        send(records);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                send(records);
+                bulk.threadCompleted(null);
+            }
+        }
+
+        private void send(List<IndexRecord> records) {
+            if (records.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            Map<String, String> documents = new LinkedHashMap<>(records.size());
+            records.forEach(r -> documents.put(r.getIndexKey(), r.getJson()));
+            boolean indexed;
+            try {
+                indexed = searchManager.bulkIndex(index, documents);
+            } catch (Throwable e) {
+                indexed = false;
+                Log.error(Geonet.INDEX_ENGINE, String.format(
+                    "Error sending %d records to index %s. Error is: %s", records.size(), index, e.getMessage()), e);
+            }
+            if (indexed) {
+                bulk.processed.addAndGet(records.size());
+                for (IndexRecord record : records) {
+                    // a failing listener does not stop sending the other records
+                    try {
+                        publisher.publishEvent(new MetadataIndexCompleted(record.getMetadata()));
+                    } catch (Throwable e) {
+                        Log.error(Geonet.INDEX_ENGINE, String.format(
+                            "Error notifying that record %s is indexed. Error is: %s",
+                            record.getMetadataId(), e.getMessage()), e);
+                    }
+                }
+            } else {
+                bulk.errors.addAndGet(records.size());
+            }
+            bulk.busyNanos.addAndGet(System.nanoTime() - start);
+            records.clear();
+        }
+
+        Result getResult() {
+            return new Result(toProcessCount, bulk.processed.get(), fetch.errors.get() + transform.errors.get()
+                + serialize.errors.get() + bulk.errors.get());
+        }
+
+        String getSummary() {
+            long end = endTime > 0 ? endTime : System.currentTimeMillis();
+            return String.format(
+                "Indexing pipeline: %d/%d records indexed in %dms. %s | %s | %s | %s",
+                bulk.processed.get(), toProcessCount,
+                startTime > 0 ? end - startTime : 0,
+                fetch, transform, serialize, bulk);
+        }
+    }
+}
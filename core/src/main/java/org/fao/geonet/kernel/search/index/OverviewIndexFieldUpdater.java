@@ -27,26 +27,135 @@ import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang.StringUtils;
+import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.kernel.search.EsSearchManager;
 import org.fao.geonet.util.XslUtil;
+import org.fao.geonet.utils.Log;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 /**
  * An operation which takes some time to add information
- * into the index. This action can be run in the background (TODO)
+ * into the index (ie. overview images encoded as data URL).
+ * <p>
+ * Records to update are added to a bounded queue by {@link #submit(String)}
+ * and processed in the background by a pool of workers so that indexing
+ * does not wait for image retrieval. A record already waiting in the queue
+ * is not added twice. Workers take records by batch and update
+ * them using one search and one bulk request.
  */
 public class OverviewIndexFieldUpdater {
+    private static final Set<String> OVERVIEW_FIELDS = Collections.singleton("overview");
+
     private Integer imageSize = 140;
 
+    @Value("${es.index.overview.threads:2}")
+    private int threads = 2;
+
+    @Value("${es.index.overview.queueSize:10000}")
+    private int queueSize = 10000;
+
+    @Value("${es.index.overview.batchSize:50}")
+    private int batchSize = 50;
+
     @Autowired
     EsSearchManager searchManager;
 
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private volatile BlockingQueue<String> queue;
+    private volatile ExecutorService workers;
+
+    /**
+     * Update the overview of a record and its draft.
+     */
     public void process(String uuid) {
-        processOverview(uuid);
-        processOverview(uuid + "-draft");
+        processBatch(Collections.singletonList(uuid));
+    }
+
+    /**
+     * Add a record to the queue of records to update in the background.
+     * Waits if the queue is full.
+     */
+    public void submit(String uuid) {
+        if (!queued.add(uuid)) {
+            return;
+        }
+        try {
+            getQueue().put(uuid);
+        } catch (InterruptedException e) {
+            queued.remove(uuid);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of records waiting for an overview update.
+     */
+    public int getQueueSize() {
+        return queued.size();
+    }
+
+    private BlockingQueue<String> getQueue() {
+        if (queue == null) {
+            synchronized (this) {
+                if (queue == null) {
+                    workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+                        Thread thread = new Thread(r, "index-overview");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    BlockingQueue<String> newQueue = new LinkedBlockingQueue<>(Math.max(1, queueSize));
+                    for (int i = 0; i < Math.max(1, threads); i++) {
+                        workers.execute(() -> consume(newQueue));
+                    }
+                    queue = newQueue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    private void consume(BlockingQueue<String> queue) {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<String> batch = new ArrayList<>(batchSize);
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, Math.max(0, batchSize - 1));
+            // A record updated from now has to be processed again
+            batch.forEach(queued::remove);
+            try {
+                processBatch(batch);
+            } catch (RuntimeException e) {
+                Log.error(Geonet.INDEX_ENGINE, "Error while updating overviews: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workers != null) {
+            workers.shutdownNow();
+            try {
+                workers.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     private ArrayList<HashMap<String, String>> getHitOverviews(Map<String, Object> fields) {
@@ -57,15 +166,22 @@ public class OverviewIndexFieldUpdater {
         return new ArrayList<>();
     }
 
-    private void processOverview(String id) {
-        Set<String> source = new HashSet<>();
-        source.add("overview");
-        SearchResponse response = null;
+    private void processBatch(List<String> uuids) {
+        List<String> ids = new ArrayList<>(uuids.size() * 2);
+        uuids.forEach(uuid -> {
+            ids.add(uuid);
+            ids.add(uuid + "-draft");
+        });
+        String idQuery = ids.stream()
+            .map(id -> String.format("\"%s\"", id))
+            .collect(Collectors.joining(" OR "));
+
         try {
-            response = searchManager.query(String.format(
-                "+_id:\"%s\" _exists_:overview.url -_exists_:overview.data",
-                id), null, source, 0, 1);
+            SearchResponse response = searchManager.query(String.format(
+                "+_id:(%s) _exists_:overview.url -_exists_:overview.data",
+                idQuery), null, OVERVIEW_FIELDS, 0, ids.size());
             ObjectMapper objectMapper = new ObjectMapper();
+            Map<String, Map<String, Object>> updatesById = new LinkedHashMap<>();
             response.hits().hits().forEach(h -> {
                 Hit hit = (Hit) h;
                 AtomicBoolean updates = new AtomicBoolean(false);
@@ -81,15 +197,15 @@ public class OverviewIndexFieldUpdater {
                         }
                     });
                 if (updates.get()) {
-                    try {
-                        searchManager.updateFields(id, fields, source);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+                    updatesById.put(hit.id(), fields);
                 }
             });
+            if (!updatesById.isEmpty()) {
+                searchManager.updateFields(updatesById, OVERVIEW_FIELDS);
+            }
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error(Geonet.INDEX_ENGINE, String.format(
+                "Error while updating overviews of %d records: %s", uuids.size(), e.getMessage()), e);
         }
     }
 }
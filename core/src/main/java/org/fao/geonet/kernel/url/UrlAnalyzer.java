@@ -124,7 +124,13 @@ public class UrlAnalyzer {
     }
 
     public void testLink(Link link) {
-        LinkStatus linkStatus = urlChecker.getUrlStatus(link.getUrl());
+        addLinkStatus(link, urlChecker.getUrlStatus(link.getUrl()));
+    }
+
+    /**
+     * Save the status of a link checked by {@link UrlChecker#getUrlStatus(String)}.
+     */
+    public void addLinkStatus(Link link, LinkStatus linkStatus) {
         link.addStatus(linkStatus);
         linkRepository.save(link);
     }
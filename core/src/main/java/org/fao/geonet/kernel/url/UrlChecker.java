@@ -27,6 +27,7 @@ import org.apache.commons.httpclient.HttpStatus;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.LinkStatus;
@@ -36,16 +37,34 @@ import org.fao.geonet.lib.NetLib;
 import org.fao.geonet.utils.GeonetHttpRequestFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.client.ClientHttpResponse;
 import sun.net.ftp.FtpLoginException;
 import org.fao.geonet.utils.Log;
 
 import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Check the status of a link.
+ * <p/>
+ * The requests are sent through a connection pool dedicated to the link checker and limited to
+ * linkChecker.maxConnections connections.  At most linkChecker.maxConnectionsPerHost requests are
+ * sent to the same host at a time, and linkChecker.hostDelay ms are left between the start of two
+ * requests to the same host.  A host permit is held until the response is closed, as its
+ * connection is not returned to the pool before.  Callers checking many links can use
+ * {@link #getDelayBeforeCheck(String)} to check other links while a host is busy.
+ */
 public class UrlChecker {
 
     @Autowired
@@ -82,17 +101,60 @@ public class UrlChecker {
 
 
 
-    @Autowired
+    @Value("${linkChecker.maxConnections:20}")
+    private int maxConnections = 20;
+    @Value("${linkChecker.maxConnectionsPerHost:2}")
+    private int maxConnectionsPerHost = 2;
+    @Value("${linkChecker.hostDelay:100}")
+    private long hostDelay = 100;
+
+    private final ConcurrentMap<String, HostGate> hostGates = new ConcurrentHashMap<>();
+
     protected GeonetHttpRequestFactory requestFactory;
 
+    private synchronized GeonetHttpRequestFactory getRequestFactory() {
+        if (requestFactory == null) {
+            requestFactory = new GeonetHttpRequestFactory();
+            requestFactory.setNumberOfConcurrentRequests(Math.max(1, maxConnections));
+            requestFactory.setNumberOfConcurrentRequestsPerRoute(Math.max(1, maxConnectionsPerHost));
+        }
+        return requestFactory;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (requestFactory != null) {
+            requestFactory.shutdown();
+        }
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return Math.max(1, maxConnectionsPerHost);
+    }
+
+    /**
+     * @return the time in ms before a request can be sent to the host of a URL without waiting
+     * for the requests sent to this host, 0 if it can be sent now.
+     */
+    public long getDelayBeforeCheck(String url) {
+        HostGate gate;
+        try {
+            gate = hostGates.get(getHostKey(new URL(url).getHost()));
+        } catch (MalformedURLException e) {
+            return 0;
+        }
+        return gate == null ? 0 : gate.getDelayBeforeAcquire(hostDelay);
+    }
+
     public LinkStatus getUrlStatus(String url) {
         try {
             if (url.startsWith("ftp")) {
                 return getFTPStatus(url);
             }
             LinkStatus status =  getUrlStatus(url, 5);
-            Log.info(Geonet.GEONETWORK,"getUrlStatus for: "+url);
-            Log.info(Geonet.GEONETWORK,"result: "+status);
+            if (Log.isDebugEnabled(Geonet.GEONETWORK)) {
+                Log.debug(Geonet.GEONETWORK, "getUrlStatus for: " + url + " result: " + status);
+            }
             return status;
         } catch (Exception e) {
             return buildExceptionStatus(e);
@@ -121,14 +183,17 @@ public class UrlChecker {
             return buildTooManyRedirectStatus();
         }
 
+        String location;
         try (ClientHttpResponse response = getResponseFromServer(url)) {
             org.springframework.http.HttpStatus statusCode = buildStatusCode(response);
-            if (statusCode.is3xxRedirection() && response.getHeaders().containsKey("Location")) {
-                // follow the redirects
-                return getUrlStatus(response.getHeaders().getFirst("Location"), tryNumber - 1);
+            if (!statusCode.is3xxRedirection() || !response.getHeaders().containsKey("Location")) {
+                return buildStatus(response, !statusCode.is2xxSuccessful());
             }
-            return buildStatus(response, !statusCode.is2xxSuccessful());
+            location = response.getHeaders().getFirst("Location");
         }
+        // follow the redirects once the response is closed, not to wait for a connection
+        // and a host permit while holding another one
+        return getUrlStatus(location, tryNumber - 1);
     }
 
 
@@ -155,12 +220,34 @@ public class UrlChecker {
             }
         };
 
-        ClientHttpResponse response = requestFactory.execute(head, HTTP_CLIENT_CONFIGURATOR2);
+        ClientHttpResponse response = execute(head, HTTP_CLIENT_CONFIGURATOR2);
         if (!shouldTryGetInsteadOfHead(response.getRawStatusCode())) {
             return response;
         }
+        response.close();
         HttpGet get = new HttpGet(url);
-        return requestFactory.execute(get, HTTP_CLIENT_CONFIGURATOR2);
+        return execute(get, HTTP_CLIENT_CONFIGURATOR2);
+    }
+
+    private ClientHttpResponse execute(HttpUriRequest request, Function<HttpClientBuilder, Void> configurator) throws IOException {
+        HostGate gate = hostGates.computeIfAbsent(getHostKey(request.getURI().getHost()),
+            key -> new HostGate(getMaxConnectionsPerHost()));
+        try {
+            gate.acquire(hostDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to check " + request.getURI());
+        }
+        try {
+            return new GatedResponse(getRequestFactory().execute(request, configurator), gate);
+        } catch (IOException | RuntimeException e) {
+            gate.release();
+            throw e;
+        }
+    }
+
+    private static String getHostKey(String host) {
+        return host == null ? "" : host.toLowerCase();
     }
 
     private boolean shouldTryGetInsteadOfHead(int statusCode) {
@@ -202,4 +289,100 @@ public class UrlChecker {
             return org.springframework.http.HttpStatus.valueOf((response.getRawStatusCode() / 100) * 100);
         }
     }
+
+    /**
+     * Limit the number of concurrent requests to a host and the rate at which they start.
+     */
+    private static final class HostGate {
+        private final Semaphore permits;
+        private long nextRequestTime = 0;
+
+        private HostGate(int maxConcurrentRequests) {
+            this.permits = new Semaphore(maxConcurrentRequests, true);
+        }
+
+        private void acquire(long delay) throws InterruptedException {
+            permits.acquire();
+            if (delay <= 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                long start = Math.max(now, nextRequestTime);
+                nextRequestTime = start + delay;
+                wait = start - now;
+            }
+            if (wait > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        }
+
+        private synchronized long getDelayBeforeAcquire(long delay) {
+            if (permits.availablePermits() == 0) {
+                // the time of the next release is unknown
+                return Math.max(1, delay);
+            }
+            return delay <= 0 ? 0 : Math.max(0, nextRequestTime - System.currentTimeMillis());
+        }
+
+        private void release() {
+            permits.release();
+        }
+    }
+
+    /**
+     * Response releasing the permit of its host when closed.
+     */
+    private static final class GatedResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private HostGate gate;
+
+        private GatedResponse(ClientHttpResponse response, HostGate gate) {
+            this.response = response;
+            this.gate = gate;
+        }
+
+        @Override
+        public org.springframework.http.HttpStatus getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (gate != null) {
+                    gate.release();
+                    gate = null;
+                }
+            }
+        }
+    }
 }
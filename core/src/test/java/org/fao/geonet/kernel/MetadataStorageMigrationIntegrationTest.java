@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+package org.fao.geonet.kernel;
+
+import jeeves.transaction.TransactionManager;
+import org.fao.geonet.AbstractCoreIntegrationTest;
+import org.fao.geonet.domain.ISODate;
+import org.fao.geonet.domain.Metadata;
+import org.fao.geonet.domain.MetadataDataCodec;
+import org.fao.geonet.repository.MetadataRepository;
+import org.fao.geonet.repository.MetadataRepositoryTest;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static jeeves.transaction.TransactionManager.CommitBehavior.ALWAYS_COMMIT;
+import static jeeves.transaction.TransactionManager.TransactionRequirement.CREATE_NEW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataStorageMigrationIntegrationTest extends AbstractCoreIntegrationTest {
+    private static final long TIMEOUT = 30000;
+
+    @Autowired
+    private MetadataStorageMigration metadataStorageMigration;
+    @Autowired
+    private MetadataRepository metadataRepository;
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    private final AtomicInteger inc = new AtomicInteger();
+
+    @Test
+    public void testConvertStoredData() throws Exception {
+        TransactionlessTesting.get().run(() -> {
+            // committed, the migration reads the records in its own transactions
+            final List<Metadata> saved = TransactionManager.runInTransaction("save", applicationContext,
+                CREATE_NEW, ALWAYS_COMMIT, false, transaction -> {
+                    List<Metadata> metadata = new ArrayList<>();
+                    for (int i = 0; i < 3; i++) {
+                        Metadata md = MetadataRepositoryTest.newMetadata(inc);
+                        md.getDataInfo().setChangeDate(new ISODate("2020-01-01T00:00:00"));
+                        metadata.add(metadataRepository.save(md));
+                    }
+                    return metadata;
+                });
+            try {
+                migrateAndCheck(saved, MetadataDataCodec.DEFLATE);
+                migrateAndCheck(saved, MetadataDataCodec.NONE);
+            } finally {
+                TransactionManager.runInTransaction("delete", applicationContext,
+                    CREATE_NEW, ALWAYS_COMMIT, false, transaction -> {
+                        metadataRepository.deleteAll(saved);
+                        return null;
+                    });
+            }
+        });
+    }
+
+    private void migrateAndCheck(List<Metadata> saved, MetadataDataCodec codec) throws Exception {
+        assertTrue(metadataStorageMigration.start(codec));
+        Map<String, Object> report = waitForEnd();
+
+        assertEquals("finished", report.get("status"));
+        assertEquals(0L, report.get("errors"));
+        assertTrue((Long) report.get("processed") >= saved.size());
+        for (Metadata metadata : saved) {
+            String stored = metadataRepository.findStoredDataByUuid(metadata.getUuid());
+            assertEquals(codec, MetadataDataCodec.of(stored));
+            assertEquals(metadata.getData(), MetadataDataCodec.decode(stored));
+            assertEquals("The change date is not modified", metadata.getDataInfo().getChangeDate(),
+                metadataRepository.findOneByUuid(metadata.getUuid()).getDataInfo().getChangeDate());
+        }
+
+        assertTrue("Running again does not convert anything", metadataStorageMigration.start(codec));
+        report = waitForEnd();
+        assertEquals(0L, report.get("converted"));
+    }
+
+    private Map<String, Object> waitForEnd() throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        Map<String, Object> report = metadataStorageMigration.getReport();
+        while ("running".equals(report.get("status"))) {
+            assertFalse("Migration not finished after " + TIMEOUT + "ms", System.currentTimeMillis() > end);
+            Thread.sleep(50);
+            report = metadataStorageMigration.getReport();
+        }
+        return report;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+package org.fao.geonet.kernel;
+
+import org.fao.geonet.domain.Profile;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link UserPrivilegesSnapshot}.
+ */
+public class UserPrivilegesSnapshotTest {
+
+    private static UserPrivilegesSnapshot snapshot(Integer userId, Profile profile,
+                                                   boolean reviewerInGroupOwnerOnly, Integer... reviewerGroups) {
+        return new UserPrivilegesSnapshot(userId, profile, false,
+            Arrays.asList(1, 2, 3), Arrays.asList(2), Arrays.asList(reviewerGroups), reviewerInGroupOwnerOnly);
+    }
+
+    @Test
+    public void testAnonymousHasNoPrivileges() {
+        UserPrivilegesSnapshot privileges = new UserPrivilegesSnapshot(null, null, false,
+            Collections.singletonList(1), Collections.emptyList(), Collections.emptyList(), true);
+        assertFalse(privileges.isAuthenticated());
+        assertFalse(privileges.isOwner(null, 2));
+        assertFalse(privileges.canReview(2, Collections.singletonList(2)));
+    }
+
+    @Test
+    public void testAdministratorIsOwnerAndReviewer() {
+        UserPrivilegesSnapshot privileges = snapshot(1, Profile.Administrator, true);
+        assertTrue(privileges.isOwner(42, 5));
+        assertTrue(privileges.canReview(5, Collections.emptyList()));
+    }
+
+    @Test
+    public void testIsOwner() {
+        UserPrivilegesSnapshot editor = snapshot(10, Profile.Editor, true, 2);
+        assertTrue(editor.isOwner(10, 5));
+        assertFalse("Only reviewers and user admins own the records of their groups",
+            editor.isOwner(11, 2));
+
+        UserPrivilegesSnapshot reviewer = snapshot(10, Profile.Reviewer, true, 2);
+        assertTrue(reviewer.isOwner(11, 2));
+        assertFalse(reviewer.isOwner(11, 3));
+        assertFalse(reviewer.isOwner(11, null));
+    }
+
+    @Test
+    public void testCanReview() {
+        UserPrivilegesSnapshot groupOwnerOnly = snapshot(10, Profile.Reviewer, true, 2);
+        assertTrue(groupOwnerOnly.canReview(2, Collections.emptyList()));
+        assertFalse(groupOwnerOnly.canReview(3, Collections.singletonList(2)));
+
+        UserPrivilegesSnapshot reviewerInGroup = snapshot(10, Profile.Reviewer, false, 2);
+        assertTrue(reviewerInGroup.canReview(2, Collections.emptyList()));
+        assertTrue(reviewerInGroup.canReview(3, Arrays.asList(4, 2)));
+        assertFalse(reviewerInGroup.canReview(3, Collections.singletonList(4)));
+    }
+}
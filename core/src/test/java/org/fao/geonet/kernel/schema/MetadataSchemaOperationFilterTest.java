@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.schema;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataSchemaOperationFilterTest {
+    private static final String WITHHELD = "$.*[?(@.nilReason == 'withheld')]";
+    private static final String DOWNLOAD = "$['link'][?(@.protocol == 'WWW:DOWNLOAD-1.0-http--download')]";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private ObjectNode source(String json) throws Exception {
+        return (ObjectNode) mapper.readTree(json.replace('\'', '"'));
+    }
+
+    @Test
+    public void testFilterWithheldElements() throws Exception {
+        ObjectNode source = source("{'uuid': 'a', "
+            + "'contactForResource': [{'individual': 'John'}, {'individual': 'Jane', 'nilReason': 'withheld'}], "
+            + "'pointOfContact': {'individual': 'Joe', 'nilReason': 'withheld'}}");
+
+        new MetadataSchemaOperationFilter("", WITHHELD, "editing").filter(source);
+
+        assertEquals(1, source.get("contactForResource").size());
+        assertEquals("John", source.get("contactForResource").get(0).get("individual").asText());
+        assertFalse(source.has("pointOfContact"));
+        assertEquals("a", source.get("uuid").asText());
+    }
+
+    @Test
+    public void testFilterLinks() throws Exception {
+        ObjectNode source = source("{'link': ["
+            + "{'protocol': 'WWW:DOWNLOAD-1.0-http--download', 'url': 'http://data'}, "
+            + "{'protocol': 'OGC:WMS', 'url': 'http://wms'}]}");
+
+        new MetadataSchemaOperationFilter("", DOWNLOAD, "download").filter(source);
+
+        assertEquals(1, source.get("link").size());
+        assertEquals("OGC:WMS", source.get("link").get(0).get("protocol").asText());
+    }
+
+    @Test
+    public void testMayMatch() throws Exception {
+        MetadataSchemaOperationFilter withheld = new MetadataSchemaOperationFilter("", WITHHELD, "editing");
+        assertFalse(withheld.mayMatch(source("{'contact': [{'individual': 'John'}]}")));
+        assertTrue(withheld.mayMatch(source("{'contact': [{'nilReason': 'missing'}]}")));
+
+        MetadataSchemaOperationFilter download = new MetadataSchemaOperationFilter("", DOWNLOAD, "download");
+        assertFalse("No link in the document",
+            download.mayMatch(source("{'format': [{'protocol': 'x'}]}")));
+        assertTrue(download.mayMatch(source("{'link': [{'protocol': 'x'}]}")));
+    }
+
+    @Test
+    public void testBlankJsonpathIsIgnored() throws Exception {
+        ObjectNode source = source("{'contact': [{'nilReason': 'withheld'}]}");
+        new MetadataSchemaOperationFilter("", "", "editing").filter(source);
+        assertEquals(1, source.get("contact").size());
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the schema filters applied to a search response of 100 ISO19139 records
+ * by serializing and parsing each _source with JsonPath (previous implementation of
+ * EsHTTPProxy#processMetadataSchemaFilters) and by evaluating the compiled jsonpath
+ * on the Jackson tree ({@link MetadataSchemaOperationFilter#filter}).
+ * <p>
+ * The response is parsed in both cases, standing for the response streamed from the index.
+ * withheldPercent is the percentage of records with withheld contacts.
+ * <p>
+ * Run with: mvn test-compile exec:exec -Pbenchmark -Dbenchmark=SchemaFilterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemaFilterBenchmark {
+    private static final int NUMBER_OF_HITS = 100;
+
+    /**
+     * Filters of the iso19139 schema (see schema-ident.xml).
+     */
+    private static final List<String> JSONPATHS = Arrays.asList(
+        "$.*[?(@.nilReason == 'withheld')]",
+        "$['link'][?(@.protocol == 'WWW:DOWNLOAD-1.0-http--download')]",
+        "$['link'][?(@.protocol =~ /OGC:WMS.*?/i)]");
+
+    @Param({"0", "20", "100"})
+    public int withheldPercent;
+
+    private String response;
+    private ObjectMapper mapper;
+    private List<MetadataSchemaOperationFilter> filters;
+
+    @Setup
+    public void setup() throws Exception {
+        mapper = new ObjectMapper();
+        ObjectNode searchResponse = mapper.createObjectNode();
+        ArrayNode hits = searchResponse.putObject("hits").putArray("hits");
+        for (int i = 0; i < NUMBER_OF_HITS; i++) {
+            ObjectNode hit = hits.addObject();
+            hit.put("_index", "gn-records");
+            hit.put("_id", "uuid-" + i);
+            hit.set("_source", buildSource(i, i < withheldPercent * NUMBER_OF_HITS / 100));
+            hit.put("edit", false);
+            hit.put("download", false);
+            hit.put("dynamic", false);
+        }
+        response = mapper.writeValueAsString(searchResponse);
+
+        filters = new ArrayList<>();
+        for (String jsonpath : JSONPATHS) {
+            filters.add(new MetadataSchemaOperationFilter("", jsonpath, "editing"));
+        }
+    }
+
+    private ObjectNode buildSource(int i, boolean withheld) {
+        ObjectNode source = mapper.createObjectNode();
+        source.put("uuid", "uuid-" + i);
+        source.put("documentStandard", "iso19139");
+        source.put("resourceType", "dataset");
+        source.putObject("resourceTitleObject")
+            .put("default", "Land cover of the region " + i)
+            .put("langeng", "Land cover of the region " + i);
+        source.putObject("resourceAbstractObject")
+            .put("default", "This dataset describes the land cover classes of the region " + i
+                + " derived from satellite imagery at 10m resolution, updated every year.")
+            .put("langeng", "This dataset describes the land cover classes of the region " + i);
+        ArrayNode tags = source.putArray("tag");
+        for (int k = 0; k < 10; k++) {
+            tags.addObject().put("default", "Keyword " + k).put("langeng", "Keyword " + k)
+                .put("link", "http://thesaurus/keyword/" + k);
+        }
+        ArrayNode contacts = source.putArray("contactForResource");
+        for (int k = 0; k < 3; k++) {
+            ObjectNode contact = contacts.addObject();
+            contact.put("organisation", "Organisation " + k);
+            contact.put("role", "pointOfContact");
+            contact.put("email", "contact" + k + "@example.org");
+            contact.put("individual", "Contact " + k);
+            if (withheld && k == 0) {
+                contact.put("nilReason", "withheld");
+            }
+        }
+        source.putArray("contact").addObject()
+            .put("organisation", "Metadata organisation").put("role", "author")
+            .put("email", "metadata@example.org");
+        ArrayNode links = source.putArray("link");
+        links.addObject().put("protocol", "WWW:LINK-1.0-http--link")
+            .put("url", "http://example.org/dataset/" + i).put("function", "information");
+        links.addObject().put("protocol", "OGC:WMS")
+            .put("url", "http://example.org/wms").put("name", "layer" + i);
+        links.addObject().put("protocol", "WWW:DOWNLOAD-1.0-http--download")
+            .put("url", "http://example.org/download/" + i + ".zip");
+        ObjectNode extent = source.putArray("geom").addObject();
+        extent.put("type", "Polygon");
+        extent.putArray("coordinates").addArray().addArray().add(-10).add(40);
+        source.putArray("resourceTemporalDateRange").addObject()
+            .put("gte", "2020-01-01").put("lte", "2024-12-31");
+        source.put("overview", "http://example.org/overview/" + i + ".png");
+        return source;
+    }
+
+    @Benchmark
+    public JsonNode jsonStringRoundTrip() throws Exception {
+        JsonNode searchResponse = mapper.readTree(response);
+        for (JsonNode hit : searchResponse.get("hits").get("hits")) {
+            ObjectNode sourceNode = (ObjectNode) hit.get("_source");
+            DocumentContext jsonContext = JsonPath.parse(sourceNode.toPrettyString());
+            for (String jsonPath : JSONPATHS) {
+                try {
+                    jsonContext = jsonContext.delete(jsonPath);
+                } catch (PathNotFoundException ex) {
+                    // ignored
+                }
+            }
+            ((ObjectNode) hit).set("_source", mapper.readTree(jsonContext.jsonString()));
+        }
+        return searchResponse;
+    }
+
+    @Benchmark
+    public JsonNode compiledOnTree() throws Exception {
+        JsonNode searchResponse = mapper.readTree(response);
+        for (JsonNode hit : searchResponse.get("hits").get("hits")) {
+            ObjectNode sourceNode = (ObjectNode) hit.get("_source");
+            for (MetadataSchemaOperationFilter filter : filters) {
+                filter.filter(sourceNode);
+            }
+        }
+        return searchResponse;
+    }
+}
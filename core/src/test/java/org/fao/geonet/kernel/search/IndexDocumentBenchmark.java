@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the conversion of the index.xsl output to JSON using a JDOM document
+ * ({@link EsSearchManager#documentToJson}) and using SAX events written
+ * to a JsonGenerator ({@link IndexDocument}).
+ * <p>
+ * The index document is parsed in both cases, standing for the transformation
+ * result (JDOMResult or SAXResult).
+ * <p>
+ * Run with: mvn test-compile exec:exec -Pbenchmark -Dbenchmark=IndexDocumentBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexDocumentBenchmark {
+    @Param({"100", "1000", "5000"})
+    public int numberOfKeywords;
+
+    private String indexDocument;
+    private EsSearchManager searchManager;
+    private ObjectMapper mapper;
+    private SAXParserFactory saxParserFactory;
+
+    @Setup
+    public void setup() {
+        StringBuilder doc = new StringBuilder("<doc>");
+        doc.append("<id>1</id><uuid>da165110-88fd-11da-a88f-000d939bc5d8</uuid>");
+        doc.append("<resourceTitleObject type=\"object\">{\"default\": \"Title\", \"langeng\": \"Title\"}</resourceTitleObject>");
+        doc.append("<isHarvested>n</isHarvested><_source>catalogue</_source>");
+        for (int i = 0; i < numberOfKeywords; i++) {
+            doc.append("<tag type=\"object\">{\"default\": \"Keyword ").append(i).append("\"}</tag>");
+            doc.append("<keyword>Keyword ").append(i).append("</keyword>");
+            doc.append("<field").append(i % 50).append(">value ").append(i).append("</field").append(i % 50).append(">");
+        }
+        doc.append("</doc>");
+        indexDocument = doc.toString();
+
+        searchManager = new EsSearchManager();
+        mapper = new ObjectMapper();
+        saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+    }
+
+    @Benchmark
+    public String jdomDocument() throws Exception {
+        Element doc = new SAXBuilder().build(new StringReader(indexDocument)).getRootElement();
+        return mapper.writeValueAsString(searchManager.documentToJson(doc));
+    }
+
+    @Benchmark
+    public String streaming() throws Exception {
+        IndexDocument doc = new IndexDocument();
+        XMLReader reader = saxParserFactory.newSAXParser().getXMLReader();
+        reader.setContentHandler(doc.contentHandler());
+        reader.parse(new InputSource(new StringReader(indexDocument)));
+        return doc.toJson();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.assertEquals;
+
+import org.fao.geonet.utils.Xml;
+import org.jdom.Element;
+import org.jdom.output.SAXOutputter;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexDocumentTest {
+
+    private ObjectMapper objectMapper;
+
+    @Before
+    public void setup() {
+        this.objectMapper = new ObjectMapper();
+    }
+
+    @Test
+    public void sameAsDocumentToJson() throws Exception {
+        Element input = Xml.loadString("<doc>" +
+            "<id>1</id>" +
+            "<keyword>k1</keyword>" +
+            "<topic>t1</topic><topic>t2</topic>" +
+            "<cl_status>completed</cl_status>" +
+            "<isHarvested> y </isHarvested>" +
+            "<isPublishedToAll>false</isPublishedToAll>" +
+            "<resourceTitleObject type=\"object\">{\"default\": \"Title\"}</resourceTitleObject>" +
+            "<tag type=\"object\">{\"default\": \"Tag 1\"}</tag>" +
+            "<tag type=\"object\">{\"default\": \"Tag 2\"}</tag>" +
+            "<invalid type=\"object\">{default</invalid>" +
+            "<_groupOwner>2</_groupOwner>" +
+            "<abstract>  Text with\n spaces </abstract>" +
+            "</doc>", false);
+
+        JsonNode expected = new EsSearchManager().documentToJson(input);
+        assertEquals(expected, objectMapper.readTree(fromSax(input).toJson()));
+    }
+
+    @Test
+    public void sourceAndIndexingError() throws Exception {
+        IndexDocument doc = new IndexDocument()
+            .addField("_source", "catalogue")
+            .addField("title", "Title")
+            .addField(IndexFields.INDEXING_ERROR_MSG, "{\"type\": \"error\"}", true);
+
+        JsonNode expected = objectMapper.readTree("{\"title\":\"Title\"," +
+            "\"indexingErrorMsg\":[{\"type\":\"error\"}]," +
+            "\"sourceCatalogue\":\"catalogue\"," +
+            "\"indexingError\":\"true\"}");
+        assertEquals(expected, objectMapper.readTree(doc.toJson()));
+    }
+
+    @Test
+    public void databaseFieldsAddedToTransformationFields() throws Exception {
+        IndexDocument doc = fromSax(Xml.loadString("<doc><keyword>k1</keyword><title>Title</title></doc>", false));
+        doc.addField("keyword", "k2");
+        doc.addField("owner", "1");
+
+        JsonNode expected = objectMapper.readTree("{\"keyword\":[\"k1\",\"k2\"],\"title\":\"Title\",\"owner\":\"1\"}");
+        assertEquals(expected, objectMapper.readTree(doc.toJson()));
+    }
+
+    private IndexDocument fromSax(Element element) throws Exception {
+        IndexDocument doc = new IndexDocument();
+        SAXOutputter outputter = new SAXOutputter(doc.contentHandler());
+        outputter.output(new org.jdom.Document((Element) element.clone()));
+        return doc;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class BulkIndexBufferTest {
+    private final List<Map<String, String>> requests = new CopyOnWriteArrayList<>();
+    private BulkIndexBuffer buffer;
+
+    @After
+    public void tearDown() {
+        if (buffer != null) {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void testFlushByNumberOfDocuments() {
+        buffer = new BulkIndexBuffer(this::send, 10, 0, 0, 2);
+        for (int i = 0; i < 25; i++) {
+            buffer.add("id" + i, "{}");
+        }
+        buffer.flush();
+
+        assertFalse(buffer.isIndexing());
+        assertEquals(25, buffer.getSentDocuments());
+        for (Map<String, String> request : requests) {
+            assertTrue(request.size() <= 10);
+        }
+    }
+
+    @Test
+    public void testFlushBySize() {
+        buffer = new BulkIndexBuffer(this::send, 100, 10, 0, 1);
+        for (int i = 0; i < 4; i++) {
+            buffer.add("id" + i, "{\"a\":\"b\"}");
+        }
+        buffer.flush();
+
+        // A request is sent as soon as it reaches 10 characters
+        assertEquals(2, requests.size());
+        assertEquals(2, requests.get(0).size());
+    }
+
+    @Test
+    public void testFlushByInterval() throws Exception {
+        buffer = new BulkIndexBuffer(this::send, 100, 0, 50, 1);
+        buffer.add("id", "{}");
+
+        long end = System.currentTimeMillis() + 5000;
+        while (buffer.getSentDocuments() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, requests.size());
+        assertEquals(1, buffer.getSentDocuments());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        buffer = new BulkIndexBuffer(this::send, 7, 0, 5, 3);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String id = "id" + i;
+            ids.add(id);
+            executor.execute(() -> buffer.add(id, "{}"));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        buffer.flush();
+
+        Set<String> indexed = ConcurrentHashMap.newKeySet();
+        requests.forEach(request -> indexed.addAll(request.keySet()));
+        assertEquals(ids.size(), indexed.size());
+        assertEquals(1000, buffer.getSentDocuments());
+    }
+
+    @Test
+    public void testVersionsOfADocumentSentInOrder() {
+        Map<String, String> indexed = new ConcurrentHashMap<>();
+        buffer = new BulkIndexBuffer(documents -> {
+            indexed.putAll(documents);
+            return true;
+        }, 3, 0, 0, 4);
+        for (int version = 0; version < 100; version++) {
+            for (int i = 0; i < 10; i++) {
+                buffer.add("id" + i, "{\"version\":" + version + "}");
+            }
+        }
+        buffer.flush();
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("{\"version\":99}", indexed.get("id" + i));
+        }
+    }
+
+    @Test
+    public void testFailedRequest() {
+        buffer = new BulkIndexBuffer(documents -> false, 2, 0, 0, 1);
+        buffer.add("id1", "{}");
+        buffer.add("id2", "{}");
+        buffer.flush();
+
+        assertEquals(1, buffer.getFailedRequests());
+        assertEquals(0, buffer.getSentDocuments());
+    }
+
+    private Boolean send(Map<String, String> documents) {
+        requests.add(documents);
+        return true;
+    }
+}
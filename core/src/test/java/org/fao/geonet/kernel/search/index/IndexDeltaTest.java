@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.kernel.search.index;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import org.fao.geonet.domain.ISODate;
+import org.junit.Test;
+
+public class IndexDeltaTest {
+    private final ISODate date1 = new ISODate("2024-01-01T10:00:00Z");
+    private final ISODate date2 = new ISODate("2024-02-01T10:00:00Z");
+
+    @Test
+    public void testDelta() {
+        IndexDelta delta = new IndexDelta(false);
+        // Records not sorted by id (eg. metadata and drafts)
+        delta.addRecord(10, date1);
+        delta.addRecord(2, date1);
+        delta.addRecord(3, date2);
+        delta.addRecord(4, date1);
+
+        delta.addIndexedDocument("uuid-10", "10", date1.getDateAndTime());
+        delta.addIndexedDocument("uuid-3", "3", date1.getDateAndTime());
+        delta.addIndexedDocument("uuid-5", "5", date1.getDateAndTime());
+        delta.addIndexedDocument("uuid-4", "4", date1.getDateAndTime());
+        delta.addIndexedDocument("uuid-4-old", "4", date1.getDateAndTime());
+        delta.addIndexedDocument("error", null, null);
+
+        assertEquals(Collections.singletonList(2), delta.getMissing());
+        assertEquals(Arrays.asList("uuid-5", "error"), delta.getOrphans());
+        assertEquals(Collections.singleton(4), delta.getDuplicates());
+        assertEquals(new LinkedHashSet<>(Arrays.asList(2, 3, 4)), delta.getToIndex());
+
+        IndexDelta.Summary summary = delta.getSummary();
+        assertEquals(4, summary.getRecords());
+        assertEquals(6, summary.getIndexedDocuments());
+        assertEquals(1, summary.getMissing());
+        assertEquals(1, summary.getChanged());
+        assertEquals(1, summary.getDuplicates());
+        assertEquals(2, summary.getOrphans());
+    }
+
+    @Test
+    public void testForce() {
+        IndexDelta delta = new IndexDelta(true);
+        delta.addRecord(1, date1);
+        delta.addRecord(2, date1);
+
+        delta.addIndexedDocument("uuid-1", "1", date1.getDateAndTime());
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList(2, 1)), delta.getToIndex());
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        IndexDelta delta = new IndexDelta(false);
+        delta.addRecord(1, date1);
+
+        assertEquals(Collections.singleton(1), delta.getToIndex());
+        assertEquals(0, delta.getOrphans().size());
+    }
+}
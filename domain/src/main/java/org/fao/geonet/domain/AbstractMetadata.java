@@ -55,7 +55,22 @@ public abstract class AbstractMetadata extends GeonetEntity {
     public static final String ID_COLUMN_NAME = "id";
     private int _id;
     private String _uuid;
+    /**
+     * The data as stored in the database, see {@link MetadataDataCodec}.
+     */
+    @Access(AccessType.FIELD)
+    @Column(name = "data", nullable = false)
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Type(type = "org.hibernate.type.TextType") // this is a work around for postgres so postgres can correctly load clobs
+    private String data;
+    /**
+     * The data decoded from {@link #data} when it is not stored as is.
+     */
+    @Transient
     private String _data;
+    @Transient
+    private String _dataDecodedFrom;
     private MetadataDataInfo _dataInfo = new MetadataDataInfo();
     private MetadataSourceInfo _sourceInfo = new MetadataSourceInfo();
     private MetadataHarvestInfo _harvestInfo = new MetadataHarvestInfo();
@@ -115,14 +130,24 @@ public abstract class AbstractMetadata extends GeonetEntity {
      *
      * @return the metadata data as a string.
      */
-    @Column(nullable = false)
-    @Lob
-    @Basic(fetch = FetchType.LAZY)
-    @Type(type = "org.hibernate.type.TextType") // this is a work around for postgres so postgres can correctly load clobs
+    @Transient
     public String getData() {
+        final String stored = this.data;
+        if (stored != _dataDecodedFrom) {
+            _data = MetadataDataCodec.decode(stored);
+            _dataDecodedFrom = stored;
+        }
         return _data;
     }
 
+    /**
+     * @return the codec of the data as stored in the database.
+     */
+    @Transient
+    public MetadataDataCodec getDataCodec() {
+        return MetadataDataCodec.of(data);
+    }
+
     /**
      * Set the metadata data as a string (typically XML).
      *
@@ -138,7 +163,9 @@ public abstract class AbstractMetadata extends GeonetEntity {
      * @return this metadata entity.
      */
     public AbstractMetadata setData(String data) {
+        this.data = MetadataDataCodec.getDefault().encode(data);
         this._data = data;
+        this._dataDecodedFrom = this.data;
         return this;
     }
 
@@ -175,7 +202,8 @@ public abstract class AbstractMetadata extends GeonetEntity {
     }
 
     /**
-     * Parse the data as xml and return the data.
+     * Parse the data as xml and return the data. Without validation, the document parsed from
+     * the same data is copied from the {@link MetadataXmlCache}.
      *
      * @param validate if true validate the XML while parsing.
      * @return the parsed metadata.
@@ -184,7 +212,10 @@ public abstract class AbstractMetadata extends GeonetEntity {
      */
     @Transient
     public Element getXmlData(boolean validate) throws IOException, JDOMException {
-        return Xml.loadString(getData(), validate);
+        if (validate || getDataInfo() == null) {
+            return Xml.loadString(getData(), validate);
+        }
+        return MetadataXmlCache.getXmlData(getId(), getDataInfo().getChangeDate(), getData());
     }
 
     private static String replaceString(final String initialString, final String pattern, final String replacement) {
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.domain;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Storage format of the XML of the records in the data column of the metadata and metadatadraft
+ * tables.
+ * <p/>
+ * The column stays a text column and the records stored with a codec other than {@link #NONE}
+ * start with the codec prefix, so that records stored with different codecs can be read at the
+ * same time. The codec used to store records is set with the system property
+ * <code>geonetwork.metadata.data.codec</code> (none or deflate, default none). Records already
+ * stored are converted by the record storage migration.
+ */
+public enum MetadataDataCodec {
+    /**
+     * XML stored as is.
+     */
+    NONE(""),
+    /**
+     * XML compressed with deflate and encoded in base64.
+     */
+    DEFLATE("gn-deflate:") {
+        @Override
+        protected String doEncode(String data) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(data.getBytes(StandardCharsets.UTF_8));
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length() / 4 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return getPrefix() + Base64.getEncoder().encodeToString(out.toByteArray());
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        protected String doDecode(String stored) {
+            Inflater inflater = new Inflater();
+            try {
+                byte[] compressed = Base64.getDecoder().decode(stored.substring(getPrefix().length()));
+                inflater.setInput(compressed);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 6);
+                byte[] buffer = new byte[8192];
+                while (!inflater.finished()) {
+                    int length = inflater.inflate(buffer);
+                    if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IllegalStateException("Truncated compressed record data");
+                    }
+                    out.write(buffer, 0, length);
+                }
+                return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Invalid compressed record data", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    public static final String CODEC_PROPERTY = "geonetwork.metadata.data.codec";
+
+    private static final MetadataDataCodec defaultCodec = parse(System.getProperty(CODEC_PROPERTY, "none"));
+
+    private final String prefix;
+
+    MetadataDataCodec(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the codec used to store the records.
+     */
+    public static MetadataDataCodec getDefault() {
+        return defaultCodec;
+    }
+
+    /**
+     * @param name the name of a codec, case insensitive.
+     * @return the codec.
+     */
+    public static MetadataDataCodec parse(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * @param stored the data as stored in the database.
+     * @return the codec used to store the data.
+     */
+    public static MetadataDataCodec of(String stored) {
+        if (stored != null) {
+            for (MetadataDataCodec codec : values()) {
+                if (codec != NONE && stored.startsWith(codec.prefix)) {
+                    return codec;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @param stored the data as stored in the database.
+     * @return the XML of the record.
+     */
+    public static String decode(String stored) {
+        MetadataDataCodec codec = of(stored);
+        return codec == NONE ? stored : codec.doDecode(stored);
+    }
+
+    /**
+     * @param data the XML of the record.
+     * @return the data to store in the database.
+     */
+    public String encode(String data) {
+        return data == null || this == NONE ? data : doEncode(data);
+    }
+
+    protected String doEncode(String data) {
+        return data;
+    }
+
+    protected String doDecode(String stored) {
+        return stored;
+    }
+
+    /**
+     * Replace all occurrences of a string like the database replace function used by the
+     * search and replace queries, for records which are not stored as is.
+     */
+    public static String searchAndReplace(String data, String search, String replace) {
+        return data.replace(search, replace);
+    }
+
+    /**
+     * Replace a regular expression like the database regexp_replace function used by the
+     * search and replace queries, for records which are not stored as is. The flags g (all
+     * occurrences), i (case insensitive) and n (newline sensitive) are supported and the
+     * references to groups in the replacement are written \1 to \9.
+     */
+    public static String regexSearchAndReplace(String data, String search, String replace, String flags) {
+        int patternFlags = Pattern.DOTALL;
+        if (flags != null && flags.contains("i")) {
+            patternFlags |= Pattern.CASE_INSENSITIVE;
+        }
+        if (flags != null && flags.contains("n")) {
+            patternFlags = (patternFlags & ~Pattern.DOTALL) | Pattern.MULTILINE;
+        }
+        Matcher matcher = Pattern.compile(search, patternFlags).matcher(data);
+        String replacement = Matcher.quoteReplacement(replace).replaceAll("\\\\\\\\([1-9])", "\\$$1");
+        return flags != null && flags.contains("g") ? matcher.replaceAll(replacement) : matcher.replaceFirst(replacement);
+    }
+}
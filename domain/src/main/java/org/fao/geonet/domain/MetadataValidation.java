@@ -51,6 +51,7 @@ public class MetadataValidation extends GeonetEntity {
     private Boolean required = Boolean.TRUE;
     private String reportUrl;
     private String reportContent;
+    private String fingerprint;
 
     /**
      * Return the id object of this entity.
@@ -210,6 +211,20 @@ public class MetadataValidation extends GeonetEntity {
         return this;
     }
 
+    /**
+     * Get the fingerprint of the validated record and of the validation rules (see {@link
+     * org.fao.geonet.kernel.BatchMetadataValidator}). Null if the record was not validated by batch.
+     */
+    @Column(length = 64)
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public MetadataValidation setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+        return this;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -218,12 +233,12 @@ public class MetadataValidation extends GeonetEntity {
         return numTests == that.numTests && numFailures == that.numFailures && id.equals(that.id) &&
             status == that.status && validationDate.equals(that.validationDate) &&
             required.equals(that.required) && reportUrl.equals(that.reportUrl) &&
-            reportContent.equals(that.reportContent);
+            reportContent.equals(that.reportContent) && Objects.equals(fingerprint, that.fingerprint);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, status, numTests, numFailures, validationDate, required, reportUrl, reportContent);
+        return Objects.hash(id, status, numTests, numFailures, validationDate, required, reportUrl, reportContent, fingerprint);
     }
 
     @Override
@@ -236,6 +251,7 @@ public class MetadataValidation extends GeonetEntity {
             ", required=" + required +
             ", reportUrl=" + reportUrl +
             ", reportContent=" + reportContent +
+            ", fingerprint=" + fingerprint +
             '}';
     }
 }
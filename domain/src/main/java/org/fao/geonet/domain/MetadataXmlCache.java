@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.domain;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.fao.geonet.utils.Xml;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the parsed XML of the records used by {@link AbstractMetadata#getXmlData(boolean)}.
+ * <p/>
+ * Parsed documents are cached by metadata id with the change date and the XML they were parsed
+ * from. A cached document is only used if the record still has the same change date and the same
+ * XML, otherwise it is parsed again. Each call returns a copy of the cached document which the
+ * caller may modify.
+ * <p/>
+ * The cache holds at most <code>geonetwork.metadata.xmlCache.maxSize</code> characters of XML
+ * (system property, default 10000000, 0 to disable the cache). The least recently used records
+ * are removed first. Records are also removed when they are updated or deleted.
+ */
+public final class MetadataXmlCache {
+    public static final String MAX_SIZE_PROPERTY = "geonetwork.metadata.xmlCache.maxSize";
+
+    private static final long maxSize = Long.getLong(MAX_SIZE_PROPERTY, 10_000_000);
+
+    private static final Cache<Integer, Entry> cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSize)
+        .weigher((Integer id, Entry entry) -> entry.data.length())
+        .recordStats()
+        .build();
+
+    /**
+     * Number of cached documents which were not used because the record changed.
+     */
+    private static final LongAdder staleCount = new LongAdder();
+
+    private MetadataXmlCache() {
+    }
+
+    /**
+     * Parse the XML of a record, or copy the document parsed from the same XML.
+     *
+     * @param id         the id of the record.
+     * @param changeDate the change date of the record.
+     * @param data       the XML of the record.
+     * @return the root element of the XML, a copy of the cached document if any.
+     */
+    public static Element getXmlData(int id, ISODate changeDate, String data) throws IOException, JDOMException {
+        if (maxSize <= 0 || id <= 0 || changeDate == null || data == null) {
+            return Xml.loadString(data, false);
+        }
+        final long changeTime = changeDate.toDate().getTime();
+        Entry entry = cache.getIfPresent(id);
+        if (entry != null && (entry.changeTime != changeTime || !entry.data.equals(data))) {
+            staleCount.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            entry = new Entry(changeTime, data, Xml.loadString(data, false));
+            cache.put(id, entry);
+        }
+        return (Element) entry.xml.clone();
+    }
+
+    /**
+     * Remove the document of a record.
+     *
+     * @param id the id of the record.
+     */
+    public static void invalidate(int id) {
+        cache.invalidate(id);
+    }
+
+    /**
+     * Remove all documents.
+     */
+    public static void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return size, hit, miss and eviction counts of the cache.
+     */
+    public static Map<String, Object> getCacheStatistics() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("size", cache.size());
+        statistics.put("maxSize", maxSize);
+        statistics.put("hitCount", stats.hitCount() - staleCount.sum());
+        statistics.put("missCount", stats.missCount() + staleCount.sum());
+        statistics.put("staleCount", staleCount.sum());
+        long requestCount = stats.requestCount();
+        statistics.put("hitRate", requestCount == 0 ? 1.0 : (double) (stats.hitCount() - staleCount.sum()) / requestCount);
+        statistics.put("evictionCount", stats.evictionCount());
+        return statistics;
+    }
+
+    private static final class Entry {
+        private final long changeTime;
+        private final String data;
+        private final Element xml;
+
+        private Entry(long changeTime, String data, Element xml) {
+            this.changeTime = changeTime;
+            this.data = data;
+            this.xml = xml;
+        }
+    }
+}
@@ -27,11 +27,16 @@ import java.util.List;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.persistence.LockModeType;
 
 import org.fao.geonet.domain.MetadataDraft;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Data Access object for the {@link MetadataDraft} entities.
@@ -117,4 +122,50 @@ public interface MetadataDraftRepository
         @Param("pattern") String search,
         @Param("replace") String replace,
         @Param("flags") String flags);
+
+    /**
+     * Get the data of a metadata as stored in the database, see {@link org.fao.geonet.domain.MetadataDataCodec}.
+     *
+     * @param uuid the uuid of the metadata.
+     * @return the stored data or null if the metadata does not exist.
+     */
+    @Nullable
+    @Query(value = "SELECT m.data FROM MetadataDraft m WHERE m.uuid = :uuid")
+    String findStoredDataByUuid(@Param("uuid") String uuid);
+
+    /**
+     * Find the ids of the metadata with an id greater than the given id, ordered by id.
+     *
+     * @param afterId  the id after which metadata are returned.
+     * @param pageable the number of metadata to return.
+     * @return the ids of the metadata.
+     */
+    @Query(value = "SELECT m.id FROM MetadataDraft m WHERE m.id > :afterId ORDER BY m.id")
+    List<Integer> findIdsAfterId(@Param("afterId") int afterId, Pageable pageable);
+
+    /**
+     * Find the id and the data as stored in the database of the metadata with an id in a range,
+     * ordered by id. The metadata are locked until the end of the transaction, so that they are
+     * not saved while their stored data is replaced. The range is not paginated as some databases
+     * can not lock the rows of a paginated query.
+     *
+     * @param fromId the lowest id of the metadata returned.
+     * @param toId   the highest id of the metadata returned.
+     * @return a list of [id, stored data].
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "SELECT m.id, m.data FROM MetadataDraft m WHERE m.id >= :fromId AND m.id <= :toId ORDER BY m.id")
+    List<Object[]> findIdAndStoredDataByIdBetween(@Param("fromId") int fromId, @Param("toId") int toId);
+
+    /**
+     * Replace the data of a metadata as stored in the database, without changing the change date.
+     *
+     * @param id   the id of the metadata.
+     * @param data the new stored data.
+     * @return the number of metadata updated, 0 if the metadata was removed.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE MetadataDraft m SET m.data = :data WHERE m.id = :id")
+    int updateStoredData(@Param("id") int id, @Param("data") String data);
 }
@@ -23,6 +23,7 @@
 
 package org.fao.geonet.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -50,6 +51,17 @@ public interface MetadataStatusRepositoryCustom {
     @Nonnull
     List<MetadataStatus> findAllByMetadataIdAndByType(int metadataId, StatusValueType type, Sort sort);
 
+    /**
+     * Find all the MetadataStatus objects corresponding to a type for a set of metadata.
+     *
+     * @param metadataIds the metadata ids.
+     * @param type        the status type.
+     * @param sort        how to sort the results
+     * @return all the MetadataStatus objects associated to the metadata ids.
+     */
+    @Nonnull
+    List<MetadataStatus> findAllByMetadataIdInAndByType(Collection<Integer> metadataIds, StatusValueType type, Sort sort);
+
     /**
      * Find all the MetadataStatus objects corresponding to a search
      */
@@ -27,6 +27,7 @@ import org.fao.geonet.domain.MetadataValidation;
 import org.fao.geonet.domain.MetadataValidationId;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -44,4 +45,12 @@ public interface MetadataValidationRepository extends GeonetRepository<MetadataV
      */
     List<MetadataValidation> findAllById_MetadataId(int metadataId);
 
+    /**
+     * Find all validation entities related to the metadata identified by the metadataIds.
+     *
+     * @param metadataIds the ids of the metadata.
+     * @return the list of MetadataValidation objects related to the metadata identified
+     */
+    List<MetadataValidation> findAllById_MetadataIdIn(Collection<Integer> metadataIds);
+
 }
@@ -27,6 +27,8 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+
 /**
  * Custom repository methods for the MetadataValidationRepository User: Jesse Date: 9/5/13 Time:
  * 10:17 PM
@@ -55,4 +57,17 @@ public interface MetadataValidationRepositoryCustom {
     @Transactional
     @Query(value="DELETE FROM MetadataValidation v where v.id.metadataId = ?1 AND valtype != 'inspire'")
     int deleteAllInternalValidationById_MetadataId(Integer metadataId);
+
+    /**
+     * Delete all the entities that are related to the indicated metadata
+     * and are internal validation (eg. XSD or schematron).
+     * It will preserve INSPIRE validation results.
+     *
+     * @param metadataIds the ids of the metadata.
+     * @return the number of rows deleted
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query(value="DELETE FROM MetadataValidation v where v.id.metadataId IN ?1 AND valtype != 'inspire'")
+    int deleteAllInternalValidationById_MetadataIdIn(Collection<Integer> metadataIds);
 }
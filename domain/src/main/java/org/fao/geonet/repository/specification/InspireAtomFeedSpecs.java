@@ -29,6 +29,7 @@ import org.fao.geonet.domain.InspireAtomFeed_;
 import org.springframework.data.jpa.domain.Specification;
 
 import javax.persistence.criteria.*;
+import java.util.Collection;
 
 public class InspireAtomFeedSpecs {
     private InspireAtomFeedSpecs() {
@@ -47,4 +48,13 @@ public class InspireAtomFeedSpecs {
         };
     }
 
+    public static Specification<InspireAtomFeed> hasMetadataIdIn(final Collection<Integer> metadataIds) {
+        return new Specification<InspireAtomFeed>() {
+            @Override
+            public Predicate toPredicate(Root<InspireAtomFeed> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+                return root.get(InspireAtomFeed_.metadataId).in(metadataIds);
+            }
+        };
+    }
+
 }
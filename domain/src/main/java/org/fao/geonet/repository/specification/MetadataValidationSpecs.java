@@ -12,6 +12,7 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import java.util.Collection;
 
 /**
  * Specification for querying {@link org.fao.geonet.repository.MetadataValidationRepository}.
@@ -38,6 +39,15 @@ public class MetadataValidationSpecs {
         };
     }
 
+    public static Specification<MetadataValidation> hasMetadataIdIn(final Collection<Integer> metadataIds) {
+        return new Specification<MetadataValidation>() {
+            @Override
+            public Predicate toPredicate(Root<MetadataValidation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+                return root.get(MetadataValidation_.id).get(MetadataValidationId_.metadataId).in(metadataIds);
+            }
+        };
+    }
+
     public static Specification<MetadataValidation> hasMetadataId(final int metadataId) {
         return new Specification<MetadataValidation>() {
             @Override
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.domain;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataDataCodecTest {
+    private static final String XML = "<gmd:MD_Metadata xmlns:gmd=\"http://www.isotc211.org/2005/gmd\">"
+        + "<gmd:title>Données élevées</gmd:title><gmd:title>Second title</gmd:title></gmd:MD_Metadata>";
+
+    @Test
+    public void testEncodeDecode() {
+        String stored = MetadataDataCodec.DEFLATE.encode(XML);
+        assertTrue(stored.startsWith(MetadataDataCodec.DEFLATE.getPrefix()));
+        assertSame(MetadataDataCodec.DEFLATE, MetadataDataCodec.of(stored));
+        assertEquals(XML, MetadataDataCodec.decode(stored));
+
+        assertSame(XML, MetadataDataCodec.NONE.encode(XML));
+        assertSame(MetadataDataCodec.NONE, MetadataDataCodec.of(XML));
+        assertSame(XML, MetadataDataCodec.decode(XML));
+        assertNull(MetadataDataCodec.DEFLATE.encode(null));
+        assertSame(MetadataDataCodec.DEFLATE, MetadataDataCodec.parse(" Deflate "));
+    }
+
+    @Test
+    public void testMetadataData() {
+        Metadata metadata = new Metadata();
+        metadata.setData(XML);
+        assertEquals(XML, metadata.getData());
+        assertSame(MetadataDataCodec.getDefault(), metadata.getDataCodec());
+    }
+
+    @Test
+    public void testSearchAndReplace() {
+        assertEquals(XML.replace("title>", "name>"), MetadataDataCodec.searchAndReplace(XML, "title>", "name>"));
+
+        assertEquals("<a>Second title</a>",
+            MetadataDataCodec.regexSearchAndReplace("<a>title</a>", "(t.*e)", "Second \\1", null));
+        assertEquals("<a>x title</a>",
+            MetadataDataCodec.regexSearchAndReplace("<a>title title</a>", "title", "x", null));
+        assertEquals("<a>x x</a>",
+            MetadataDataCodec.regexSearchAndReplace("<a>title Title</a>", "title", "x", "gi"));
+        assertEquals("<a>x</a>",
+            MetadataDataCodec.regexSearchAndReplace("<a>one\ntwo</a>", "one.*two", "x", null));
+        assertEquals("<a>one\ntwo</a>",
+            MetadataDataCodec.regexSearchAndReplace("<a>one\ntwo</a>", "one.*two", "x", "n"));
+    }
+}
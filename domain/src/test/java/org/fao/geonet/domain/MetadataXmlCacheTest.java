@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2001-2020 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.domain;
+
+import org.jdom.Element;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class MetadataXmlCacheTest {
+
+    @Test
+    public void testGetXmlData() throws Exception {
+        final int id = 987654;
+        final ISODate changeDate = new ISODate("2024-01-01T10:00:00");
+        MetadataXmlCache.invalidate(id);
+
+        Element first = MetadataXmlCache.getXmlData(id, changeDate, "<root><title>one</title></root>");
+        first.getChild("title").setText("modified");
+        Element second = MetadataXmlCache.getXmlData(id, changeDate, "<root><title>one</title></root>");
+        assertNotSame(first, second);
+        assertEquals("one", second.getChildText("title"));
+
+        // same change date but new data
+        Element updated = MetadataXmlCache.getXmlData(id, changeDate, "<root><title>two</title></root>");
+        assertEquals("two", updated.getChildText("title"));
+
+        Element newDate = MetadataXmlCache.getXmlData(id, new ISODate("2024-01-02T10:00:00"), "<root><title>three</title></root>");
+        assertEquals("three", newDate.getChildText("title"));
+
+        MetadataXmlCache.invalidate(id);
+        assertEquals("three", MetadataXmlCache.getXmlData(id, new ISODate("2024-01-02T10:00:00"),
+            "<root><title>three</title></root>").getChildText("title"));
+    }
+}
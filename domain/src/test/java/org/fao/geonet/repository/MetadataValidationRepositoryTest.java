@@ -27,6 +27,7 @@ import org.fao.geonet.domain.*;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -95,6 +96,29 @@ public class MetadataValidationRepositoryTest extends AbstractSpringDataTest {
         assertFalse(_metadataValidationRepository.findById(val1.getId()).isPresent());
     }
 
+    @Test
+    public void testFindAndDeleteInternalValidationById_MetadataIdIn() throws Exception {
+        MetadataValidation val1 = _metadataValidationRepository.save(newValidation().setFingerprint("abc"));
+        MetadataValidation val2 = newValidation();
+        val2.getId().setMetadataId(val1.getId().getMetadataId());
+        val2.getId().setValidationType("inspire");
+        _metadataValidationRepository.save(val2);
+        MetadataValidation val3 = _metadataValidationRepository.save(newValidation());
+        MetadataValidation val4 = _metadataValidationRepository.save(newValidation());
+
+        List<MetadataValidation> found = _metadataValidationRepository.findAllById_MetadataIdIn(
+            Arrays.asList(val1.getId().getMetadataId(), val3.getId().getMetadataId()));
+        assertEquals(3, found.size());
+        assertEquals("abc", _metadataValidationRepository.findById(val1.getId()).get().getFingerprint());
+
+        _metadataValidationRepository.deleteAllInternalValidationById_MetadataIdIn(
+            Arrays.asList(val1.getId().getMetadataId(), val3.getId().getMetadataId()));
+        assertEquals(2, _metadataValidationRepository.count());
+        assertFalse(_metadataValidationRepository.findById(val1.getId()).isPresent());
+        assertTrue(_metadataValidationRepository.findById(val2.getId()).isPresent());
+        assertTrue(_metadataValidationRepository.findById(val4.getId()).isPresent());
+    }
+
     private MetadataValidation newValidation() {
         return newValidation(_inc, _metadataRepository);
     }
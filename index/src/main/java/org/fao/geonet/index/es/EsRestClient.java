@@ -31,6 +31,9 @@ import co.elastic.clients.elasticsearch._types.query_dsl.QueryStringQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.WrapperQuery;
 import co.elastic.clients.elasticsearch.cluster.HealthResponse;
 import co.elastic.clients.elasticsearch.core.*;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultisearchBody;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import co.elastic.clients.elasticsearch.indices.AnalyzeRequest;
 import co.elastic.clients.elasticsearch.indices.AnalyzeResponse;
 import co.elastic.clients.elasticsearch.indices.IndicesStatsRequest;
@@ -49,18 +52,25 @@ import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
 import org.apache.http.nio.conn.SchemeIOSessionStrategy;
 import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.fao.geonet.utils.Log;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
 
@@ -76,13 +86,16 @@ import java.util.*;
 /**
  * Client to connect to Elasticsearch
  */
-public class EsRestClient implements InitializingBean {
+public class EsRestClient implements InitializingBean, DisposableBean {
     private static EsRestClient instance;
 
     private ElasticsearchClient client;
 
     private ElasticsearchAsyncClient asyncClient;
 
+    private RestClient restClient;
+
+    private PoolingNHttpClientConnectionManager connectionManager;
 
     private String serverUrl;
 
@@ -101,6 +114,32 @@ public class EsRestClient implements InitializingBean {
     @Value("${es.password}")
     private String password;
 
+    @Value("${es.client.maxConnTotal:100}")
+    private int maxConnTotal;
+
+    @Value("${es.client.maxConnPerRoute:100}")
+    private int maxConnPerRoute;
+
+    /**
+     * Timeouts of the requests (ms), the defaults of the client are used when negative.
+     */
+    @Value("${es.client.connectTimeout:-1}")
+    private int connectTimeout;
+
+    @Value("${es.client.socketTimeout:-1}")
+    private int socketTimeout;
+
+    @Value("${es.client.connectionRequestTimeout:-1}")
+    private int connectionRequestTimeout;
+
+    private RequestConfig requestConfig;
+
+    @Value("${es.client.keepAlive:60000}")
+    private long keepAlive;
+
+    @Value("${es.client.ioThreads:0}")
+    private int ioThreads;
+
     private boolean activated = false;
 
     public static EsRestClient get() {
@@ -115,6 +154,40 @@ public class EsRestClient implements InitializingBean {
         return asyncClient;
     }
 
+    /**
+     * @return the low level client, eg. to send raw JSON requests to the index
+     * using the pooled connections of the Java API client.
+     */
+    public RestClient getRestClient() {
+        return restClient;
+    }
+
+    /**
+     * @return the configuration of the requests sent by the client, eg. to change
+     * a timeout for a request using {@link org.elasticsearch.client.RequestOptions.Builder#setRequestConfig}.
+     */
+    public RequestConfig getRequestConfig() {
+        return requestConfig;
+    }
+
+    /**
+     * @return the usage of the connection pool to the index (leased, available and pending
+     * connections and configured limits) or an empty map if the client is not activated.
+     */
+    public Map<String, Object> getConnectionPoolStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        if (connectionManager != null) {
+            PoolStats stats = connectionManager.getTotalStats();
+            statistics.put("leased", stats.getLeased());
+            statistics.put("available", stats.getAvailable());
+            statistics.put("pending", stats.getPending());
+            statistics.put("max", stats.getMax());
+            statistics.put("maxPerRoute", connectionManager.getDefaultMaxPerRoute());
+            statistics.put("routes", connectionManager.getRoutes().size());
+        }
+        return statistics;
+    }
+
     public String getDashboardAppUrl() {
         return dashboardAppUrl;
     }
@@ -140,6 +213,15 @@ public class EsRestClient implements InitializingBean {
         if (StringUtils.isNotEmpty(serverUrl)) {
             RestClientBuilder builder = RestClient.builder(new HttpHost(serverHost, Integer.parseInt(serverPort), serverProtocol));
 
+            // Connections to the index are kept alive and shared by the Java API client
+            // and the search proxy. The pool is created here to be able to report its usage.
+            IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom();
+            if (ioThreads > 0) {
+                ioReactorConfig.setIoThreadCount(ioThreads);
+            }
+            RegistryBuilder<SchemeIOSessionStrategy> sessionStrategies = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE);
+
             if (serverProtocol.startsWith("https")) {
                 SSLContext sslContext = new SSLContextBuilder().loadTrustMaterial(
                     null, new TrustStrategy() {
@@ -149,31 +231,49 @@ public class EsRestClient implements InitializingBean {
                     }).build();
                 // skip hostname checks
                 HostnameVerifier hostnameVerifier = NoopHostnameVerifier.INSTANCE;
-                SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext, hostnameVerifier);
-                SchemeIOSessionStrategy httpsIOSessionStrategy = new SSLIOSessionStrategy(sslContext, hostnameVerifier);
+                sessionStrategies.register("https", new SSLIOSessionStrategy(sslContext, hostnameVerifier));
+            } else {
+                sessionStrategies.register("https", SSLIOSessionStrategy.getSystemDefaultStrategy());
+            }
 
-                if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
-                    final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-                    credentialsProvider.setCredentials(AuthScope.ANY,
-                        new UsernamePasswordCredentials(username, password));
+            connectionManager = new PoolingNHttpClientConnectionManager(
+                new DefaultConnectingIOReactor(ioReactorConfig.build()), sessionStrategies.build());
+            connectionManager.setMaxTotal(maxConnTotal);
+            connectionManager.setDefaultMaxPerRoute(maxConnPerRoute);
 
-                    builder.setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder.useSystemProperties().setSSLContext(sslContext).setDefaultCredentialsProvider(credentialsProvider));
-                } else {
-                    builder.setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder.useSystemProperties().setSSLContext(sslContext));
-                }
+            final CredentialsProvider credentialsProvider;
+            if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
+                credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider.setCredentials(AuthScope.ANY,
+                    new UsernamePasswordCredentials(username, password));
             } else {
-                if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
-                    final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-                    credentialsProvider.setCredentials(AuthScope.ANY,
-                        new UsernamePasswordCredentials(username, password));
-
-                    builder.setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder.useSystemProperties().setDefaultCredentialsProvider(credentialsProvider));
-                } else {
-                    builder.setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder.useSystemProperties());
-                }
+                credentialsProvider = null;
             }
 
-            RestClient restClient = builder.build();
+            builder.setHttpClientConfigCallback(httpClientBuilder -> {
+                httpClientBuilder.useSystemProperties()
+                    .setConnectionManager(connectionManager)
+                    .setKeepAliveStrategy((response, context) -> keepAlive);
+                if (credentialsProvider != null) {
+                    httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+                }
+                return httpClientBuilder;
+            });
+            builder.setRequestConfigCallback(requestConfigBuilder -> {
+                if (connectTimeout >= 0) {
+                    requestConfigBuilder.setConnectTimeout(connectTimeout);
+                }
+                if (socketTimeout >= 0) {
+                    requestConfigBuilder.setSocketTimeout(socketTimeout);
+                }
+                if (connectionRequestTimeout >= 0) {
+                    requestConfigBuilder.setConnectionRequestTimeout(connectionRequestTimeout);
+                }
+                requestConfig = requestConfigBuilder.build();
+                return requestConfigBuilder;
+            });
+
+            restClient = builder.build();
 
             ElasticsearchTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
 
@@ -192,6 +292,14 @@ public class EsRestClient implements InitializingBean {
         }
     }
 
+    @Override
+    public void destroy() throws Exception {
+        activated = false;
+        if (restClient != null) {
+            restClient.close();
+        }
+    }
+
     public String getServerUrl() {
         return serverUrl;
     }
@@ -370,6 +478,68 @@ public class EsRestClient implements InitializingBean {
     }
 
 
+    /**
+     * Run a set of queries using Lucene query syntax in one multi search request.
+     *
+     * @return the responses in the same order as the queries.
+     */
+    public List<ResponseBody<ObjectNode>> multiQuery(String index, List<String> luceneQueries, String filterQuery,
+                                                     Set<String> includedFields, Map<String, String> scriptedFields,
+                                                     int from, int size) throws Exception {
+        if (!activated) {
+            throw new IOException("Index not yet activated.");
+        }
+        if (luceneQueries.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        MsearchRequest.Builder requestBuilder = new MsearchRequest.Builder().index(index);
+        for (String luceneQuery : luceneQueries) {
+            MultisearchBody.Builder bodyBuilder = new MultisearchBody.Builder()
+                .from(from)
+                .size(size)
+                .query(q -> q.queryString(qs -> qs.query(luceneQuery)))
+                .trackTotalHits(th -> th.enabled(true))
+                .source(sc -> sc.filter(f -> f.includes(new ArrayList<>(includedFields))));
+
+            if (StringUtils.isNotEmpty(filterQuery)) {
+                bodyBuilder.postFilter(f -> f.queryString(qs -> qs.query(filterQuery)));
+            }
+
+            if (MapUtils.isNotEmpty(scriptedFields)) {
+                for (Map.Entry<String, String> scriptedField: scriptedFields.entrySet()) {
+                    ScriptField scriptField = ScriptField.of(
+                        b -> b.script(sb -> sb.inline(is -> is.source(scriptedField.getValue())))
+                    );
+
+                    bodyBuilder.scriptFields(scriptedField.getKey(), scriptField);
+                }
+            }
+
+            MultisearchBody body = bodyBuilder.build();
+            requestBuilder.searches(s -> s.header(h -> h.index(index)).body(body));
+        }
+
+        try {
+            MsearchResponse<ObjectNode> response = client.msearch(requestBuilder.build(), ObjectNode.class);
+
+            List<ResponseBody<ObjectNode>> results = new ArrayList<>(luceneQueries.size());
+            for (MultiSearchResponseItem<ObjectNode> item : response.responses()) {
+                if (item.isFailure()) {
+                    throw new IOException(String.format(
+                        "Error during multi search. %s", item.failure().error().reason()));
+                }
+                results.add(item.result());
+            }
+            return results;
+        } catch (ElasticsearchException esException) {
+            Log.error("geonetwork.index", String.format(
+                "Error during querying index. %s", esException.error().toString()));
+            throw esException;
+        }
+    }
+
+
     public String deleteByQuery(String index, String query) throws Exception {
         if (!activated) {
             return "";
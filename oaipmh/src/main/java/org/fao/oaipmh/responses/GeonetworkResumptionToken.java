@@ -23,9 +23,6 @@
 
 package org.fao.oaipmh.responses;
 
-import java.math.BigInteger;
-import java.security.SecureRandom;
-
 import org.fao.geonet.domain.ISODate;
 import org.fao.oaipmh.util.SearchResult;
 import org.fao.oaipmh.OaiPmh;
@@ -35,7 +32,12 @@ import org.jdom.Element;
 
 //=============================================================================
 
-
+/**
+ * Resumption token holding the search criteria and the position in the result set: the sort value
+ * of the last record returned (search_after cursor) and the number of records already listed. Tokens
+ * are stateless, the next page is searched from the token itself without keeping the result set on
+ * the server.
+ */
 public class GeonetworkResumptionToken extends ResumptionToken {
 
     public static final String SEPARATOR = "/-/";
@@ -47,9 +49,8 @@ public class GeonetworkResumptionToken extends ResumptionToken {
     private String until = "";
     private String prefix = "";
     private Boolean isReset = false;
-    private String randomid;
+    private String searchAfter = "";
     private SearchResult res;
-    private SecureRandom random = new SecureRandom();
 
     /**
      * Default constructor. Builds a GeonetworkResumptionToken.
@@ -58,6 +59,13 @@ public class GeonetworkResumptionToken extends ResumptionToken {
         build(rt);
     }
 
+    /**
+     * Builds a GeonetworkResumptionToken from its string value.
+     */
+    public GeonetworkResumptionToken(String strToken) throws BadResumptionTokenException {
+        parseToken(strToken);
+    }
+
     /**
      * Default constructor. Builds a GeonetworkResumptionToken.
      */
@@ -68,15 +76,14 @@ public class GeonetworkResumptionToken extends ResumptionToken {
         if (strToken == null) {
 
             if (req.getFrom() != null)
-                from = req.getFrom().toString();
+                from = formatDate(req.getFrom());
             if (req.getUntil() != null)
-                until = req.getUntil().toString();
+                until = formatDate(req.getUntil());
             if (req.getSet() != null)
                 set = req.getSet();
             prefix = req.getMetadataPrefix();
 
-
-            randomid = generateRandomString();
+            pos = 0;
 
         } else {
 
@@ -137,7 +144,39 @@ public class GeonetworkResumptionToken extends ResumptionToken {
 
     public String getKey() {
         return set + SEPARATOR + prefix + SEPARATOR + from + SEPARATOR + until
-            + SEPARATOR + randomid;
+            + SEPARATOR + searchAfter;
+    }
+
+    /**
+     * @return the set or null if not set.
+     */
+    public String getSet() {
+        return set.isEmpty() ? null : set;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the from date as used in searches or null if not set.
+     */
+    public String getFrom() {
+        return from.isEmpty() ? null : from;
+    }
+
+    /**
+     * @return the until date as used in searches or null if not set.
+     */
+    public String getUntil() {
+        return until.isEmpty() ? null : until;
+    }
+
+    /**
+     * @return the sort value of the last record returned or null for the first page.
+     */
+    public String getSearchAfter() {
+        return searchAfter.isEmpty() ? null : searchAfter;
     }
 
     public SearchResult getRes() {
@@ -154,10 +193,20 @@ public class GeonetworkResumptionToken extends ResumptionToken {
 
     //---------------------------------------------------------------------------
 
-    public void setupToken(int newpos) {
-        if (newpos < res.getIds().size()) // update token so that it refers to the next chunk
+    /**
+     * Update the token so that it refers to the page following the given one.
+     *
+     * @param page   the page of records just listed.
+     * @param newpos the number of records listed including this page.
+     */
+    public void setupToken(SearchResult page, int newpos) {
+        cursor = pos;
+        listSize = page.getCompleteListSize();
+        if (page.getSearchAfter() != null && (listSize == null || newpos < listSize)) {
+            // update token so that it refers to the next chunk
+            searchAfter = page.getSearchAfter();
             setPos(newpos);
-        else {
+        } else {
             reset();    // reset token to indicate last chunk
         }
     }
@@ -212,13 +261,17 @@ public class GeonetworkResumptionToken extends ResumptionToken {
         prefix = temp[1];
         from = temp[2];
         until = temp[3];
-        randomid = temp[4];
+        searchAfter = temp[4];
 
-        pos = Integer.parseInt(temp[5]);
+        try {
+            pos = Integer.parseInt(temp[5]);
+        } catch (NumberFormatException e) {
+            throw new BadResumptionTokenException("unknown resumptionToken format: " + strToken);
+        }
     }
 
-    public String generateRandomString() {
-        return new BigInteger(130, random).toString(36);
+    private static String formatDate(ISODate date) {
+        return date.isDateOnly() ? date.getDateAsString() : date.toString();
     }
 
 }
@@ -41,6 +41,10 @@ public class SearchResult {
 
     private String token;
 
+    private String searchAfter;
+
+    private Integer completeListSize;
+
 
     //---------------------------------------------------------------------------
     //---
@@ -111,6 +115,34 @@ public class SearchResult {
         else this.ids.addAll(ids);
     }
 
+    /**
+     * @return the sort value of the last record of this page, to continue the search from.
+     */
+    public String getSearchAfter() {
+        return searchAfter;
+    }
+
+    /**
+     * @param searchAfter the sort value of the last record of this page
+     */
+    public void setSearchAfter(String searchAfter) {
+        this.searchAfter = searchAfter;
+    }
+
+    /**
+     * @return the number of records matching the search
+     */
+    public Integer getCompleteListSize() {
+        return completeListSize;
+    }
+
+    /**
+     * @param completeListSize the number of records matching the search
+     */
+    public void setCompleteListSize(Integer completeListSize) {
+        this.completeListSize = completeListSize;
+    }
+
     /**
      * @return the token
      */
@@ -26,16 +26,12 @@ package org.fao.geonet.api.es;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.Sets;
-import com.jayway.jsonpath.DocumentContext;
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.PathNotFoundException;
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -48,6 +44,14 @@ import jeeves.server.UserSession;
 import jeeves.server.context.ServiceContext;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
 import org.fao.geonet.Constants;
 import org.fao.geonet.NodeInfo;
 import org.fao.geonet.api.ApiUtils;
@@ -61,6 +65,7 @@ import org.fao.geonet.index.es.EsRestClient;
 import org.fao.geonet.kernel.AccessManager;
 import org.fao.geonet.kernel.SchemaManager;
 import org.fao.geonet.kernel.SelectionManager;
+import org.fao.geonet.kernel.UserPrivilegesSnapshot;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.schema.MetadataSchema;
 import org.fao.geonet.kernel.schema.MetadataSchemaOperationFilter;
@@ -82,14 +87,11 @@ import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.zip.DeflaterInputStream;
-import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 
 @RequestMapping(value = {
@@ -145,7 +147,15 @@ public class EsHTTPProxy {
     /**
      * Ignore list of headers handled by proxy implementation directly.
      */
-    private String[] proxyHeadersIgnoreList =  {"Content-Length"};
+    private String[] proxyHeadersIgnoreList =  {"Content-Length", "Content-Encoding"};
+
+    /**
+     * Headers of the client request which are not sent to the index.
+     */
+    private String[] proxyRequestHeadersIgnoreList = {
+        "Host", "X-XSRF-TOKEN", "Cookie",
+        "Content-Length", "Content-Type", "Transfer-Encoding", "Accept-Encoding", "Connection"
+    };
 
     @Autowired
     private EsRestClient client;
@@ -181,39 +191,55 @@ public class EsHTTPProxy {
         doc.put(Edit.Info.Elem.SELECTED, selections.contains(uuid));
     }
 
-    private static void addRelatedTypes(ObjectNode doc,
+    /**
+     * Add the related records of all hits of a list. Records are loaded once and
+     * associations of all hits are resolved in one request to the index.
+     */
+    private static void addRelatedTypes(List<ObjectNode> docs,
                                         RelatedItemType[] relatedTypes,
                                         ServiceContext context) {
-        Map<RelatedItemType, List<AssociatedRecord>> related = null;
-        try {
-            related = MetadataUtils.getAssociated(
-                context,
-                context.getBean(IMetadataUtils.class)
-                    .findOne(doc.get("_source").get("id").asText()),
-                relatedTypes, 0, 1000);
-        } catch (Exception e) {
-            LOGGER.warn("Failed to load related types for {}. Error is: {}",
-                getSourceString(doc, Geonet.IndexFieldNames.UUID),
-                e.getMessage()
-            );
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (ObjectNode doc : docs) {
+            Integer id = doc.has("_source") ? getSourceInteger(doc, Geonet.IndexFieldNames.ID) : null;
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+
+        Map<Integer, Map<RelatedItemType, List<AssociatedRecord>>> related = Collections.emptyMap();
+        if (!ids.isEmpty()) {
+            try {
+                List<AbstractMetadata> records = new ArrayList<>();
+                context.getBean(IMetadataUtils.class).findAll(ids).forEach(records::add);
+                related = MetadataUtils.getAssociated(context, records, relatedTypes, 0, 1000);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to load related types for records {}. Error is: {}",
+                    ids, e.getMessage()
+                );
+            }
+        }
+
+        for (ObjectNode doc : docs) {
+            Integer id = doc.has("_source") ? getSourceInteger(doc, Geonet.IndexFieldNames.ID) : null;
+            doc.putPOJO("related", id != null ? related.get(id) : null);
         }
-        doc.putPOJO("related", related);
     }
 
     public static void addUserInfo(ObjectNode doc, ServiceContext context) throws Exception {
+        addUserInfo(doc, context.getBean(AccessManager.class).getPrivilegesSnapshot(context));
+    }
+
+    /**
+     * Add the privileges of the user on a record (edit, review, owner and operations).
+     *
+     * @param privileges the user privileges, built once for all the records to process.
+     */
+    public static void addUserInfo(ObjectNode doc, UserPrivilegesSnapshot privileges) {
         final Integer owner = getSourceInteger(doc, Geonet.IndexFieldNames.OWNER);
         final Integer groupOwner = getSourceInteger(doc, Geonet.IndexFieldNames.GROUP_OWNER);
         final String id = getSourceString(doc, Geonet.IndexFieldNames.ID);
 
-        ObjectMapper objectMapper = new ObjectMapper();
-
-        final MetadataSourceInfo sourceInfo = new MetadataSourceInfo();
-        sourceInfo.setOwner(owner);
-        if (groupOwner != null) {
-            sourceInfo.setGroupOwner(groupOwner);
-        }
-        final AccessManager accessManager = context.getBean(AccessManager.class);
-        final boolean isOwner = accessManager.isOwner(context, sourceInfo);
+        final boolean isOwner = privileges.isOwner(owner, groupOwner);
         final HashSet<ReservedOperation> operations;
         boolean canEdit = false;
         if (isOwner) {
@@ -222,35 +248,26 @@ public class EsHTTPProxy {
                 doc.put("ownerId", owner.intValue());
             }
         } else {
-            final Collection<Integer> groups =
-                accessManager.getUserGroups(context.getUserSession(), context.getIpAddress(), false);
-            final Collection<Integer> editingGroups =
-                accessManager.getUserGroups(context.getUserSession(), context.getIpAddress(), true);
+            final Set<Integer> groups = privileges.getGroups();
+            final Set<Integer> editingGroups = privileges.getEditingGroups();
             operations = Sets.newHashSet();
             for (ReservedOperation operation : ReservedOperation.values()) {
-                final JsonNode operationNodes = doc.get("_source").get(Geonet.IndexFieldNames.OP_PREFIX + operation.getId());
-                if (operationNodes != null) {
-                    ArrayNode opFields = operationNodes.isArray() ? (ArrayNode) operationNodes : objectMapper.createArrayNode().add(operationNodes);
-                    if (opFields != null) {
-                        for (JsonNode field : opFields) {
-                            final int groupId = field.asInt();
-                            if (operation == ReservedOperation.editing
-                                && !canEdit
-                                && editingGroups.contains(groupId)) {
-                                canEdit = true;
-                            }
+                for (int groupId : getOperationGroups(doc, operation)) {
+                    if (operation == ReservedOperation.editing
+                        && !canEdit
+                        && editingGroups.contains(groupId)) {
+                        canEdit = true;
+                    }
 
-                            if (groups.contains(groupId)) {
-                                operations.add(operation);
-                            }
-                        }
+                    if (groups.contains(groupId)) {
+                        operations.add(operation);
                     }
                 }
             }
         }
         doc.put(Edit.Info.Elem.EDIT, isOwner || canEdit);
         doc.put(Edit.Info.Elem.REVIEW,
-            id != null ? accessManager.hasReviewPermission(context, id) : false);
+            id != null && privileges.canReview(groupOwner, getOperationGroups(doc, ReservedOperation.editing)));
         doc.put(Edit.Info.Elem.OWNER, isOwner);
         doc.put(Edit.Info.Elem.IS_PUBLISHED_TO_ALL, hasOperation(doc, ReservedGroup.all, ReservedOperation.view));
         addReservedOperation(doc, operations, ReservedOperation.view);
@@ -270,20 +287,25 @@ public class EsHTTPProxy {
     }
 
     private static boolean hasOperation(ObjectNode doc, ReservedGroup group, ReservedOperation operation) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        int groupId = group.getId();
+        return getOperationGroups(doc, operation).contains(group.getId());
+    }
+
+    /**
+     * @return the groups allowed to perform an operation on a record, from the op fields of the index.
+     */
+    private static List<Integer> getOperationGroups(ObjectNode doc, ReservedOperation operation) {
         final JsonNode operationNodes = doc.get("_source").get(Geonet.IndexFieldNames.OP_PREFIX + operation.getId());
-        if (operationNodes != null) {
-            ArrayNode opFields = operationNodes.isArray() ? (ArrayNode) operationNodes : objectMapper.createArrayNode().add(operationNodes);
-            if (opFields != null) {
-                for (JsonNode field : opFields) {
-                    if (groupId == field.asInt()) {
-                        return true;
-                    }
-                }
-            }
+        if (operationNodes == null) {
+            return Collections.emptyList();
         }
-        return false;
+        if (!operationNodes.isArray()) {
+            return Collections.singletonList(operationNodes.asInt());
+        }
+        List<Integer> groupIds = new ArrayList<>(operationNodes.size());
+        for (JsonNode field : operationNodes) {
+            groupIds.add(field.asInt());
+        }
+        return groupIds;
     }
 
 
@@ -413,9 +435,9 @@ public class EsHTTPProxy {
                      String endPoint, String body,
                      String selectionBucket,
                      RelatedItemType[] relatedTypes) throws Exception {
-        final String url = client.getServerUrl() + "/" + defaultIndex + "/" + endPoint + "?";
+        final String url = "/" + defaultIndex + "/" + endPoint;
         // Make query on multiple indices
-//        final String url = client.getServerUrl() + "/" + defaultIndex + ",gn-features/" + endPoint + "?";
+//        final String url = "/" + defaultIndex + ",gn-features/" + endPoint;
         if (SEARCH_ENDPOINT.equals(endPoint) || MULTISEARCH_ENDPOINT.equals(endPoint)) {
             UserSession session = context.getUserSession();
             ObjectMapper objectMapper = new ObjectMapper();
@@ -540,59 +562,65 @@ public class EsHTTPProxy {
                                HttpSession httpSession,
                                HttpServletRequest request,
                                HttpServletResponse response,
-                               String sUrl,
+                               String path,
                                String endPoint,
                                String requestBody,
                                boolean addPermissions,
                                String selectionBucket,
                                RelatedItemType[] relatedTypes) throws Exception {
         try {
-            URL url = new URL(sUrl);
+            // the request is sent using the pooled and kept alive connections to the index
+            Request esRequest = new Request(request.getMethod(), path);
+            RequestOptions.Builder options = RequestOptions.DEFAULT.toBuilder();
+
+            // copy headers from client's request to request that will be send to the final host
+            copyHeadersToRequest(request, options);
+            if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
+                String auth = username + ":" + password;
+                byte[] encodedAuth = Base64.getEncoder().encode(
+                    auth.getBytes(StandardCharsets.UTF_8));
+                String authHeaderValue = "Basic " + new String(encodedAuth);
+                options.addHeader("Authorization", authHeaderValue);
+            }
+            // the response is streamed to the client without read timeout, like the
+            // connections previously opened by the proxy for each request
+            options.setRequestConfig(RequestConfig.copy(client.getRequestConfig())
+                .setSocketTimeout(0)
+                .build());
+            EsStreamingResponseConsumer responseConsumer = new EsStreamingResponseConsumer();
+            options.setHttpAsyncResponseConsumerFactory(() -> responseConsumer);
+            esRequest.setOptions(options);
+            esRequest.setEntity(new NStringEntity(requestBody,
+                ContentType.create(MediaType.APPLICATION_JSON_VALUE, Constants.ENCODING)));
+
+            HttpResponse esResponse = responseConsumer.getResponse(
+                client.getRestClient().performRequestAsync(esRequest, responseConsumer.getListener()));
 
-            // open communication between proxy and final host
-            // all actions before the connection can be taken now
-            HttpURLConnection connectionWithFinalHost = (HttpURLConnection) url.openConnection();
             try {
-                connectionWithFinalHost.setRequestMethod(request.getMethod());
-
-                // copy headers from client's request to request that will be send to the final host
-                copyHeadersToConnection(request, connectionWithFinalHost);
-                if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
-                    String auth = username + ":" + password;
-                    byte[] encodedAuth = Base64.getEncoder().encode(
-                        auth.getBytes(StandardCharsets.UTF_8));
-                    String authHeaderValue = "Basic " + new String(encodedAuth);
-                    connectionWithFinalHost.setRequestProperty("Authorization", authHeaderValue);
-                }
-
-                connectionWithFinalHost.setDoOutput(true);
-                connectionWithFinalHost.getOutputStream().write(requestBody.getBytes(Constants.ENCODING));
-
-                // connect to remote host
-                // interactions with the resource are enabled now
-                connectionWithFinalHost.connect();
-
                 // send remote host's response to client
-                String contentEncoding = getContentEncoding(connectionWithFinalHost.getHeaderFields());
+                HttpEntity entity = esResponse.getEntity();
+                String contentEncoding = getContentEncoding(esResponse);
 
-                int code = connectionWithFinalHost.getResponseCode();
+                int code = esResponse.getStatusLine().getStatusCode();
                 if (code != 200) {
-                    InputStream errorDetails = "gzip".equalsIgnoreCase(contentEncoding) ?
-                        new GZIPInputStream(connectionWithFinalHost.getErrorStream()) :
-                        connectionWithFinalHost.getErrorStream();
+                    InputStream errorDetails = entity == null ? null :
+                        "gzip".equalsIgnoreCase(contentEncoding) ?
+                            new GZIPInputStream(entity.getContent()) :
+                            entity.getContent();
 
                     response.sendError(code,
                         String.format(
                             "Error is: %s.\nRequest:\n%s.\nError:\n%s.",
-                            connectionWithFinalHost.getResponseMessage(),
+                            esResponse.getStatusLine().getReasonPhrase(),
                             requestBody,
-                            IOUtils.toString(errorDetails)
+                            errorDetails == null ? "" : IOUtils.toString(errorDetails, StandardCharsets.UTF_8)
                         ));
                     return;
                 }
 
                 // get content type
-                String contentType = connectionWithFinalHost.getContentType();
+                String contentType = entity == null || entity.getContentType() == null ?
+                    null : entity.getContentType().getValue();
                 if (contentType == null) {
                     response.sendError(HttpServletResponse.SC_FORBIDDEN,
                         "Host url has been validated by proxy but content type given by remote host is null");
@@ -601,8 +629,8 @@ public class EsHTTPProxy {
 
                 // content type has to be valid
                 if (!isContentTypeValid(contentType)) {
-                    if (connectionWithFinalHost.getResponseMessage() != null) {
-                        if (connectionWithFinalHost.getResponseMessage().equalsIgnoreCase("Not Found")) {
+                    if (esResponse.getStatusLine().getReasonPhrase() != null) {
+                        if (esResponse.getStatusLine().getReasonPhrase().equalsIgnoreCase("Not Found")) {
                             // content type was not valid because it was a not found page (text/html)
                             response.sendError(HttpServletResponse.SC_NOT_FOUND, "Remote host not found");
                             return;
@@ -616,31 +644,29 @@ public class EsHTTPProxy {
                 }
 
                 // copy headers from the remote server's response to the response to send to the client
-                copyHeadersFromConnectionToResponse(response, connectionWithFinalHost, proxyHeadersIgnoreList);
+                copyHeadersFromResponse(response, esResponse, proxyHeadersIgnoreList);
 
                 if (!contentType.split(";")[0].equals("application/json")) {
                     addPermissions = false;
                 }
 
-                final InputStream streamFromServer;
-                final OutputStream streamToClient;
+                // The response of the index is decompressed if it is encoded,
+                // and compressed again if the client of the proxy accepts it.
+                InputStream streamFromServer = entity.getContent();
+                if ("gzip".equalsIgnoreCase(contentEncoding)) {
+                    streamFromServer = new GZIPInputStream(streamFromServer);
+                } else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+                    streamFromServer = new InflaterInputStream(streamFromServer);
+                } else if (contentEncoding != null) {
+                    throw new UnsupportedOperationException("Please handle the stream when it is encoded in " + contentEncoding);
+                }
 
-                if (contentEncoding == null || !addPermissions) {
-                    // A simple stream can do the job for data that is not in content encoded
-                    // but also for data content encoded with a known charset
-                    streamFromServer = connectionWithFinalHost.getInputStream();
-                    streamToClient = response.getOutputStream();
-                } else if ("gzip".equalsIgnoreCase(contentEncoding)) {
-                    // the charset is unknown and the data are compressed in gzip
-                    // we add the gzip wrapper to be able to read/write the stream content
-                    streamFromServer = new GZIPInputStream(connectionWithFinalHost.getInputStream());
+                final OutputStream streamToClient;
+                if (acceptsGzip(request)) {
+                    response.setHeader("Content-Encoding", "gzip");
                     streamToClient = new GZIPOutputStream(response.getOutputStream());
-                } else if ("deflate".equalsIgnoreCase(contentEncoding)) {
-                    // same but with deflate
-                    streamFromServer = new DeflaterInputStream(connectionWithFinalHost.getInputStream());
-                    streamToClient = new DeflaterOutputStream(response.getOutputStream());
                 } else {
-                    throw new UnsupportedOperationException("Please handle the stream when it is encoded in " + contentEncoding);
+                    streamToClient = response.getOutputStream();
                 }
 
                 try {
@@ -652,7 +678,11 @@ public class EsHTTPProxy {
             } catch (Exception ex) {
                 ex.printStackTrace();
             } finally {
-                connectionWithFinalHost.disconnect();
+                // release the connection to the pool, or abort the request
+                // if the response was not read until the end
+                if (esResponse.getEntity() != null) {
+                    IOUtils.closeQuietly(esResponse.getEntity().getContent());
+                }
             }
         } catch (IOException e) {
             // connection problem with the host
@@ -661,7 +691,7 @@ public class EsHTTPProxy {
             throw new Exception(
                 String.format("Failed to request Es at URL %s. " +
                         "Check Es configuration.",
-                    sUrl),
+                    client.getServerUrl() + path),
                 e);
         }
     }
@@ -679,17 +709,23 @@ public class EsHTTPProxy {
         final Set<String> selections = (addPermissions ?
             SelectionManager.getManager(ApiUtils.getUserSession(httpSession)).getSelection(bucket) : new HashSet<>());
 
+        // Privileges of the user are loaded once for all hits
+        final UserPrivilegesSnapshot privileges = (addPermissions ?
+            accessManager.getPrivilegesSnapshot(context) : null);
+
+        // Related records are resolved for all the hits of a list at once
+        final JsonStreamUtils.TreeBatchFilter relatedTypesFilter =
+            (relatedTypes != null) && (relatedTypes.length > 0)
+                ? docs -> addRelatedTypes(docs, relatedTypes, context)
+                : null;
+
         if (endPoint.equals(SEARCH_ENDPOINT)) {
-            JsonStreamUtils.addInfoToDocs(parser, generator, doc -> {
+            JsonStreamUtils.addInfoToDocs(parser, generator, relatedTypesFilter, doc -> {
                 if (addPermissions) {
-                    addUserInfo(doc, context);
+                    addUserInfo(doc, privileges);
                     addSelectionInfo(doc, selections);
                 }
 
-                if ((relatedTypes != null ) && (relatedTypes.length > 0)) {
-                    addRelatedTypes(doc, relatedTypes, context);
-                }
-
                 if (doc.has("_source")) {
                     ObjectNode sourceNode = (ObjectNode) doc.get("_source");
 
@@ -716,16 +752,12 @@ public class EsHTTPProxy {
                 }
             });
         } else {
-            JsonStreamUtils.addInfoToDocsMSearch(parser, generator, doc -> {
+            JsonStreamUtils.addInfoToDocsMSearch(parser, generator, relatedTypesFilter, doc -> {
                 if (addPermissions) {
-                    addUserInfo(doc, context);
+                    addUserInfo(doc, privileges);
                     addSelectionInfo(doc, selections);
                 }
 
-                if ((relatedTypes != null ) && (relatedTypes.length > 0)) {
-                    addRelatedTypes(doc, relatedTypes, context);
-                }
-
                 // Remove fields with privileges info
                 if (doc.has("_source")) {
                     ObjectNode sourceNode = (ObjectNode) doc.get("_source");
@@ -745,36 +777,33 @@ public class EsHTTPProxy {
      * Gets the encoding of the content sent by the remote host: extracts the
      * content-encoding header
      *
-     * @param headerFields headers of the HttpURLConnection
+     * @param esResponse the response of the index
      * @return null if not exists otherwise name of the encoding (gzip, deflate...)
      */
-    private String getContentEncoding(Map<String, List<String>> headerFields) {
-        for (String headerName : headerFields.keySet()) {
-            if (headerName != null) {
-                if ("Content-Encoding".equalsIgnoreCase(headerName)) {
-                    List<String> valuesList = headerFields.get(headerName);
-                    StringBuilder sBuilder = new StringBuilder();
-                    valuesList.forEach(sBuilder::append);
-                    return sBuilder.toString().toLowerCase();
-                }
-            }
-        }
-        return null;
+    private String getContentEncoding(HttpResponse esResponse) {
+        Header contentEncoding = esResponse.getFirstHeader("Content-Encoding");
+        return contentEncoding == null ? null : contentEncoding.getValue().toLowerCase();
     }
 
     /**
-     * Copy headers from the connection to the response
+     * @return true if the client of the proxy accepts a gzip encoded response.
+     */
+    private boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    /**
+     * Copy headers from the response of the index to the response
      *
      * @param response   to copy headers in
-     * @param uc         contains headers to copy
+     * @param esResponse contains headers to copy
      * @param ignoreList list of headers that mustn't be copied
      */
-    private void copyHeadersFromConnectionToResponse(HttpServletResponse response, HttpURLConnection uc, String... ignoreList) {
-        Map<String, List<String>> map = uc.getHeaderFields();
-        for (String headerName : map.keySet()) {
-            if (headerName == null) {
-                continue;
-            }
+    private void copyHeadersFromResponse(HttpServletResponse response, HttpResponse esResponse, String... ignoreList) {
+        Map<String, StringBuilder> headers = new LinkedHashMap<>();
+        for (Header header : esResponse.getAllHeaders()) {
+            String headerName = header.getName();
             if (Arrays.stream(ignoreList).anyMatch(headerName::equalsIgnoreCase)) {
                 // Ignore list reflects headers that are handled by ESHTTPProxy directly
                 continue;
@@ -785,36 +814,38 @@ public class EsHTTPProxy {
                 continue;
             }
             // concatenate all values from the header
-            List<String> valuesList = map.get(headerName);
-            StringBuilder sBuilder = new StringBuilder();
-            valuesList.forEach(sBuilder::append);
-
-            if ("Transfer-Encoding".equalsIgnoreCase(headerName) && "chunked".equalsIgnoreCase(sBuilder.toString())) {
+            headers.computeIfAbsent(headerName, h -> new StringBuilder()).append(header.getValue());
+        }
+        for (Map.Entry<String, StringBuilder> header : headers.entrySet()) {
+            String headerName = header.getKey();
+            String headerValue = header.getValue().toString();
+            if ("Transfer-Encoding".equalsIgnoreCase(headerName) && "chunked".equalsIgnoreCase(headerValue)) {
                 // do not write this header + value because Tomcat already assembled the chunks itself
                 continue;
             }
             // add header to HttpServletResponse object
-            response.addHeader(headerName, sBuilder.toString());
+            response.addHeader(headerName, headerValue);
         }
     }
 
     /**
      * Copy client's headers in the request to send to the final host.
      * Trick the host by hiding the proxy indirection and keep useful headers information.
+     * Headers related to the connection and the encoding of the body are set by the
+     * HTTP client.
      *
-     * @param uc Contains now headers from client request except Host
+     * @param options Contains now headers from client request except Host
      */
-    protected void copyHeadersToConnection(HttpServletRequest request, HttpURLConnection uc) {
+    protected void copyHeadersToRequest(HttpServletRequest request, RequestOptions.Builder options) {
 
         for (Enumeration enumHeader = request.getHeaderNames(); enumHeader.hasMoreElements(); ) {
             String headerName = (String) enumHeader.nextElement();
             String headerValue = request.getHeader(headerName);
 
             // copy every header except host
-            if (!"host".equalsIgnoreCase(headerName) &&
-                !"X-XSRF-TOKEN".equalsIgnoreCase(headerName) &&
-                !"Cookie".equalsIgnoreCase(headerName)) {
-                uc.setRequestProperty(headerName, headerValue);
+            if (Arrays.stream(proxyRequestHeadersIgnoreList).noneMatch(headerName::equalsIgnoreCase)
+                && !("Authorization".equalsIgnoreCase(headerName) && StringUtils.isNotEmpty(username))) {
+                options.addHeader(headerName, headerValue);
             }
         }
     }
@@ -866,22 +897,20 @@ public class EsHTTPProxy {
      *
      * @param mds
      * @param doc
-     * @throws JsonProcessingException
      */
-    private void processMetadataSchemaFilters(ServiceContext context, MetadataSchema mds, ObjectNode doc) throws JsonProcessingException {
+    private void processMetadataSchemaFilters(ServiceContext context, MetadataSchema mds, ObjectNode doc) {
         if (!doc.has("_source")) {
             return;
         }
 
-        ObjectMapper mapper = new ObjectMapper();
         ObjectNode sourceNode = (ObjectNode) doc.get("_source");
 
         MetadataSchemaOperationFilter authenticatedFilter = mds.getOperationFilter("authenticated");
 
-        List<String> jsonpathFilters = new ArrayList<>();
+        List<MetadataSchemaOperationFilter> filters = new ArrayList<>();
 
         if (authenticatedFilter != null && !context.getUserSession().isAuthenticated()) {
-            jsonpathFilters.add(authenticatedFilter.getJsonpath());
+            filters.add(authenticatedFilter);
         }
 
         MetadataSchemaOperationFilter editFilter = mds.getOperationFilter(ReservedOperation.editing);
@@ -890,7 +919,7 @@ public class EsHTTPProxy {
             boolean canEdit = doc.get("edit").asBoolean();
 
             if (!canEdit) {
-                jsonpathFilters.add(editFilter.getJsonpath());
+                filters.add(editFilter);
             }
         }
 
@@ -899,7 +928,7 @@ public class EsHTTPProxy {
             boolean canDownload = doc.get("download").asBoolean();
 
             if (!canDownload) {
-                jsonpathFilters.add(downloadFilter.getJsonpath());
+                filters.add(downloadFilter);
             }
         }
 
@@ -908,28 +937,13 @@ public class EsHTTPProxy {
             boolean canDynamic = doc.get("dynamic").asBoolean();
 
             if (!canDynamic) {
-                jsonpathFilters.add(dynamicFilter.getJsonpath());
+                filters.add(dynamicFilter);
             }
         }
 
-        JsonNode actualObj = filterResponseElements(mapper, sourceNode, jsonpathFilters);
-        if (actualObj != null) {
-            doc.set("_source", actualObj);
+        // Filters are applied on the document tree using the jsonpath compiled for the schema
+        for (MetadataSchemaOperationFilter filter : filters) {
+            filter.filter(sourceNode);
         }
     }
-    private JsonNode filterResponseElements(ObjectMapper mapper, ObjectNode sourceNode, List<String> jsonPathFilters) throws JsonProcessingException {
-        DocumentContext jsonContext = JsonPath.parse(sourceNode.toPrettyString());
-
-        for(String jsonPath : jsonPathFilters) {
-            if (StringUtils.isNotBlank(jsonPath)) {
-                try {
-                    jsonContext = jsonContext.delete(jsonPath);
-                } catch (PathNotFoundException ex) {
-                    // The node to remove is not returned in the response, ignore the error
-                }
-            }
-        }
-
-        return mapper.readTree(jsonContext.jsonString());
-    }
 }
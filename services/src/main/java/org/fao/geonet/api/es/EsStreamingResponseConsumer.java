@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.api.es;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.util.SharedInputBuffer;
+import org.apache.http.protocol.HttpContext;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Consumer of a response of the index giving access to the response as soon as its headers are
+ * received. The content is read from the connection while it is read from the entity, instead of
+ * being buffered in memory until the whole response is received.
+ * <p>
+ * One consumer is used for one request, sent with {@link org.elasticsearch.client.RestClient#performRequestAsync}
+ * and {@link #getListener()}. The entity of the response must be closed to release the connection.
+ */
+class EsStreamingResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CompletableFuture<HttpResponse> received = new CompletableFuture<>();
+    private volatile HttpResponse response;
+    private volatile SharedInputBuffer buffer;
+    private volatile boolean contentCompleted;
+    private volatile Cancellable cancellable;
+
+    /**
+     * Wait for the headers of the response.
+     *
+     * @param cancellable to abort the request when the content is not read until the end.
+     * @return the response, its entity being read from the connection.
+     */
+    HttpResponse getResponse(Cancellable cancellable) throws IOException, InterruptedException {
+        this.cancellable = cancellable;
+        try {
+            return received.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the listener to send the request with. Failures before the response is received are
+     * reported by {@link #getResponse(Cancellable)}, error status are handled by the caller.
+     */
+    ResponseListener getListener() {
+        return new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                received.completeExceptionally(exception);
+            }
+        };
+    }
+
+    @Override
+    protected void onResponseReceived(HttpResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+        buffer = new SharedInputBuffer(BUFFER_SIZE);
+        BasicHttpEntity streamedEntity = new BasicHttpEntity();
+        streamedEntity.setContentType(entity.getContentType());
+        streamedEntity.setContentEncoding(entity.getContentEncoding());
+        streamedEntity.setContentLength(entity.getContentLength());
+        streamedEntity.setChunked(entity.isChunked());
+        streamedEntity.setContent(new ContentStream());
+        response.setEntity(streamedEntity);
+        received.complete(response);
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+        buffer.consumeContent(decoder, ioctrl);
+    }
+
+    @Override
+    protected HttpResponse buildResult(HttpContext context) {
+        if (buffer != null) {
+            contentCompleted = true;
+            buffer.writeCompleted();
+        }
+        // Response without content
+        received.complete(response);
+
+        // The content is not given to the client, which would otherwise read it for error status
+        BasicHttpResponse result = new BasicHttpResponse(response.getStatusLine());
+        result.setHeaders(response.getAllHeaders());
+        return result;
+    }
+
+    @Override
+    protected void releaseResources() {
+        if (buffer != null && !contentCompleted) {
+            buffer.shutdown();
+        }
+        Exception exception = getException();
+        received.completeExceptionally(exception != null ? exception : new CancellationException());
+    }
+
+    /**
+     * Content of the response, failing if the connection failed before the end of the response.
+     */
+    private final class ContentStream extends InputStream {
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            return checkEndOfContent(buffer.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            return checkEndOfContent(buffer.read(b, off, len));
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.available();
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!isDone() && cancellable != null) {
+                // The rest of the response is not read, the connection can not be reused
+                cancellable.cancel();
+            }
+            buffer.close();
+        }
+
+        private int checkEndOfContent(int read) throws IOException {
+            if (read == -1 && !contentCompleted) {
+                Exception exception = getException();
+                throw new IOException("Response of the index not received completely", exception);
+            }
+            return read;
+        }
+    }
+}
@@ -32,6 +32,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -97,6 +98,16 @@ public class JsonStreamUtils {
     }
 
     public static void addInfoToDocs(JsonParser parser, JsonGenerator generator, TreeFilter callback) throws Exception {
+        addInfoToDocs(parser, generator, null, callback);
+    }
+
+    /**
+     * Same as {@link #addInfoToDocs(JsonParser, JsonGenerator, TreeFilter)} but the hits of
+     * each list are read before being processed so that information can be added to all hits
+     * at once by the batch callback (if not null).
+     */
+    public static void addInfoToDocs(JsonParser parser, JsonGenerator generator,
+                                     TreeBatchFilter batchCallback, TreeFilter callback) throws Exception {
         /* ES response for hits
             hits
               hits
@@ -104,13 +115,16 @@ public class JsonStreamUtils {
         JsonPathItem hitsItem =  JsonPathItem.create("hits").addSubitem("hits");
 
         JsonStreamUtils.filterObjectInPath(parser, generator,
-            (par, gen) ->
-                JsonStreamUtils.filterArrayElements(par, gen, (par1, gen1) ->
-                    filterTree(parser, generator, callback)),
+            (par, gen) -> filterDocs(par, gen, batchCallback, callback),
             Collections.singletonList(hitsItem));
     }
 
     public static void addInfoToDocsMSearch(JsonParser parser, JsonGenerator generator, TreeFilter callback) throws Exception {
+        addInfoToDocsMSearch(parser, generator, null, callback);
+    }
+
+    public static void addInfoToDocsMSearch(JsonParser parser, JsonGenerator generator,
+                                            TreeBatchFilter batchCallback, TreeFilter callback) throws Exception {
         /* ES response for hits and agreggation hits
          *  responses
          *    hits
@@ -133,12 +147,38 @@ public class JsonStreamUtils {
 
 
         JsonStreamUtils.filterObjectInPath(parser, generator,
-            (par, gen) ->
-                JsonStreamUtils.filterArrayElements(par, gen, (par1, gen1) ->
-                    filterTree(parser, generator, callback)),
+            (par, gen) -> filterDocs(par, gen, batchCallback, callback),
             Collections.singletonList(responsesItem));
     }
 
+    private static void filterDocs(JsonParser parser, JsonGenerator generator,
+                                   TreeBatchFilter batchCallback, TreeFilter callback) throws Exception {
+        if (batchCallback == null) {
+            JsonStreamUtils.filterArrayElements(parser, generator, (par, gen) ->
+                filterTree(parser, generator, callback));
+            return;
+        }
+
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw new RuntimeException("Expecting an array");
+        }
+        List<ObjectNode> docs = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                throw new RuntimeException("Expecting an object");
+            }
+            docs.add((ObjectNode) parser.readValueAsTree());
+        }
+        batchCallback.apply(docs);
+
+        generator.writeStartArray();
+        for (ObjectNode doc : docs) {
+            callback.apply(doc);
+            generator.writeTree(doc);
+        }
+        generator.writeEndArray();
+    }
+
     private static void filterTree(JsonParser parser, JsonGenerator generator, TreeFilter callback) throws Exception {
         if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
             throw new RuntimeException("Expecting an object");
@@ -155,4 +195,8 @@ public class JsonStreamUtils {
     public interface TreeFilter {
         void apply(ObjectNode doc) throws Exception;
     }
+
+    public interface TreeBatchFilter {
+        void apply(List<ObjectNode> docs) throws Exception;
+    }
 }
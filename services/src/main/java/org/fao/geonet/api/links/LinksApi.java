@@ -49,12 +49,14 @@ import org.fao.geonet.kernel.AccessManager;
 import org.fao.geonet.kernel.datamanager.IMetadataUtils;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.url.UrlAnalyzer;
+import org.fao.geonet.kernel.url.UrlChecker;
 import org.fao.geonet.repository.LinkRepository;
 import org.fao.geonet.repository.MetadataRepository;
 import org.fao.geonet.repository.specification.LinkSpecs;
 import org.fao.geonet.utils.Log;
 import org.json.JSONException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -110,6 +112,10 @@ public class LinksApi {
     AccessManager accessManager;
     @Autowired
     SettingManager settingManager;
+    @Autowired
+    UrlChecker urlChecker;
+    @Value("${linkChecker.maxConnections:20}")
+    int linkCheckerThreads;
 
     private ArrayDeque<SelfNaming> mAnalyseProcesses = new ArrayDeque<>(NUMBER_OF_SUBSEQUENT_PROCESS_MBEAN_TO_KEEP);
 
@@ -452,7 +458,7 @@ public class LinksApi {
             settingManager.getSiteId(),
             linkRepository,
             metadataRepository,
-            urlAnalyser, appContext);
+            urlAnalyser, urlChecker, linkCheckerThreads, appContext);
         mBeanExporter.registerManagedResource(mAnalyseProcess, mAnalyseProcess.getObjectName());
 
         mAnalyseProcesses.addFirst(mAnalyseProcess);
@@ -27,8 +27,10 @@ import jeeves.transaction.TransactionManager;
 import jeeves.transaction.TransactionTask;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.Link;
+import org.fao.geonet.domain.LinkStatus;
 import org.fao.geonet.domain.Metadata;
 import org.fao.geonet.kernel.url.UrlAnalyzer;
+import org.fao.geonet.kernel.url.UrlChecker;
 import org.fao.geonet.repository.LinkRepository;
 import org.fao.geonet.repository.MetadataRepository;
 import org.fao.geonet.utils.Log;
@@ -37,14 +39,25 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.jmx.export.naming.SelfNaming;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -59,6 +72,8 @@ public class MAnalyseProcess implements SelfNaming {
     private final LinkRepository linkRepository;
     private final MetadataRepository metadataRepository;
     private final UrlAnalyzer urlAnalyser;
+    private final UrlChecker urlChecker;
+    private final int numberOfThreads;
     private final ApplicationContext appContext;
 
     private ObjectName probeName;
@@ -134,8 +149,12 @@ public class MAnalyseProcess implements SelfNaming {
                                           LinkRepository linkRepository,
                                           MetadataRepository metadataRepository,
                                           UrlAnalyzer urlAnalyser,
+                                          UrlChecker urlChecker,
+                                          int numberOfThreads,
                                           ApplicationContext appContext) {
         this.urlAnalyser = urlAnalyser;
+        this.urlChecker = urlChecker;
+        this.numberOfThreads = numberOfThreads;
         this.linkRepository = linkRepository;
         this.metadataRepository = metadataRepository;
         this.appContext = appContext;
@@ -180,7 +199,7 @@ public class MAnalyseProcess implements SelfNaming {
         @Override
         public void run() {
             try {
-                testLink(links);
+                testLinks(links);
                 finishDate.set(System.currentTimeMillis());
                 processFinished.set(Boolean.TRUE);
             } catch (Exception ex) {
@@ -188,27 +207,6 @@ public class MAnalyseProcess implements SelfNaming {
                     probeName), ex);
             }
         }
-
-        private void testLink(List<String> links) {
-            List<Link> linkList;
-            if (links == null) {
-                linkList = linkRepository.findAll();
-            } else {
-                linkList = linkRepository.findAllByUrlIn(links);
-            }
-            urlToCheckCount.set(linkList.size());
-
-            for(int i = 0; i < urlToCheckCount.get(); i++) {
-                Link link = linkList.get(i);
-                runInNewTransaction("manalyseprocess-testlink", transaction -> {
-                    testLinkDate.set(System.currentTimeMillis());
-                    urlAnalyser.testLink(link);
-                    urlChecked.getAndIncrement();
-
-                    return null;
-                });
-            }
-        }
     }
 
     /**
@@ -271,29 +269,138 @@ public class MAnalyseProcess implements SelfNaming {
             }
 
             if (testLink) {
-                testLink(null);
+                testLinks(null);
             }
         }
+    }
 
-        private void testLink(List<String> links) {
-            List<Link> linkList;
-            if (links == null) {
-                linkList = linkRepository.findAll();
-            } else {
-                linkList = linkRepository.findAllByUrlIn(links);
+    /**
+     * Test the links by numberOfThreads threads.  Links with the same URL (except for the
+     * fragment) are only checked once and the status of each link is saved in a new transaction.
+     * <p/>
+     * The links are grouped by host and the URLs of a host are checked by at most
+     * {@link UrlChecker#getMaxConnectionsPerHost()} threads at a time.  When a host can not be
+     * requested yet, the check of its next URL is scheduled later and the threads check the links
+     * of the other hosts meanwhile.
+     *
+     * @param links the URLs of the links to test or null to test all links.
+     */
+    private void testLinks(List<String> links) throws InterruptedException {
+        List<Link> linkList;
+        if (links == null) {
+            linkList = linkRepository.findAll();
+        } else {
+            linkList = linkRepository.findAllByUrlIn(links);
+        }
+        urlToCheckCount.set(linkList.size());
+        testLinkDate.set(System.currentTimeMillis());
+
+        Map<String, Map<String, List<Link>>> linksByHost = new LinkedHashMap<>();
+        for (Link link : linkList) {
+            String url = link.getUrl();
+            int fragment = url.indexOf('#');
+            String key = fragment < 0 ? url : url.substring(0, fragment);
+            linksByHost.computeIfAbsent(getHost(url), host -> new LinkedHashMap<>())
+                .computeIfAbsent(key, k -> new ArrayList<>()).add(link);
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory();
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadNamePrefix("LinkChecker-");
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(Math.max(1, numberOfThreads), threadFactory);
+        CountDownLatch remaining = new CountDownLatch(linkList.size());
+        try {
+            for (Map<String, List<Link>> hostLinks : linksByHost.values()) {
+                Queue<List<Link>> urls = new ConcurrentLinkedQueue<>(hostLinks.values());
+                int checkers = Math.min(urlChecker.getMaxConnectionsPerHost(), hostLinks.size());
+                for (int i = 0; i < checkers; i++) {
+                    executor.execute(new HostLinksCheck(urls, executor, remaining));
+                }
+            }
+            while (!remaining.await(1, TimeUnit.MINUTES)) {
+                Log.debug(LOGGER, String.format("Process '%s': %d/%d links checked",
+                    probeName, urlChecked.get(), urlToCheckCount.get()));
             }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            urlToCheckCount.set(linkList.size());
+    private static String getHost(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Check the URLs of a host one after the other, rescheduling itself when the host can not
+     * be requested yet.
+     */
+    private final class HostLinksCheck implements Runnable {
+        private final Queue<List<Link>> urls;
+        private final ScheduledExecutorService executor;
+        private final CountDownLatch remaining;
+        private List<Link> next;
+
+        HostLinksCheck(Queue<List<Link>> urls, ScheduledExecutorService executor, CountDownLatch remaining) {
+            this.urls = urls;
+            this.executor = executor;
+            this.remaining = remaining;
+        }
 
-            for(int i = 0; i < urlToCheckCount.get(); i++) {
-                Link link = linkList.get(i);
-                runInNewTransaction("manalyseprocess-testlink", transaction -> {
-                    testLinkDate.set(System.currentTimeMillis());
-                    urlAnalyser.testLink(link);
-                    urlChecked.getAndIncrement();
+        @Override
+        public void run() {
+            if (next == null) {
+                next = urls.poll();
+                if (next == null) {
+                    return;
+                }
+            }
+            long delay = urlChecker.getDelayBeforeCheck(next.get(0).getUrl());
+            if (delay > 0) {
+                executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+            List<Link> sameUrlLinks = next;
+            next = null;
+            testLinks(sameUrlLinks, remaining);
+            executor.execute(this);
+        }
+    }
 
-                    return null;
-                });
+    /**
+     * Check the URL of links and save its status for each of them.
+     */
+    private void testLinks(List<Link> sameUrlLinks, CountDownLatch remaining) {
+        LinkStatus status = null;
+        try {
+            status = urlChecker.getUrlStatus(sameUrlLinks.get(0).getUrl());
+        } catch (Exception e) {
+            Log.error(LOGGER, String.format("Error checking link '%s' in process '%s'",
+                sameUrlLinks.get(0).getUrl(), probeName), e);
+        }
+        for (Link link : sameUrlLinks) {
+            try {
+                if (status != null) {
+                    // a status belongs to one link
+                    LinkStatus linkStatus = new LinkStatus()
+                        .setStatusValue(status.getStatusValue())
+                        .setStatusInfo(status.getStatusInfo())
+                        .setFailing(status.isFailing());
+                    runInNewTransaction("manalyseprocess-testlink", transaction -> {
+                        urlAnalyser.addLinkStatus(link, linkStatus);
+                        return null;
+                    });
+                }
+            } catch (Exception e) {
+                Log.error(LOGGER, String.format("Error checking link '%s' in process '%s'",
+                    link.getUrl(), probeName), e);
+            } finally {
+                testLinkDate.set(System.currentTimeMillis());
+                urlChecked.incrementAndGet();
+                remaining.countDown();
             }
         }
     }
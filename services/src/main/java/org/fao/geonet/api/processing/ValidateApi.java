@@ -24,6 +24,7 @@
 package org.fao.geonet.api.processing;
 
 import java.util.*;
+import java.util.stream.Collectors;
 import com.google.common.collect.Lists;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -41,11 +42,11 @@ import org.fao.geonet.api.processing.report.registry.IProcessingReportRegistry;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.AbstractMetadata;
 import org.fao.geonet.domain.MetadataValidation;
-import org.fao.geonet.domain.Pair;
 import org.fao.geonet.domain.SchematronRequirement;
 import org.fao.geonet.events.history.RecordValidationTriggeredEvent;
 import org.fao.geonet.inspire.validator.MInspireEtfValidateProcess;
 import org.fao.geonet.kernel.AccessManager;
+import org.fao.geonet.kernel.BatchMetadataValidator;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.SchemaManager;
 import org.fao.geonet.kernel.XmlSerializer;
@@ -131,6 +132,8 @@ public class ValidateApi {
     MBeanExporter mBeanExporter;
     @Autowired
     protected XmlSerializer xmlSerializer;
+    @Autowired
+    BatchMetadataValidator batchMetadataValidator;
 
     private final ArrayDeque<SelfNaming> mAnalyseProcesses = new ArrayDeque<>(NUMBER_OF_SUBSEQUENT_PROCESS_MBEAN_TO_KEEP);
 
@@ -181,6 +184,13 @@ public class ValidateApi {
             required = false
         )
             String bucket,
+        @Parameter(description = "Only validate the records which changed since their last validation, "
+            + "or which validation rules changed. The validation report of the other records is not returned.",
+            example = "false")
+        @RequestParam(
+            required = false,
+            defaultValue = "false")
+            boolean incremental,
         @Parameter(hidden = true)
             HttpSession session,
         @Parameter(hidden = true)
@@ -197,6 +207,7 @@ public class ValidateApi {
             Set<String> records = ApiUtils.getUuidsParameterOrSelection(uuids, bucket, userSession);
             report.setTotalRecords(records.size());
 
+            List<AbstractMetadata> recordsToValidate = new ArrayList<>();
             for (String uuid : records) {
                 int loopConditionCount = 0;
                 for (AbstractMetadata record : metadataRepository.findAllByUuid(uuid)) {
@@ -215,33 +226,7 @@ public class ValidateApi {
                         if (!accessMan.canEdit(serviceContext, String.valueOf(record.getId()))) {
                             report.addNotEditableMetadataId(record.getId());
                         } else {
-                            Pair<Element, String> validationPair = validator.doValidate(userSession, record.getDataInfo().getSchemaId(), Integer.toString(record.getId()), xmlSerializer.select(serviceContext, String.valueOf(record.getId())), serviceContext.getLanguage(), false);
-                            boolean isValid = !validationPair.one().getDescendants(ErrorFinder).hasNext();
-                            Element schemaTronReport = validationPair.one();
-                            if (schemaTronReport != null) {
-                                // If the schematron report is not null, we restructure it to have a pattern-rule hierarchy
-                                restructureReportToHavePatternRuleHierarchy(schemaTronReport);
-                                // And add any warnings to the MetadataValidationProcessingReport
-                                report.addAllReportsMatchingRequirement(record, schemaTronReport, SchematronRequirement.REPORT_ONLY);
-                            }
-                            if (isValid) {
-                                // If the record is valid, we add it to the valid metadata list
-                                report.addValidMetadata(record);
-                                new RecordValidationTriggeredEvent(record.getId(), ApiUtils.getUserSession(request.getSession()).getUserIdAsInt(), "1").publish(applicationContext);
-                            } else {
-                                // If the record is not valid, we add it to the invalid metadata list
-                                if (!report.getInvalidMetadata().containsKey(record.getId())) {
-                                    report.addInvalidMetadata(record);
-                                }
-                                if (schemaTronReport != null) {
-                                    // If the schematron report is not null, add any errors to the MetadataValidationProcessingReport
-                                    report.addAllReportsMatchingRequirement(record, schemaTronReport, SchematronRequirement.REQUIRED);
-                                }
-
-                                new RecordValidationTriggeredEvent(record.getId(), ApiUtils.getUserSession(request.getSession()).getUserIdAsInt(), "0").publish(applicationContext);
-                            }
-                            report.addMetadataId(record.getId());
-                            report.incrementProcessedRecords();
+                            recordsToValidate.add(record);
                         }
                     }
                 }
@@ -251,8 +236,57 @@ public class ValidateApi {
                 }
             }
 
-            // index records
-            BatchOpsMetadataReindexer r = new BatchOpsMetadataReindexer(dataMan, report.getMetadata());
+            Map<Integer, BatchMetadataValidator.Result> results = batchMetadataValidator.validate(serviceContext,
+                recordsToValidate.stream().map(AbstractMetadata::getId).collect(Collectors.toList()), incremental);
+
+            Set<Integer> validatedRecords = new HashSet<>();
+            for (AbstractMetadata record : recordsToValidate) {
+                BatchMetadataValidator.Result result = results.get(record.getId());
+                if (result == null) {
+                    report.addNotFoundMetadataId(record.getId());
+                    continue;
+                }
+                if (result.getError() != null) {
+                    // The record could not be validated
+                    report.addMetadataError(record, result.getError());
+                    report.addInvalidMetadata(record);
+                } else if (result.isUnchanged()) {
+                    // The record was not validated again, only report its last validation status
+                    report.incrementUnchangedRecords();
+                    if (result.isValid()) {
+                        report.addValidMetadata(record);
+                    } else {
+                        report.addInvalidMetadata(record);
+                    }
+                } else {
+                    boolean isValid = !result.getReport().getDescendants(ErrorFinder).hasNext();
+                    Element schemaTronReport = result.getReport();
+                    // Restructure the report to have a pattern-rule hierarchy
+                    restructureReportToHavePatternRuleHierarchy(schemaTronReport);
+                    // And add any warnings to the MetadataValidationProcessingReport
+                    report.addAllReportsMatchingRequirement(record, schemaTronReport, SchematronRequirement.REPORT_ONLY);
+                    if (isValid) {
+                        // If the record is valid, we add it to the valid metadata list
+                        report.addValidMetadata(record);
+                        new RecordValidationTriggeredEvent(record.getId(), userSession.getUserIdAsInt(), "1").publish(applicationContext);
+                    } else {
+                        // If the record is not valid, we add it to the invalid metadata list
+                        if (!report.getInvalidMetadata().containsKey(record.getId())) {
+                            report.addInvalidMetadata(record);
+                        }
+                        // Add any errors to the MetadataValidationProcessingReport
+                        report.addAllReportsMatchingRequirement(record, schemaTronReport, SchematronRequirement.REQUIRED);
+
+                        new RecordValidationTriggeredEvent(record.getId(), userSession.getUserIdAsInt(), "0").publish(applicationContext);
+                    }
+                    validatedRecords.add(record.getId());
+                }
+                report.addMetadataId(record.getId());
+                report.incrementProcessedRecords();
+            }
+
+            // index the validated records
+            BatchOpsMetadataReindexer r = new BatchOpsMetadataReindexer(dataMan, validatedRecords);
             r.process(settingManager.getSiteId(), true);
         } catch (Exception e) {
             throw e;
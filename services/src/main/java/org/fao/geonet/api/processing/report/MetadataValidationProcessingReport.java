@@ -47,12 +47,12 @@ import java.util.*;
     "uuid", "metadata", "validMetadata", "invalidMetadata", "metadataWithWarnings",
     "validationErrors", "validationWarnings", "numberOfRecords", "numberOfRecordsProcessed", "numberOfValidRecords",
     "numberOfInvalidRecords", "numberOfRecordsWithValidationWarnings", "numberOfNullRecords",
-    "numberOfRecordsNotEditable", "startIsoDateTime", "endIsoDateTime", "ellapsedTimeInSeconds",
+    "numberOfRecordsNotEditable", "numberOfRecordsUnchanged", "startIsoDateTime", "endIsoDateTime", "ellapsedTimeInSeconds",
     "totalTimeInSeconds", "running", "type"
 })
 // Exclude unused properties from JSON serialization
 @JsonIgnoreProperties({
-    "errors", "infos", "metadataErrors", "metadataInfos", "numberOfRecordsUnchanged",
+    "errors", "infos", "metadataErrors", "metadataInfos",
     "numberOfRecordsWithErrors", "numberOfRecordNotFound"
 })
 public class MetadataValidationProcessingReport extends MetadataProcessingReport {
@@ -25,6 +25,7 @@ package org.fao.geonet.api.records;
 
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import co.elastic.clients.json.JsonData;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -32,6 +33,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Joiner;
 import jeeves.server.context.ServiceContext;
+import jeeves.xlink.Processor;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
 import org.fao.geonet.ApplicationContextHolder;
@@ -46,8 +48,11 @@ import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.domain.AbstractMetadata;
 import org.fao.geonet.domain.ReservedOperation;
 import org.fao.geonet.domain.Source;
+import org.fao.geonet.kernel.AccessManager;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.SchemaManager;
+import org.fao.geonet.kernel.UserPrivilegesSnapshot;
+import org.fao.geonet.kernel.XmlSerializer;
 import org.fao.geonet.kernel.datamanager.IMetadataValidator;
 import org.fao.geonet.kernel.datamanager.base.BaseMetadataUtils;
 import org.fao.geonet.kernel.schema.AssociatedResource;
@@ -199,20 +204,62 @@ public class MetadataUtils {
 
         GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
         DataManager dm = gc.getBean(DataManager.class);
-        SettingManager settingManager = gc.getBean(SettingManager.class);
-        EsSearchManager searchMan = gc.getBean(EsSearchManager.class);
 
         Element xml = dm.getMetadata(context, md.getId() + "",
             FOR_EDITING, WITH_VALIDATION_ERRORS, KEEP_XLINK_ATTRIBUTES);
 
+        Map<Integer, Map<RelatedItemType, RelatedTypeDetails>> queries = new HashMap<>();
+        queries.put(md.getId(), buildRelatedQueries(context, md, xml, types));
+
+        return searchAssociated(context, queries, start, size).get(md.getId());
+    }
+
+    /**
+     * Get the associated records of a set of records, eg. the hits of a search page.
+     * The queries of all records and types are sent to the index in one multi search
+     * request, instead of one search per type and per record.
+     *
+     * @return the associated records by record id. Records which failed to be processed are not in the map.
+     */
+    public static Map<Integer, Map<RelatedItemType, List<AssociatedRecord>>> getAssociated(
+        ServiceContext context,
+        Collection<? extends AbstractMetadata> records, RelatedItemType[] types, int start, int size)
+        throws Exception  {
+
+        XmlSerializer xmlSerializer = context.getBean(XmlSerializer.class);
+
+        Map<Integer, Map<RelatedItemType, RelatedTypeDetails>> queries = new LinkedHashMap<>();
+        for (AbstractMetadata md : records) {
+            try {
+                // Same as DataManager#getMetadata without loading the record again
+                Element xml = xmlSerializer.removeHiddenElements(false, md, true);
+                if (xmlSerializer.resolveXLinks()) {
+                    Processor.detachXLink(xml, context);
+                }
+                queries.put(md.getId(), buildRelatedQueries(context, md, xml, types));
+            } catch (Exception e) {
+                LOGGER.warn("Failed to load related types for {}. Error is: {}",
+                    md.getUuid(), e.getMessage());
+            }
+        }
+
+        return searchAssociated(context, queries, start, size);
+    }
+
+    /**
+     * For each type, build a query and the expected list of uuids.
+     */
+    private static Map<RelatedItemType, RelatedTypeDetails> buildRelatedQueries(
+        ServiceContext context, AbstractMetadata md, Element xml, RelatedItemType[] types) {
+
+        SettingManager settingManager = context.getBean(SettingManager.class);
+
         SchemaPlugin instance = SchemaManager.getSchemaPlugin(md.getDataInfo().getSchemaId());
         final AssociatedResourcesSchemaPlugin schemaPlugin =
                 instance instanceof AssociatedResourcesSchemaPlugin
                 ? (AssociatedResourcesSchemaPlugin) instance : null;
 
-        // For each type, store a query and expected list of uuids.
         Map<RelatedItemType, RelatedTypeDetails> queries = new HashMap<>();
-        Set<String> allSearchedUuids = new HashSet<>();
 
 
         // We have 3 types of links
@@ -288,7 +335,6 @@ public class MetadataUtils {
                             recordsProperties,
                             remoteRecords
                         ));
-                    allSearchedUuids.addAll(listOfUUIDs);
                 }
             } else if (schemaPlugin != null && type == RelatedItemType.brothersAndSisters) {
                 // Get parents
@@ -303,7 +349,6 @@ public class MetadataUtils {
                         md.getUuid()),
                         listOfUUIDs
                     ));
-                allSearchedUuids.addAll(listOfUUIDs);
             } else if (schemaPlugin != null && type == RelatedItemType.children) {
                 // Get associated with isComposedOf
                 Set<AssociatedResource> listOfAssociated = schemaPlugin.getAssociatedResourcesUUIDs(xml);
@@ -323,85 +368,109 @@ public class MetadataUtils {
                             ),
                         isComposedOfList
                     ));
-                allSearchedUuids.addAll(isComposedOfList);
             }
         });
 
 
-        Map<RelatedItemType, List<AssociatedRecord>> associated =
-            new HashMap<>();
-        Set<String> allCatalogueUuids = new HashSet<>();
+        return queries;
+    }
+
+    /**
+     * Run the queries of the related types of records in one multi search request
+     * and build the associated records of each record.
+     */
+    private static Map<Integer, Map<RelatedItemType, List<AssociatedRecord>>> searchAssociated(
+        ServiceContext context,
+        Map<Integer, Map<RelatedItemType, RelatedTypeDetails>> queriesByRecord,
+        int start, int size) throws Exception {
+
+        EsSearchManager searchMan = context.getBean(EsSearchManager.class);
+
+        List<String> luceneQueries = new ArrayList<>();
+        queriesByRecord.values().forEach(queries ->
+            queries.values().forEach(details -> luceneQueries.add(details.getQuery())));
 
         String privilegesFilter = buildPermissionsFilter(context);
+        final List<ResponseBody<ObjectNode>> results = searchMan.multiQuery(
+            luceneQueries,
+            privilegesFilter,
+            FIELDLIST_RELATED,
+            FIELDLIST_RELATED_SCRIPTED,
+            start, size);
+
+        Map<Integer, Map<RelatedItemType, List<AssociatedRecord>>> associatedByRecord =
+            new LinkedHashMap<>();
+        Set<String> allCatalogueUuids = new HashSet<>();
+
+        UserPrivilegesSnapshot privileges = context.getBean(AccessManager.class).getPrivilegesSnapshot(context);
         ObjectMapper mapper = new ObjectMapper();
 
-        for (Map.Entry<RelatedItemType,RelatedTypeDetails> entry : queries.entrySet()) {
-            // TODO: Use msearch ?
-            RelatedTypeDetails relatedTypeDetails = entry.getValue();
-            final SearchResponse result = searchMan.query(
-                relatedTypeDetails.getQuery(),
-                privilegesFilter,
-                FIELDLIST_RELATED,
-                FIELDLIST_RELATED_SCRIPTED,
-                start, size);
-            Set<String> expectedUuids = relatedTypeDetails.getExpectedRecords();
-            Set<String> remoteRecords = relatedTypeDetails.getRemoteRecords();
-
-            List<AssociatedRecord> records = new ArrayList<>();
-            if (!result.hits().hits().isEmpty()) {
-                for (Hit e : (List<Hit>) result.hits().hits()) {
-                    allCatalogueUuids.add(e.id());
-                    AssociatedRecord associatedRecord = new AssociatedRecord();
-                    associatedRecord.setUuid(e.id());
-                    // Set properties eg. remote, associationType, ...
-                    associatedRecord.setProperties(relatedTypeDetails.recordsProperties.get(e.id()));
-
-                    // Add scripted field values to the properties of the record
-                    if (!e.fields().isEmpty()) {
-                        FIELDLIST_RELATED_SCRIPTED.keySet().forEach(f -> {
-                            JsonData dc = (JsonData) e.fields().get(f);
-
-                            if (dc != null) {
-                                if (associatedRecord.getProperties() == null) {
-                                    associatedRecord.setProperties(new HashMap<>());
+        Iterator<ResponseBody<ObjectNode>> resultIterator = results.iterator();
+        for (Map.Entry<Integer, Map<RelatedItemType, RelatedTypeDetails>> recordQueries : queriesByRecord.entrySet()) {
+            Map<RelatedItemType, List<AssociatedRecord>> associated = new HashMap<>();
+            for (Map.Entry<RelatedItemType, RelatedTypeDetails> entry : recordQueries.getValue().entrySet()) {
+                RelatedTypeDetails relatedTypeDetails = entry.getValue();
+                final ResponseBody<ObjectNode> result = resultIterator.next();
+                Set<String> expectedUuids = relatedTypeDetails.getExpectedRecords();
+                Set<String> remoteRecords = relatedTypeDetails.getRemoteRecords();
+
+                List<AssociatedRecord> records = new ArrayList<>();
+                if (!result.hits().hits().isEmpty()) {
+                    for (Hit<ObjectNode> e : result.hits().hits()) {
+                        allCatalogueUuids.add(e.id());
+                        AssociatedRecord associatedRecord = new AssociatedRecord();
+                        associatedRecord.setUuid(e.id());
+                        // Set properties eg. remote, associationType, ...
+                        associatedRecord.setProperties(relatedTypeDetails.recordsProperties.get(e.id()));
+
+                        // Add scripted field values to the properties of the record
+                        if (!e.fields().isEmpty()) {
+                            FIELDLIST_RELATED_SCRIPTED.keySet().forEach(f -> {
+                                JsonData dc = (JsonData) e.fields().get(f);
+
+                                if (dc != null) {
+                                    if (associatedRecord.getProperties() == null) {
+                                        associatedRecord.setProperties(new HashMap<>());
+                                    }
+                                    associatedRecord.getProperties().put(f, dc.toJson().asJsonArray().get(0).toString().replaceAll("^\"|\"$", ""));
                                 }
-                                associatedRecord.getProperties().put(f, dc.toJson().asJsonArray().get(0).toString().replaceAll("^\"|\"$", ""));
-                            }
-                        });
-                    }
+                            });
+                        }
 
-                    JsonNode source = mapper.convertValue(e.source(), JsonNode.class);
-                    ObjectNode doc = mapper.createObjectNode();
-                    doc.set("_source", source);
-                    EsHTTPProxy.addUserInfo(doc, context);
-                    Iterator<String> fieldNames = doc.fieldNames();
-                    while (fieldNames.hasNext()) {
-                        String field = fieldNames.next();
-                        if (!"_source".equals(field)) {
-                            ((ObjectNode) source).set(field, doc.get(field));
+                        JsonNode source = mapper.convertValue(e.source(), JsonNode.class);
+                        ObjectNode doc = mapper.createObjectNode();
+                        doc.set("_source", source);
+                        EsHTTPProxy.addUserInfo(doc, privileges);
+                        Iterator<String> fieldNames = doc.fieldNames();
+                        while (fieldNames.hasNext()) {
+                            String field = fieldNames.next();
+                            if (!"_source".equals(field)) {
+                                ((ObjectNode) source).set(field, doc.get(field));
+                            }
+                        }
+                        associatedRecord.setRecord(source);
+                        associatedRecord.setOrigin(RelatedItemOrigin.catalog.name());
+                        records.add(associatedRecord);
+                        if (expectedUuids.contains(e.id())) {
+                            expectedUuids.remove(e.id());
+                        }
+                        // Remote records may be found in current catalogue (eg. if harvested)
+                        if (remoteRecords.contains(e.id())) {
+                            remoteRecords.remove(e.id());
                         }
-                    }
-                    associatedRecord.setRecord(source);
-                    associatedRecord.setOrigin(RelatedItemOrigin.catalog.name());
-                    records.add(associatedRecord);
-                    if (expectedUuids.contains(e.id())) {
-                        expectedUuids.remove(e.id());
-                    }
-                    // Remote records may be found in current catalogue (eg. if harvested)
-                    if (remoteRecords.contains(e.id())) {
-                        remoteRecords.remove(e.id());
                     }
                 }
-            }
 
-            buildRemoteRecords(mapper, relatedTypeDetails, records);
-            associated.put(entry.getKey(), records);
+                buildRemoteRecords(mapper, relatedTypeDetails, records);
+                associated.put(entry.getKey(), records);
+            }
+            associatedByRecord.put(recordQueries.getKey(), associated);
         }
 
-        assignPortalOrigin(start, size, searchMan, associated, allCatalogueUuids);
+        assignPortalOrigin(searchMan, associatedByRecord.values(), allCatalogueUuids);
 
         // TODO: Editable relation
-        return associated;
+        return associatedByRecord;
     }
 
     private static void buildRemoteRecords(ObjectMapper mapper,
@@ -418,11 +487,13 @@ public class MetadataUtils {
         }
     }
 
-    private static void assignPortalOrigin(int start, int size, EsSearchManager searchMan, Map<RelatedItemType, List<AssociatedRecord>> associated, Set<String> allCatalogueUuids) throws Exception {
+    private static void assignPortalOrigin(EsSearchManager searchMan,
+                                           Collection<Map<RelatedItemType, List<AssociatedRecord>>> associatedByRecord,
+                                           Set<String> allCatalogueUuids) throws Exception {
         String portalFilter;
         SourceRepository sourceRepository = ApplicationContextHolder.get().getBean(SourceRepository.class);
         NodeInfo node = ApplicationContextHolder.get().getBean(NodeInfo.class);
-        if (node != null && !NodeInfo.DEFAULT_NODE.equals(node.getId())) {
+        if (node != null && !NodeInfo.DEFAULT_NODE.equals(node.getId()) && !allCatalogueUuids.isEmpty()) {
             final Optional<Source> portal = sourceRepository.findById(node.getId());
             if (portal.isPresent() && StringUtils.isNotEmpty(portal.get().getFilter())) {
                 portalFilter = portal.get().getFilter();
@@ -433,7 +504,7 @@ public class MetadataUtils {
                             .collect(Collectors.joining("\" OR \"", "\"", "\""))),
                     portalFilter,
                     FIELDLIST_UUID,
-                    start, size);
+                    0, allCatalogueUuids.size());
 
                 Set<String> allPortalUuids = new HashSet<>();
                 if (!recordsInPortal.hits().hits().isEmpty()) {
@@ -443,9 +514,10 @@ public class MetadataUtils {
                 }
 
                 if (!allPortalUuids.isEmpty()) {
-                    associated.forEach((t, records) -> records.stream()
-                        .filter(r -> allPortalUuids.contains(r.getUuid()))
-                        .forEach(r -> r.setOrigin(RelatedItemOrigin.portal.name())));
+                    associatedByRecord.forEach(associated ->
+                        associated.forEach((t, records) -> records.stream()
+                            .filter(r -> allPortalUuids.contains(r.getUuid()))
+                            .forEach(r -> r.setOrigin(RelatedItemOrigin.portal.name()))));
                 }
             }
         }
@@ -35,6 +35,7 @@ import jeeves.services.ReadWriteController;
 import org.fao.geonet.ApplicationContextHolder;
 import org.fao.geonet.api.API;
 import org.fao.geonet.api.records.formatters.cache.FormatterCache;
+import org.fao.geonet.api.records.formatters.cache.FormatterCacheWarmUp;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
@@ -75,5 +76,6 @@ public class CacheApi {
     public void clearFormatterCache() throws Exception {
         FormatterCache formatterCache = ApplicationContextHolder.get().getBean(FormatterCache.class);
         formatterCache.clear();
+        ApplicationContextHolder.get().getBean(FormatterCacheWarmUp.class).warmUpPublishedRecords();
     }
 }
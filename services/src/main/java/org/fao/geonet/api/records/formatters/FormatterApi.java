@@ -65,7 +65,6 @@ import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpResponse;
@@ -80,6 +79,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
@@ -424,24 +424,23 @@ public class FormatterApi extends AbstractFormatService implements ApplicationLi
      */
     @RequestMapping(value = "/{portal}/{lang}/md.format.public.{type}")
     @io.swagger.v3.oas.annotations.Operation(hidden = true)
-    public HttpEntity<byte[]> getCachedPublicMetadata(
+    public void getCachedPublicMetadata(
         @PathVariable final String lang,
         @PathVariable final String type,
         @RequestParam(required = false) final String id,
         @RequestParam(value = "uuid", required = false) final String uuid,
-        @RequestParam(value = "xsl", required = false) final String xslid) throws Exception {
+        @RequestParam(value = "xsl", required = false) final String xslid,
+        final HttpServletResponse response) throws Exception {
         final FormatType formatType = FormatType.valueOf(type.toLowerCase());
 
         FormatterCache formatterCache = ApplicationContextHolder.get().getBean(FormatterCache.class);
 
         String resolvedId = resolveId(id, uuid);
         Key key = new Key(Integer.parseInt(resolvedId), lang, formatType, xslid, true, FormatterWidth._100);
-        byte[] bytes = formatterCache.getPublished(key);
 
-        if (bytes != null) {
-            return new HttpEntity<>(bytes);
-        }
-        return null;
+        // the cached file is copied to the response without being loaded in memory
+        response.setContentType(formatType.contentType);
+        formatterCache.transferPublished(key, Channels.newChannel(response.getOutputStream()));
     }
 
     /**
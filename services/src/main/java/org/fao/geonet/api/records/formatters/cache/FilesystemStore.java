@@ -25,12 +25,14 @@ package org.fao.geonet.api.records.formatters.cache;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.Striped;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.kernel.GeonetworkDataDirectory;
 import org.fao.geonet.lib.Lib;
 import org.fao.geonet.utils.IO;
 import org.fao.geonet.utils.Log;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -38,13 +40,27 @@ import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.file.FileVisitResult;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.fao.geonet.constants.Params.Access.PRIVATE;
 import static org.fao.geonet.constants.Params.Access.PUBLIC;
@@ -52,6 +68,12 @@ import static org.fao.geonet.constants.Params.Access.PUBLIC;
 /**
  * A {@link org.fao.geonet.api.records.formatters.cache.PersistentStore} that saves the files to
  * disk.
+ * <p/>
+ * The information about the cached files is kept in a local h2 database and loaded in memory when
+ * the store is initialized so that looking up a key does not hit the database.  Files are read
+ * and written under a lock striped by key so that only accesses to the same key are serialized.
+ * When the cache size exceeds the maximum size, the entries which were never read and then the
+ * least recently read are removed until the cache is half full.
  *
  * @author Jesse on 3/5/2015.
  */
@@ -59,298 +81,476 @@ public class FilesystemStore implements PersistentStore {
     public static final String WITHHELD_MD_DIRNAME = "withheld_md";
     public static final String FULL_MD_NAME = "full_md";
     private static final String BASE_CACHE_DIR = "formatter-cache";
+    private static final String DELETED_DIR_SUFFIX = ".deleted";
     private static final String INFO_TABLE = "info";
     private static final String KEY = "keyhash";
     private static final String CHANGE_DATE = "changedate";
     private static final String PUBLISHED = "published";
     private static final String PATH = "path";
+    private static final String METADATA_ID = "mdid";
+    private static final String FILE_SIZE = "filesize";
     private static final String STATS_TABLE = "stats";
-    private static final String NAME = "name";
-    private static final String CURRENT_SIZE = "currentsize";
-    private static final String VALUE = "statvalue";
-    public static final String QUERY_SETCURRENT_SIZE = "MERGE INTO " + STATS_TABLE + " (" + NAME + ", " + VALUE + ") VALUES ('" + CURRENT_SIZE + "', ?)";
-    public static final String QUERY_GETCURRENT_SIZE = "SELECT " + VALUE + " FROM " + STATS_TABLE + " WHERE " + NAME + " = '" + CURRENT_SIZE + "'";
-    private static final String QUERY_GET_INFO = "SELECT * FROM " + INFO_TABLE + " WHERE " + KEY + "=?";
-    private static final String QUERY_GET_INFO_FOR_RESIZE = "SELECT " + KEY + "," + PATH + " FROM " + INFO_TABLE + " ORDER BY " + CHANGE_DATE + " ASC";
-    private static final String QUERY_PUT = "MERGE INTO " + INFO_TABLE + " (" + KEY + "," + CHANGE_DATE + "," + PUBLISHED + "," + PATH + ") VALUES (?,?,?, ?)";
+    public static final String QUERY_GETCURRENT_SIZE = "SELECT SUM(" + FILE_SIZE + ") FROM " + INFO_TABLE;
+    private static final String QUERY_GET_ALL_INFO = "SELECT * FROM " + INFO_TABLE;
+    private static final String QUERY_PUT = "MERGE INTO " + INFO_TABLE + " (" + KEY + "," + CHANGE_DATE + "," + PUBLISHED + "," + PATH + "," +
+        METADATA_ID + "," + FILE_SIZE + ") VALUES (?,?,?,?,?,?)";
+    private static final String QUERY_UPDATE_LEGACY = "UPDATE " + INFO_TABLE + " SET " + METADATA_ID + "=?, " + FILE_SIZE + "=? WHERE " + KEY + "=?";
+    private static final String QUERY_SET_PUBLISHED = "UPDATE " + INFO_TABLE + " SET " + PUBLISHED + "=? WHERE " + METADATA_ID + "=?";
     private static final String QUERY_REMOVE = "DELETE FROM " + INFO_TABLE + " WHERE " + KEY + "=?";
     private static final String QUERY_CLEAR_INFO = "DELETE FROM " + INFO_TABLE;
-    private static final String QUERY_CLEAR_STATS = "DELETE FROM " + STATS_TABLE;
     @VisibleForTesting
     Connection metadataDb;
     @Autowired
     private GeonetworkDataDirectory geonetworkDataDir;
     private boolean testing = false;
     private volatile long maxSizeB = 10000;
-    private volatile long currentSize = 0;
+    private final AtomicLong currentSize = new AtomicLong();
     private volatile boolean initialized = false;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> mdIdIndex = new ConcurrentHashMap<>();
+    private final Striped<ReadWriteLock> locks = Striped.readWriteLock(64);
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private ExecutorService cleaner;
 
-    private synchronized void init() throws SQLException {
+    private void init() throws SQLException {
         if (!initialized) {
-            // using a h2 database and not normal geonetwork DB to ensure that the accesses are always on localhost and therefore
-            // hopefully quick.
-            try {
-                Class.forName("org.h2.Driver");
-            } catch (ClassNotFoundException e) {
-                throw new Error(e);
+            synchronized (this) {
+                if (!initialized) {
+                    doInit();
+                    initialized = true;
+                }
             }
+        }
+    }
+
+    private void doInit() throws SQLException {
+        // using a h2 database and not normal geonetwork DB to ensure that the accesses are always on localhost and therefore
+        // hopefully quick.
+        try {
+            Class.forName("org.h2.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new Error(e);
+        }
 
-            String[] initSql = {
-                "CREATE SCHEMA IF NOT EXISTS " + INFO_TABLE,
-                "CREATE TABLE IF NOT EXISTS " + INFO_TABLE + "(" + KEY + " INT PRIMARY KEY, " + CHANGE_DATE + " BIGINT NOT NULL, " +
-                    PUBLISHED + " BOOL NOT NULL, " + PATH + " CLOB  NOT NULL)",
-                "CREATE TABLE IF NOT EXISTS " + STATS_TABLE + " (" + NAME + " VARCHAR(64) PRIMARY KEY, " + VALUE + " VARCHAR(32) NOT NULL)"
-
-            };
-            String init = ";INIT=" + Joiner.on("\\;").join(initSql) + ";DB_CLOSE_DELAY=-1";
-            String dbPath = testing ? "mem:" + UUID.randomUUID() : getBaseCacheDir().resolve("info-store").toString();
-            metadataDb = DriverManager.getConnection("jdbc:h2:" + dbPath + init, "fsStore", "");
-
-            try (
-                Statement statement = metadataDb.createStatement();
-                ResultSet rs = statement.executeQuery(QUERY_GETCURRENT_SIZE)) {
-                if (rs.next()) {
-                    this.currentSize = Long.parseLong(rs.getString(1));
+        String[] initSql = {
+            "CREATE SCHEMA IF NOT EXISTS " + INFO_TABLE,
+            "CREATE TABLE IF NOT EXISTS " + INFO_TABLE + "(" + KEY + " INT PRIMARY KEY, " + CHANGE_DATE + " BIGINT NOT NULL, " +
+                PUBLISHED + " BOOL NOT NULL, " + PATH + " CLOB  NOT NULL)",
+            // columns added to caches created by previous versions are filled in when loading the entries
+            "ALTER TABLE " + INFO_TABLE + " ADD COLUMN IF NOT EXISTS " + METADATA_ID + " INT DEFAULT -1 NOT NULL",
+            "ALTER TABLE " + INFO_TABLE + " ADD COLUMN IF NOT EXISTS " + FILE_SIZE + " BIGINT DEFAULT -1 NOT NULL",
+            "DROP TABLE IF EXISTS " + STATS_TABLE
+        };
+        String init = ";INIT=" + Joiner.on("\\;").join(initSql) + ";DB_CLOSE_DELAY=-1";
+        String dbPath = testing ? "mem:" + UUID.randomUUID() : getBaseCacheDir().resolve("info-store").toString();
+        metadataDb = DriverManager.getConnection("jdbc:h2:" + dbPath + init, "fsStore", "");
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory();
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadNamePrefix("FormatterCacheCleaner-");
+        cleaner = Executors.newSingleThreadExecutor(threadFactory);
+
+        loadEntries();
+        deleteInBackground(findDeletedDirectories());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    close();
+                } catch (SQLException | ClassNotFoundException e) {
+                    Log.error(Geonet.FORMATTER, "Error shutting down FilesystemStore Database", e);
                 }
             }
-            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
-                @Override
-                public void run() {
+        }));
+    }
+
+    private void loadEntries() throws SQLException {
+        long startTime = System.currentTimeMillis();
+        List<Integer> missing = new ArrayList<>();
+        try (
+            PreparedStatement update = metadataDb.prepareStatement(QUERY_UPDATE_LEGACY);
+            Statement statement = metadataDb.createStatement();
+            ResultSet resultSet = statement.executeQuery(QUERY_GET_ALL_INFO)) {
+            boolean legacy = false;
+            while (resultSet.next()) {
+                int keyHash = resultSet.getInt(KEY);
+                Path path = IO.toPath(new URI(resultSet.getString(PATH)));
+                int mdId = resultSet.getInt(METADATA_ID);
+                long size = resultSet.getLong(FILE_SIZE);
+                if (mdId < 0 || size < 0) {
                     try {
-                        close();
-                    } catch (SQLException | ClassNotFoundException e) {
-                        Log.error(Geonet.FORMATTER, "Error shutting down FilesystemStore Database", e);
+                        mdId = Integer.parseInt(getBaseCacheDir().resolve(PRIVATE).relativize(path).getName(1).toString());
+                        size = Files.size(path);
+                    } catch (IOException | RuntimeException e) {
+                        missing.add(keyHash);
+                        continue;
                     }
+                    update.setInt(1, mdId);
+                    update.setLong(2, size);
+                    update.setInt(3, keyHash);
+                    update.addBatch();
+                    legacy = true;
                 }
-            }));
-            initialized = true;
+                addEntry(keyHash, new Entry(mdId, path, resultSet.getLong(CHANGE_DATE), resultSet.getBoolean(PUBLISHED), size));
+            }
+            if (legacy) {
+                update.executeBatch();
+            }
+        } catch (URISyntaxException e) {
+            throw new Error(e);
         }
-
+        for (Integer keyHash : missing) {
+            deleteInfo(keyHash);
+        }
+        Log.info(Geonet.FORMATTER, "Loaded " + entries.size() + " formatter cache entries (" + currentSize.get() + " bytes) in " +
+            (System.currentTimeMillis() - startTime) + "ms");
     }
 
     @PreDestroy
     synchronized void close() throws ClassNotFoundException, SQLException {
         Log.info(Geonet.FORMATTER, "Stopping the FileSystemStore");
+        if (cleaner != null) {
+            cleaner.shutdown();
+        }
         if (metadataDb != null) {
             metadataDb.close();
         }
     }
 
     @Override
-    public synchronized StoreInfoAndData get(@Nonnull Key key) throws IOException, SQLException {
+    public StoreInfoAndData get(@Nonnull Key key) throws IOException, SQLException {
         init();
-        StoreInfo info = getInfo(key);
-        if (info == null) {
-            return null;
+        final Lock lock = locks.get(key.hashCode()).readLock();
+        lock.lock();
+        try {
+            Entry entry = entries.get(key.hashCode());
+            if (entry == null) {
+                return null;
+            }
+            byte[] data;
+            try {
+                data = Files.readAllBytes(getPrivatePath(key));
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+            entry.lastRead = System.currentTimeMillis();
+            return new StoreInfoAndData(entry.toStoreInfo(), data);
+        } finally {
+            lock.unlock();
         }
-        byte[] data = Files.readAllBytes(getPrivatePath(key));
-        return new StoreInfoAndData(info, data);
     }
 
     @Override
-    public synchronized StoreInfo getInfo(@Nonnull Key key) throws SQLException {
+    public StoreInfo getInfo(@Nonnull Key key) throws SQLException {
         init();
-        try (PreparedStatement statement = this.metadataDb.prepareStatement(QUERY_GET_INFO)) {
-            statement.setInt(1, key.hashCode());
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    long date = resultSet.getLong(CHANGE_DATE);
-                    boolean isPublished = resultSet.getBoolean(PUBLISHED);
-                    return new StoreInfo(date, isPublished);
-                } else {
-                    return null;
-                }
-            }
-        }
+        Entry entry = entries.get(key.hashCode());
+        return entry == null ? null : entry.toStoreInfo();
     }
 
     @Override
-    public synchronized void put(@Nonnull Key key, @Nonnull StoreInfoAndData data) throws IOException, SQLException {
+    public void put(@Nonnull Key key, @Nonnull StoreInfoAndData data) throws IOException, SQLException {
         init();
-        resizeIfRequired(key, data);
+        final int keyHashCode = key.hashCode();
         final Path privatePath = getPrivatePath(key);
+        final Lock lock = locks.get(keyHashCode).writeLock();
+        lock.lock();
+        try {
+            resizeIfRequired(keyHashCode, data);
 
-        if (Files.exists(privatePath)) {
-            currentSize -= Files.size(privatePath);
-        }
-
-        Files.createDirectories(privatePath.getParent());
-        Files.write(privatePath, data.data);
-        currentSize += data.data.length;
-
-        updateDbCurrentSize();
+            Files.createDirectories(privatePath.getParent());
+            Files.write(privatePath, data.data);
 
-        Path publicPath = getPublicPath(key);
-        Files.deleteIfExists(publicPath);
-        // only publish if withheld (hidden) elements are hidden.
-        if (data.isPublished() && key.hideWithheld) {
-            Files.createDirectories(publicPath.getParent());
-            try {
-                Files.createLink(publicPath, privatePath);
-            } catch (UnsupportedOperationException | SecurityException e) {
-                // Link likely not supported on this FS use copy then.
-                Files.copy(privatePath, publicPath);
+            Path publicPath = getPublicPath(key);
+            Files.deleteIfExists(publicPath);
+            // only publish if withheld (hidden) elements are hidden.
+            if (data.isPublished() && key.hideWithheld) {
+                publish(privatePath, publicPath);
             }
-        }
-        try (PreparedStatement statement = this.metadataDb.prepareStatement(QUERY_PUT)) {
-            statement.setInt(1, key.hashCode());
-            statement.setLong(2, data.getChangeDate());
-            statement.setBoolean(3, data.isPublished());
-            statement.setString(4, privatePath.toUri().toString());
-            statement.execute();
+            try (PreparedStatement statement = this.metadataDb.prepareStatement(QUERY_PUT)) {
+                statement.setInt(1, keyHashCode);
+                statement.setLong(2, data.getChangeDate());
+                statement.setBoolean(3, data.isPublished());
+                statement.setString(4, privatePath.toUri().toString());
+                statement.setInt(5, key.mdId);
+                statement.setLong(6, data.data.length);
+                statement.execute();
+            }
+            addEntry(keyHashCode, new Entry(key.mdId, privatePath, data.getChangeDate(), data.isPublished(), data.data.length));
+        } finally {
+            lock.unlock();
         }
     }
 
-    private void updateDbCurrentSize() throws SQLException {
-        try (PreparedStatement statement = this.metadataDb.prepareStatement(QUERY_SETCURRENT_SIZE)) {
-            statement.setString(1, String.valueOf(currentSize));
-            statement.execute();
-        }
+    private void addEntry(int keyHashCode, Entry entry) {
+        Entry previous = entries.put(keyHashCode, entry);
+        currentSize.addAndGet(entry.size - (previous == null ? 0 : previous.size));
+        mdIdIndex.computeIfAbsent(entry.mdId, k -> ConcurrentHashMap.newKeySet()).add(keyHashCode);
     }
 
-    private void resizeIfRequired(Key key, StoreInfoAndData data) throws IOException, SQLException {
-        if (this.currentSize + data.data.length > this.maxSizeB) {
-            final Path privatePath = getPrivatePath(key);
-            if (Files.exists(privatePath)) {
-                long fileSize = Files.size(privatePath);
-                if (currentSize - fileSize + data.data.length > this.maxSizeB) {
-                    resize();
-                }
-            } else {
-                resize();
-            }
+    private void resizeIfRequired(int keyHashCode, StoreInfoAndData data) throws IOException, SQLException {
+        Entry previous = entries.get(keyHashCode);
+        long previousSize = previous == null ? 0 : previous.size;
+        if (this.currentSize.get() - previousSize + data.data.length > this.maxSizeB) {
+            resize();
         }
     }
 
+    /**
+     * Remove entries until the cache is half full.  Only one thread resizes the cache at a time and
+     * the entries being accessed by other threads are skipped.
+     */
     private void resize() throws SQLException, IOException {
-        int targetSize = (int) (maxSizeB / 2);
-        Log.warning(Geonet.FORMATTER, "Resizing Formatter cache.  Required to reduce size by " + targetSize);
-        long startTime = System.currentTimeMillis();
-        try (
-            Statement statement = metadataDb.createStatement();
-            ResultSet resultSet = statement.executeQuery(QUERY_GET_INFO_FOR_RESIZE)
-        ) {
-            while (currentSize > targetSize && resultSet.next()) {
-                Path path = IO.toPath(new URI(resultSet.getString(PATH)));
-                doRemove(path, resultSet.getInt(KEY), false);
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long targetSize = maxSizeB / 2;
+            Log.warning(Geonet.FORMATTER, "Resizing Formatter cache.  Required to reduce size by " + targetSize);
+            long startTime = System.currentTimeMillis();
+            List<Map.Entry<Integer, Entry>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort(Comparator.comparingLong((Map.Entry<Integer, Entry> e) -> e.getValue().lastRead)
+                .thenComparingLong(e -> e.getValue().changeDate));
+            for (Map.Entry<Integer, Entry> candidate : candidates) {
+                if (currentSize.get() <= targetSize) {
+                    break;
+                }
+                final Lock lock = locks.get(candidate.getKey()).writeLock();
+                if (lock.tryLock()) {
+                    try {
+                        doRemove(candidate.getValue().path, candidate.getKey());
+                    } finally {
+                        lock.unlock();
+                    }
+                }
             }
-        } catch (URISyntaxException e) {
-            throw new Error(e);
+            Log.warning(Geonet.FORMATTER, "Resize took " + (System.currentTimeMillis() - startTime) + "ms to complete");
+        } finally {
+            evictionLock.unlock();
         }
-        Log.warning(Geonet.FORMATTER, "Resize took " + (System.currentTimeMillis() - startTime) + "ms to complete");
     }
 
     @Nullable
     @Override
     public byte[] getPublished(@Nonnull Key key) throws IOException {
+        initQuietly();
+        final Lock lock = locks.get(key.hashCode()).readLock();
+        lock.lock();
+        try {
+            return Files.readAllBytes(getPublicPath(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long transferPublished(@Nonnull Key key, @Nonnull WritableByteChannel target) throws IOException {
+        initQuietly();
+        final Lock lock = locks.get(key.hashCode()).readLock();
+        lock.lock();
+        try (FileChannel channel = FileChannel.open(getPublicPath(key), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return size;
+        } catch (NoSuchFileException e) {
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void initQuietly() {
         try {
             init();
         } catch (SQLException e) {
             throw new Error(e);
         }
-        final Path publicPath = getPublicPath(key);
-        if (Files.exists(publicPath)) {
-            return Files.readAllBytes(publicPath);
-        } else {
-            return null;
+    }
+
+    @Override
+    public void remove(@Nonnull Key key) throws IOException, SQLException {
+        init();
+        final Lock lock = locks.get(key.hashCode()).writeLock();
+        lock.lock();
+        try {
+            doRemove(getPrivatePath(key), key.hashCode());
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
-    public synchronized void remove(@Nonnull Key key) throws IOException, SQLException {
+    public void removeAll(int metadataId) throws IOException, SQLException {
         init();
-        final Path path = getPrivatePath(key);
-        final int keyHashCode = key.hashCode();
-        doRemove(path, keyHashCode, true);
+        final Set<Integer> keyHashCodes = mdIdIndex.get(metadataId);
+        if (keyHashCodes == null) {
+            return;
+        }
+        for (Integer keyHashCode : new ArrayList<>(keyHashCodes)) {
+            final Lock lock = locks.get(keyHashCode).writeLock();
+            lock.lock();
+            try {
+                Entry entry = entries.get(keyHashCode);
+                if (entry != null) {
+                    doRemove(entry.path, keyHashCode);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     @Override
     public void setPublished(int metadataId, final boolean published) throws IOException {
-
-        final Path metadataDir = Lib.resource.getMetadataDir(getBaseCacheDir().resolve(PRIVATE), String.valueOf(metadataId));
-        if (Files.exists(metadataDir)) {
-            Files.walkFileTree(metadataDir, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                    if (dir.getFileName().toString().equals(FULL_MD_NAME)) {
-                        return FileVisitResult.SKIP_SUBTREE;
-                    }
-                    return super.preVisitDirectory(dir, attrs);
+        initQuietly();
+        final Set<Integer> keyHashCodes = mdIdIndex.get(metadataId);
+        if (keyHashCodes == null) {
+            return;
+        }
+        for (Integer keyHashCode : keyHashCodes) {
+            final Lock lock = locks.get(keyHashCode).writeLock();
+            lock.lock();
+            try {
+                Entry entry = entries.get(keyHashCode);
+                if (entry == null) {
+                    continue;
                 }
-
-                @Override
-                public FileVisitResult visitFile(Path privatePath, BasicFileAttributes attrs) throws IOException {
-                    final Path publicPath = toPublicPath(privatePath);
-                    if (published) {
-                        if (!Files.exists(publicPath)) {
-                            if (!Files.exists(publicPath.getParent())) {
-                                Files.createDirectories(publicPath.getParent());
-                            }
-                            Files.createLink(publicPath, privatePath);
-                        }
-                    } else {
-                        Files.deleteIfExists(publicPath);
+                entry.published = published;
+                // only publish if withheld (hidden) elements are hidden.
+                if (!entry.path.getParent().getFileName().toString().equals(WITHHELD_MD_DIRNAME)) {
+                    continue;
+                }
+                final Path publicPath = toPublicPath(entry.path);
+                if (published) {
+                    if (!Files.exists(publicPath) && Files.exists(entry.path)) {
+                        publish(entry.path, publicPath);
                     }
-                    return super.visitFile(privatePath, attrs);
+                } else {
+                    Files.deleteIfExists(publicPath);
                 }
-            });
+            } finally {
+                lock.unlock();
+            }
+        }
+        try (PreparedStatement statement = metadataDb.prepareStatement(QUERY_SET_PUBLISHED)) {
+            statement.setBoolean(1, published);
+            statement.setInt(2, metadataId);
+            statement.execute();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void publish(Path privatePath, Path publicPath) throws IOException {
+        Files.createDirectories(publicPath.getParent());
+        try {
+            Files.createLink(publicPath, privatePath);
+        } catch (UnsupportedOperationException | SecurityException e) {
+            // Link likely not supported on this FS use copy then.
+            Files.copy(privatePath, publicPath);
         }
     }
 
+    /**
+     * Remove all the entries.  The cache directories are moved aside and deleted in the background.
+     */
     @Override
     public void clear() throws SQLException, IOException {
         init();
-        try (Statement statement = this.metadataDb.createStatement()) {
-            statement.execute(QUERY_CLEAR_INFO);
-            statement.execute(QUERY_CLEAR_STATS);
-            currentSize = 0;
-            Files.walkFileTree(getBaseCacheDir(), new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        List<Lock> writeLocks = new ArrayList<>(locks.size());
+        for (int i = 0; i < locks.size(); i++) {
+            writeLocks.add(locks.getAt(i).writeLock());
+        }
+        writeLocks.forEach(Lock::lock);
+        try {
+            try (Statement statement = this.metadataDb.createStatement()) {
+                statement.execute(QUERY_CLEAR_INFO);
+            }
+            entries.clear();
+            mdIdIndex.clear();
+            currentSize.set(0);
+
+            List<Path> deleted = new ArrayList<>();
+            for (String accessDir : new String[]{PRIVATE, PUBLIC}) {
+                Path dir = getBaseCacheDir().resolve(accessDir);
+                if (Files.exists(dir)) {
+                    Path target = getBaseCacheDir().resolve(accessDir + "-" + UUID.randomUUID() + DELETED_DIR_SUFFIX);
                     try {
-                        Files.delete(file);
+                        Files.move(dir, target);
+                        deleted.add(target);
                     } catch (IOException e) {
-                        // ignore
+                        IO.deleteFileOrDirectory(dir, true);
                     }
-                    return super.visitFile(file, attrs);
                 }
+            }
+            deleteInBackground(deleted);
+        } finally {
+            writeLocks.forEach(Lock::unlock);
+        }
+    }
 
-                @Override
-                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+    private List<Path> findDeletedDirectories() {
+        List<Path> deleted = new ArrayList<>();
+        if (Files.isDirectory(getBaseCacheDir())) {
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(getBaseCacheDir(), "*" + DELETED_DIR_SUFFIX)) {
+                paths.forEach(deleted::add);
+            } catch (IOException e) {
+                Log.warning(Geonet.FORMATTER, "Unable to list the formatter cache directories to delete", e);
+            }
+        }
+        return deleted;
+    }
+
+    private void deleteInBackground(List<Path> directories) {
+        if (!directories.isEmpty()) {
+            cleaner.submit(() -> {
+                for (Path directory : directories) {
                     try {
-                        Files.delete(dir);
+                        IO.deleteFileOrDirectory(directory, true);
                     } catch (IOException e) {
-                        // ignore
+                        Log.warning(Geonet.FORMATTER, "Unable to delete " + directory, e);
                     }
-                    return super.postVisitDirectory(dir, exc);
                 }
             });
         }
     }
 
-    private void doRemove(Path privatePath, int keyHashCode, boolean updateDbCurrentSize) throws IOException, SQLException {
+    private void doRemove(Path privatePath, int keyHashCode) throws IOException, SQLException {
         try {
-            if (Files.exists(privatePath)) {
-                currentSize -= Files.size(privatePath);
-                Files.delete(privatePath);
-            }
+            Files.deleteIfExists(privatePath);
         } finally {
             try {
                 final Path publicPath = toPublicPath(privatePath);
                 Files.deleteIfExists(publicPath);
             } finally {
-                try (PreparedStatement statement = metadataDb.prepareStatement(QUERY_REMOVE)) {
-                    statement.setInt(1, keyHashCode);
-                    statement.execute();
+                try {
+                    deleteInfo(keyHashCode);
                 } finally {
-                    if (updateDbCurrentSize) {
-                        updateDbCurrentSize();
+                    Entry entry = entries.remove(keyHashCode);
+                    if (entry != null) {
+                        currentSize.addAndGet(-entry.size);
+                        Set<Integer> keyHashCodes = mdIdIndex.get(entry.mdId);
+                        if (keyHashCodes != null) {
+                            keyHashCodes.remove(keyHashCode);
+                        }
                     }
                 }
             }
         }
     }
 
+    private void deleteInfo(int keyHashCode) throws SQLException {
+        try (PreparedStatement statement = metadataDb.prepareStatement(QUERY_REMOVE)) {
+            statement.setInt(1, keyHashCode);
+            statement.execute();
+        }
+    }
+
     private Path toPublicPath(Path privatePath) {
         Path relativePrivate = getBaseCacheDir().resolve(PRIVATE).relativize(privatePath);
         return getBaseCacheDir().resolve(PUBLIC).resolve(relativePrivate);
@@ -395,4 +595,31 @@ public class FilesystemStore implements PersistentStore {
     public void setTesting(boolean testing) {
         this.testing = testing;
     }
+
+    /**
+     * The in memory information about a cached file.
+     */
+    private static final class Entry {
+        private final int mdId;
+        private final Path path;
+        private final long changeDate;
+        private final long size;
+        private volatile boolean published;
+        /**
+         * The last time the file was read or 0 if it has never been read since the store was initialized.
+         */
+        private volatile long lastRead;
+
+        private Entry(int mdId, Path path, long changeDate, boolean published, long size) {
+            this.mdId = mdId;
+            this.path = path;
+            this.changeDate = changeDate;
+            this.published = published;
+            this.size = size;
+        }
+
+        private StoreInfo toStoreInfo() {
+            return new StoreInfo(changeDate, published);
+        }
+    }
 }
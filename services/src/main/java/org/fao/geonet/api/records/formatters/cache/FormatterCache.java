@@ -26,10 +26,12 @@ package org.fao.geonet.api.records.formatters.cache;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SetMultimap;
 import org.fao.geonet.domain.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
@@ -37,10 +39,11 @@ import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -57,15 +60,25 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * the values to the persistent cache.  This allows the value to be written to the request in
  * parallel with writing to the cache.
  * <p/>
+ * Lookups do not lock the cache. When a value has to be loaded, only one loader runs for a key:
+ * concurrent requests for the same key wait for its result while other keys are loaded in parallel.
+ * A value loaded while values are removed from the cache is returned but not cached, as it may
+ * have been loaded from the data being removed.
+ * <p/>
  * Note: The Persistent cache used can be configured.
  *
  * @author Jesse on 3/5/2015.
  */
 public class FormatterCache {
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final PersistentStore persistentStore;
     private final Cache<Key, StoreInfoAndData> memoryCache;
-    private final Multimap<Integer, Pair<Key, StoreInfoAndData>> mdIdIndex = ArrayListMultimap.create();
+    private final SetMultimap<Integer, Key> mdIdIndex = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+    private final ConcurrentMap<Key, CompletableFuture<StoreInfoAndData>> loading = new ConcurrentHashMap<>();
+    /**
+     * Incremented when values are removed, so that values loaded meanwhile are not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final ReadWriteLock removing = new ReentrantReadWriteLock();
     private final ExecutorService executor;
     private final BlockingQueue<Pair<Key, StoreInfoAndDataLoadResult>> storeRequests;
     @Autowired
@@ -111,19 +124,21 @@ public class FormatterCache {
     }
 
     public void remove(Key key) throws IOException, SQLException {
-        final Lock writeLock = lock.writeLock();
+        removing.writeLock().lock();
         try {
-            writeLock.lock();
+            generation.incrementAndGet();
+            this.storeRequests.removeIf(request -> request.one().equals(key));
             this.memoryCache.invalidate(key);
             this.persistentStore.remove(key);
         } finally {
-            writeLock.unlock();
+            removing.writeLock().unlock();
         }
     }
 
     /**
      * Get a value from the cache, or if it is not in the cache, load it with the loader and add it
-     * to the cache.
+     * to the cache. If the value of the key is already being loaded by another thread, wait for it
+     * instead of loading it again.
      *
      * @param key                         the lookup/store key
      * @param validator                   a strategy for checking if the value should be reloaded
@@ -138,52 +153,100 @@ public class FormatterCache {
     @Nullable
     public byte[] get(Key key, Validator validator, Callable<StoreInfoAndDataLoadResult> loader,
                       boolean writeToStoreInCurrentThread) throws Exception {
-        final Lock readLock = lock.readLock();
-        StoreInfoAndData cached;
-        try {
-            readLock.lock();
-            if (!cacheConfig.allowCaching(key)) {
-                return loader.call().data;
-            }
-
-            cached = memoryCache.getIfPresent(key);
-            boolean invalid = false;
-            if (cached != null && !validator.isCacheVersionValid(cached)) {
-                cached = null;
-                invalid = true;
-            }
+        if (!cacheConfig.allowCaching(key)) {
+            return loader.call().data;
+        }
 
-            if (!invalid && cached == null) {
-                cached = loadFromPersistentCache(key, validator);
-            }
+        StoreInfoAndData cached = memoryCache.getIfPresent(key);
+        boolean invalid = false;
+        if (cached != null && !validator.isCacheVersionValid(cached)) {
+            cached = null;
+            invalid = true;
+        }
 
-        } finally {
-            readLock.unlock();
+        if (!invalid && cached == null) {
+            cached = loadFromPersistentCache(key, validator);
         }
-        final Lock writeLock = lock.writeLock();
+
         if (cached == null) {
-            try {
-                writeLock.lock();
-                StoreInfoAndDataLoadResult loaded = loader.call();
-                cached = loaded;
-                push(key, loaded, writeToStoreInCurrentThread);
-            } finally {
-                writeLock.unlock();
-            }
+            cached = load(key, loader, writeToStoreInCurrentThread, true);
         }
 
         return cached.data;
+    }
 
+    /**
+     * Load a value and write it to the persistent store in the current thread, unless a valid value
+     * is already stored.  The value is not added to the memory cache so that pre-rendering many
+     * values does not evict the values being requested.  If the value is being loaded by another
+     * thread, its result is used instead of loading it again.
+     *
+     * @param key       the lookup/store key
+     * @param validator a strategy for checking if the stored value is up-to-date
+     * @param loader    the strategy to use for loading the value
+     * @return true if the value was loaded and stored.
+     */
+    public boolean warm(Key key, Validator validator, Callable<StoreInfoAndDataLoadResult> loader) throws Exception {
+        if (!cacheConfig.allowCaching(key)) {
+            return false;
+        }
+        final StoreInfo info = persistentStore.getInfo(key);
+        if (info != null && validator.isCacheVersionValid(info)) {
+            return false;
+        }
+        load(key, loader, true, false);
+        return true;
     }
 
-    private void push(Key key, StoreInfoAndDataLoadResult cached,
-                      boolean writeToStoreInCurrentThread) throws IOException, SQLException {
-        final Lock writeLock = lock.writeLock();
+    /**
+     * Load a value, sharing the result with the threads requesting the same key meanwhile.
+     *
+     * @param addToMemory false to only write the value to the persistent store.
+     */
+    private StoreInfoAndData load(Key key, Callable<StoreInfoAndDataLoadResult> loader,
+                                  boolean writeToStoreInCurrentThread, boolean addToMemory) throws Exception {
+        final CompletableFuture<StoreInfoAndData> future = new CompletableFuture<>();
+        final CompletableFuture<StoreInfoAndData> inProgress = loading.putIfAbsent(key, future);
+        if (inProgress != null) {
+            try {
+                return inProgress.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+
         try {
-            writeLock.lock();
+            final long loadGeneration = generation.get();
+            StoreInfoAndDataLoadResult loaded = loader.call();
+            push(key, loaded, writeToStoreInCurrentThread, addToMemory, loadGeneration);
+            future.complete(loaded);
+            return loaded;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
 
-            this.memoryCache.put(key, cached);
-            this.mdIdIndex.put(key.mdId, Pair.read(key, cached));
+    private void push(Key key, StoreInfoAndDataLoadResult cached,
+                      boolean writeToStoreInCurrentThread, boolean addToMemory,
+                      long loadGeneration) throws IOException, SQLException {
+        removing.readLock().lock();
+        try {
+            if (generation.get() != loadGeneration) {
+                // values were removed while this one was loaded
+                return;
+            }
+            if (addToMemory) {
+                this.memoryCache.put(key, cached);
+            } else {
+                this.memoryCache.invalidate(key);
+            }
+            this.mdIdIndex.put(key.mdId, key);
             if (writeToStoreInCurrentThread) {
                 createPersistentStoreRunnable(storeRequests, persistentStore).processStoreRequest(Pair.read(key, cached));
             } else {
@@ -194,20 +257,14 @@ public class FormatterCache {
         } catch (InterruptedException e) {
             // return
         } finally {
-            writeLock.unlock();
+            removing.readLock().unlock();
         }
     }
 
     private StoreInfoAndData loadFromPersistentCache(Key key, Validator validator) throws IOException, SQLException {
-        final Lock readLock = lock.readLock();
-        try {
-            readLock.lock();
-            final StoreInfo info = persistentStore.getInfo(key);
-            if (info != null && validator.isCacheVersionValid(info)) {
-                return persistentStore.get(key);
-            }
-        } finally {
-            readLock.unlock();
+        final StoreInfo info = persistentStore.getInfo(key);
+        if (info != null && validator.isCacheVersionValid(info)) {
+            return persistentStore.get(key);
         }
         return null;
     }
@@ -226,13 +283,19 @@ public class FormatterCache {
      */
     @Nullable
     public byte[] getPublished(Key key) throws IOException, SQLException {
-        final Lock readLock = lock.readLock();
-        try {
-            readLock.lock();
-            return this.persistentStore.getPublished(key);
-        } finally {
-            readLock.unlock();
-        }
+        return this.persistentStore.getPublished(key);
+    }
+
+    /**
+     * Write a pre-cached public value to the target channel without loading it in memory.
+     * See {@link #getPublished(Key)}.
+     *
+     * @param key    the lookup key
+     * @param target the channel to write the value to
+     * @return the number of bytes written or -1 if the value is not cached or not public.
+     */
+    public long transferPublished(Key key, WritableByteChannel target) throws IOException, SQLException {
+        return this.persistentStore.transferPublished(key, target);
     }
 
     /**
@@ -242,30 +305,26 @@ public class FormatterCache {
      * @param published  mark all cached values for this metadata
      */
     void setPublished(int metadataId, boolean published) throws IOException {
-        final Lock writeLock = lock.writeLock();
-        try {
-            writeLock.lock();
-            this.persistentStore.setPublished(metadataId, published);
-        } finally {
-            writeLock.unlock();
-        }
+        this.persistentStore.setPublished(metadataId, published);
     }
 
     /**
      * Remove all cached values related to the metadataId.
      */
-    public synchronized void removeAll(int metadataId) throws IOException, SQLException {
-        final Lock writeLock = lock.writeLock();
+    public void removeAll(int metadataId) throws IOException, SQLException {
+        removing.writeLock().lock();
         try {
-            writeLock.lock();
-            Collection<Pair<Key, StoreInfoAndData>> storeInfoAndDatas = this.mdIdIndex.removeAll(metadataId);
-            for (Pair<Key, StoreInfoAndData> storeInfoAndData : storeInfoAndDatas) {
-                final Key key = storeInfoAndData.one();
+            generation.incrementAndGet();
+            this.storeRequests.removeIf(request -> request.one().mdId == metadataId);
+            // the index only has the keys of the values in memory, evicted values are
+            // removed from the persistent store by metadata id
+            Collection<Key> keys = this.mdIdIndex.removeAll(metadataId);
+            for (Key key : keys) {
                 this.memoryCache.invalidate(key);
-                this.persistentStore.remove(key);
             }
+            this.persistentStore.removeAll(metadataId);
         } finally {
-            writeLock.unlock();
+            removing.writeLock().unlock();
         }
     }
 
@@ -273,20 +332,23 @@ public class FormatterCache {
      * Clear all records from the cache and backing persistent cache.
      */
     public void clear() throws IOException, SQLException {
-        final Lock writeLock = lock.writeLock();
+        removing.writeLock().lock();
         try {
-            writeLock.lock();
+            generation.incrementAndGet();
+            this.storeRequests.clear();
             this.memoryCache.invalidateAll();
             this.persistentStore.clear();
         } finally {
-            writeLock.unlock();
+            removing.writeLock().unlock();
         }
     }
 
     private class RemoveFromIndexListener implements RemovalListener<Key, StoreInfoAndData> {
         @Override
         public void onRemoval(RemovalNotification<Key, StoreInfoAndData> notification) {
-            mdIdIndex.remove(notification.getKey().mdId, notification.getValue());
+            if (notification.getCause() != RemovalCause.REPLACED) {
+                mdIdIndex.remove(notification.getKey().mdId, notification.getKey());
+            }
         }
     }
 }
@@ -48,6 +48,8 @@ import static org.springframework.data.jpa.domain.Specification.where;
 public class FormatterCachePublishListener implements ApplicationListener<MetadataIndexCompleted> {
     @Autowired
     private FormatterCache formatterCache;
+    @Autowired
+    private FormatterCacheWarmUp formatterCacheWarmUp;
 
     @Override
     public synchronized void onApplicationEvent(MetadataIndexCompleted event) {
@@ -61,6 +63,7 @@ public class FormatterCachePublishListener implements ApplicationListener<Metada
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        formatterCacheWarmUp.refresh(event.getMd(), one.isPresent());
 
     }
 }
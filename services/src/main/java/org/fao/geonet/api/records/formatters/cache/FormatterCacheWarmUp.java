@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.api.records.formatters.cache;
+
+import jeeves.server.UserSession;
+import jeeves.server.context.ServiceContext;
+import jeeves.server.dispatchers.ServiceManager;
+import org.fao.geonet.ApplicationContextHolder;
+import org.fao.geonet.api.records.formatters.FormatType;
+import org.fao.geonet.api.records.formatters.FormatterApi;
+import org.fao.geonet.api.records.formatters.FormatterWidth;
+import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.domain.ISODate;
+import org.fao.geonet.domain.MetadataDataInfo_;
+import org.fao.geonet.domain.Metadata_;
+import org.fao.geonet.domain.OperationAllowedId_;
+import org.fao.geonet.domain.Pair;
+import org.fao.geonet.domain.ReservedOperation;
+import org.fao.geonet.events.server.ServerStartup;
+import org.fao.geonet.repository.MetadataRepository;
+import org.fao.geonet.repository.OperationAllowedRepository;
+import org.fao.geonet.repository.SortUtils;
+import org.fao.geonet.repository.specification.OperationAllowedSpecs;
+import org.fao.geonet.utils.Log;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pre-render the public formatter output of the published records so that {@link
+ * FormatterCache#getPublished(Key)} does not have to wait for a first request to render them.
+ * <p/>
+ * The published records are rendered in the background after the server startup and after the
+ * cache is cleared, the most popular first.  When a record is indexed and published (see {@link
+ * FormatterCachePublishListener}), it is rendered again before the remaining records.  Values that
+ * are already stored with the record change date are not rendered again.
+ * <p/>
+ * The number of threads is configured by formatter.cache.warmup.threads and cpuBudget is the
+ * percentage of time each thread spends rendering: after rendering a record in t ms, a thread
+ * waits t * (100 - cpuBudget) / cpuBudget ms before rendering the next one.
+ */
+public class FormatterCacheWarmUp implements ApplicationListener<ServerStartup> {
+    private static final int PAGE_SIZE = 1000;
+
+    @Autowired
+    private FormatterCache formatterCache;
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Value("${formatter.cache.warmup.enabled:false}")
+    private boolean enabled;
+    @Value("${formatter.cache.warmup.formatters:xsl-view,citation}")
+    private String[] formatters;
+    @Value("${formatter.cache.warmup.languages:eng}")
+    private String[] languages;
+    @Value("${formatter.cache.warmup.threads:1}")
+    private int threads;
+    @Value("${formatter.cache.warmup.cpuBudget:50}")
+    private int cpuBudget;
+
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>(PAGE_SIZE,
+        Comparator.comparing((Task task) -> !task.refresh).thenComparingLong(task -> task.order));
+    private final Set<Integer> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicLong order = new AtomicLong();
+    private final AtomicBoolean scanning = new AtomicBoolean();
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private ExecutorService executor;
+
+    @Override
+    public void onApplicationEvent(ServerStartup event) {
+        warmUpPublishedRecords();
+    }
+
+    /**
+     * Queue all the published records, the most popular first.  Does nothing if the published
+     * records are already being queued.
+     */
+    public void warmUpPublishedRecords() {
+        if (!enabled || !scanning.compareAndSet(false, true)) {
+            return;
+        }
+        start();
+        executor.submit(() -> {
+            try {
+                queuePublishedRecords();
+            } catch (Exception e) {
+                Log.error(Geonet.FORMATTER, "Error while listing the records to pre-render in the formatter cache", e);
+            } finally {
+                scanning.set(false);
+            }
+        });
+    }
+
+    /**
+     * Render the record again before the other queued records, if it is published.
+     *
+     * @param metadata  the record which may have changed.
+     * @param published true if the record is published.
+     */
+    public void refresh(AbstractMetadata metadata, boolean published) {
+        if (!enabled || !published) {
+            return;
+        }
+        start();
+        queue(metadata.getId(), metadata.getDataInfo().getChangeDate(), true);
+    }
+
+    private synchronized void start() {
+        if (executor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory();
+            threadFactory.setDaemon(true);
+            threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+            threadFactory.setThreadNamePrefix("FormatterCacheWarmUp-");
+            final int numberOfThreads = Math.max(1, threads);
+            // one more thread listing the published records
+            executor = Executors.newFixedThreadPool(numberOfThreads + 1, threadFactory);
+            for (int i = 0; i < numberOfThreads; i++) {
+                executor.submit(this::render);
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void queuePublishedRecords() {
+        ApplicationContextHolder.set(applicationContext);
+        final long startTime = System.currentTimeMillis();
+        final Set<Integer> publishedIds = new HashSet<>(applicationContext.getBean(OperationAllowedRepository.class)
+            .findAllIds(OperationAllowedSpecs.isPublic(ReservedOperation.view), OperationAllowedId_.metadataId));
+        final MetadataRepository metadataRepository = applicationContext.getBean(MetadataRepository.class);
+        final Sort byPopularity = SortUtils.createSort(Sort.Direction.DESC, Metadata_.dataInfo, MetadataDataInfo_.popularity)
+            .and(SortUtils.createSort(Metadata_.id));
+
+        int queuedRecords = 0;
+        int page = 0;
+        Page<Pair<Integer, ISODate>> results;
+        do {
+            results = metadataRepository.findIdsAndChangeDates(PageRequest.of(page++, PAGE_SIZE, byPopularity));
+            for (Pair<Integer, ISODate> result : results) {
+                if (publishedIds.contains(result.one()) && queue(result.one(), result.two(), false)) {
+                    queuedRecords++;
+                }
+            }
+        } while (results.hasNext() && !Thread.currentThread().isInterrupted());
+        Log.info(Geonet.FORMATTER, "Queued " + queuedRecords + " of " + publishedIds.size()
+            + " published records to check and pre-render in the formatter cache in "
+            + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * @return true if the record was queued.
+     */
+    private boolean queue(int metadataId, ISODate changeDate, boolean refresh) {
+        if (changeDate != null && (queued.add(metadataId) || refresh)) {
+            queue.add(new Task(metadataId, changeDate.toDate().getTime(), refresh, order.incrementAndGet()));
+            return true;
+        }
+        return false;
+    }
+
+    private void render() {
+        ApplicationContextHolder.set(applicationContext);
+        final ServiceContext context = applicationContext.getBean(ServiceManager.class)
+            .createServiceContext("formatter.warmup", applicationContext);
+        // render the records as an anonymous user
+        context.setUserSession(new UserSession());
+        final FormatterApi formatterApi = applicationContext.getBean(FormatterApi.class);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Task task = queue.take();
+                queued.remove(task.metadataId);
+                final long startTime = System.currentTimeMillis();
+                render(context, formatterApi, task);
+                final long time = System.currentTimeMillis() - startTime;
+                if (cpuBudget > 0 && cpuBudget < 100) {
+                    TimeUnit.MILLISECONDS.sleep(time * (100 - cpuBudget) / cpuBudget);
+                }
+            }
+        } catch (InterruptedException e) {
+            // shutdown
+        }
+    }
+
+    private void render(ServiceContext context, FormatterApi formatterApi, Task task) {
+        final ChangeDateValidator validator = new ChangeDateValidator(task.changeDate);
+        for (String language : languages) {
+            context.setLanguage(language);
+            for (String formatterId : formatters) {
+                FormatType formatType = FormatType.findByFormatterKey(formatterId);
+                if (formatType == null) {
+                    formatType = FormatType.html;
+                }
+                final Key key = new Key(task.metadataId, language, formatType, formatterId, true, FormatterWidth._100);
+                try {
+                    if (!formatterCache.warm(key, validator, formatterApi.new FormatMetadata(context, key, null))) {
+                        skipped.incrementAndGet();
+                    } else if (rendered.incrementAndGet() % PAGE_SIZE == 0) {
+                        Log.info(Geonet.FORMATTER, rendered.get() + " formatter outputs pre-rendered, "
+                            + skipped.get() + " already up-to-date, " + queue.size() + " records waiting");
+                    }
+                } catch (Exception e) {
+                    Log.debug(Geonet.FORMATTER, "Unable to pre-render " + key + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static final class Task {
+        private final int metadataId;
+        private final long changeDate;
+        private final boolean refresh;
+        private final long order;
+
+        private Task(int metadataId, long changeDate, boolean refresh, long order) {
+            this.metadataId = metadataId;
+            this.changeDate = changeDate;
+            this.refresh = refresh;
+            this.order = order;
+        }
+    }
+}
@@ -26,6 +26,8 @@ package org.fao.geonet.api.records.formatters.cache;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.sql.SQLException;
 
 /**
@@ -67,6 +69,25 @@ public interface PersistentStore {
     @Nullable
     byte[] getPublished(@Nonnull Key key) throws IOException, SQLException;
 
+    /**
+     * Write the cached value to the target channel if it has been cached and is public.
+     *
+     * @param key    the lookup key.
+     * @param target the channel to write the value to.
+     * @return the number of bytes written or -1 if the value is not cached or not public.
+     */
+    default long transferPublished(@Nonnull Key key, @Nonnull WritableByteChannel target) throws IOException, SQLException {
+        final byte[] published = getPublished(key);
+        if (published == null) {
+            return -1;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(published);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return published.length;
+    }
+
     /**
      * Remove values with the key from the cache.
      *
@@ -74,6 +95,13 @@ public interface PersistentStore {
      */
     void remove(@Nonnull Key key) throws IOException, SQLException;
 
+    /**
+     * Remove all the values related to the given metadata.
+     *
+     * @param metadataId the id of the metadata whose values are removed
+     */
+    void removeAll(int metadataId) throws IOException, SQLException;
+
     /**
      * Publish or unpublish all cached values related to the given metadata.
      *
@@ -39,6 +39,7 @@ import jeeves.config.springutil.ServerBeanPropertyUpdater;
 import jeeves.server.JeevesProxyInfo;
 import jeeves.server.UserSession;
 import jeeves.server.context.ServiceContext;
+import jeeves.server.dispatchers.ServiceManager;
 import jeeves.xlink.Processor;
 import org.apache.commons.lang3.StringUtils;
 import org.fao.geonet.*;
@@ -59,11 +60,13 @@ import org.fao.geonet.index.es.EsRestClient;
 import org.fao.geonet.index.es.EsServerStatusChecker;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.kernel.GeonetworkDataDirectory;
+import org.fao.geonet.kernel.MetadataStorageMigration;
 import org.fao.geonet.kernel.SchemaManager;
 import org.fao.geonet.kernel.datamanager.IMetadataManager;
 import org.fao.geonet.kernel.datamanager.base.BaseMetadataManager;
 import org.fao.geonet.kernel.harvest.HarvestManager;
 import org.fao.geonet.kernel.search.EsSearchManager;
+import org.fao.geonet.kernel.search.index.IndexDelta;
 import org.fao.geonet.kernel.setting.SettingInfo;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
@@ -73,9 +76,11 @@ import org.fao.geonet.repository.*;
 import org.fao.geonet.repository.specification.MetadataSpecs;
 import org.fao.geonet.resources.Resources;
 import org.fao.geonet.util.MailUtil;
+import org.fao.geonet.util.ThreadPool;
 import org.fao.geonet.utils.FilePathChecker;
 import org.fao.geonet.utils.Log;
 import org.fao.geonet.utils.ProxyInfo;
+import org.fao.geonet.utils.Xml;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationEventPublisher;
@@ -137,6 +142,12 @@ public class SiteApi implements ApplicationEventPublisherAware {
     @Autowired
     EsRestClient esRestClient;
 
+    @Autowired
+    MetadataStorageMigration metadataStorageMigration;
+
+    @Autowired
+    ThreadPool threadPool;
+
     @Autowired
     SourceRepository sourceRepository;
 
@@ -677,6 +688,90 @@ public class SiteApi implements ApplicationEventPublisherAware {
         return new HttpEntity<>(HttpStatus.CREATED);
     }
 
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Delta index",
+        description = "Compare the change date of the records in the database with the ones in the index. "
+            + "Index records which are not indexed or which changed since they were indexed "
+            + "and remove from the index documents without record in the database.")
+    @RequestMapping(
+        path = "/index/delta",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        method = RequestMethod.PUT)
+    @PreAuthorize("hasAuthority('Editor')")
+    @ResponseBody
+    public IndexDelta.Summary indexDelta(
+        @Parameter(description = "Asynchronous mode",
+            required = false)
+        @RequestParam(required = false, defaultValue = "false")
+        boolean asynchronous,
+        HttpServletRequest request
+    ) throws Exception {
+        ServiceContext context = ApiUtils.createServiceContext(request);
+        DataManager dataManager = ApplicationContextHolder.get().getBean(DataManager.class);
+
+        if (dataManager.isIndexing()) {
+            throw new NotAllowedException(
+                "Indexing is already in progress. Wait for the current task to complete.");
+        }
+
+        // clean XLink Cache so that cache and index remain in sync
+        Processor.clearCache();
+
+        BaseMetadataManager metadataManager = ApplicationContextHolder.get().getBean(BaseMetadataManager.class);
+        return metadataManager.synchronizeDbWithIndex(context, false, asynchronous);
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Rebuild index without downtime",
+        description = "Index all records in a new index while searches still use the current one. "
+            + "Once built, the index alias is moved to the new index and the previous index is removed. "
+            + "Records changed during the rebuild are then reindexed.")
+    @RequestMapping(
+        path = "/index/rebuild",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        method = RequestMethod.PUT)
+    @PreAuthorize("hasAuthority('Administrator')")
+    @ResponseBody
+    public ResponseEntity<IndexDelta.Summary> rebuildIndex(
+        @Parameter(description = "Asynchronous mode",
+            required = false)
+        @RequestParam(required = false, defaultValue = "true")
+        boolean asynchronous,
+        HttpServletRequest request
+    ) throws Exception {
+        ServiceContext context = ApiUtils.createServiceContext(request);
+        DataManager dataManager = ApplicationContextHolder.get().getBean(DataManager.class);
+
+        if (dataManager.isIndexing()) {
+            throw new NotAllowedException(
+                "Indexing is already in progress. Wait for the current task to complete.");
+        }
+
+        // clean XLink Cache so that cache and index remain in sync
+        Processor.clearCache();
+
+        BaseMetadataManager metadataManager = ApplicationContextHolder.get().getBean(BaseMetadataManager.class);
+        if (asynchronous) {
+            // the context of the request is not usable once the request is completed
+            ServiceContext rebuildContext = context.getBean(ServiceManager.class).createServiceContext("index-rebuild",
+                context.getApplicationContext());
+            rebuildContext.setUserSession(context.getUserSession());
+            rebuildContext.setLanguage(context.getLanguage());
+            threadPool.runTask(() -> {
+                rebuildContext.setAsThreadLocal();
+                try {
+                    metadataManager.rebuildIndexWithAliasSwap(rebuildContext);
+                } catch (Exception e) {
+                    Log.error(Geonet.INDEX_ENGINE, "Error while rebuilding index: " + e.getMessage(), e);
+                } finally {
+                    ServiceContext.clearAsThreadLocal();
+                }
+            });
+            return new ResponseEntity<>(HttpStatus.ACCEPTED);
+        }
+        return new ResponseEntity<>(metadataManager.rebuildIndexWithAliasSwap(context), HttpStatus.OK);
+    }
+
     @io.swagger.v3.oas.annotations.Operation(
         summary = "Index commit",
         description = "")
@@ -901,6 +996,97 @@ public class SiteApi implements ApplicationEventPublisherAware {
     }
 
 
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Get XSLT cache statistics",
+        description = "Size, hit, miss, load and eviction counts of the compiled stylesheet cache.")
+    @RequestMapping(
+        path = "/info/transforms/cache",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        method = RequestMethod.GET)
+    @PreAuthorize("hasAuthority('Administrator')")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Map<String, Object> getXslTransformationCacheStatistics(
+    ) throws Exception {
+        return Xml.getTransformerFactoryStylesheetCacheStatistics();
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Get index connection pool statistics",
+        description = "Leased, available and pending connections to the index and pool limits.")
+    @RequestMapping(
+        path = "/info/index/connections",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        method = RequestMethod.GET)
+    @PreAuthorize("hasAuthority('Administrator')")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Map<String, Object> getIndexConnectionPoolStatistics(
+    ) throws Exception {
+        return esRestClient.getConnectionPoolStatistics();
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Get record XML cache statistics",
+        description = "Size, hit, miss and eviction counts of the cache of parsed record XML.")
+    @RequestMapping(
+        path = "/info/records/xml/cache",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        method = RequestMethod.GET)
+    @PreAuthorize("hasAuthority('Administrator')")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Map<String, Object> getRecordXmlCacheStatistics(
+    ) {
+        return MetadataXmlCache.getCacheStatistics();
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Get record storage report",
+        description = "Status, number of records converted, size before and after and throughput " +
+            "of the last conversion of the stored records to a storage codec.")
+    @RequestMapping(
+        path = "/info/records/storage",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        method = RequestMethod.GET)
+    @PreAuthorize("hasAuthority('Administrator')")
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Map<String, Object> getRecordStorageReport(
+    ) {
+        return metadataStorageMigration.getReport();
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Convert the stored records to a storage codec",
+        description = "Records and drafts are converted in the background while the catalog is running. " +
+            "Use the record storage report to follow the conversion.")
+    @RequestMapping(
+        path = "/info/records/storage",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        method = RequestMethod.PUT)
+    @PreAuthorize("hasAuthority('Administrator')")
+    @ResponseBody
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Conversion started."),
+        @ApiResponse(responseCode = "403", description = ApiParams.API_RESPONSE_NOT_ALLOWED_ONLY_USER_ADMIN)
+    })
+    public ResponseEntity<Map<String, Object>> migrateRecordStorage(
+        @Parameter(
+            description = "Codec to store the records with (none or deflate). Default is the configured codec.",
+            required = false
+        )
+        @RequestParam(
+            required = false
+        )
+        String codec
+    ) {
+        MetadataDataCodec target = codec == null ? MetadataDataCodec.getDefault() : MetadataDataCodec.parse(codec);
+        boolean started = metadataStorageMigration.start(target);
+        return new ResponseEntity<>(metadataStorageMigration.getReport(),
+            started ? HttpStatus.OK : HttpStatus.CONFLICT);
+    }
+
     @io.swagger.v3.oas.annotations.Operation(
         summary = "Get XSL tranformations available",
         description = "XSL transformations may be applied while importing or harvesting records.")
@@ -51,8 +51,11 @@ import org.springframework.web.context.WebApplicationContext;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 import static org.fao.geonet.schema.iso19139.ISO19139Namespaces.GMD;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.fao.geonet.schema.iso19139.ISO19139Namespaces.XLINK;
 
@@ -119,6 +122,39 @@ public class ValidateApiTest extends AbstractServiceIntegrationTest {
         }
     }
 
+    @Test
+    public void validateIncremental() throws Exception {
+        Element holoceneElem = getSample("kernel/holocene.xml");
+        AbstractMetadata metadata = injectMetadataInDb(holoceneElem, context, true);
+        User user = loginAsAdmin(context);
+        MockMvc toTest = MockMvcBuilders.webAppContextSetup(this.wac).build();
+        MockHttpSession mockHttpSession = loginAs(user);
+
+        for (int i = 0; i < 2; i++) {
+            toTest.perform(put("/srv/api/records/validate")
+                    .queryParam("uuids", metadata.getUuid())
+                    .queryParam("incremental", "true")
+                    .session(mockHttpSession)
+                    .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.numberOfRecordsProcessed").value(1))
+                .andExpect(jsonPath("$.numberOfRecordsUnchanged").value(i));
+        }
+
+        List<MetadataValidation> validations = metadataValidationRepository.findAllById_MetadataId(metadata.getId());
+        String fingerprint = validations.get(0).getFingerprint();
+        assertNotNull(fingerprint);
+        assertTrue(validations.stream().allMatch(validation -> fingerprint.equals(validation.getFingerprint())));
+
+        // a full validation validates the record again
+        toTest.perform(put("/srv/api/records/validate")
+                .queryParam("uuids", metadata.getUuid())
+                .session(mockHttpSession)
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().is2xxSuccessful())
+            .andExpect(jsonPath("$.numberOfRecordsUnchanged").value(0));
+    }
+
     private void validateAndCheckIsoSchematronOk(ServiceContext context, AbstractMetadata metadata) throws Exception {
         User user = loginAsAdmin(context);
         MockMvc toTest = MockMvcBuilders.webAppContextSetup(this.wac).build();
@@ -27,6 +27,7 @@ import jeeves.server.context.ServiceContext;
 import org.fao.geonet.NodeInfo;
 import org.fao.geonet.api.ApiParams;
 import org.fao.geonet.domain.AbstractMetadata;
+import org.fao.geonet.kernel.PopularityCounter;
 import org.fao.geonet.kernel.SpringLocalServiceInvoker;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.kernel.setting.Settings;
@@ -73,6 +74,8 @@ public class MetadataApiTest extends AbstractServiceIntegrationTest {
     private MetadataRepository metadataRepository;
     @Autowired
     private SettingManager settingManager;
+    @Autowired
+    private PopularityCounter popularityCounter;
 
     private int id;
     private String uuid;
@@ -312,6 +315,8 @@ public class MetadataApiTest extends AbstractServiceIntegrationTest {
             .andExpect(content().string(containsString(this.uuid)))
             .andExpect(xpath("/MD_Metadata/fileIdentifier/CharacterString").string(this.uuid));
 
+        // Views are saved in the background, save them now.
+        popularityCounter.flush();
         // Seem some issue with the transaction in the tests, requires to use explicitly the entity manager.
         // In the application looks working fine with the @Transactional annotation in MetadataRepository.incrementPopularity
         _entityManager.flush();
@@ -332,6 +337,8 @@ public class MetadataApiTest extends AbstractServiceIntegrationTest {
             .andExpect(content().string(containsString(this.uuid)))
             .andExpect(xpath("/MD_Metadata/fileIdentifier/CharacterString").string(this.uuid));
 
+        // Views are saved in the background, save them now.
+        popularityCounter.flush();
         // Seem some issue with the transaction in the tests, requires to use explicitly the entity manager.
         // In the application looks working fine with the @Transactional annotation in MetadataRepository.incrementPopularity
         _entityManager.flush();
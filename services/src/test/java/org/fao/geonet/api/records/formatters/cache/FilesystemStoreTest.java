@@ -36,7 +36,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
 import java.nio.file.FileSystem;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -205,6 +207,15 @@ public class FilesystemStoreTest {
     }
 
 
+    @Test
+    public void testDiskSizeRestrictionKeepsRecentlyRead() throws Exception {
+        Key[] keys = prepareDiskSizeRestrictionTests();
+
+        assertNotNull(store.get(keys[0]));
+        store.put(keys[5], new StoreInfoAndData(new byte[200], 6, false));
+        assertStoreContains(keys, keys[0], keys[4], keys[5]);
+    }
+
     @Test
     public void testDiskSizeRestrictionRemove() throws Exception {
         Key[] keys = prepareDiskSizeRestrictionTests();
@@ -324,6 +335,37 @@ public class FilesystemStoreTest {
 
     }
 
+    @Test
+    public void testTransferPublished() throws Exception {
+        Key key = new Key(1, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(-1, store.transferPublished(key, Channels.newChannel(out)));
+
+        store.put(key, new StoreInfoAndData("result", 10000, true));
+        assertEquals(6, store.transferPublished(key, Channels.newChannel(out)));
+        assertEquals("result", out.toString("UTF-8"));
+
+        store.setPublished(1, false);
+        assertEquals(-1, store.transferPublished(key, Channels.newChannel(new ByteArrayOutputStream())));
+        assertFalse(store.getInfo(key).isPublished());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        Key key = new Key(1, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+        store.put(key, new StoreInfoAndData("result", 10000, true));
+
+        store.clear();
+        assertNull(store.getInfo(key));
+        assertNull(store.get(key));
+        assertNull(store.getPublished(key));
+        assertEquals(0, countFiles(store.getPrivatePath(key)));
+
+        store.put(key, new StoreInfoAndData("two", 10000, true));
+        assertEquals("two", store.get(key).getDataAsString());
+        assertNotNull(store.getPublished(key));
+    }
+
     private void assertUnpublished(Key... keys) throws IOException {
         for (Key key : keys) {
             assertNull(key.toString(), store.getPublished(key));
@@ -42,15 +42,19 @@ import java.sql.SQLException;
 import java.util.Date;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class FormatterCacheTest {
 
@@ -143,6 +147,27 @@ public class FormatterCacheTest {
         assertEquals(false, basicInfo.isPublished());
     }
 
+    @Test
+    public void testWarm() throws Exception {
+        final MemoryPersistentStore persistentStore = new MemoryPersistentStore();
+        this.formatterCache = new FormatterCache(persistentStore, 100, 5000);
+
+        final long changeDate = new Date().getTime();
+        final Key key = new Key(1, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+
+        assertTrue(formatterCache.warm(key, new ChangeDateValidator(changeDate), new TestLoader("result", changeDate, true)));
+        assertEquals("result", persistentStore.get(key).getDataAsString());
+        assertNotNull(formatterCache.getPublished(key));
+
+        assertFalse("A valid value is not rendered again",
+            formatterCache.warm(key, new ChangeDateValidator(changeDate), new TestLoader("new result", changeDate, true)));
+        assertEquals("result", persistentStore.get(key).getDataAsString());
+
+        final long newChangeDate = changeDate + 1000;
+        assertTrue(formatterCache.warm(key, new ChangeDateValidator(newChangeDate), new TestLoader("new result", newChangeDate, true)));
+        assertEquals("new result", getAsString(key, newChangeDate, new TestLoader("other", newChangeDate, true)));
+    }
+
     private String getAsString(Key key, long changeDate, Callable<StoreInfoAndDataLoadResult> loader) throws Exception {
         byte[] bytes = formatterCache.get(key, new ChangeDateValidator(changeDate), loader, true);
         return new String(bytes, Constants.CHARSET);
@@ -220,6 +245,11 @@ public class FormatterCacheTest {
                 // ignore
             }
 
+            @Override
+            public void removeAll(int metadataId) {
+                // ignore
+            }
+
             @Override
             public void setPublished(int metadataId, boolean published) {
                 throw new UnsupportedOperationException("not yet implemented");
@@ -282,4 +312,109 @@ public class FormatterCacheTest {
         assertNotNull(persistentStore.get(key));
     }
 
+
+    @Test
+    public void testConcurrentLoadsOfSameKeyAreShared() throws Exception {
+        final MemoryPersistentStore persistentStore = new MemoryPersistentStore();
+        this.formatterCache = new FormatterCache(persistentStore, 100, 5000);
+
+        final long changeDate = new Date().getTime();
+        final Key key = new Key(1, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+        final Key otherKey = new Key(2, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<StoreInfoAndDataLoadResult> slowLoader = () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            release.await();
+            return new StoreInfoAndDataLoadResult("result", changeDate, false, null, null);
+        };
+
+        final String[] results = new String[2];
+        Thread first = new Thread(() -> results[0] = getQuietly(key, changeDate, slowLoader));
+        first.start();
+        started.await();
+        Thread second = new Thread(() -> results[1] = getQuietly(key, changeDate, slowLoader));
+        second.start();
+
+        // Another key is loaded while the first one is being loaded
+        assertEquals("other", getAsString(otherKey, changeDate, new TestLoader("other", changeDate, false)));
+
+        Thread.sleep(100);
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals(1, calls.get());
+        assertEquals("result", results[0]);
+        assertEquals("result", results[1]);
+    }
+
+    @Test
+    public void testValueLoadedDuringRemoveAllIsNotCached() throws Exception {
+        final MemoryPersistentStore persistentStore = new MemoryPersistentStore();
+        this.formatterCache = new FormatterCache(persistentStore, 100, 5000);
+
+        final long changeDate = new Date().getTime();
+        final Key key = new Key(1, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+
+        final Callable<StoreInfoAndDataLoadResult> removingLoader = () -> {
+            formatterCache.removeAll(key.mdId);
+            return new StoreInfoAndDataLoadResult("old", changeDate, false, null, null);
+        };
+        assertEquals("old", getAsString(key, changeDate, removingLoader));
+
+        assertNull(persistentStore.get(key));
+        assertEquals("new", getAsString(key, changeDate, new TestLoader("new", changeDate, false)));
+    }
+
+    @Test
+    public void testValueWarmedDuringRemoveAllIsNotStored() throws Exception {
+        final MemoryPersistentStore persistentStore = new MemoryPersistentStore();
+        this.formatterCache = new FormatterCache(persistentStore, 100, 5000);
+
+        final long changeDate = new Date().getTime();
+        final Key key = new Key(1, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+
+        final Callable<StoreInfoAndDataLoadResult> removingLoader = () -> {
+            formatterCache.removeAll(key.mdId);
+            return new StoreInfoAndDataLoadResult("old", changeDate, true, null, null);
+        };
+        assertTrue(formatterCache.warm(key, new ChangeDateValidator(changeDate), removingLoader));
+
+        assertNull(persistentStore.get(key));
+        assertNull(formatterCache.getPublished(key));
+    }
+
+    @Test
+    public void testRemoveAllAfterMemoryEviction() throws Exception {
+        final MemoryPersistentStore persistentStore = new MemoryPersistentStore();
+        this.formatterCache = new FormatterCache(persistentStore, 1, 5000);
+
+        final long changeDate = new Date().getTime();
+        final Key key = new Key(1, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+        final Key otherKey = new Key(2, "eng", FormatType.html, "full_view", true, FormatterWidth._100);
+
+        getAsString(key, changeDate, new TestLoader("result", changeDate, true));
+        // evicts the first value from memory
+        getAsString(otherKey, changeDate, new TestLoader("other", changeDate, true));
+        assertNotNull(persistentStore.get(key));
+
+        formatterCache.removeAll(key.mdId);
+
+        assertNull(persistentStore.get(key));
+        assertNull(formatterCache.getPublished(key));
+        assertNotNull(persistentStore.get(otherKey));
+    }
+
+    private String getQuietly(Key key, long changeDate, Callable<StoreInfoAndDataLoadResult> loader) {
+        try {
+            return getAsString(key, changeDate, loader);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
 }
@@ -69,6 +69,11 @@ public class MemoryPersistentStore implements PersistentStore {
         this.dataMap.remove(key);
     }
 
+    @Override
+    public void removeAll(int metadataId) {
+        this.dataMap.keySet().removeIf(key -> key.mdId == metadataId);
+    }
+
     @Override
     public void setPublished(int metadataId, boolean published) {
         for (Map.Entry<Key, StoreInfoAndData> dataEntry : Lists.newArrayList(dataMap.entrySet())) {
@@ -33,6 +33,7 @@ import jeeves.server.sources.http.ServletPathFinder;
 import jeeves.xlink.Processor;
 import org.apache.commons.lang.StringUtils;
 import org.fao.geonet.api.records.formatters.FormatType;
+import org.fao.geonet.api.records.formatters.FormatterConstants;
 import org.fao.geonet.api.records.formatters.FormatterApi;
 import org.fao.geonet.api.records.formatters.FormatterWidth;
 import org.fao.geonet.api.site.LogUtils;
@@ -64,6 +65,7 @@ import org.fao.geonet.util.ThreadUtils;
 import org.fao.geonet.utils.IO;
 import org.fao.geonet.utils.Log;
 import org.fao.geonet.utils.ProxyInfo;
+import org.fao.geonet.utils.Xml;
 import org.fao.geonet.utils.XmlResolver;
 import org.fao.geonet.wro4j.GeonetWro4jFilter;
 import org.jdom.Element;
@@ -84,6 +86,7 @@ import javax.servlet.ServletContext;
 import javax.sql.DataSource;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
@@ -270,6 +273,8 @@ public class Geonetwork implements ApplicationHandler {
         logger.info("  - Open Archive Initiative (OAI-PMH) server...");
 
         oaipmhDis = new OaiPmhDispatcher(settingMan, schemaMan);
+        _applicationContext.getAutowireCapableBeanFactory().autowireBean(oaipmhDis);
+        oaipmhDis.init();
 
 
         GeonetContext gnContext = new GeonetContext(_applicationContext, false);
@@ -381,6 +386,7 @@ public class Geonetwork implements ApplicationHandler {
                     }
                 }
 
+                warmUpStylesheetCache();
 
                 final Page<Metadata> metadatas = _applicationContext.getBean(MetadataRepository.class).findAll(PageRequest.of(0, 1));
                 if (metadatas.getNumberOfElements() > 0) {
@@ -412,6 +418,45 @@ public class Geonetwork implements ApplicationHandler {
         fillCaches.start();
     }
 
+    /**
+     * Compile the index and formatter stylesheets of all schemas so that the
+     * first indexing or formatting requests do not have to wait for it.
+     */
+    private void warmUpStylesheetCache() {
+        SchemaManager schemaManager = _applicationContext.getBean(SchemaManager.class);
+        List<Path> styleSheets = new ArrayList<>();
+        for (String schema : schemaManager.getSchemas()) {
+            Path schemaDir = schemaManager.getSchemaDir(schema);
+            Path indexStyleSheet = schemaDir
+                .resolve(EsSearchManager.SCHEMA_INDEX_XSLT_FOLDER)
+                .resolve(EsSearchManager.SCHEMA_INDEX_XSTL_FILENAME);
+            if (Files.exists(indexStyleSheet)) {
+                styleSheets.add(indexStyleSheet);
+            }
+            Path formatterDir = schemaDir.resolve(FormatterConstants.SCHEMA_PLUGIN_FORMATTER_DIR);
+            if (Files.isDirectory(formatterDir)) {
+                try (DirectoryStream<Path> formatters = Files.newDirectoryStream(formatterDir, Files::isDirectory)) {
+                    for (Path formatter : formatters) {
+                        Path viewStyleSheet = formatter.resolve(FormatterConstants.VIEW_XSL_FILENAME);
+                        if (Files.exists(viewStyleSheet)) {
+                            styleSheets.add(viewStyleSheet);
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.warning(Geonet.GEONETWORK, "Error while listing formatters of schema " + schema + ": " + e.getMessage());
+                }
+            }
+        }
+
+        Log.info(Geonet.GEONETWORK, "Compiling " + styleSheets.size() + " index and formatter stylesheets");
+        try {
+            int compiled = Xml.warmUpTransformerFactoryStylesheetCache(styleSheets);
+            Log.info(Geonet.GEONETWORK, compiled + " stylesheets compiled");
+        } catch (Throwable t) {
+            Log.warning(Geonet.GEONETWORK, "Error while compiling the index and formatter stylesheets: " + t.getMessage(), t);
+        }
+    }
+
     private void importDatabaseData(final ServiceContext context) {
         // check if database has any data
         final SettingRepository settingRepository = context.getBean(SettingRepository.class);
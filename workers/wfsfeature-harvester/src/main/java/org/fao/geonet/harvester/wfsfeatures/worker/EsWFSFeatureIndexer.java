@@ -37,7 +37,6 @@ import co.elastic.clients.json.JsonpMapper;
 import co.elastic.clients.util.BinaryData;
 import co.elastic.clients.util.ContentType;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -51,11 +50,12 @@ import org.fao.geonet.harvester.wfsfeatures.model.WFSHarvesterParameter;
 import org.fao.geonet.index.es.EsRestClient;
 import org.fao.geonet.kernel.search.EsSearchManager;
 import org.geotools.api.data.DataSourceException;
+import org.geotools.api.data.Query;
+import org.geotools.api.data.SimpleFeatureSource;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.store.ReprojectingFeatureCollection;
 import org.geotools.data.wfs.WFSDataStore;
 import org.geotools.feature.FeatureIterator;
-import org.geotools.geojson.geom.GeometryJSON;
 import org.geotools.referencing.CRS;
 import org.geotools.temporal.object.DefaultInstant;
 import org.geotools.util.logging.Logging;
@@ -65,28 +65,35 @@ import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.locationtech.jts.precision.GeometryPrecisionReducer;
 import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.sort.SortBy;
 import org.geotools.api.geometry.BoundingBox;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
 import org.geotools.api.temporal.Instant;
 import org.geotools.api.temporal.Position;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -130,6 +137,30 @@ public class EsWFSFeatureIndexer {
     }
 
 
+    @Value("${es.index.features.pageSize:1000}")
+    private int pageSize;
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+
+    @Value("${es.index.features.concurrentPages:2}")
+    private int concurrentPages;
+
+    public int getConcurrentPages() {
+        return concurrentPages;
+    }
+
+    public void setConcurrentPages(int concurrentPages) {
+        this.concurrentPages = concurrentPages;
+    }
+
+
     @Value("${es.index.features.applyPrecisionModel:false}")
     private boolean applyPrecisionModel;
 
@@ -166,8 +197,6 @@ public class EsWFSFeatureIndexer {
 
     private ObjectMapper jacksonMapper = new ObjectMapper();
 
-    private int nbOfFeatures;
-
     /**
      * Create exchange states for this feature type.
      * <p>
@@ -260,10 +289,7 @@ public class EsWFSFeatureIndexer {
         List<String> resolvedTypeNames = state.getResolvedTypeNames();
         String strategyId = state.getStrategyId();
 
-        Map<String, String> tokenizedFields = state.getParameters().getTokenizedFields();
         WFSDataStore wfs = state.getWfsDatastore();
-        Map<String, String> featureAttributes = state.getFields();
-        TitleResolver titleResolver = getTitleResolver(state);
 
         LOGGER.info("Indexing WFS features from service '{}' and feature type '{}'. Precision model applied: '{}', number of decimals: '{}'", url, typeName, applyPrecisionModel, numberOfDecimals);
         Report report = new Report(url, typeName);
@@ -276,7 +302,7 @@ public class EsWFSFeatureIndexer {
             linkToParent.put("parent", state.getParameters().getMetadataUuid());
             protoNode.set("featureOfRecord", linkToParent);
         }
-        initFeatureAttributeToDocumentFieldNamesMapping(featureAttributes, state.getParameters().getTreeFields(), report);
+        initFeatureAttributeToDocumentFieldNamesMapping(state.getFields(), state.getParameters().getTreeFields(), report);
         boolean initializeESReportSucceeded = report.saveHarvesterReport();
         if (!initializeESReportSucceeded) {
             String msg = "Couldn't initialize harvesting report, don't even try to go further querying wfs.";
@@ -284,181 +310,318 @@ public class EsWFSFeatureIndexer {
             throw new RuntimeException(msg);
         }
 
-        BulkResutHandler brh = new AsyncBulkResutHandler(typeName, url, nbOfFeatures, report, state.getParameters().getMetadataUuid());
+        BulkResutHandler brh = new AsyncBulkResutHandler(typeName, url, 0, report, state.getParameters().getMetadataUuid());
+        FeatureHarvest harvest = new FeatureHarvest(state, protoNode, report, brh);
 
         try {
-            nbOfFeatures = 0;
-
             long begin = System.currentTimeMillis();
             String epsg = "urn:ogc:def:crs:OGC:1.3:CRS84";
+            CoordinateReferenceSystem crs = CRS.decode(epsg);
 
             for (String featureType : resolvedTypeNames) {
-                SimpleFeatureCollection fc = wfs.getFeatureSource(featureType).getFeatures();
+                if (harvest.stopped.get()) {
+                    break;
+                }
+                SimpleFeatureSource featureSource = wfs.getFeatureSource(featureType);
+                if (pageSize > 0 && featureSource.getQueryCapabilities().isOffsetSupported()) {
+                    indexFeaturePages(featureSource, featureType, crs, harvest);
+                } else {
+                    indexFeatureCollection(new ReprojectingFeatureCollection(featureSource.getFeatures(), crs),
+                        featureType, 0, harvest);
+                }
+            }
+
+            long duration = Math.max(1, System.currentTimeMillis() - begin);
+            LOGGER.info("{}: {} features processed in {} ms ({} pages, {} features/s).", new Object[]{
+                typeName, harvest.nbOfFeatures.get(), duration, harvest.pages.get(),
+                harvest.nbOfFeatures.get() * 1000L / duration
+            });
+            report.put("durationMs_i", duration);
+            report.put("pages_i", harvest.pages.get());
+            report.put("shortPages_i", harvest.shortPages.get());
+            report.put("featuresPerSecond_d", harvest.nbOfFeatures.get() * 1000.0 / duration);
+            report.success(harvest.nbOfFeatures.get());
+        } catch (Exception e) {
+            report.put("status_s", "error");
+            report.put("error_ss", e.getMessage());
+            LOGGER.error(e.getMessage());
+            throw e;
+        } finally {
+            brh.close();
+            report.saveHarvesterReport();
+            future.complete(null);
+        }
 
-                ReprojectingFeatureCollection rfc = new ReprojectingFeatureCollection(fc, CRS.decode(epsg));
 
-                FeatureIterator<SimpleFeature> features = rfc.features();
+        return future;
+    }
 
-                try {
-                    while (features.hasNext()) {
-                        String featurePointer = String.format("%s#%s", featureType, nbOfFeatures);
-                        try {
-                            SimpleFeature feature = null;
-                            try {
-                                feature = features.next();
-                                featurePointer = String.format("%s/id:%s", featurePointer, feature.getID());
-                            } catch (Exception e) {
-                                if (e.getCause() instanceof IOException
-                                    || e.getCause() instanceof DataSourceException) {
-                                    String msg = String.format(
-                                        "Error while getting feature %s. Exception is: %s. Harvesting task will be stopped. This is probably a problem with the data source or some network related issues. Try to relaunch it later.",
-                                        featurePointer,
-                                        e.getMessage()
-                                    );
-                                    LOGGER.warn(msg);
-                                    report.put("error_ss", msg);
-                                    break;
+    /**
+     * Read the features of a feature type by pages of pageSize features, concurrentPages pages
+     * at the same time, sorted in the natural order of the source so that pages do not overlap.
+     * When the number of features is known, all the pages up to that number are read and pages
+     * with fewer features than expected are reported, otherwise pages are read until a page is
+     * not complete. Each page is converted by the thread reading it.
+     */
+    private void indexFeaturePages(SimpleFeatureSource featureSource, String featureType,
+                                   CoordinateReferenceSystem crs, FeatureHarvest harvest) throws Exception {
+        int count = -1;
+        try {
+            count = featureSource.getCount(new Query(featureType));
+        } catch (Exception e) {
+            LOGGER.debug("{}: Number of features not available. Error is {}", featureType, e.getMessage());
+        }
+        final int numberOfFeatures = count;
+        final boolean sorted = featureSource.getQueryCapabilities().supportsSorting(SortBy.NATURAL_ORDER);
+        if (!sorted) {
+            LOGGER.warn("{}: Sorting is not supported, pages may overlap or miss features.", featureType);
+        }
+        LOGGER.info("{}: Reading {} features by pages of {}, {} pages at a time.", new Object[]{
+            featureType, numberOfFeatures < 0 ? "all" : numberOfFeatures, pageSize, concurrentPages});
+
+        AtomicInteger nextPage = new AtomicInteger();
+        AtomicBoolean lastPageRead = new AtomicBoolean();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("WFSFeatureIndexer-");
+        threadFactory.setDaemon(true);
+        int numberOfThreads = Math.max(1, concurrentPages);
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads, threadFactory);
+        try {
+            List<Future<Void>> pageReaders = new ArrayList<>();
+            for (int i = 0; i < numberOfThreads; i++) {
+                pageReaders.add(executor.submit(() -> {
+                    try {
+                        while (!lastPageRead.get() && !harvest.stopped.get()) {
+                            int startIndex = nextPage.getAndIncrement() * pageSize;
+                            if (numberOfFeatures >= 0 && startIndex >= numberOfFeatures) {
+                                break;
+                            }
+                            Query query = new Query(featureType);
+                            query.setStartIndex(startIndex);
+                            query.setMaxFeatures(pageSize);
+                            if (sorted) {
+                                query.setSortBy(SortBy.NATURAL_ORDER);
+                            }
+                            int read = indexFeatureCollection(
+                                new ReprojectingFeatureCollection(featureSource.getFeatures(query), crs),
+                                featureType, startIndex, harvest);
+                            harvest.pages.incrementAndGet();
+                            if (numberOfFeatures < 0) {
+                                if (read < pageSize) {
+                                    lastPageRead.set(true);
                                 }
+                            } else if (read < Math.min(pageSize, numberOfFeatures - startIndex) && !harvest.stopped.get()) {
+                                harvest.shortPages.incrementAndGet();
                                 String msg = String.format(
-                                    "Error on reading %s. Exception is: %s",
-                                    featurePointer, e.getMessage()
-                                );
+                                    "%s: Page starting at feature %d returned %d features instead of %d.",
+                                    featureType, startIndex, read, Math.min(pageSize, numberOfFeatures - startIndex));
                                 LOGGER.warn(msg);
-                                report.put("error_ss", msg);
-                                continue;
-                            }
-                            ObjectNode rootNode = protoNode.deepCopy();
-                            titleResolver.setTitle(rootNode, feature);
-                            rootNode.put("featureType", featureType);
-
-                            for (String attributeName : featureAttributes.keySet()) {
-                                Object attributeValue = feature.getAttribute(attributeName);
-                                if (attributeValue == null) {
-
-                                } else if (tokenizedFields != null && tokenizedFields.get(attributeName) != null) {
-                                    String rawValue = (String) attributeValue;
-                                    String value = rawValue.startsWith(CDATA_START) ?
-                                        rawValue.replaceFirst(CDATA_START_REGEX, "").substring(0, rawValue.length() - CDATA_END.length() - CDATA_START.length()) :
-                                        rawValue;
-
-                                    String separator = tokenizedFields.get(attributeName);
-                                    String[] tokens = value.split(separator);
-                                    ArrayNode arrayNode = jacksonMapper.createArrayNode();
-                                    for (String token : tokens) {
-                                        arrayNode.add(token.trim());
-                                    }
-                                    rootNode.putPOJO(getDocumentFieldName(attributeName), arrayNode);
-                                } else if (getDocumentFieldName(attributeName).equals("geom")) {
-                                    Geometry geom = (Geometry) feature.getDefaultGeometry();
-
-                                    if (applyPrecisionModel) {
-                                        if (geom.isValid()) {
-                                            PrecisionModel precisionModel = new PrecisionModel(Math.pow(10, numberOfDecimals - 1));
-                                            geom = GeometryPrecisionReducer.reduce(geom, precisionModel);
-                                            // numberOfDecimals is equal to
-                                            // precisionModel.getMaximumSignificantDigits()
-                                        } else {
-                                            String msg = String.format(
-                                                "Feature %s: Cannot apply precision reducer on invalid geometry. Check the geometry validity. The feature will be indexed but with no geometry.",
-                                                featurePointer);
-                                            LOGGER.warn(msg);
-                                            report.put("error_ss", msg);
-                                            continue;
-                                        }
-                                    }
-
-                                    // An issue here is that GeometryJSON conversion may over simplify
-                                    // the geometry by truncating coordinates based on numberOfDecimals
-                                    // which on default constructor is set to 4. This may lead to
-                                    // invalid geometry and Elasticsearch will fail parsing the GeoJSON
-                                    // with the following type of error:
-                                    // Caused by: org.locationtech.spatial4j.exception.InvalidShapeException:
-                                    // Provided shape has duplicate
-                                    // consecutive coordinates at: (-3.9997, 48.7463, NaN)
-                                    //
-                                    // To avoid this, it may be relevant to apply the reduction model
-                                    // preserving topology.
-                                    String gjson = new GeometryJSON(numberOfDecimals).toString(geom);
-
-                                    JsonNode jsonNode = jacksonMapper.readTree(gjson.getBytes(StandardCharsets.UTF_8));
-                                    rootNode.set(getDocumentFieldName(attributeName), jsonNode);
-
-                                    boolean isPoint = geom instanceof Point;
-                                    if (isPoint) {
-                                        Coordinate point = geom.getCoordinate();
-                                        rootNode.put("location", String.format("%s,%s", point.y, point.x));
-                                    } else {
-                                        report.setPointOnlyForGeomsFalse();
-                                    }
-
-                                    // Populate bbox coordinates to be able to compute
-                                    // global bbox of search results
-                                    final BoundingBox bbox = feature.getBounds();
-                                    rootNode.put("bbox_xmin", bbox.getMinX());
-                                    rootNode.put("bbox_ymin", bbox.getMinY());
-                                    rootNode.put("bbox_xmax", bbox.getMaxX());
-                                    rootNode.put("bbox_ymax", bbox.getMaxY());
-                                } else if (attributeValue instanceof Instant) {
-                                    try {
-                                        Position position = ((DefaultInstant) attributeValue).getPosition();
-
-                                        if (position != null && position.getDate() != null) {
-                                            rootNode.put(getDocumentFieldName(attributeName),
-                                                position.getDate().toInstant().toString());
-                                        }
-                                    } catch (Exception instantException) {
-                                        String msg = String.format(
-                                            "Feature %s: Cannot read attribute %s, value %s. Exception is: %s",
-                                            featurePointer, attributeName, attributeValue, instantException.getMessage());
-                                        LOGGER.warn(msg);
-                                        report.put("error_ss", msg);
-                                    }
-                                } else {
-                                    String value = attributeValue.toString();
-                                    rootNode.put(getDocumentFieldName(attributeName),
-                                        value.startsWith(CDATA_START) ?
-                                            value.replaceFirst(CDATA_START_REGEX, "").substring(0, value.length() - CDATA_END.length() - CDATA_START.length()) :
-                                            value
-
-                                    );
-                                }
+                                harvest.report.put("error_ss", msg);
                             }
+                        }
+                        return null;
+                    } catch (Exception e) {
+                        harvest.stopped.set(true);
+                        throw e;
+                    }
+                }));
+            }
+            for (Future<Void> pageReader : pageReaders) {
+                try {
+                    pageReader.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                            nbOfFeatures ++;
-                            brh.addAction(rootNode, feature);
-
-                        } catch (Exception ex) {
+    /**
+     * Convert the features of a collection and add them to the bulk ingester.
+     *
+     * @return the number of features read.
+     */
+    private int indexFeatureCollection(SimpleFeatureCollection collection, String featureType,
+                                       int startIndex, FeatureHarvest harvest) {
+        Report report = harvest.report;
+        int read = 0;
+        FeatureIterator<SimpleFeature> features = collection.features();
+        try {
+            while (features.hasNext()) {
+                String featurePointer = String.format("%s#%s", featureType, startIndex + read);
+                read++;
+                try {
+                    SimpleFeature feature = null;
+                    try {
+                        feature = features.next();
+                        featurePointer = String.format("%s/id:%s", featurePointer, feature.getID());
+                    } catch (Exception e) {
+                        if (e.getCause() instanceof IOException
+                            || e.getCause() instanceof DataSourceException) {
                             String msg = String.format(
-                                "Feature %s: Error is: %s",
-                                featurePointer, ex.getMessage()
+                                "Error while getting feature %s. Exception is: %s. Harvesting task will be stopped. This is probably a problem with the data source or some network related issues. Try to relaunch it later.",
+                                featurePointer,
+                                e.getMessage()
                             );
                             LOGGER.warn(msg);
                             report.put("error_ss", msg);
+                            harvest.stopped.set(true);
+                            break;
                         }
+                        String msg = String.format(
+                            "Error on reading %s. Exception is: %s",
+                            featurePointer, e.getMessage()
+                        );
+                        LOGGER.warn(msg);
+                        report.put("error_ss", msg);
+                        continue;
                     }
-                } finally {
-                    features.close();
+                    ObjectNode rootNode = buildFeatureDocument(feature, featureType, featurePointer, harvest);
+                    // the position in the collection identifies the feature whatever the order pages are read in
+                    harvest.brh.addAction(rootNode, feature, startIndex + read);
+                    harvest.nbOfFeatures.incrementAndGet();
+
+                } catch (Exception ex) {
+                    String msg = String.format(
+                        "Feature %s: Error is: %s",
+                        featurePointer, ex.getMessage()
+                    );
+                    LOGGER.warn(msg);
+                    report.put("error_ss", msg);
                 }
             }
-
-            LOGGER.info("{}: {} features processed in {} ms.", new Object[]{
-                typeName, nbOfFeatures,
-                System.currentTimeMillis() - begin
-            });
-            report.success(nbOfFeatures);
-        } catch (Exception e) {
-            report.put("status_s", "error");
-            report.put("error_ss", e.getMessage());
-            LOGGER.error(e.getMessage());
-            throw e;
         } finally {
-            brh.close();
-            report.saveHarvesterReport();
-            future.complete(null);
+            features.close();
         }
+        return read;
+    }
 
+    private ObjectNode buildFeatureDocument(SimpleFeature feature, String featureType, String featurePointer,
+                                            FeatureHarvest harvest) {
+        Report report = harvest.report;
+        Map<String, String> tokenizedFields = harvest.tokenizedFields;
+        ObjectNode rootNode = harvest.protoNode.deepCopy();
+        harvest.titleResolver.setTitle(rootNode, feature);
+        rootNode.put("featureType", featureType);
+
+        for (String attributeName : harvest.featureAttributes.keySet()) {
+            Object attributeValue = feature.getAttribute(attributeName);
+            if (attributeValue == null) {
+
+            } else if (tokenizedFields != null && tokenizedFields.get(attributeName) != null) {
+                String rawValue = (String) attributeValue;
+                String value = rawValue.startsWith(CDATA_START) ?
+                    rawValue.replaceFirst(CDATA_START_REGEX, "").substring(0, rawValue.length() - CDATA_END.length() - CDATA_START.length()) :
+                    rawValue;
+
+                String separator = tokenizedFields.get(attributeName);
+                String[] tokens = value.split(separator);
+                ArrayNode arrayNode = jacksonMapper.createArrayNode();
+                for (String token : tokens) {
+                    arrayNode.add(token.trim());
+                }
+                rootNode.putPOJO(getDocumentFieldName(attributeName), arrayNode);
+            } else if (getDocumentFieldName(attributeName).equals("geom")) {
+                Geometry geom = (Geometry) feature.getDefaultGeometry();
+
+                if (harvest.precisionModel != null) {
+                    if (geom.isValid()) {
+                        geom = GeometryPrecisionReducer.reduce(geom, harvest.precisionModel);
+                        // numberOfDecimals is equal to
+                        // precisionModel.getMaximumSignificantDigits()
+                    } else {
+                        String msg = String.format(
+                            "Feature %s: Cannot apply precision reducer on invalid geometry. Check the geometry validity. The feature will be indexed but with no geometry.",
+                            featurePointer);
+                        LOGGER.warn(msg);
+                        report.put("error_ss", msg);
+                        continue;
+                    }
+                }
 
-        return future;
+                // An issue here is that GeoJSON conversion may over simplify
+                // the geometry by truncating coordinates based on numberOfDecimals.
+                // This may lead to invalid geometry and Elasticsearch will fail parsing the GeoJSON
+                // with the following type of error:
+                // Caused by: org.locationtech.spatial4j.exception.InvalidShapeException:
+                // Provided shape has duplicate
+                // consecutive coordinates at: (-3.9997, 48.7463, NaN)
+                //
+                // To avoid this, it may be relevant to apply the reduction model
+                // preserving topology.
+                rootNode.set(getDocumentFieldName(attributeName), harvest.geoJsonWriter.write(geom));
+
+                boolean isPoint = geom instanceof Point;
+                if (isPoint) {
+                    Coordinate point = geom.getCoordinate();
+                    rootNode.put("location", String.format("%s,%s", point.y, point.x));
+                } else {
+                    report.setPointOnlyForGeomsFalse();
+                }
+
+                // Populate bbox coordinates to be able to compute
+                // global bbox of search results
+                final BoundingBox bbox = feature.getBounds();
+                rootNode.put("bbox_xmin", bbox.getMinX());
+                rootNode.put("bbox_ymin", bbox.getMinY());
+                rootNode.put("bbox_xmax", bbox.getMaxX());
+                rootNode.put("bbox_ymax", bbox.getMaxY());
+            } else if (attributeValue instanceof Instant) {
+                try {
+                    Position position = ((DefaultInstant) attributeValue).getPosition();
+
+                    if (position != null && position.getDate() != null) {
+                        rootNode.put(getDocumentFieldName(attributeName),
+                            position.getDate().toInstant().toString());
+                    }
+                } catch (Exception instantException) {
+                    String msg = String.format(
+                        "Feature %s: Cannot read attribute %s, value %s. Exception is: %s",
+                        featurePointer, attributeName, attributeValue, instantException.getMessage());
+                    LOGGER.warn(msg);
+                    report.put("error_ss", msg);
+                }
+            } else {
+                String value = attributeValue.toString();
+                rootNode.put(getDocumentFieldName(attributeName),
+                    value.startsWith(CDATA_START) ?
+                        value.replaceFirst(CDATA_START_REGEX, "").substring(0, value.length() - CDATA_END.length() - CDATA_START.length()) :
+                        value
+
+                );
+            }
+        }
+        return rootNode;
+    }
+
+    /**
+     * State shared by the threads indexing the features of a feature type.
+     */
+    private class FeatureHarvest {
+        private final Map<String, String> featureAttributes;
+        private final Map<String, String> tokenizedFields;
+        private final TitleResolver titleResolver;
+        private final ObjectNode protoNode;
+        private final Report report;
+        private final BulkResutHandler brh;
+        private final PrecisionModel precisionModel;
+        private final GeoJsonNodeWriter geoJsonWriter;
+        private final AtomicInteger nbOfFeatures = new AtomicInteger();
+        private final AtomicInteger pages = new AtomicInteger();
+        private final AtomicInteger shortPages = new AtomicInteger();
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        private FeatureHarvest(WFSHarvesterExchangeState state, ObjectNode protoNode, Report report, BulkResutHandler brh) {
+            this.featureAttributes = state.getFields();
+            this.tokenizedFields = state.getParameters().getTokenizedFields();
+            this.titleResolver = getTitleResolver(state);
+            this.protoNode = protoNode;
+            this.report = report;
+            this.brh = brh;
+            this.precisionModel = applyPrecisionModel ? new PrecisionModel(Math.pow(10, numberOfDecimals - 1)) : null;
+            this.geoJsonWriter = new GeoJsonNodeWriter(numberOfDecimals);
+        }
     }
 
     private TitleResolver getTitleResolver(WFSHarvesterExchangeState state) {
@@ -503,10 +666,10 @@ public class EsWFSFeatureIndexer {
     }
 
     class Report {
-        private Map<String, Object> report = new HashMap<>();
+        private Map<String, Object> report = Collections.synchronizedMap(new HashMap<>());
         private String url;
         private String typeName;
-        private boolean pointOnlyForGeoms;
+        private volatile boolean pointOnlyForGeoms;
 
         public Report(String url, String typeName) {
             this.typeName = typeName;
@@ -577,7 +740,7 @@ public class EsWFSFeatureIndexer {
         private String metadataUuid;
         protected long begin;
         protected BulkIngester<String> bulk;
-        protected int bulkSize;
+        protected AtomicInteger bulkSize = new AtomicInteger();
         protected int failuresCount;
         BulkListener<String> listener;
 
@@ -589,7 +752,6 @@ public class EsWFSFeatureIndexer {
 
             this.metadataUuid = metadataUuid;
 
-            this.bulkSize = 0;
             this.failuresCount = 0;
             LOGGER.debug("  {} - Indexing with bulk ingester (with maxOperations {}) ...",
                 typeName, featureCommitInterval);
@@ -614,7 +776,7 @@ public class EsWFSFeatureIndexer {
                             }
                         });
                     }
-                    LOGGER.debug("  {} - {} features indexed in {} ms{}.", typeName, firstFeatureIndex + bulkSize,
+                    LOGGER.debug("  {} - {} features indexed in {} ms{}.", typeName, firstFeatureIndex + bulkSize.get(),
                         System.currentTimeMillis() - begin,
                         bulkResponse.errors() ?
                             " but with " + bulkFailures + " errors" : "");
@@ -625,7 +787,7 @@ public class EsWFSFeatureIndexer {
                 public void afterBulk(long executionId, BulkRequest request, List<String> contexts, Throwable failure) {
                     String msg = String.format(
                         "  %s - %s features indexed in %s ms but with errors. Exception: %s",
-                        typeName, firstFeatureIndex + bulkSize,
+                        typeName, firstFeatureIndex + bulkSize.get(),
                         System.currentTimeMillis() - begin,
                         failure.getMessage()
                     );
@@ -643,23 +805,26 @@ public class EsWFSFeatureIndexer {
         }
 
         public int getBulkSize() {
-            return bulkSize;
+            return bulkSize.get();
         }
 
         public int getNumberOfIndexedFeatures() {
-            return bulkSize - failuresCount;
+            return bulkSize.get() - failuresCount;
         }
 
-        public void addAction(ObjectNode rootNode, SimpleFeature feature) throws JsonProcessingException {
+        /**
+         * @param featureIndex the position of the feature in the collection, starting at 1.
+         */
+        public void addAction(ObjectNode rootNode, SimpleFeature feature, int featureIndex) throws JsonProcessingException {
             // generate a unique feature id when geotools gives us a placeholder one
             String featureId = feature.getID();
             if (featureId.toLowerCase().indexOf("placeholder") > -1) {
-                featureId = "fid-" + nbOfFeatures;
+                featureId = "fid-" + featureIndex;
             }
 
             String id = String.format("%s#%s#%s", url, typeName, featureId);
             BinaryData data = BinaryData.of(
-                    jacksonMapper.writeValueAsString(rootNode).getBytes(StandardCharsets.UTF_8),
+                    jacksonMapper.writeValueAsBytes(rootNode),
                     ContentType.APPLICATION_JSON);
 
             bulk.add(b ->
@@ -667,7 +832,7 @@ public class EsWFSFeatureIndexer {
                     .index(index)
                     .id(id)
                     .document(data)), id);
-            bulkSize++;
+            bulkSize.incrementAndGet();
         }
 
         public void close() {
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2001-2025 Food and Agriculture Organization of the
+ * United Nations (FAO-UN), United Nations World Food Programme (WFP)
+ * and United Nations Environment Programme (UNEP)
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+ *
+ * Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+ * Rome - Italy. email: geonetwork@osgeo.org
+ */
+
+package org.fao.geonet.harvester.wfsfeatures.worker;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Write JTS geometries as GeoJSON Jackson nodes, with coordinates rounded to a number of decimals
+ * like {@link org.geotools.geojson.geom.GeometryJSON}, without writing and parsing a GeoJSON string.
+ */
+public class GeoJsonNodeWriter {
+    private final JsonNodeFactory factory = JsonNodeFactory.instance;
+    private final double scale;
+
+    public GeoJsonNodeWriter(int numberOfDecimals) {
+        this.scale = Math.pow(10, numberOfDecimals);
+    }
+
+    public ObjectNode write(Geometry geom) {
+        ObjectNode node = factory.objectNode();
+        if (geom instanceof Point) {
+            node.put("type", "Point");
+            node.set("coordinates", geom.isEmpty() ? factory.arrayNode() : coordinate(geom.getCoordinate()));
+        } else if (geom instanceof LineString) {
+            node.put("type", "LineString");
+            node.set("coordinates", coordinates(((LineString) geom).getCoordinates()));
+        } else if (geom instanceof Polygon) {
+            node.put("type", "Polygon");
+            node.set("coordinates", polygon((Polygon) geom));
+        } else if (geom instanceof MultiPoint) {
+            node.put("type", "MultiPoint");
+            node.set("coordinates", coordinates(geom.getCoordinates()));
+        } else if (geom instanceof MultiLineString) {
+            node.put("type", "MultiLineString");
+            ArrayNode lines = node.putArray("coordinates");
+            for (int i = 0; i < geom.getNumGeometries(); i++) {
+                lines.add(coordinates(geom.getGeometryN(i).getCoordinates()));
+            }
+        } else if (geom instanceof MultiPolygon) {
+            node.put("type", "MultiPolygon");
+            ArrayNode polygons = node.putArray("coordinates");
+            for (int i = 0; i < geom.getNumGeometries(); i++) {
+                polygons.add(polygon((Polygon) geom.getGeometryN(i)));
+            }
+        } else if (geom instanceof GeometryCollection) {
+            node.put("type", "GeometryCollection");
+            ArrayNode geometries = node.putArray("geometries");
+            for (int i = 0; i < geom.getNumGeometries(); i++) {
+                geometries.add(write(geom.getGeometryN(i)));
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported geometry type " + geom.getGeometryType());
+        }
+        return node;
+    }
+
+    private ArrayNode polygon(Polygon polygon) {
+        ArrayNode rings = factory.arrayNode();
+        if (!polygon.isEmpty()) {
+            rings.add(coordinates(polygon.getExteriorRing().getCoordinates()));
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                rings.add(coordinates(polygon.getInteriorRingN(i).getCoordinates()));
+            }
+        }
+        return rings;
+    }
+
+    private ArrayNode coordinates(Coordinate[] coordinates) {
+        ArrayNode array = factory.arrayNode(coordinates.length);
+        for (Coordinate coordinate : coordinates) {
+            array.add(coordinate(coordinate));
+        }
+        return array;
+    }
+
+    private ArrayNode coordinate(Coordinate coordinate) {
+        ArrayNode array = factory.arrayNode(3);
+        array.add(round(coordinate.x));
+        array.add(round(coordinate.y));
+        if (!Double.isNaN(coordinate.getZ())) {
+            array.add(round(coordinate.getZ()));
+        }
+        return array;
+    }
+
+    private double round(double value) {
+        return Math.round(value * scale) / scale;
+    }
+}